@@ -0,0 +1,244 @@
+package com.fivepapa.backend.common.cache;
+
+import com.fivepapa.backend.common.cache.shared.SharedCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Response Cache
+ * Stores rendered GET responses for ResponseCacheFilter within a byte budget (Caffeine's
+ * size-weighted W-TinyLFU eviction), each labelled with surrogate tags such as "product:42".
+ *
+ * - handlers label their response with tag(...); untagged responses are never stored
+ * - writers call purge / purgeAfterCommit with the tags they affect, which drops exactly
+ *   the responses carrying one of those tags
+ * - every purge advances a counter; a response rendered while a purge happened is not stored,
+ *   so a request that read the old rows cannot put a stale body back after the purge
+ *
+ * The cache is per instance; purges are also published through SharedCache, so with a shared cache
+ * configured a write on another instance drops the same tags here. Without one, such a write is only
+ * seen here after RESPONSE_CACHE_TTL_SECONDS
+ */
+@Component
+public class ResponseCache {
+
+    private static final String TAGS_ATTRIBUTE = ResponseCache.class.getName() + ".tags";
+    // Rough per-entry overhead (key, headers, index) on top of the body
+    private static final int ENTRY_OVERHEAD_BYTES = 256;
+    private static final String CHANNEL = "httpResponses";
+
+    private final Cache<String, CachedResponse> cache;
+    private final Map<String, Set<String>> keysByTag = new HashMap<>();
+    private final AtomicLong purges = new AtomicLong();
+    private final int maxEntryBytes;
+    private final Counter purgedCounter;
+    private final SharedCache sharedCache;
+
+    public ResponseCache(MeterRegistry meterRegistry,
+                         SharedCache sharedCache,
+                         @Value("${RESPONSE_CACHE_MAX_BYTES:67108864}") long maxBytes,
+                         @Value("${RESPONSE_CACHE_MAX_ENTRY_BYTES:1048576}") int maxEntryBytes,
+                         @Value("${RESPONSE_CACHE_TTL_SECONDS:300}") long ttlSeconds) {
+        this.maxEntryBytes = maxEntryBytes;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((String key, CachedResponse response) -> response.weight(key))
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .removalListener((String key, CachedResponse response, RemovalCause cause) -> {
+                    if (key != null && response != null) {
+                        unindex(key, response.tags());
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "httpResponses");
+        Gauge.builder("http.response_cache.bytes", cache,
+                        c -> c.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L))
+                .description("Approximate bytes held by the HTTP response cache")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.purgedCounter = Counter.builder("http.response_cache.purged")
+                .description("Cached responses dropped by a surrogate tag purge")
+                .register(meterRegistry);
+        this.sharedCache = sharedCache;
+        sharedCache.onInvalidation(CHANNEL, new SharedCache.InvalidationListener() {
+            @Override
+            public void invalidate(List<String> tags) {
+                purgeLocal(tags);
+            }
+
+            @Override
+            public void invalidateAll() {
+                purgeAllLocal();
+            }
+        });
+    }
+
+    /**
+     * Labels the response of the current request with surrogate tags
+     * (sent as Surrogate-Key and used to purge the cached copy)
+     */
+    public void tag(String... tags) {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        Set<String> current = (Set<String>) attributes.getAttribute(TAGS_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (current == null) {
+            current = new LinkedHashSet<>();
+            attributes.setAttribute(TAGS_ATTRIBUTE, current, RequestAttributes.SCOPE_REQUEST);
+        }
+        current.addAll(List.of(tags));
+    }
+
+    /**
+     * Tags added to the request by its handler (empty when none)
+     */
+    public Set<String> tagsOf(HttpServletRequest request) {
+        @SuppressWarnings("unchecked")
+        Set<String> tags = (Set<String>) request.getAttribute(TAGS_ATTRIBUTE);
+        return tags != null ? tags : Set.of();
+    }
+
+    /**
+     * The cached response for the key, or null
+     */
+    public CachedResponse get(String key) {
+        return cache.getIfPresent(key);
+    }
+
+    /**
+     * Current purge counter; taken before rendering a response that may be stored
+     */
+    public long stamp() {
+        return purges.get();
+    }
+
+    /**
+     * Stores the response unless a purge happened since stamp, it has no tags or it exceeds the entry limit
+     */
+    public void put(String key, CachedResponse response, long stamp) {
+        if (response.tags().isEmpty() || response.body().length > maxEntryBytes) {
+            return;
+        }
+        synchronized (keysByTag) {
+            if (purges.get() != stamp) {
+                return;
+            }
+            for (String tag : response.tags()) {
+                keysByTag.computeIfAbsent(tag, t -> new HashSet<>()).add(key);
+            }
+            cache.put(key, response);
+        }
+    }
+
+    /**
+     * Drops every cached response carrying one of the tags, here and on the other instances
+     */
+    public void purge(Collection<String> tags) {
+        purgeLocal(tags);
+        sharedCache.publishInvalidation(CHANNEL, tags);
+    }
+
+    private void purgeLocal(Collection<String> tags) {
+        Set<String> keys = new HashSet<>();
+        synchronized (keysByTag) {
+            purges.incrementAndGet();
+            for (String tag : tags) {
+                Set<String> tagged = keysByTag.get(tag);
+                if (tagged != null) {
+                    keys.addAll(tagged);
+                }
+            }
+        }
+        cache.invalidateAll(keys);
+        purgedCounter.increment(keys.size());
+    }
+
+    /**
+     * Purges once the current transaction has finished (so no request can re-cache the rows
+     * it is about to replace); purges immediately outside a transaction
+     */
+    public void purgeAfterCommit(String... tags) {
+        List<String> purged = List.of(tags);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            purge(purged);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                purge(purged);
+            }
+        });
+    }
+
+    /**
+     * Drops everything, here and on the other instances
+     */
+    public void purgeAll() {
+        purgeAllLocal();
+        sharedCache.publishInvalidateAll(CHANNEL);
+    }
+
+    private void purgeAllLocal() {
+        synchronized (keysByTag) {
+            purges.incrementAndGet();
+        }
+        cache.invalidateAll();
+    }
+
+    /**
+     * Removal notifications are asynchronous; a key stored again in the meantime keeps its index
+     */
+    private void unindex(String key, Set<String> tags) {
+        synchronized (keysByTag) {
+            CachedResponse current = cache.getIfPresent(key);
+            for (String tag : tags) {
+                if (current != null && current.tags().contains(tag)) {
+                    continue;
+                }
+                Set<String> keys = keysByTag.get(tag);
+                if (keys != null) {
+                    keys.remove(key);
+                    if (keys.isEmpty()) {
+                        keysByTag.remove(tag);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * A stored 200 response: body, the headers needed to replay it, and its surrogate tags
+     */
+    public record CachedResponse(byte[] body, String contentType, String etag, long lastModified, Set<String> tags) {
+
+        private int weight(String key) {
+            return body.length + key.length() * 2 + ENTRY_OVERHEAD_BYTES;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.fivepapa.backend.common.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Response Cache Filter
+ * Serves anonymous GET requests on RESPONSE_CACHE_PATHS from ResponseCache, so repeated reads
+ * of the public catalog never reach the controllers.
+ * - the key is the path plus the query parameters sorted by name (parameter order does not matter)
+ * - RESPONSE_CACHE_EXCLUDED_PATHS are never wrapped (streamed exports must not be buffered)
+ * - requests with an Authorization header bypass the cache
+ * - only 200 responses that the handler tagged, without Set-Cookie or Content-Encoding, are stored
+ * - hits answer If-None-Match / If-Modified-Since with 304 from the stored validators
+ * - cacheable responses carry RESPONSE_CACHE_CONTROL and a Surrogate-Key header listing their tags,
+ *   so a CDN in front can share the work and purge by the same tags
+ *
+ * Registered after authorization in the security chain, so CORS and security headers are
+ * still written on cache hits
+ */
+@Component
+public class ResponseCacheFilter extends OncePerRequestFilter {
+
+    public static final String SURROGATE_KEY_HEADER = "Surrogate-Key";
+    public static final String CACHE_STATUS_HEADER = "X-Cache";
+
+    // Streamed (export), admin-only (imports), cursor-based (changes) and already pre-rendered (snapshots) routes
+    private static final String DEFAULT_EXCLUDED_PATHS = "/api/products/export,/api/products/imports/**,"
+            + "/api/products/changes,/api/products/active,/api/categories/top-level";
+
+    private final ResponseCache responseCache;
+    private final boolean enabled;
+    private final String cacheControl;
+    private final List<String> paths;
+    private final List<String> excludedPaths;
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+    private final Counter hitCounter;
+    private final Counter missCounter;
+
+    public ResponseCacheFilter(ResponseCache responseCache,
+                               MeterRegistry meterRegistry,
+                               @Value("${RESPONSE_CACHE_ENABLED:true}") boolean enabled,
+                               @Value("${RESPONSE_CACHE_CONTROL:public, max-age=0, s-maxage=30}") String cacheControl,
+                               @Value("${RESPONSE_CACHE_PATHS:/api/products/**,/api/categories/**}") String[] paths,
+                               @Value("${RESPONSE_CACHE_EXCLUDED_PATHS:" + DEFAULT_EXCLUDED_PATHS + "}") String[] excludedPaths) {
+        this.responseCache = responseCache;
+        this.enabled = enabled;
+        this.cacheControl = cacheControl;
+        this.paths = trimmed(paths);
+        this.excludedPaths = trimmed(excludedPaths);
+        this.hitCounter = Counter.builder("http.response_cache.requests")
+                .description("Cacheable GET requests by outcome")
+                .tag("outcome", "hit")
+                .register(meterRegistry);
+        this.missCounter = Counter.builder("http.response_cache.requests")
+                .description("Cacheable GET requests by outcome")
+                .tag("outcome", "miss")
+                .register(meterRegistry);
+    }
+
+    private static List<String> trimmed(String[] patterns) {
+        return Arrays.stream(patterns).map(String::trim).filter(pattern -> !pattern.isEmpty()).toList();
+    }
+
+    @Override
+    protected boolean shouldNotFilter(@NonNull HttpServletRequest request) {
+        if (!enabled || !"GET".equals(request.getMethod()) || request.getHeader(HttpHeaders.AUTHORIZATION) != null) {
+            return true;
+        }
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return paths.stream().noneMatch(pattern -> pathMatcher.match(pattern, path))
+                || excludedPaths.stream().anyMatch(pattern -> pathMatcher.match(pattern, path));
+    }
+
+    @Override
+    protected void doFilterInternal(
+            @NonNull HttpServletRequest request,
+            @NonNull HttpServletResponse response,
+            @NonNull FilterChain filterChain
+    ) throws ServletException, IOException {
+
+        String key = key(request);
+        ResponseCache.CachedResponse cached = responseCache.get(key);
+        if (cached != null) {
+            hitCounter.increment();
+            serve(request, response, cached);
+            return;
+        }
+
+        missCounter.increment();
+        long stamp = responseCache.stamp();
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        try {
+            filterChain.doFilter(request, wrapper);
+            Set<String> tags = responseCache.tagsOf(request);
+            int status = wrapper.getStatus();
+            if (tags.isEmpty() || (status != HttpServletResponse.SC_OK && status != HttpServletResponse.SC_NOT_MODIFIED)) {
+                return;
+            }
+            wrapper.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+            wrapper.setHeader(SURROGATE_KEY_HEADER, String.join(" ", tags));
+            wrapper.setHeader(CACHE_STATUS_HEADER, "MISS");
+            if (status == HttpServletResponse.SC_OK && isStorable(wrapper)) {
+                responseCache.put(key, new ResponseCache.CachedResponse(
+                        wrapper.getContentAsByteArray(), wrapper.getContentType(),
+                        wrapper.getHeader(HttpHeaders.ETAG), lastModified(wrapper), Set.copyOf(tags)), stamp);
+            }
+        } finally {
+            wrapper.copyBodyToResponse();
+        }
+    }
+
+    private void serve(HttpServletRequest request, HttpServletResponse response,
+                       ResponseCache.CachedResponse cached) throws IOException {
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+        response.setHeader(SURROGATE_KEY_HEADER, String.join(" ", cached.tags()));
+        response.setHeader(CACHE_STATUS_HEADER, "HIT");
+        if (new ServletWebRequest(request, response).checkNotModified(cached.etag(), cached.lastModified())) {
+            return;
+        }
+        if (cached.etag() != null) {
+            response.setHeader(HttpHeaders.ETAG, cached.etag());
+        }
+        if (cached.lastModified() >= 0) {
+            response.setDateHeader(HttpHeaders.LAST_MODIFIED, cached.lastModified());
+        }
+        if (cached.contentType() != null) {
+            response.setContentType(cached.contentType());
+        }
+        response.setContentLength(cached.body().length);
+        response.getOutputStream().write(cached.body());
+    }
+
+    private static boolean isStorable(HttpServletResponse response) {
+        return !response.containsHeader(HttpHeaders.SET_COOKIE)
+                && !response.containsHeader(HttpHeaders.CONTENT_ENCODING);
+    }
+
+    private static long lastModified(HttpServletResponse response) {
+        String value = response.getHeader(HttpHeaders.LAST_MODIFIED);
+        if (value == null) {
+            return -1;
+        }
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.LAST_MODIFIED, value);
+        return headers.getLastModified();
+    }
+
+    /**
+     * Path plus query parameters in a canonical order
+     */
+    private static String key(HttpServletRequest request) {
+        StringBuilder key = new StringBuilder(request.getRequestURI());
+        char separator = '?';
+        for (Map.Entry<String, String[]> parameter : new TreeMap<>(request.getParameterMap()).entrySet()) {
+            for (String value : parameter.getValue()) {
+                key.append(separator).append(URLEncoder.encode(parameter.getKey(), StandardCharsets.UTF_8))
+                        .append('=').append(URLEncoder.encode(value, StandardCharsets.UTF_8));
+                separator = '&';
+            }
+        }
+        return key.toString();
+    }
+}
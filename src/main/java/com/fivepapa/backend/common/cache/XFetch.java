@@ -0,0 +1,30 @@
+package com.fivepapa.backend.common.cache;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Probabilistic early expiration ("XFetch", Vattani et al., "Optimal Probabilistic Cache Stampede Prevention")
+ * Each read of a cached value recomputes it early with a probability that grows as the expiry approaches
+ * and with the cost of recomputing, so a hot key is usually refreshed by one reader before it expires
+ * instead of by every reader right after.
+ */
+public final class XFetch {
+
+    private XFetch() {
+    }
+
+    /**
+     * @param computeNanos how long the value took to compute
+     * @param expiresAtNanos {@link System#nanoTime()} at which the value expires
+     * @param beta aggressiveness; 1 is the optimum from the paper, larger refreshes earlier, 0 disables
+     * @return true when this reader should recompute the value now
+     */
+    public static boolean shouldRefresh(long computeNanos, long expiresAtNanos, double beta) {
+        if (beta <= 0) {
+            return false;
+        }
+        // 1 - nextDouble() is in (0, 1], so the logarithm is finite and <= 0
+        double gap = -computeNanos * beta * Math.log(1 - ThreadLocalRandom.current().nextDouble());
+        return System.nanoTime() + gap >= expiresAtNanos;
+    }
+}
@@ -0,0 +1,292 @@
+package com.fivepapa.backend.common.cache.shared;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shared Cache
+ * The optional shared (L2) tier behind the in-process caches, and the channel that carries
+ * invalidations between instances.
+ *
+ * - SHARED_CACHE_ADDRESS (host:port) points at a shared cache server; empty disables the tier
+ * - SHARED_CACHE_EMBEDDED_PORT >= 0 also starts a SharedCacheServer in this JVM (the stand-in for local
+ *   runs and tests); without an address this instance connects to it
+ * - disabled or unreachable, every operation is a no-op or a miss, so callers fall back to their own
+ *   L1 and the database; errors are counted, never thrown
+ *
+ * Caches register an InvalidationListener per channel (usually the cache name). Invalidations are
+ * published as "node, channel, keys" and ignored by the node that sent them. Each time the subscription
+ * is (re-)established every listener is told to drop everything, since messages sent while it was down
+ * are lost.
+ *
+ * Metrics:
+ * - cache.shared.errors: L2 requests that failed or timed out
+ * - cache.shared.invalidations (direction=sent|received)
+ */
+@Slf4j
+@Component
+public class SharedCache {
+
+    private static final String ALL = "*";
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final ObjectMapper objectMapper;
+    private final Map<String, InvalidationListener> listeners = new ConcurrentHashMap<>();
+    private final SharedCacheServer server;
+    private final SharedCacheClient client;
+    private final Counter errorCounter;
+    private final Counter sentCounter;
+    private final Counter receivedCounter;
+    private volatile boolean available = true;
+
+    public SharedCache(ObjectMapper objectMapper,
+                       MeterRegistry meterRegistry,
+                       @Value("${SHARED_CACHE_ADDRESS:}") String address,
+                       @Value("${SHARED_CACHE_EMBEDDED_PORT:-1}") int embeddedPort,
+                       @Value("${SHARED_CACHE_EMBEDDED_BIND_ADDRESS:127.0.0.1}") String embeddedBindAddress,
+                       @Value("${SHARED_CACHE_EMBEDDED_MAX_BYTES:268435456}") long embeddedMaxBytes,
+                       @Value("${SHARED_CACHE_EMBEDDED_MAX_CONNECTIONS:256}") int embeddedMaxConnections,
+                       @Value("${SHARED_CACHE_TOMBSTONE_SECONDS:60}") long tombstoneSeconds,
+                       @Value("${SHARED_CACHE_POOL_SIZE:16}") int poolSize,
+                       @Value("${SHARED_CACHE_TIMEOUT_MS:250}") long timeoutMillis) {
+        this.objectMapper = objectMapper;
+        this.errorCounter = Counter.builder("cache.shared.errors")
+                .description("Shared cache requests that failed or timed out")
+                .register(meterRegistry);
+        this.sentCounter = Counter.builder("cache.shared.invalidations")
+                .description("Invalidation messages exchanged with other instances")
+                .tag("direction", "sent")
+                .register(meterRegistry);
+        this.receivedCounter = Counter.builder("cache.shared.invalidations")
+                .description("Invalidation messages exchanged with other instances")
+                .tag("direction", "received")
+                .register(meterRegistry);
+
+        if (embeddedPort >= 0) {
+            try {
+                this.server = new SharedCacheServer(embeddedPort, InetAddress.getByName(embeddedBindAddress),
+                        embeddedMaxBytes, Duration.ofSeconds(tombstoneSeconds), embeddedMaxConnections);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to start the embedded shared cache server", e);
+            }
+            if (address.isBlank()) {
+                address = "127.0.0.1:" + server.getPort();
+            }
+        } else {
+            this.server = null;
+        }
+
+        if (address.isBlank()) {
+            this.client = null;
+            return;
+        }
+        int separator = address.lastIndexOf(':');
+        if (separator < 0) {
+            throw new IllegalArgumentException("SHARED_CACHE_ADDRESS must be host:port, was " + address);
+        }
+        this.client = new SharedCacheClient(address.substring(0, separator),
+                Integer.parseInt(address.substring(separator + 1)), poolSize, Duration.ofMillis(timeoutMillis));
+        this.client.subscribe(this::receive, this::resubscribed);
+        log.info("Shared cache tier enabled at {} (node {})", address, nodeId);
+    }
+
+    public boolean isEnabled() {
+        return client != null;
+    }
+
+    /**
+     * Registers the listener for invalidations published by other instances on the channel
+     */
+    public void onInvalidation(String channel, InvalidationListener listener) {
+        listeners.put(channel, listener);
+    }
+
+    /**
+     * Tells other instances to drop these keys on the channel
+     */
+    public void publishInvalidation(String channel, Collection<String> keys) {
+        if (!keys.isEmpty()) {
+            publish(channel, String.join("\n", keys));
+        }
+    }
+
+    /**
+     * Tells other instances to drop everything on the channel
+     */
+    public void publishInvalidateAll(String channel) {
+        publish(channel, ALL);
+    }
+
+    /**
+     * The L2 entry for the key, or null when disabled or unreachable (a lookup with a null value is a miss)
+     */
+    SharedCacheClient.Lookup lookup(String key) {
+        if (client == null) {
+            return null;
+        }
+        try {
+            SharedCacheClient.Lookup lookup = client.get(key);
+            succeeded();
+            return lookup;
+        } catch (IOException e) {
+            failed("get", e);
+            return null;
+        }
+    }
+
+    /**
+     * A token for {@link #store}, or -1 when disabled or unreachable
+     */
+    long token() {
+        if (client == null) {
+            return -1;
+        }
+        try {
+            long token = client.token();
+            succeeded();
+            return token;
+        } catch (IOException e) {
+            failed("token", e);
+            return -1;
+        }
+    }
+
+    /**
+     * Stores the value in L2 unless the key was invalidated after the token was taken
+     */
+    void store(String key, Object value, long token, Duration ttl) {
+        if (client == null || token < 0) {
+            return;
+        }
+        try {
+            client.set(key, objectMapper.writeValueAsBytes(value), token, ttl);
+            succeeded();
+        } catch (IOException e) {
+            failed("set", e);
+        }
+    }
+
+    void delete(Collection<String> keys) {
+        if (client == null || keys.isEmpty()) {
+            return;
+        }
+        try {
+            client.delete(keys);
+            succeeded();
+        } catch (IOException e) {
+            failed("delete", e);
+        }
+    }
+
+    void deletePrefix(String prefix) {
+        if (client == null) {
+            return;
+        }
+        try {
+            client.deletePrefix(prefix);
+            succeeded();
+        } catch (IOException e) {
+            failed("delete", e);
+        }
+    }
+
+    /**
+     * Decodes an L2 value, or null when it cannot be read (e.g. written by an incompatible version)
+     */
+    <V> V decode(byte[] value, Class<V> type) {
+        try {
+            return objectMapper.readValue(value, type);
+        } catch (IOException e) {
+            log.debug("Ignoring unreadable shared cache value for {}: {}", type.getSimpleName(), e.getMessage());
+            return null;
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        if (client != null) {
+            client.close();
+        }
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    private void publish(String channel, String body) {
+        if (client == null) {
+            return;
+        }
+        try {
+            client.publish(nodeId + "\n" + channel + "\n" + body);
+            sentCounter.increment();
+            succeeded();
+        } catch (IOException e) {
+            failed("publish", e);
+        }
+    }
+
+    private void receive(String message) {
+        String[] parts = message.split("\n");
+        if (parts.length < 3 || parts[0].equals(nodeId)) {
+            return;
+        }
+        InvalidationListener listener = listeners.get(parts[1]);
+        if (listener == null) {
+            return;
+        }
+        receivedCounter.increment();
+        if (parts.length == 3 && ALL.equals(parts[2])) {
+            listener.invalidateAll();
+        } else {
+            listener.invalidate(Arrays.asList(parts).subList(2, parts.length));
+        }
+    }
+
+    /**
+     * Invalidations sent while the subscription was down are lost; drop everything that may have missed one
+     */
+    private void resubscribed() {
+        listeners.values().forEach(InvalidationListener::invalidateAll);
+    }
+
+    private void succeeded() {
+        if (!available) {
+            available = true;
+            log.info("Shared cache is reachable again");
+        }
+    }
+
+    private void failed(String operation, IOException e) {
+        errorCounter.increment();
+        if (available) {
+            available = false;
+            log.warn("Shared cache {} failed, falling back to local caches: {}", operation, e.getMessage());
+        }
+    }
+
+    /**
+     * Receives invalidations published by other instances (on the subscription thread)
+     */
+    public interface InvalidationListener {
+
+        void invalidate(List<String> keys);
+
+        void invalidateAll();
+    }
+}
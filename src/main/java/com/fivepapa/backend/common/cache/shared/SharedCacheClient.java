@@ -0,0 +1,263 @@
+package com.fivepapa.backend.common.cache.shared;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Client for a shared cache server speaking SharedCacheProtocol
+ * Requests use a small pool of connections (at most poolSize in flight); a connection that fails
+ * is dropped and the IOException reaches the caller, which treats the L2 as unavailable.
+ * Every request has a connect and read timeout, so a slow or unreachable L2 costs at most that long.
+ *
+ * The subscription runs on its own daemon thread and reconnects with backoff; onSubscribed runs each
+ * time the subscription is (re-)established, because messages published while it was down are lost.
+ */
+@Slf4j
+public class SharedCacheClient implements Closeable {
+
+    private static final long MAX_BACKOFF_MS = 5000;
+
+    private final InetSocketAddress address;
+    private final int timeoutMillis;
+    private final Semaphore permits;
+    private final ConcurrentLinkedQueue<Connection> idle = new ConcurrentLinkedQueue<>();
+    private volatile boolean closed;
+    private volatile Socket subscription;
+
+    /**
+     * @param host server host
+     * @param port server port
+     * @param poolSize maximum concurrent requests (and pooled connections)
+     * @param timeout connect, read and pool wait timeout for each request
+     */
+    public SharedCacheClient(String host, int port, int poolSize, Duration timeout) {
+        this.address = new InetSocketAddress(host, port);
+        this.timeoutMillis = (int) timeout.toMillis();
+        this.permits = new Semaphore(poolSize);
+    }
+
+    /**
+     * The value for the key (null when missing) and a token for a later {@link #set}
+     */
+    public Lookup get(String key) throws IOException {
+        return call(connection -> {
+            connection.out.writeByte(SharedCacheProtocol.GET);
+            SharedCacheProtocol.writeString(connection.out, key);
+            connection.out.flush();
+            long token = connection.in.readLong();
+            int length = connection.in.readInt();
+            byte[] value = null;
+            if (length >= 0) {
+                value = new byte[length];
+                connection.in.readFully(value);
+            }
+            return new Lookup(token, value);
+        });
+    }
+
+    /**
+     * A token for a later {@link #set}, taken before loading the value
+     */
+    public long token() throws IOException {
+        return call(connection -> {
+            connection.out.writeByte(SharedCacheProtocol.TOKEN);
+            connection.out.flush();
+            return connection.in.readLong();
+        });
+    }
+
+    /**
+     * Stores the value unless the key was deleted after the token was issued
+     * @return true when stored
+     */
+    public boolean set(String key, byte[] value, long token, Duration ttl) throws IOException {
+        return call(connection -> {
+            connection.out.writeByte(SharedCacheProtocol.SET);
+            SharedCacheProtocol.writeString(connection.out, key);
+            connection.out.writeLong(token);
+            connection.out.writeLong(ttl.toMillis());
+            SharedCacheProtocol.writeBytes(connection.out, value);
+            connection.out.flush();
+            return connection.in.readByte() == SharedCacheProtocol.ACK;
+        });
+    }
+
+    public void delete(Collection<String> keys) throws IOException {
+        call(connection -> {
+            connection.out.writeByte(SharedCacheProtocol.DELETE);
+            connection.out.writeInt(keys.size());
+            for (String key : keys) {
+                SharedCacheProtocol.writeString(connection.out, key);
+            }
+            connection.out.flush();
+            return connection.in.readByte();
+        });
+    }
+
+    public void deletePrefix(String prefix) throws IOException {
+        call(connection -> {
+            connection.out.writeByte(SharedCacheProtocol.DELETE_PREFIX);
+            SharedCacheProtocol.writeString(connection.out, prefix);
+            connection.out.flush();
+            return connection.in.readByte();
+        });
+    }
+
+    public void publish(String message) throws IOException {
+        call(connection -> {
+            connection.out.writeByte(SharedCacheProtocol.PUBLISH);
+            SharedCacheProtocol.writeString(connection.out, message);
+            connection.out.flush();
+            return connection.in.readByte();
+        });
+    }
+
+    /**
+     * Starts receiving published messages on a daemon thread until the client is closed
+     * @param onMessage called on the subscription thread for every message
+     * @param onSubscribed called on the subscription thread each time the subscription is established
+     */
+    public void subscribe(Consumer<String> onMessage, Runnable onSubscribed) {
+        Thread thread = new Thread(() -> receive(onMessage, onSubscribed), "shared-cache-subscription");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        Connection connection;
+        while ((connection = idle.poll()) != null) {
+            connection.close();
+        }
+        Socket socket = subscription;
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // already closed
+            }
+        }
+    }
+
+    private void receive(Consumer<String> onMessage, Runnable onSubscribed) {
+        long backoff = 100;
+        while (!closed) {
+            try (Socket socket = connect()) {
+                socket.setSoTimeout(0);
+                subscription = socket;
+                DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                out.writeByte(SharedCacheProtocol.SUBSCRIBE);
+                out.flush();
+                in.readByte();
+                backoff = 100;
+                onSubscribed.run();
+                while (!closed) {
+                    // Messages come from the configured server, which already limits what it accepts
+                    onMessage.accept(SharedCacheProtocol.readString(in, Integer.MAX_VALUE));
+                }
+            } catch (IOException | RuntimeException e) {
+                if (closed) {
+                    return;
+                }
+                log.warn("Shared cache subscription to {} lost, retrying in {} ms: {}", address, backoff, e.getMessage());
+            }
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            backoff = Math.min(backoff * 2, MAX_BACKOFF_MS);
+        }
+    }
+
+    private <T> T call(Request<T> request) throws IOException {
+        if (closed) {
+            throw new IOException("Shared cache client closed");
+        }
+        try {
+            if (!permits.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new IOException("Timed out waiting for a shared cache connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for a shared cache connection", e);
+        }
+        Connection connection = idle.poll();
+        try {
+            if (connection == null) {
+                connection = new Connection(connect());
+            }
+            T result = request.send(connection);
+            idle.offer(connection);
+            return result;
+        } catch (IOException | RuntimeException e) {
+            if (connection != null) {
+                connection.close();
+            }
+            throw e;
+        } finally {
+            permits.release();
+        }
+    }
+
+    private Socket connect() throws IOException {
+        Socket socket = new Socket();
+        try {
+            socket.connect(address, timeoutMillis);
+            socket.setSoTimeout(timeoutMillis);
+            socket.setTcpNoDelay(true);
+            return socket;
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Result of {@link #get}: value is null when the key is missing
+     */
+    public record Lookup(long token, byte[] value) {
+    }
+
+    @FunctionalInterface
+    private interface Request<T> {
+        T send(Connection connection) throws IOException;
+    }
+
+    private static final class Connection {
+        private final Socket socket;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+
+        private Connection(Socket socket) throws IOException {
+            this.socket = socket;
+            this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        }
+
+        private void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // already closed
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.fivepapa.backend.common.cache.shared;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Wire format shared by SharedCacheServer and SharedCacheClient
+ * Every request is one opcode byte followed by its fields; strings and values are length-prefixed.
+ *
+ * - GET    key                          -> token, length (-1 when missing), value bytes
+ * - TOKEN                               -> token
+ * - SET    key, token, ttlMillis, value -> 1 when stored, 0 when rejected
+ * - DEL    count, keys                  -> ack
+ * - DELP   prefix                       -> ack
+ * - PUB    message                      -> ack
+ * - SUB                                 -> the connection then only carries pushed messages
+ *
+ * A token is the server's write counter at the time it was issued. SET carries the token taken
+ * before the value was loaded and is rejected when the key (or a prefix of it) was deleted after
+ * that, so a node that read old rows cannot put them back after another node's invalidation.
+ *
+ * Readers pass the largest length they accept, so a bad length prefix fails the connection
+ * instead of allocating whatever the peer asked for.
+ */
+final class SharedCacheProtocol {
+
+    static final byte GET = 'G';
+    static final byte TOKEN = 'T';
+    static final byte SET = 'S';
+    static final byte DELETE = 'D';
+    static final byte DELETE_PREFIX = 'X';
+    static final byte PUBLISH = 'P';
+    static final byte SUBSCRIBE = 'U';
+
+    static final byte ACK = 1;
+    static final byte REJECTED = 0;
+
+    private SharedCacheProtocol() {
+    }
+
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        writeBytes(out, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static String readString(DataInputStream in, int maxLength) throws IOException {
+        return new String(readBytes(in, maxLength), StandardCharsets.UTF_8);
+    }
+
+    static void writeBytes(DataOutputStream out, byte[] value) throws IOException {
+        out.writeInt(value.length);
+        out.write(value);
+    }
+
+    static byte[] readBytes(DataInputStream in, int maxLength) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Negative length " + length);
+        }
+        if (length > maxLength) {
+            throw new IOException("Length " + length + " exceeds the limit of " + maxLength + " bytes");
+        }
+        byte[] value = new byte[length];
+        in.readFully(value);
+        return value;
+    }
+}
@@ -0,0 +1,287 @@
+package com.fivepapa.backend.common.cache.shared;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Embedded shared cache (L2) server
+ * A small in-JVM stand-in for a shared cache such as memcached or Redis, speaking SharedCacheProtocol
+ * over TCP, so several instances (or several clients in one test) can share an L2 and an
+ * invalidation channel without external infrastructure.
+ *
+ * - values are held within a byte budget (Caffeine, size-weighted) with a per-entry TTL
+ * - deletes leave a tombstone for tombstoneTtl; a SET whose token predates the tombstone is rejected
+ * - published messages are pushed to every subscribed connection
+ *
+ * One thread per connection, up to maxConnections (further connections are closed right away);
+ * frames longer than the byte budget close the connection. There is no authentication, so
+ * anyone who can reach the port can read and write entries: bind it to a trusted network only.
+ * Meant for development, tests and small deployments
+ */
+@Slf4j
+public class SharedCacheServer implements Closeable {
+
+    private final ServerSocket serverSocket;
+    private final Cache<String, StoredValue> values;
+    private final Cache<String, Long> deletedKeys;
+    private final Cache<String, Long> deletedPrefixes;
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final ExecutorService connections;
+    private final int maxFrameBytes;
+    private long writes;
+
+    /**
+     * @param port port to listen on (0 picks a free port)
+     * @param bindAddress address to listen on, null for all
+     * @param maxBytes byte budget for stored values
+     * @param tombstoneTtl how long a delete rejects SETs with an older token (longer than any load)
+     * @param maxConnections connections served at once (subscriptions included)
+     */
+    public SharedCacheServer(int port, InetAddress bindAddress, long maxBytes, Duration tombstoneTtl,
+                             int maxConnections) throws IOException {
+        this.serverSocket = new ServerSocket(port, 50, bindAddress);
+        // A value larger than the whole budget could never be stored
+        this.maxFrameBytes = (int) Math.min(maxBytes, Integer.MAX_VALUE - 8);
+        this.values = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((String key, StoredValue value) -> value.bytes().length + key.length() * 2 + 64)
+                .expireAfter(new Expiry<String, StoredValue>() {
+                    @Override
+                    public long expireAfterCreate(String key, StoredValue value, long currentTime) {
+                        return value.ttlNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, StoredValue value, long currentTime, long currentDuration) {
+                        return value.ttlNanos();
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, StoredValue value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+        this.deletedKeys = Caffeine.newBuilder().expireAfterWrite(tombstoneTtl).maximumSize(1_000_000).build();
+        this.deletedPrefixes = Caffeine.newBuilder().expireAfterWrite(tombstoneTtl).build();
+        AtomicInteger threads = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(maxConnections, maxConnections, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "shared-cache-server-" + threads.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        pool.allowCoreThreadTimeOut(true);
+        this.connections = pool;
+        Thread acceptor = new Thread(this::accept, "shared-cache-server-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        log.info("Shared cache server listening on {}", serverSocket.getLocalSocketAddress());
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        connections.shutdownNow();
+        for (Subscriber subscriber : subscribers) {
+            subscriber.close();
+        }
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                try {
+                    connections.execute(() -> serve(socket));
+                } catch (RejectedExecutionException e) {
+                    log.warn("Shared cache server refused {}: all connections in use", socket.getRemoteSocketAddress());
+                    socket.close();
+                }
+            } catch (SocketException e) {
+                return;  // closed
+            } catch (IOException e) {
+                log.warn("Shared cache server failed to accept a connection", e);
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            while (true) {
+                byte op = in.readByte();
+                if (op == SharedCacheProtocol.SUBSCRIBE) {
+                    subscribe(socket, in, out);
+                    return;
+                }
+                handle(op, in, out);
+                out.flush();
+            }
+        } catch (EOFException | SocketException e) {
+            // client went away
+        } catch (IOException e) {
+            log.debug("Shared cache connection closed: {}", e.getMessage());
+        }
+    }
+
+    private void handle(byte op, DataInputStream in, DataOutputStream out) throws IOException {
+        switch (op) {
+            case SharedCacheProtocol.GET -> {
+                String key = SharedCacheProtocol.readString(in, maxFrameBytes);
+                long token = token();
+                StoredValue value = values.getIfPresent(key);
+                out.writeLong(token);
+                if (value == null) {
+                    out.writeInt(-1);
+                } else {
+                    SharedCacheProtocol.writeBytes(out, value.bytes());
+                }
+            }
+            case SharedCacheProtocol.TOKEN -> out.writeLong(token());
+            case SharedCacheProtocol.SET -> {
+                String key = SharedCacheProtocol.readString(in, maxFrameBytes);
+                long token = in.readLong();
+                long ttlMillis = in.readLong();
+                byte[] value = SharedCacheProtocol.readBytes(in, maxFrameBytes);
+                out.writeByte(set(key, token, ttlMillis, value) ? SharedCacheProtocol.ACK : SharedCacheProtocol.REJECTED);
+            }
+            case SharedCacheProtocol.DELETE -> {
+                int count = in.readInt();
+                // Every key takes at least its 4-byte length prefix
+                if (count < 0 || count > maxFrameBytes / 4) {
+                    throw new IOException("Invalid key count " + count);
+                }
+                String[] keys = new String[count];
+                for (int i = 0; i < count; i++) {
+                    keys[i] = SharedCacheProtocol.readString(in, maxFrameBytes);
+                }
+                delete(keys);
+                out.writeByte(SharedCacheProtocol.ACK);
+            }
+            case SharedCacheProtocol.DELETE_PREFIX -> {
+                deletePrefix(SharedCacheProtocol.readString(in, maxFrameBytes));
+                out.writeByte(SharedCacheProtocol.ACK);
+            }
+            case SharedCacheProtocol.PUBLISH -> {
+                publish(SharedCacheProtocol.readString(in, maxFrameBytes));
+                out.writeByte(SharedCacheProtocol.ACK);
+            }
+            default -> throw new IOException("Unknown opcode " + op);
+        }
+    }
+
+    private synchronized long token() {
+        return writes;
+    }
+
+    private synchronized boolean set(String key, long token, long ttlMillis, byte[] value) {
+        Long deleted = deletedKeys.getIfPresent(key);
+        if (deleted != null && deleted > token) {
+            return false;
+        }
+        for (Map.Entry<String, Long> prefix : deletedPrefixes.asMap().entrySet()) {
+            if (prefix.getValue() > token && key.startsWith(prefix.getKey())) {
+                return false;
+            }
+        }
+        values.put(key, new StoredValue(value, Duration.ofMillis(ttlMillis).toNanos()));
+        return true;
+    }
+
+    private synchronized void delete(String[] keys) {
+        long version = ++writes;
+        for (String key : keys) {
+            deletedKeys.put(key, version);
+        }
+        values.invalidateAll(List.of(keys));
+    }
+
+    private synchronized void deletePrefix(String prefix) {
+        deletedPrefixes.put(prefix, ++writes);
+        values.asMap().keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    private void publish(String message) {
+        for (Subscriber subscriber : subscribers) {
+            if (!subscriber.send(message)) {
+                subscribers.remove(subscriber);
+            }
+        }
+    }
+
+    /**
+     * Keeps the connection as a push channel until the client disconnects
+     */
+    private void subscribe(Socket socket, DataInputStream in, DataOutputStream out) throws IOException {
+        out.writeByte(SharedCacheProtocol.ACK);
+        out.flush();
+        Subscriber subscriber = new Subscriber(socket, out);
+        subscribers.add(subscriber);
+        try {
+            // The client never writes on a subscription; this returns when it disconnects
+            while (in.read() >= 0) {
+                // ignore
+            }
+        } finally {
+            subscribers.remove(subscriber);
+        }
+    }
+
+    private record StoredValue(byte[] bytes, long ttlNanos) {
+    }
+
+    private record Subscriber(Socket socket, DataOutputStream out) {
+
+        boolean send(String message) {
+            try {
+                synchronized (out) {
+                    SharedCacheProtocol.writeString(out, message);
+                    out.flush();
+                }
+                return true;
+            } catch (IOException e) {
+                close();
+                return false;
+            }
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // already closed
+            }
+        }
+    }
+}
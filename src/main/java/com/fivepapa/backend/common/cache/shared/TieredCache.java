@@ -0,0 +1,241 @@
+package com.fivepapa.backend.common.cache.shared;
+
+import com.fivepapa.backend.common.cache.XFetch;
+import com.fivepapa.backend.common.concurrent.SingleFlight;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Two-tier read-through cache: an in-process L1 (Caffeine, W-TinyLFU within maxEntries, TTL) in front of
+ * the optional SharedCache L2, with invalidations broadcast to the other instances.
+ *
+ * Reads: L1, then L2, then the loader; a loaded value is written to L2 (as JSON) and L1.
+ * - concurrent misses for a key share one L2 lookup / load (SingleFlight)
+ * - L1 hits are refreshed in the background ahead of expiry with XFetch (earlyRefreshBeta, 0 disables)
+ * - every invalidation advances a counter; a value loaded while one happened is not put in L1, and the
+ *   L2 write carries a token taken before loading, so the server rejects it if the key was deleted since
+ *
+ * Writes: {@link #evict} / {@link #invalidateAll} drop the keys from L1 and L2 and tell the other
+ * instances to drop them from their L1. Without an L2 this is a plain per-instance cache.
+ *
+ * Keys are strings; the L2 key is "name:key" and the invalidation channel is the cache name.
+ * Values must round-trip through Jackson.
+ */
+public class TieredCache<V> implements Closeable {
+
+    private final String name;
+    private final Class<V> type;
+    private final Duration ttl;
+    private final long ttlNanos;
+    private final double earlyRefreshBeta;
+    private final SharedCache sharedCache;
+    private final Cache<String, Entry<V>> local;
+    private final AtomicLong invalidations = new AtomicLong();
+    private final SingleFlight<String, V> loads;
+    private final ThreadPoolExecutor refreshExecutor;
+    private final Counter earlyRefreshCounter;
+    private final Counter sharedHitCounter;
+    private final Counter sharedMissCounter;
+
+    /**
+     * @param name cache name (metrics, L2 key prefix, invalidation channel)
+     * @param type value type, for decoding L2 values
+     * @param maxEntries L1 size bound
+     * @param ttl L1 and L2 time to live
+     * @param earlyRefreshBeta XFetch beta; 0 disables early refresh
+     */
+    public TieredCache(String name, Class<V> type, long maxEntries, Duration ttl, double earlyRefreshBeta,
+                       SharedCache sharedCache, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.type = type;
+        this.ttl = ttl;
+        this.ttlNanos = ttl.toNanos();
+        this.earlyRefreshBeta = earlyRefreshBeta;
+        this.sharedCache = sharedCache;
+        this.local = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, local, name);
+        this.loads = new SingleFlight<>(name, meterRegistry);
+        // Early refresh is only an optimization: bounded threads and queue, dropped when full
+        this.refreshExecutor = new ThreadPoolExecutor(2, 2, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(256), runnable -> {
+                    Thread thread = new Thread(runnable, name + "-refresh");
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        this.earlyRefreshCounter = Counter.builder("cache.early_refresh")
+                .description("Values reloaded in the background before they expired")
+                .tag("cache", name)
+                .register(meterRegistry);
+        this.sharedHitCounter = Counter.builder("cache.shared.lookups")
+                .description("L1 misses looked up in the shared cache")
+                .tag("cache", name)
+                .tag("outcome", "hit")
+                .register(meterRegistry);
+        this.sharedMissCounter = Counter.builder("cache.shared.lookups")
+                .description("L1 misses looked up in the shared cache")
+                .tag("cache", name)
+                .tag("outcome", "miss")
+                .register(meterRegistry);
+        sharedCache.onInvalidation(name, new SharedCache.InvalidationListener() {
+            @Override
+            public void invalidate(List<String> keys) {
+                evictLocal(keys);
+            }
+
+            @Override
+            public void invalidateAll() {
+                invalidateAllLocal();
+            }
+        });
+    }
+
+    /**
+     * The L1 value, or null (no L2 lookup, no load)
+     */
+    public V getIfPresent(String key) {
+        Entry<V> entry = local.getIfPresent(key);
+        return entry != null ? entry.value : null;
+    }
+
+    /**
+     * The cached value, loading it with the loader when neither tier has it
+     */
+    public V get(String key, Supplier<V> loader) {
+        Entry<V> entry = local.getIfPresent(key);
+        if (entry != null) {
+            if (XFetch.shouldRefresh(entry.computeNanos, entry.expiresAtNanos, earlyRefreshBeta)
+                    && loads.executeAsync(key, () -> load(key, loader, true), refreshExecutor)) {
+                earlyRefreshCounter.increment();
+            }
+            return entry.value;
+        }
+        return loads.execute(key, () -> load(key, loader, false));
+    }
+
+    /**
+     * Drops the keys here, in L2 and on the other instances
+     */
+    public void evict(Collection<String> keys) {
+        evictLocal(keys);
+        sharedCache.delete(keys.stream().map(this::sharedKey).toList());
+        sharedCache.publishInvalidation(name, keys);
+    }
+
+    /**
+     * Drops every value matching the predicate here; the other instances and L2 drop everything,
+     * since they cannot evaluate the predicate
+     */
+    public void evictIf(Predicate<V> predicate) {
+        invalidate();
+        loads.forgetAll();
+        local.asMap().values().removeIf(entry -> predicate.test(entry.value));
+        sharedCache.deletePrefix(name + ":");
+        sharedCache.publishInvalidateAll(name);
+    }
+
+    /**
+     * Drops everything here, in L2 and on the other instances
+     */
+    public void invalidateAll() {
+        invalidateAllLocal();
+        sharedCache.deletePrefix(name + ":");
+        sharedCache.publishInvalidateAll(name);
+    }
+
+    public CacheStats stats() {
+        return local.stats();
+    }
+
+    public long estimatedSize() {
+        return local.estimatedSize();
+    }
+
+    @Override
+    public void close() {
+        refreshExecutor.shutdownNow();
+    }
+
+    /**
+     * Loads from L2 (unless refreshing) or the loader; puts in L1 only if no invalidation happened meanwhile
+     */
+    private V load(String key, Supplier<V> loader, boolean refresh) {
+        long stamp = invalidations.get();
+        long start = System.nanoTime();
+        long token;
+        if (refresh) {
+            token = sharedCache.token();
+        } else {
+            SharedCacheClient.Lookup lookup = sharedCache.lookup(sharedKey(key));
+            V shared = lookup != null && lookup.value() != null ? sharedCache.decode(lookup.value(), type) : null;
+            if (shared != null) {
+                sharedHitCounter.increment();
+                putLocal(key, shared, System.nanoTime() - start, stamp);
+                return shared;
+            }
+            if (sharedCache.isEnabled()) {
+                sharedMissCounter.increment();
+            }
+            token = lookup != null ? lookup.token() : -1;
+        }
+        V loaded = loader.get();
+        long computeNanos = System.nanoTime() - start;
+        if (loaded != null) {
+            sharedCache.store(sharedKey(key), loaded, token, ttl);
+            putLocal(key, loaded, computeNanos, stamp);
+        }
+        return loaded;
+    }
+
+    private void putLocal(String key, V value, long computeNanos, long stamp) {
+        synchronized (this) {
+            if (invalidations.get() == stamp) {
+                local.put(key, new Entry<>(value, computeNanos, System.nanoTime() + ttlNanos));
+            }
+        }
+    }
+
+    private void evictLocal(Collection<String> keys) {
+        invalidate();
+        keys.forEach(loads::forget);
+        local.invalidateAll(keys);
+    }
+
+    private void invalidateAllLocal() {
+        invalidate();
+        loads.forgetAll();
+        local.invalidateAll();
+    }
+
+    private synchronized void invalidate() {
+        invalidations.incrementAndGet();
+    }
+
+    private String sharedKey(String key) {
+        return name + ":" + key;
+    }
+
+    /**
+     * An L1 value with the time it took to obtain and its expiry (for XFetch)
+     */
+    private record Entry<V>(V value, long computeNanos, long expiresAtNanos) {
+    }
+}
@@ -0,0 +1,186 @@
+package com.fivepapa.backend.common.collection;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * Hash set of primitive longs
+ * Open addressing with linear probing and backward-shift deletion, so values are stored
+ * unboxed in a single array (about 8-16 bytes per element instead of ~50 for HashSet&lt;Long&gt;).
+ * Not thread-safe.
+ */
+public class LongHashSet {
+
+    private static final long EMPTY = 0L;
+    private static final float LOAD_FACTOR = 0.6f;
+
+    // 0 marks an empty slot, so the value 0 is tracked separately
+    private long[] slots;
+    private boolean containsZero;
+    private int size;
+    private int resizeAt;
+
+    public LongHashSet() {
+        this(4);
+    }
+
+    /**
+     * @param expectedSize number of elements the set should hold without resizing
+     */
+    public LongHashSet(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        allocate(capacity);
+    }
+
+    /**
+     * @return true if the value was not already present
+     */
+    public boolean add(long value) {
+        if (value == EMPTY) {
+            if (containsZero) {
+                return false;
+            }
+            containsZero = true;
+            size++;
+            return true;
+        }
+
+        int mask = slots.length - 1;
+        int index = hash(value) & mask;
+        while (slots[index] != EMPTY) {
+            if (slots[index] == value) {
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+        slots[index] = value;
+        if (++size > resizeAt) {
+            rehash(slots.length << 1);
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the value was present
+     */
+    public boolean remove(long value) {
+        if (value == EMPTY) {
+            if (!containsZero) {
+                return false;
+            }
+            containsZero = false;
+            size--;
+            return true;
+        }
+
+        int mask = slots.length - 1;
+        int index = hash(value) & mask;
+        while (slots[index] != value) {
+            if (slots[index] == EMPTY) {
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+        shiftBack(index);
+        size--;
+        return true;
+    }
+
+    public boolean contains(long value) {
+        if (value == EMPTY) {
+            return containsZero;
+        }
+
+        int mask = slots.length - 1;
+        int index = hash(value) & mask;
+        while (slots[index] != EMPTY) {
+            if (slots[index] == value) {
+                return true;
+            }
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void forEach(LongConsumer action) {
+        if (containsZero) {
+            action.accept(EMPTY);
+        }
+        for (long slot : slots) {
+            if (slot != EMPTY) {
+                action.accept(slot);
+            }
+        }
+    }
+
+    public long[] toArray() {
+        long[] values = new long[size];
+        int[] position = {0};
+        forEach(value -> values[position[0]++] = value);
+        return values;
+    }
+
+    /**
+     * Close the gap left by a removed slot by moving later entries of the same probe run back
+     */
+    private void shiftBack(int gap) {
+        int mask = slots.length - 1;
+        int index = gap;
+        while (true) {
+            index = (index + 1) & mask;
+            long value = slots[index];
+            if (value == EMPTY) {
+                break;
+            }
+            int home = hash(value) & mask;
+            // Move the entry if its home slot is not within (gap, index] cyclically
+            boolean movable = gap <= index ? (home <= gap || home > index) : (home <= gap && home > index);
+            if (movable) {
+                slots[gap] = value;
+                gap = index;
+            }
+        }
+        slots[gap] = EMPTY;
+    }
+
+    private void rehash(int capacity) {
+        long[] old = slots;
+        allocate(capacity);
+        int mask = capacity - 1;
+        for (long value : old) {
+            if (value != EMPTY) {
+                int index = hash(value) & mask;
+                while (slots[index] != EMPTY) {
+                    index = (index + 1) & mask;
+                }
+                slots[index] = value;
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        slots = new long[capacity];
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private static int hash(long value) {
+        // Fibonacci hashing spreads sequential ids across the table
+        long h = value * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        long[] values = toArray();
+        Arrays.sort(values);
+        return Arrays.toString(values);
+    }
+}
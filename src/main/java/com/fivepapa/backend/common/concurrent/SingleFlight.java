@@ -0,0 +1,131 @@
+package com.fivepapa.backend.common.concurrent;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Request coalescing ("single flight") for identical lookups
+ * Concurrent calls with the same key share one execution of the loader: the first caller runs it,
+ * later callers wait for its result (or exception) instead of issuing the same query again.
+ * Once the call finishes the key is released, so results are never cached here.
+ *
+ * A caller that joins a running call gets a result that may predate a write committed just before
+ * it arrived; callers that need read-your-writes after an invalidation should {@link #forget} the key.
+ *
+ * Metrics (tagged with {@code flight=<name>}):
+ * - singleflight.calls (outcome=leader|shared): calls that ran the loader vs. joined a running call
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> calls = new ConcurrentHashMap<>();
+    private final Counter leaderCounter;
+    private final Counter sharedCounter;
+
+    /**
+     * @param name flight name, used for metric tags
+     * @param meterRegistry registry for the call counters
+     */
+    public SingleFlight(String name, MeterRegistry meterRegistry) {
+        this.leaderCounter = Counter.builder("singleflight.calls")
+                .tag("flight", name)
+                .tag("outcome", "leader")
+                .description("Lookups that ran the loader")
+                .register(meterRegistry);
+        this.sharedCounter = Counter.builder("singleflight.calls")
+                .tag("flight", name)
+                .tag("outcome", "shared")
+                .description("Lookups that joined a running call for the same key")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Run the loader for the key, or wait for the call already running for it
+     * @param key lookup key
+     * @param loader runs on the calling thread when this caller leads
+     * @return the loader's result
+     */
+    public V execute(K key, Supplier<V> loader) {
+        CompletableFuture<V> call = new CompletableFuture<>();
+        CompletableFuture<V> running = calls.putIfAbsent(key, call);
+        if (running != null) {
+            sharedCounter.increment();
+            return await(running);
+        }
+        leaderCounter.increment();
+        return run(key, call, loader);
+    }
+
+    /**
+     * Start the loader for the key on the executor unless a call for it is already running
+     * @return true when a new call was started
+     */
+    public boolean executeAsync(K key, Supplier<V> loader, Executor executor) {
+        CompletableFuture<V> call = new CompletableFuture<>();
+        if (calls.putIfAbsent(key, call) != null) {
+            return false;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    run(key, call, loader);
+                } catch (RuntimeException e) {
+                    // Already delivered to any caller that joined the call
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            calls.remove(key, call);
+            call.completeExceptionally(e);
+            return false;
+        }
+        leaderCounter.increment();
+        return true;
+    }
+
+    /**
+     * Detach the running call for the key; later callers start a new one
+     */
+    public void forget(K key) {
+        calls.remove(key);
+    }
+
+    /**
+     * Detach all running calls
+     */
+    public void forgetAll() {
+        calls.clear();
+    }
+
+    private V run(K key, CompletableFuture<V> call, Supplier<V> loader) {
+        try {
+            V value = loader.get();
+            call.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            calls.remove(key, call);
+        }
+    }
+
+    private static <V> V await(CompletableFuture<V> call) {
+        try {
+            return call.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.fivepapa.backend.common.exception;
 
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ProblemDetail;
 import org.springframework.security.access.AccessDeniedException;
@@ -63,6 +64,31 @@ public class GlobalExceptionHandler {
         return problemDetail;
     }
 
+    /**
+     * Handle PreconditionFailedException (If-Match does not match the current version)
+     */
+    @ExceptionHandler(PreconditionFailedException.class)
+    public ProblemDetail handlePreconditionFailedException(PreconditionFailedException ex) {
+        ProblemDetail problemDetail = ProblemDetail.forStatusAndDetail(HttpStatus.PRECONDITION_FAILED, ex.getMessage());
+        problemDetail.setTitle("Precondition Failed");
+        problemDetail.setType(URI.create("https://api.5dpapa.com/errors/precondition-failed"));
+        return problemDetail;
+    }
+
+    /**
+     * Handle optimistic locking failures (the row changed after it was read)
+     */
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ProblemDetail handleOptimisticLockingFailureException(OptimisticLockingFailureException ex) {
+        ProblemDetail problemDetail = ProblemDetail.forStatusAndDetail(
+                HttpStatus.CONFLICT,
+                "The resource was modified concurrently, please retry"
+        );
+        problemDetail.setTitle("Concurrent Modification");
+        problemDetail.setType(URI.create("https://api.5dpapa.com/errors/concurrent-modification"));
+        return problemDetail;
+    }
+
     /**
      * Handle Spring Security AccessDeniedException
      */
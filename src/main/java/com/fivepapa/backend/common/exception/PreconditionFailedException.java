@@ -0,0 +1,11 @@
+package com.fivepapa.backend.common.exception;
+
+/**
+ * Exception thrown when an If-Match precondition does not match the current version
+ */
+public class PreconditionFailedException extends RuntimeException {
+
+    public PreconditionFailedException(String message) {
+        super(message);
+    }
+}
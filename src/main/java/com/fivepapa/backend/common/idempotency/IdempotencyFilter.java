@@ -0,0 +1,263 @@
+package com.fivepapa.backend.common.idempotency;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fivepapa.backend.common.security.UserPrincipal;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.ProblemDetail;
+import org.springframework.lang.NonNull;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Idempotency-Key Filter
+ * A mutating request (POST/PUT/PATCH/DELETE) with an Idempotency-Key header runs at most once
+ * per caller and key; retries get the stored response with "Idempotent-Replayed: true".
+ * - a retry arriving while the first request still runs waits for its response
+ * - the same key sent with a different method, path or body is rejected with 422
+ * - 5xx responses are not stored, so the client may retry with the same key
+ * - streamed bodies (CSV / NDJSON imports) are passed through without idempotency
+ *
+ * Registered after authorization in the security chain, so keys are scoped per user
+ * and rejected requests never claim a key. Anonymous callers (register, a guest's first add)
+ * have nothing else to tell them apart, so their key must be a UUID: it is scoped by itself,
+ * and only a caller holding the key can replay its response (and its Set-Cookie)
+ */
+@Component
+public class IdempotencyFilter extends OncePerRequestFilter {
+
+    public static final String KEY_HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 255;
+    private static final Pattern UUID_KEY = Pattern.compile(
+            "[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}");
+    private static final Set<String> METHODS = Set.of("POST", "PUT", "PATCH", "DELETE");
+    // Headers that belong to the result (a created resource, a session cookie) and must be replayed too
+    private static final List<String> REPLAYED_HEADERS = List.of(HttpHeaders.LOCATION, HttpHeaders.SET_COOKIE);
+    // Bodies of these types are streamed by their handlers (product import) and must not be buffered for a fingerprint
+    private static final List<MediaType> STREAMED_TYPES = List.of(
+            MediaType.parseMediaType("text/csv"), MediaType.parseMediaType("application/x-ndjson"));
+
+    private final IdempotencyStore store;
+    private final ObjectMapper objectMapper;
+
+    public IdempotencyFilter(IdempotencyStore store, ObjectMapper objectMapper) {
+        this.store = store;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(@NonNull HttpServletRequest request) {
+        return request.getHeader(KEY_HEADER) == null || !METHODS.contains(request.getMethod())
+                || isStreamed(request.getContentType());
+    }
+
+    private static boolean isStreamed(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        try {
+            MediaType type = MediaType.parseMediaType(contentType);
+            return STREAMED_TYPES.stream().anyMatch(type::isCompatibleWith);
+        } catch (InvalidMediaTypeException e) {
+            return false;
+        }
+    }
+
+    @Override
+    protected void doFilterInternal(
+            @NonNull HttpServletRequest request,
+            @NonNull HttpServletResponse response,
+            @NonNull FilterChain filterChain
+    ) throws ServletException, IOException {
+
+        String key = request.getHeader(KEY_HEADER);
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            writeProblem(response, HttpStatus.BAD_REQUEST, "Invalid Idempotency Key",
+                    "Idempotency-Key must be 1 to " + MAX_KEY_LENGTH + " characters", "invalid-idempotency-key");
+            return;
+        }
+
+        String scope = scope(key);
+        if (scope == null) {
+            writeProblem(response, HttpStatus.BAD_REQUEST, "Invalid Idempotency Key",
+                    "Idempotency-Key must be a UUID for unauthenticated requests", "invalid-idempotency-key");
+            return;
+        }
+
+        CachedBodyRequest cachedRequest = new CachedBodyRequest(request);
+        String id = sha256(scope + "\n" + key);
+        String fingerprint = sha256(request.getMethod() + " " + request.getRequestURI() + "?"
+                + Objects.toString(request.getQueryString(), "") + "\n", cachedRequest.body);
+
+        IdempotencyStore.Claim claim = store.begin(id, fingerprint);
+        switch (claim.getType()) {
+            case EXECUTE -> execute(cachedRequest, response, filterChain, id, fingerprint);
+            case REPLAY -> replay(response, claim.getResponse());
+            case MISMATCH -> writeProblem(response, HttpStatus.UNPROCESSABLE_ENTITY, "Idempotency Key Reused",
+                    "Idempotency-Key was already used for a different request", "idempotency-key-reused");
+            case IN_PROGRESS -> writeProblem(response, HttpStatus.CONFLICT, "Request In Progress",
+                    "A request with this Idempotency-Key is still being processed", "idempotency-key-in-progress");
+        }
+    }
+
+    private void execute(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain,
+                         String id, String fingerprint) throws ServletException, IOException {
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        boolean stored = false;
+        try {
+            filterChain.doFilter(request, wrapper);
+            if (wrapper.getStatus() < 500) {
+                String body = new String(wrapper.getContentAsByteArray(), wrapper.getCharacterEncoding());
+                store.complete(id, fingerprint, new IdempotencyStore.StoredResponse(
+                        wrapper.getStatus(), wrapper.getContentType(), replayedHeaders(wrapper), body));
+                stored = true;
+            }
+        } finally {
+            if (!stored) {
+                store.abort(id);
+            }
+            wrapper.copyBodyToResponse();
+        }
+    }
+
+    private void replay(HttpServletResponse response, IdempotencyStore.StoredResponse stored) throws IOException {
+        response.setStatus(stored.getStatus());
+        response.setHeader(REPLAYED_HEADER, "true");
+        if (stored.getContentType() != null) {
+            response.setContentType(stored.getContentType());
+        }
+        if (stored.getHeaders() != null) {
+            stored.getHeaders().lines().forEach(line -> {
+                int separator = line.indexOf(": ");
+                response.addHeader(line.substring(0, separator), line.substring(separator + 2));
+            });
+        }
+        if (stored.getBody() != null) {
+            response.getOutputStream().write(stored.getBody().getBytes(response.getCharacterEncoding()));
+        }
+    }
+
+    private static String replayedHeaders(HttpServletResponse response) {
+        StringBuilder headers = new StringBuilder();
+        for (String name : REPLAYED_HEADERS) {
+            for (String value : response.getHeaders(name)) {
+                headers.append(name).append(": ").append(value).append('\n');
+            }
+        }
+        return headers.isEmpty() ? null : headers.toString();
+    }
+
+    private void writeProblem(HttpServletResponse response, HttpStatus status, String title,
+                              String detail, String type) throws IOException {
+        ProblemDetail problemDetail = ProblemDetail.forStatusAndDetail(status, detail);
+        problemDetail.setTitle(title);
+        problemDetail.setType(URI.create("https://api.5dpapa.com/errors/" + type));
+
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_PROBLEM_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), problemDetail);
+    }
+
+    /**
+     * Keys are only unique per client, so they are namespaced by the authenticated user;
+     * anonymous keys are namespaced by themselves and must be a UUID, null when they are not
+     */
+    private static String scope(String key) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof UserPrincipal principal) {
+            return "user:" + principal.getId();
+        }
+        return UUID_KEY.matcher(key).matches() ? "anonymous-key:" + key.toLowerCase() : null;
+    }
+
+    private static String sha256(String text, byte[]... extra) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(text.getBytes(StandardCharsets.UTF_8));
+            for (byte[] bytes : extra) {
+                digest.update(bytes);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Reads the body once for the fingerprint and serves it again to the controller
+     */
+    private static final class CachedBodyRequest extends HttpServletRequestWrapper {
+
+        private final byte[] body;
+
+        private CachedBodyRequest(HttpServletRequest request) throws IOException {
+            super(request);
+            this.body = request.getInputStream().readAllBytes();
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream input = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public boolean isFinished() {
+                    return input.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public int read() {
+                    return input.read();
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) {
+                    return input.read(buffer, offset, length);
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() throws IOException {
+            String encoding = getCharacterEncoding() != null ? getCharacterEncoding() : StandardCharsets.UTF_8.name();
+            return new BufferedReader(new InputStreamReader(getInputStream(), encoding));
+        }
+    }
+}
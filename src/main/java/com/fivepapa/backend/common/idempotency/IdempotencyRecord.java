@@ -0,0 +1,63 @@
+package com.fivepapa.backend.common.idempotency;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.LocalDateTime;
+
+/**
+ * Idempotency Record Entity
+ * One row per (caller, Idempotency-Key): the request fingerprint while the first execution
+ * runs, then the response it produced so retries can be answered without running it again
+ */
+@Entity
+@Table(name = "idempotency_record", indexes = @Index(name = "idx_idempotency_record_expires_at", columnList = "expires_at"))
+@Getter
+@Setter
+@NoArgsConstructor
+public class IdempotencyRecord {
+
+    // SHA-256 of the caller scope and the client key
+    @Id
+    @Column(length = 64)
+    private String id;
+
+    // SHA-256 of method, path and body of the first request
+    @Column(nullable = false, length = 64)
+    private String fingerprint;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private Status status;
+
+    @Column(name = "response_status")
+    private Integer responseStatus;
+
+    @Column(name = "content_type", length = 100)
+    private String contentType;
+
+    // Replayed headers (Location, Set-Cookie) as "Name: value" lines
+    @JdbcTypeCode(SqlTypes.LONG32VARCHAR)
+    @Column(name = "response_headers")
+    private String responseHeaders;
+
+    @JdbcTypeCode(SqlTypes.LONG32VARCHAR)
+    @Column(name = "response_body")
+    private String responseBody;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    // IN_PROGRESS: when the claim is considered abandoned; COMPLETED: when the response is purged
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    public enum Status {
+        IN_PROGRESS,
+        COMPLETED
+    }
+}
@@ -0,0 +1,62 @@
+package com.fivepapa.backend.common.idempotency;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * Idempotency Record Repository
+ */
+@Repository
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, String> {
+
+    /**
+     * Claim a key with a plain INSERT; a duplicate key fails instead of merging,
+     * so exactly one caller (on any instance) wins
+     */
+    @Modifying
+    @Query(value = "INSERT INTO idempotency_record (id, fingerprint, status, created_at, expires_at) " +
+            "VALUES (:id, :fingerprint, 'IN_PROGRESS', :now, :expiresAt)", nativeQuery = true)
+    int claim(@Param("id") String id,
+              @Param("fingerprint") String fingerprint,
+              @Param("now") LocalDateTime now,
+              @Param("expiresAt") LocalDateTime expiresAt);
+
+    /**
+     * Store the response of a claimed key
+     */
+    @Modifying
+    @Query("UPDATE IdempotencyRecord r SET r.status = com.fivepapa.backend.common.idempotency.IdempotencyRecord.Status.COMPLETED, " +
+            "r.responseStatus = :responseStatus, r.contentType = :contentType, r.responseHeaders = :responseHeaders, " +
+            "r.responseBody = :responseBody, " +
+            "r.expiresAt = :expiresAt WHERE r.id = :id")
+    int complete(@Param("id") String id,
+                 @Param("responseStatus") int responseStatus,
+                 @Param("contentType") String contentType,
+                 @Param("responseHeaders") String responseHeaders,
+                 @Param("responseBody") String responseBody,
+                 @Param("expiresAt") LocalDateTime expiresAt);
+
+    /**
+     * Release a claim whose execution failed, or one abandoned by a crashed instance
+     */
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.id = :id " +
+            "AND r.status = com.fivepapa.backend.common.idempotency.IdempotencyRecord.Status.IN_PROGRESS")
+    int release(@Param("id") String id);
+
+    /**
+     * Remove an expired record so the key can be claimed again
+     */
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.id = :id AND r.expiresAt < :now")
+    int deleteIfExpired(@Param("id") String id, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.expiresAt < :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+}
@@ -0,0 +1,297 @@
+package com.fivepapa.backend.common.idempotency;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Idempotency Store
+ * Decides whether a keyed request runs, replays a stored response, or is rejected.
+ *
+ * Three layers, checked in order:
+ * - a bounded in-memory cache of recent responses (no database round trip for typical retries)
+ * - executions running on this instance; duplicates wait on the first one's result
+ * - the idempotency_record table, which arbitrates between instances through its primary key
+ *   and keeps responses for IDEMPOTENCY_TTL_HOURS
+ */
+@Slf4j
+@Component
+public class IdempotencyStore {
+
+    private static final long POLL_INTERVAL_MS = 50;
+
+    private final IdempotencyRecordRepository repository;
+    private final TransactionTemplate transactionTemplate;
+    private final Cache<String, Completed> responses;
+    private final Map<String, Execution> executions = new ConcurrentHashMap<>();
+    private final Map<Claim.Type, Counter> outcomes = new EnumMap<>(Claim.Type.class);
+    private final Duration ttl;
+    private final Duration lockTimeout;
+    private final long waitMs;
+
+    public IdempotencyStore(IdempotencyRecordRepository repository,
+                            PlatformTransactionManager transactionManager,
+                            MeterRegistry meterRegistry,
+                            @Value("${IDEMPOTENCY_TTL_HOURS:24}") long ttlHours,
+                            @Value("${IDEMPOTENCY_CACHE_MAX_ENTRIES:10000}") long maxEntries,
+                            @Value("${IDEMPOTENCY_LOCK_TIMEOUT_SECONDS:60}") long lockTimeoutSeconds,
+                            @Value("${IDEMPOTENCY_WAIT_MS:10000}") long waitMs) {
+        this.repository = repository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.ttl = Duration.ofHours(ttlHours);
+        this.lockTimeout = Duration.ofSeconds(lockTimeoutSeconds);
+        this.waitMs = waitMs;
+        this.responses = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, responses, "idempotentResponses");
+
+        for (Claim.Type type : Claim.Type.values()) {
+            outcomes.put(type, Counter.builder("idempotency.requests")
+                    .description("Requests carrying an Idempotency-Key, by outcome")
+                    .tag("outcome", type.name().toLowerCase())
+                    .register(meterRegistry));
+        }
+    }
+
+    /**
+     * Claim a key for execution, or find out why it cannot run.
+     * Waits up to IDEMPOTENCY_WAIT_MS for a concurrent execution of the same key to finish.
+     *
+     * @param id          hash of the caller scope and the client key
+     * @param fingerprint hash of the request, a key reused for a different request is a mismatch
+     */
+    public Claim begin(String id, String fingerprint) {
+        long deadline = System.currentTimeMillis() + waitMs;
+        try {
+            Claim claim = claim(id, fingerprint, deadline);
+            outcomes.get(claim.getType()).increment();
+            return claim;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Claim.inProgress();
+        }
+    }
+
+    /**
+     * Store the response of a claimed key and hand it to requests waiting on it
+     */
+    public void complete(String id, String fingerprint, StoredResponse response) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> repository.complete(id, response.getStatus(),
+                    response.getContentType(), response.getHeaders(), response.getBody(), LocalDateTime.now().plus(ttl)));
+        } catch (RuntimeException e) {
+            // Other instances see the claim as abandoned after IDEMPOTENCY_LOCK_TIMEOUT_SECONDS
+            log.warn("Failed to store idempotent response {}: {}", id, e.getMessage());
+        }
+        responses.put(id, new Completed(fingerprint, response));
+        finish(id, response);
+    }
+
+    /**
+     * Release a claimed key without a response (the execution failed and may be retried)
+     */
+    public void abort(String id) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> repository.release(id));
+        } catch (RuntimeException e) {
+            log.warn("Failed to release idempotency key {}: {}", id, e.getMessage());
+        } finally {
+            finish(id, null);
+        }
+    }
+
+    /**
+     * Delete stored responses and abandoned claims past their expiry
+     */
+    @Scheduled(fixedDelayString = "${IDEMPOTENCY_PURGE_INTERVAL_MS:600000}")
+    public void purgeExpired() {
+        Integer purged = transactionTemplate.execute(status -> repository.deleteExpired(LocalDateTime.now()));
+        if (purged != null && purged > 0) {
+            log.debug("Purged {} expired idempotency records", purged);
+        }
+    }
+
+    private Claim claim(String id, String fingerprint, long deadline) throws InterruptedException {
+        while (true) {
+            Completed completed = responses.getIfPresent(id);
+            if (completed != null) {
+                return completed.fingerprint.equals(fingerprint) ? Claim.replay(completed.response) : Claim.mismatch();
+            }
+
+            Execution execution = new Execution(fingerprint);
+            Execution running = executions.putIfAbsent(id, execution);
+            if (running == null) {
+                Claim claim = null;
+                try {
+                    claim = claimInDatabase(id, fingerprint, deadline);
+                    return claim;
+                } finally {
+                    if (claim == null || claim.getType() != Claim.Type.EXECUTE) {
+                        finish(id, claim != null ? claim.getResponse() : null);
+                    }
+                }
+            }
+
+            if (!running.fingerprint.equals(fingerprint)) {
+                return Claim.mismatch();
+            }
+            StoredResponse response = running.await(deadline);
+            if (response != null) {
+                return Claim.replay(response);
+            }
+            if (System.currentTimeMillis() >= deadline) {
+                return Claim.inProgress();
+            }
+            // The first execution failed without a response; try to run it ourselves
+        }
+    }
+
+    private Claim claimInDatabase(String id, String fingerprint, long deadline) throws InterruptedException {
+        while (true) {
+            LocalDateTime now = LocalDateTime.now();
+            if (tryInsert(id, fingerprint, now)) {
+                return Claim.execute();
+            }
+
+            IdempotencyRecord record = repository.findById(id).orElse(null);
+            if (record == null) {
+                continue;
+            }
+            if (record.getExpiresAt().isBefore(now)) {
+                transactionTemplate.executeWithoutResult(status -> repository.deleteIfExpired(id, now));
+                continue;
+            }
+            if (!record.getFingerprint().equals(fingerprint)) {
+                return Claim.mismatch();
+            }
+            if (record.getStatus() == IdempotencyRecord.Status.COMPLETED) {
+                StoredResponse response = new StoredResponse(record.getResponseStatus(), record.getContentType(),
+                        record.getResponseHeaders(), record.getResponseBody());
+                responses.put(id, new Completed(fingerprint, response));
+                return Claim.replay(response);
+            }
+            // Running on another instance
+            if (System.currentTimeMillis() >= deadline) {
+                return Claim.inProgress();
+            }
+            Thread.sleep(POLL_INTERVAL_MS);
+        }
+    }
+
+    private boolean tryInsert(String id, String fingerprint, LocalDateTime now) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> repository.claim(id, fingerprint, now, now.plus(lockTimeout)));
+            return true;
+        } catch (DataIntegrityViolationException e) {
+            return false;
+        }
+    }
+
+    private void finish(String id, StoredResponse response) {
+        Execution execution = executions.remove(id);
+        if (execution != null) {
+            execution.result.complete(response);
+        }
+    }
+
+    /**
+     * Response kept for replay
+     */
+    @Getter
+    @AllArgsConstructor
+    public static final class StoredResponse {
+        private final int status;
+        private final String contentType;
+        // "Name: value" lines
+        private final String headers;
+        private final String body;
+    }
+
+    /**
+     * Outcome of claiming a key
+     */
+    @Getter
+    @AllArgsConstructor
+    public static final class Claim {
+
+        public enum Type {
+            // First request with this key: run it, then call complete or abort
+            EXECUTE,
+            // Already answered: send the stored response
+            REPLAY,
+            // Key already used for a different request
+            MISMATCH,
+            // Still running elsewhere after waiting IDEMPOTENCY_WAIT_MS
+            IN_PROGRESS
+        }
+
+        private final Type type;
+        private final StoredResponse response;
+
+        private static Claim execute() {
+            return new Claim(Type.EXECUTE, null);
+        }
+
+        private static Claim mismatch() {
+            return new Claim(Type.MISMATCH, null);
+        }
+
+        private static Claim inProgress() {
+            return new Claim(Type.IN_PROGRESS, null);
+        }
+
+        private static Claim replay(StoredResponse response) {
+            return new Claim(Type.REPLAY, response);
+        }
+    }
+
+    private record Completed(String fingerprint, StoredResponse response) {
+    }
+
+    /**
+     * An execution running on this instance
+     */
+    private static final class Execution {
+        private final String fingerprint;
+        private final CompletableFuture<StoredResponse> result = new CompletableFuture<>();
+
+        private Execution(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+
+        /**
+         * @return the response, or null if the execution failed or the deadline passed
+         */
+        private StoredResponse await(long deadline) throws InterruptedException {
+            try {
+                return result.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException | ExecutionException e) {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.fivepapa.backend.common.scheduling;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Keyed timer service backed by a {@link HierarchicalTimingWheel}
+ * Each key has at most one pending deadline; rescheduling a key replaces its timer.
+ * Expired keys are delivered to the handler in batches on a single ticker thread,
+ * so the handler can turn them into a few batched database statements.
+ *
+ * Metrics (tagged with {@code timer=<name>}):
+ * - timer.pending: number of pending timers (backlog)
+ * - timer.fired: number of expired keys delivered to the handler
+ * - timer.lag: delay between a timer's deadline and its delivery
+ */
+@Slf4j
+public class BatchingTimer<K> {
+
+    private final String name;
+    private final long tickMs;
+    private final int maxBatchSize;
+    private final long retryDelayMs;
+    private final Consumer<List<K>> handler;
+    private final LongSupplier clock;
+    private final HierarchicalTimingWheel<K> wheel;
+    private final Map<K, HierarchicalTimingWheel.Timeout<K>> pending = new ConcurrentHashMap<>();
+    private final Counter firedCounter;
+    private final Timer lagTimer;
+
+    private ScheduledExecutorService ticker;
+
+    /**
+     * @param name timer name, used for the ticker thread and metric tags
+     * @param tickMs wheel resolution in milliseconds
+     * @param maxBatchSize maximum number of keys per handler call
+     * @param handler receives expired keys; on failure the keys are retried after one second
+     * @param meterRegistry registry for backlog and lag metrics
+     */
+    public BatchingTimer(String name, long tickMs, int maxBatchSize,
+                         Consumer<List<K>> handler, MeterRegistry meterRegistry) {
+        this(name, tickMs, maxBatchSize, handler, meterRegistry, System::currentTimeMillis);
+    }
+
+    /**
+     * @param clock wall-clock time in milliseconds (tests drive it together with {@link #tick()})
+     */
+    BatchingTimer(String name, long tickMs, int maxBatchSize,
+                  Consumer<List<K>> handler, MeterRegistry meterRegistry, LongSupplier clock) {
+        this.name = name;
+        this.tickMs = tickMs;
+        this.maxBatchSize = maxBatchSize;
+        this.retryDelayMs = Math.max(1000, tickMs);
+        this.handler = handler;
+        this.clock = clock;
+        this.wheel = new HierarchicalTimingWheel<>(tickMs, 512, clock.getAsLong());
+
+        Gauge.builder("timer.pending", wheel, HierarchicalTimingWheel::size)
+                .tag("timer", name)
+                .description("Pending timers")
+                .register(meterRegistry);
+        this.firedCounter = Counter.builder("timer.fired")
+                .tag("timer", name)
+                .description("Expired timers delivered to the handler")
+                .register(meterRegistry);
+        this.lagTimer = Timer.builder("timer.lag")
+                .tag("timer", name)
+                .description("Delay between timer deadline and delivery")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Schedule (or reschedule) the timer for a key
+     * @param key timer key
+     * @param deadlineMillis wall-clock expiry time in milliseconds
+     */
+    public void schedule(K key, long deadlineMillis) {
+        HierarchicalTimingWheel.Timeout<K> previous = pending.put(key, wheel.schedule(key, deadlineMillis));
+        if (previous != null) {
+            previous.cancel();
+        }
+    }
+
+    /**
+     * Cancel the timer for a key, if any
+     * @param key timer key
+     */
+    public void cancel(K key) {
+        HierarchicalTimingWheel.Timeout<K> timeout = pending.remove(key);
+        if (timeout != null) {
+            timeout.cancel();
+        }
+    }
+
+    /**
+     * @return number of pending timers
+     */
+    public int size() {
+        return wheel.size();
+    }
+
+    /**
+     * Start the ticker thread
+     */
+    public synchronized void start() {
+        if (ticker != null) {
+            return;
+        }
+        ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name + "-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleWithFixedDelay(this::tick, tickMs, tickMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop the ticker thread; pending timers are kept in memory only
+     */
+    public synchronized void stop() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+            ticker = null;
+        }
+    }
+
+    /**
+     * Deliver every timer that expired up to now (called by the ticker thread)
+     */
+    void tick() {
+        long now = clock.getAsLong();
+        List<HierarchicalTimingWheel.Timeout<K>> expired = wheel.advance(now);
+        if (expired.isEmpty()) {
+            return;
+        }
+
+        List<K> batch = new ArrayList<>(Math.min(expired.size(), maxBatchSize));
+        for (HierarchicalTimingWheel.Timeout<K> timeout : expired) {
+            // A key rescheduled after this timer was created keeps its newer timer
+            if (!pending.remove(timeout.getPayload(), timeout)) {
+                continue;
+            }
+            lagTimer.record(Duration.ofMillis(Math.max(0, now - timeout.getDeadlineMillis())));
+            batch.add(timeout.getPayload());
+            if (batch.size() == maxBatchSize) {
+                deliver(batch);
+                batch = new ArrayList<>(maxBatchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            deliver(batch);
+        }
+    }
+
+    private void deliver(List<K> batch) {
+        try {
+            handler.accept(batch);
+            firedCounter.increment(batch.size());
+        } catch (Exception e) {
+            log.warn("Timer {} handler failed for {} keys, retrying in {} ms: {}",
+                    name, batch.size(), retryDelayMs, e.getMessage());
+            long retryAt = clock.getAsLong() + retryDelayMs;
+            for (K key : batch) {
+                pending.computeIfAbsent(key, k -> wheel.schedule(k, retryAt));
+            }
+        }
+    }
+}
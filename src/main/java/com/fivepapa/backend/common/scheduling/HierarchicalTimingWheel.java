@@ -0,0 +1,228 @@
+package com.fivepapa.backend.common.scheduling;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hierarchical Timing Wheel
+ * Holds a large number of timers with O(1) schedule and cancel.
+ *
+ * Level 0 has one bucket per tick; every higher level covers a whole revolution of
+ * the level below it in each bucket. When time reaches the start of a higher-level
+ * bucket, its entries cascade down until they land in level 0 and expire.
+ * Thread-safe: all structural changes happen under a single lock.
+ */
+public class HierarchicalTimingWheel<T> {
+
+    private final long tickMs;
+    private final int wheelSize;
+    private final List<Level> levels = new ArrayList<>();
+    private final Object lock = new Object();
+
+    private long currentTick;
+    private int size;
+
+    /**
+     * @param tickMs duration of one level-0 bucket in milliseconds
+     * @param wheelSize number of buckets per level
+     * @param startMillis wall-clock time the wheel starts at
+     */
+    public HierarchicalTimingWheel(long tickMs, int wheelSize, long startMillis) {
+        if (tickMs <= 0 || wheelSize < 2) {
+            throw new IllegalArgumentException("tickMs must be positive and wheelSize at least 2");
+        }
+        this.tickMs = tickMs;
+        this.wheelSize = wheelSize;
+        this.currentTick = startMillis / tickMs;
+        this.levels.add(new Level(1));
+    }
+
+    /**
+     * Schedule a payload to expire at the given time
+     * @param payload value returned by {@link #advance(long)} when the timer expires
+     * @param deadlineMillis wall-clock expiry time in milliseconds
+     * @return handle that can cancel the timer
+     */
+    public Timeout<T> schedule(T payload, long deadlineMillis) {
+        // Round up so a timer never fires before its deadline
+        long deadlineTick = (deadlineMillis + tickMs - 1) / tickMs;
+        Timeout<T> timeout = new Timeout<>(this, payload, deadlineMillis, deadlineTick);
+        synchronized (lock) {
+            // The current tick's bucket has already been drained, so the earliest slot is the next tick
+            place(timeout, currentTick + 1);
+            size++;
+        }
+        return timeout;
+    }
+
+    /**
+     * Advance the wheel to the given time and collect every expired timer
+     * @param nowMillis current wall-clock time in milliseconds
+     * @return expired timers in deadline order
+     */
+    public List<Timeout<T>> advance(long nowMillis) {
+        long targetTick = nowMillis / tickMs;
+        List<Timeout<T>> expired = new ArrayList<>();
+        synchronized (lock) {
+            while (currentTick < targetTick) {
+                currentTick++;
+                // Cascade from the highest level down so entries can fall more than one level per tick
+                for (int i = levels.size() - 1; i >= 1; i--) {
+                    Level level = levels.get(i);
+                    if (currentTick % level.interval == 0) {
+                        for (Timeout<T> timeout : level.bucketFor(currentTick).drain()) {
+                            place(timeout, currentTick);
+                        }
+                    }
+                }
+                for (Timeout<T> timeout : levels.get(0).bucketFor(currentTick).drain()) {
+                    timeout.expired = true;
+                    expired.add(timeout);
+                }
+            }
+            size -= expired.size();
+        }
+        return expired;
+    }
+
+    /**
+     * @return number of pending timers
+     */
+    public int size() {
+        synchronized (lock) {
+            return size;
+        }
+    }
+
+    private boolean cancel(Timeout<T> timeout) {
+        synchronized (lock) {
+            if (timeout.bucket == null) {
+                return false;
+            }
+            timeout.bucket.remove(timeout);
+            size--;
+            return true;
+        }
+    }
+
+    private void place(Timeout<T> timeout, long earliestTick) {
+        long deadlineTick = Math.max(timeout.deadlineTick, earliestTick);
+        for (int i = 0; ; i++) {
+            if (i == levels.size()) {
+                levels.add(new Level(levels.get(i - 1).interval * wheelSize));
+            }
+            Level level = levels.get(i);
+            if (deadlineTick / level.interval - currentTick / level.interval < wheelSize) {
+                level.bucketFor(deadlineTick).add(timeout);
+                return;
+            }
+        }
+    }
+
+    /**
+     * One level of the wheel; each bucket spans {@code interval} ticks
+     */
+    private final class Level {
+        private final long interval;
+        private final Bucket<T>[] buckets;
+
+        @SuppressWarnings("unchecked")
+        private Level(long interval) {
+            this.interval = interval;
+            this.buckets = new Bucket[wheelSize];
+            for (int i = 0; i < wheelSize; i++) {
+                buckets[i] = new Bucket<>();
+            }
+        }
+
+        private Bucket<T> bucketFor(long tick) {
+            return buckets[(int) ((tick / interval) % wheelSize)];
+        }
+    }
+
+    /**
+     * Doubly-linked list of timers with a sentinel node
+     */
+    private static final class Bucket<T> {
+        private final Timeout<T> head = new Timeout<>(null, null, 0, 0);
+
+        private Bucket() {
+            head.next = head;
+            head.prev = head;
+        }
+
+        private void add(Timeout<T> timeout) {
+            timeout.bucket = this;
+            timeout.prev = head.prev;
+            timeout.next = head;
+            head.prev.next = timeout;
+            head.prev = timeout;
+        }
+
+        private void remove(Timeout<T> timeout) {
+            timeout.prev.next = timeout.next;
+            timeout.next.prev = timeout.prev;
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+
+        private List<Timeout<T>> drain() {
+            List<Timeout<T>> drained = new ArrayList<>();
+            Timeout<T> node = head.next;
+            while (node != head) {
+                Timeout<T> next = node.next;
+                node.prev = null;
+                node.next = null;
+                node.bucket = null;
+                drained.add(node);
+                node = next;
+            }
+            head.next = head;
+            head.prev = head;
+            return drained;
+        }
+    }
+
+    /**
+     * Handle of a scheduled timer
+     */
+    public static final class Timeout<T> {
+        private final HierarchicalTimingWheel<T> wheel;
+        private final T payload;
+        private final long deadlineMillis;
+        private final long deadlineTick;
+
+        private Bucket<T> bucket;
+        private Timeout<T> prev;
+        private Timeout<T> next;
+        private volatile boolean expired;
+
+        private Timeout(HierarchicalTimingWheel<T> wheel, T payload, long deadlineMillis, long deadlineTick) {
+            this.wheel = wheel;
+            this.payload = payload;
+            this.deadlineMillis = deadlineMillis;
+            this.deadlineTick = deadlineTick;
+        }
+
+        public T getPayload() {
+            return payload;
+        }
+
+        public long getDeadlineMillis() {
+            return deadlineMillis;
+        }
+
+        public boolean isExpired() {
+            return expired;
+        }
+
+        /**
+         * Cancel the timer in O(1)
+         * @return true if the timer was still pending
+         */
+        public boolean cancel() {
+            return wheel.cancel(this);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.fivepapa.backend.common.util;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming RFC 4180 CSV reader
+ * Reads one record at a time from the underlying reader, so memory use depends on the
+ * longest record rather than the size of the input. Quoted fields may contain commas,
+ * doubled quotes and line breaks; both LF and CRLF line endings are accepted.
+ */
+public class CsvReader {
+
+    private final Reader reader;
+    private final int maxRecordChars;
+    private final char[] buffer = new char[8192];
+    private int position;
+    private int limit;
+    private long line = 1;
+    private long recordLine;
+
+    public CsvReader(Reader reader, int maxRecordChars) {
+        this.reader = reader;
+        this.maxRecordChars = maxRecordChars;
+    }
+
+    /**
+     * Reads the next record
+     *
+     * @return the fields of the record, or null at the end of the input
+     * @throws IOException if reading fails, a quote is left open or a record exceeds maxRecordChars
+     */
+    public List<String> next() throws IOException {
+        int c = read();
+        if (c == -1) {
+            return null;
+        }
+        recordLine = line;
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        int length = 0;
+        boolean quoted = false;
+        boolean fieldStart = true;
+
+        while (true) {
+            if (++length > maxRecordChars) {
+                throw new IOException("Record starting at line " + recordLine + " exceeds " + maxRecordChars + " characters");
+            }
+            if (quoted) {
+                if (c == -1) {
+                    throw new IOException("Unterminated quoted field starting at line " + recordLine);
+                }
+                if (c == '"') {
+                    int following = read();
+                    if (following == '"') {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        c = following;
+                        continue;
+                    }
+                } else {
+                    if (c == '\n') {
+                        line++;
+                    }
+                    field.append((char) c);
+                }
+            } else if (c == '"' && fieldStart) {
+                quoted = true;
+                fieldStart = false;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+                fieldStart = true;
+            } else if (c == '\n' || c == -1) {
+                if (c == '\n') {
+                    line++;
+                }
+                int end = field.length();
+                if (end > 0 && field.charAt(end - 1) == '\r') {
+                    field.setLength(end - 1);
+                }
+                fields.add(field.toString());
+                return fields;
+            } else {
+                field.append((char) c);
+                fieldStart = false;
+            }
+            c = read();
+        }
+    }
+
+    /**
+     * Line number (1-based) on which the record last returned by {@link #next()} starts
+     */
+    public long getRecordLine() {
+        return recordLine;
+    }
+
+    private int read() throws IOException {
+        if (position == limit) {
+            limit = reader.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buffer[position++];
+    }
+}
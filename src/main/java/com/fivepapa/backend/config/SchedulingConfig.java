@@ -0,0 +1,13 @@
+package com.fivepapa.backend.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Scheduling Configuration
+ * Enables @Scheduled background jobs (e.g. releasing expired stock reservations)
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
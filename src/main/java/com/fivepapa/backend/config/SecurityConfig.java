@@ -1,7 +1,10 @@
 package com.fivepapa.backend.config;
 
+import com.fivepapa.backend.common.cache.ResponseCacheFilter;
+import com.fivepapa.backend.common.idempotency.IdempotencyFilter;
 import com.fivepapa.backend.common.security.JwtAuthenticationFilter;
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.env.Environment;
@@ -14,6 +17,7 @@ import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.access.intercept.AuthorizationFilter;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.security.web.csrf.CookieCsrfTokenRepository;
 import org.springframework.security.web.csrf.CsrfTokenRequestAttributeHandler;
@@ -35,6 +39,8 @@ import java.util.Arrays;
 public class SecurityConfig {
 
     private final JwtAuthenticationFilter jwtAuthFilter;
+    private final IdempotencyFilter idempotencyFilter;
+    private final ResponseCacheFilter responseCacheFilter;
     private final Environment environment;
 
     @Bean
@@ -63,7 +69,8 @@ public class SecurityConfig {
                                 // E-commerce API (uses JWT Bearer token, doesn't need CSRF)
                                 "/api/products/**",
                                 "/api/categories/**",
-                                "/api/cart/**"
+                                "/api/cart/**",
+                                "/api/checkout"
                         );
 
                     // Disable CSRF for H2 Console in development
@@ -85,11 +92,14 @@ public class SecurityConfig {
                     ).permitAll();
 
                     // ===== E-commerce Product Endpoints =====
+                    // Admin only: Product import jobs and product cache stats (must precede the public GET rule)
+                    auth.requestMatchers(HttpMethod.GET, "/api/products/imports/**", "/api/products/cache").hasRole("ADMIN");
                     // Public: Browse products (GET only)
                     auth.requestMatchers(HttpMethod.GET, "/api/products/**").permitAll();
-                    // Admin only: Manage products (POST/PUT/DELETE)
+                    // Admin only: Manage products (POST/PUT/PATCH/DELETE)
                     auth.requestMatchers(HttpMethod.POST, "/api/products/**").hasRole("ADMIN");
                     auth.requestMatchers(HttpMethod.PUT, "/api/products/**").hasRole("ADMIN");
+                    auth.requestMatchers(HttpMethod.PATCH, "/api/products/**").hasRole("ADMIN");
                     auth.requestMatchers(HttpMethod.DELETE, "/api/products/**").hasRole("ADMIN");
 
                     // ===== E-commerce Category Endpoints =====
@@ -100,10 +110,24 @@ public class SecurityConfig {
                     auth.requestMatchers(HttpMethod.PUT, "/api/categories/**").hasRole("ADMIN");
                     auth.requestMatchers(HttpMethod.DELETE, "/api/categories/**").hasRole("ADMIN");
 
+                    // ===== E-commerce Promotion Endpoints =====
+                    // Admin only: Manage promotions (discounts are shown to shoppers in cart responses)
+                    auth.requestMatchers("/api/promotions", "/api/promotions/**").hasRole("ADMIN");
+
                     // ===== E-commerce Cart Endpoints =====
+                    // Public: Guest cart (in-memory, identified by signed cookie)
+                    auth.requestMatchers("/api/cart/guest", "/api/cart/guest/**").permitAll();
                     // Authenticated users only: Manage shopping cart
                     auth.requestMatchers("/api/cart/**").authenticated();
 
+                    // ===== E-commerce Checkout & Order Endpoints =====
+                    // Authenticated users only: Checkout and view own orders
+                    auth.requestMatchers("/api/checkout", "/api/orders", "/api/orders/**").authenticated();
+
+                    // ===== Actuator Endpoints =====
+                    auth.requestMatchers("/actuator/health").permitAll();
+                    auth.requestMatchers("/actuator/**").hasRole("ADMIN");
+
                     // ===== Development Only Endpoints =====
                     if (isDevelopment) {
                         auth.requestMatchers("/h2-console/**").permitAll();
@@ -115,7 +139,11 @@ public class SecurityConfig {
                 .sessionManagement(session ->
                         session.sessionCreationPolicy(SessionCreationPolicy.STATELESS)
                 )
-                .addFilterBefore(jwtAuthFilter, UsernamePasswordAuthenticationFilter.class);
+                .addFilterBefore(jwtAuthFilter, UsernamePasswordAuthenticationFilter.class)
+                // Idempotency-Key handling runs after authorization (keys are scoped per user)
+                .addFilterAfter(idempotencyFilter, AuthorizationFilter.class)
+                // Anonymous catalog GETs are served from the response cache once authorized (CORS headers still applied)
+                .addFilterAfter(responseCacheFilter, AuthorizationFilter.class);
 
         // Allow H2 console frames (development only)
         if (isDevelopment) {
@@ -146,11 +174,13 @@ public class SecurityConfig {
                 "Authorization",
                 "Content-Type",
                 "X-XSRF-TOKEN",  // CSRF token header
-                "X-Requested-With"
+                "X-Requested-With",
+                "If-Match",
+                IdempotencyFilter.KEY_HEADER
         ));
 
-        // Expose CSRF token header to frontend
-        configuration.setExposedHeaders(Arrays.asList("X-XSRF-TOKEN"));
+        // Expose CSRF token header, resource versions and idempotent replay marker to frontend
+        configuration.setExposedHeaders(Arrays.asList("X-XSRF-TOKEN", "ETag", IdempotencyFilter.REPLAYED_HEADER));
 
         configuration.setAllowCredentials(true);
 
@@ -160,6 +190,26 @@ public class SecurityConfig {
         return source;
     }
 
+    /**
+     * The idempotency filter only runs inside the security chain, not as a separate servlet filter
+     */
+    @Bean
+    public FilterRegistrationBean<IdempotencyFilter> idempotencyFilterRegistration() {
+        FilterRegistrationBean<IdempotencyFilter> registration = new FilterRegistrationBean<>(idempotencyFilter);
+        registration.setEnabled(false);
+        return registration;
+    }
+
+    /**
+     * The response cache filter only runs inside the security chain, not as a separate servlet filter
+     */
+    @Bean
+    public FilterRegistrationBean<ResponseCacheFilter> responseCacheFilterRegistration() {
+        FilterRegistrationBean<ResponseCacheFilter> registration = new FilterRegistrationBean<>(responseCacheFilter);
+        registration.setEnabled(false);
+        return registration;
+    }
+
     @Bean
     public PasswordEncoder passwordEncoder() {
         return new BCryptPasswordEncoder();
@@ -1,16 +1,25 @@
 package com.fivepapa.backend.ecommerce.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fivepapa.backend.common.security.UserPrincipal;
 import com.fivepapa.backend.ecommerce.dto.AddToCartRequest;
+import com.fivepapa.backend.ecommerce.dto.CartBatchRequest;
 import com.fivepapa.backend.ecommerce.dto.CartResponse;
 import com.fivepapa.backend.ecommerce.dto.UpdateCartItemRequest;
 import com.fivepapa.backend.ecommerce.service.CartService;
+import com.fivepapa.backend.ecommerce.service.CartWriteBehindService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
 
 /**
  * 購物車控制器
@@ -22,15 +31,21 @@ import org.springframework.web.bind.annotation.*;
 public class CartController {
 
     private final CartService cartService;
+    private final CartWriteBehindService cartWriteBehindService;
+    private final ObjectMapper objectMapper;
 
     /**
      * 查詢購物車
      * GET /api/cart
+     * ETag 為回應內容的雜湊：購物車的金額會隨商品價格、促銷變動，cart.updatedAt 不會反映，因此不送 Last-Modified
      */
     @GetMapping
-    public ResponseEntity<CartResponse> getCart() {
+    public ResponseEntity<CartResponse> getCart(WebRequest webRequest) {
         Long userId = getCurrentUserId();
-        CartResponse cart = cartService.getCart(userId);
+        CartResponse cart = cartWriteBehindService.getCart(userId);
+        if (webRequest.checkNotModified(contentTag(cart))) {
+            return null;
+        }
         return ResponseEntity.ok(cart);
     }
 
@@ -54,7 +69,7 @@ public class CartController {
             @PathVariable Long id,
             @Valid @RequestBody UpdateCartItemRequest request) {
         Long userId = getCurrentUserId();
-        CartResponse cart = cartService.updateCartItem(userId, id, request);
+        CartResponse cart = cartWriteBehindService.updateCartItem(userId, id, request);
         return ResponseEntity.ok(cart);
     }
 
@@ -69,6 +84,17 @@ public class CartController {
         return ResponseEntity.ok(cart);
     }
 
+    /**
+     * 批次更新購物車（新增／更新／移除）
+     * PATCH /api/cart
+     */
+    @PatchMapping
+    public ResponseEntity<CartResponse> applyBatch(@Valid @RequestBody CartBatchRequest request) {
+        Long userId = getCurrentUserId();
+        CartResponse cart = cartService.applyBatch(userId, request);
+        return ResponseEntity.ok(cart);
+    }
+
     /**
      * 清空購物車
      * DELETE /api/cart
@@ -80,6 +106,18 @@ public class CartController {
         return ResponseEntity.noContent().build();
     }
 
+    /**
+     * 回應內容的 SHA-256（前 16 bytes）
+     */
+    private String contentTag(CartResponse cart) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(cart));
+            return HexFormat.of().formatHex(digest, 0, 16);
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("無法計算購物車 ETag", e);
+        }
+    }
+
     /**
      * 從 SecurityContext 獲取當前用戶 ID
      */
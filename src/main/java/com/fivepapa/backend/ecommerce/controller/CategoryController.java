@@ -1,13 +1,20 @@
 package com.fivepapa.backend.ecommerce.controller;
 
+import com.fivepapa.backend.common.cache.ResponseCache;
 import com.fivepapa.backend.ecommerce.dto.CategoryRequest;
 import com.fivepapa.backend.ecommerce.dto.CategoryResponse;
+import com.fivepapa.backend.ecommerce.service.CatalogCacheTags;
+import com.fivepapa.backend.ecommerce.service.CatalogSnapshotCache;
+import com.fivepapa.backend.ecommerce.service.CatalogSnapshotCache.View;
+import com.fivepapa.backend.ecommerce.service.CatalogValidators;
 import com.fivepapa.backend.ecommerce.service.CategoryService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 
@@ -17,6 +24,9 @@ import java.util.List;
 public class CategoryController {
 
     private final CategoryService categoryService;
+    private final CatalogSnapshotCache catalogSnapshotCache;
+    private final CatalogValidators catalogValidators;
+    private final ResponseCache responseCache;
 
     /**
      * 建立分類
@@ -29,41 +39,56 @@ public class CategoryController {
     }
 
     /**
-     * 查詢所有分類
+     * 查詢所有分類（目錄沒有變動時回應 304）
      * 權限：公開
      */
     @GetMapping
-    public ResponseEntity<List<CategoryResponse>> getAllCategories() {
+    public ResponseEntity<List<CategoryResponse>> getAllCategories(WebRequest webRequest) {
+        responseCache.tag(CatalogCacheTags.CATEGORIES);
+        if (webRequest.checkNotModified(catalogValidators.categories())) {
+            return null;
+        }
         List<CategoryResponse> categories = categoryService.getAllCategories();
         return ResponseEntity.ok(categories);
     }
 
     /**
      * 查詢所有頂層分類（包含子分類）
+     * 回應為預先產生的 JSON / gzip，目錄沒有變動時回應 304
      * 權限：公開
      */
     @GetMapping("/top-level")
-    public ResponseEntity<List<CategoryResponse>> getTopLevelCategories() {
-        List<CategoryResponse> categories = categoryService.getTopLevelCategories();
-        return ResponseEntity.ok(categories);
+    public ResponseEntity<byte[]> getTopLevelCategories(
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return catalogSnapshotCache.respond(View.TOP_LEVEL_CATEGORIES, acceptEncoding, ifNoneMatch);
     }
 
     /**
-     * 查詢單一分類
+     * 查詢單一分類（目錄沒有變動時回應 304）
      * 權限：公開
      */
     @GetMapping("/{id}")
-    public ResponseEntity<CategoryResponse> getCategoryById(@PathVariable Long id) {
+    public ResponseEntity<CategoryResponse> getCategoryById(@PathVariable Long id, WebRequest webRequest) {
+        responseCache.tag(CatalogCacheTags.CATEGORIES, CatalogCacheTags.category(id));
+        if (webRequest.checkNotModified(catalogValidators.categories())) {
+            return null;
+        }
         CategoryResponse category = categoryService.getCategoryById(id);
         return ResponseEntity.ok(category);
     }
 
     /**
-     * 查詢特定父分類的子分類
+     * 查詢特定父分類的子分類（目錄沒有變動時回應 304）
      * 權限：公開
      */
     @GetMapping("/{parentId}/children")
-    public ResponseEntity<List<CategoryResponse>> getChildCategories(@PathVariable Long parentId) {
+    public ResponseEntity<List<CategoryResponse>> getChildCategories(@PathVariable Long parentId,
+                                                                     WebRequest webRequest) {
+        responseCache.tag(CatalogCacheTags.CATEGORIES, CatalogCacheTags.category(parentId));
+        if (webRequest.checkNotModified(catalogValidators.categories())) {
+            return null;
+        }
         List<CategoryResponse> children = categoryService.getChildCategories(parentId);
         return ResponseEntity.ok(children);
     }
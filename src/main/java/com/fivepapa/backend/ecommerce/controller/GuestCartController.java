@@ -0,0 +1,119 @@
+package com.fivepapa.backend.ecommerce.controller;
+
+import com.fivepapa.backend.ecommerce.dto.AddToCartRequest;
+import com.fivepapa.backend.ecommerce.dto.CartResponse;
+import com.fivepapa.backend.ecommerce.dto.UpdateCartItemRequest;
+import com.fivepapa.backend.ecommerce.service.GuestCartService;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * 訪客購物車控制器
+ * 未登入也可使用，以 HttpOnly 簽章 cookie 識別；項目以商品 ID 操作
+ */
+@RestController
+@RequestMapping("/api/cart/guest")
+@RequiredArgsConstructor
+public class GuestCartController {
+
+    private final GuestCartService guestCartService;
+
+    @Value("${GUEST_CART_TTL_MINUTES:1440}")
+    private long guestCartTtlMinutes;
+
+    @Value("${COOKIE_SECURE:true}")
+    private boolean cookieSecure;
+
+    @Value("${COOKIE_SAME_SITE:Lax}")
+    private String cookieSameSite;
+
+    /**
+     * 查詢訪客購物車
+     * GET /api/cart/guest
+     */
+    @GetMapping
+    public ResponseEntity<CartResponse> getCart(
+            @CookieValue(name = GuestCartService.COOKIE_NAME, required = false) String token) {
+        return ResponseEntity.ok(guestCartService.getCart(token));
+    }
+
+    /**
+     * 加入商品到訪客購物車
+     * POST /api/cart/guest/items
+     */
+    @PostMapping("/items")
+    public ResponseEntity<CartResponse> addToCart(
+            @CookieValue(name = GuestCartService.COOKIE_NAME, required = false) String token,
+            @Valid @RequestBody AddToCartRequest request,
+            HttpServletResponse response) {
+        String cartToken = resolveToken(token, response);
+        return ResponseEntity.ok(guestCartService.addItem(cartToken, request));
+    }
+
+    /**
+     * 更新訪客購物車商品數量
+     * PUT /api/cart/guest/items/{productId}
+     */
+    @PutMapping("/items/{productId}")
+    public ResponseEntity<CartResponse> updateCartItem(
+            @CookieValue(name = GuestCartService.COOKIE_NAME, required = false) String token,
+            @PathVariable Long productId,
+            @Valid @RequestBody UpdateCartItemRequest request,
+            HttpServletResponse response) {
+        String cartToken = resolveToken(token, response);
+        return ResponseEntity.ok(guestCartService.updateItem(cartToken, productId, request.getQuantity()));
+    }
+
+    /**
+     * 從訪客購物車移除商品
+     * DELETE /api/cart/guest/items/{productId}
+     */
+    @DeleteMapping("/items/{productId}")
+    public ResponseEntity<CartResponse> removeCartItem(
+            @CookieValue(name = GuestCartService.COOKIE_NAME, required = false) String token,
+            @PathVariable Long productId,
+            HttpServletResponse response) {
+        String cartToken = resolveToken(token, response);
+        return ResponseEntity.ok(guestCartService.removeItem(cartToken, productId));
+    }
+
+    /**
+     * 清空訪客購物車
+     * DELETE /api/cart/guest
+     */
+    @DeleteMapping
+    public ResponseEntity<Void> clearCart(
+            @CookieValue(name = GuestCartService.COOKIE_NAME, required = false) String token,
+            HttpServletResponse response) {
+        guestCartService.clear(token);
+        setGuestCartCookie(response, null, 0);
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * 沿用有效的 cookie，否則簽發新的並寫入回應
+     */
+    private String resolveToken(String token, HttpServletResponse response) {
+        String cartToken = guestCartService.resolveToken(token);
+        if (!cartToken.equals(token)) {
+            setGuestCartCookie(response, cartToken, (int) (guestCartTtlMinutes * 60));
+        }
+        return cartToken;
+    }
+
+    private void setGuestCartCookie(HttpServletResponse response, String token, int maxAgeSeconds) {
+        Cookie cookie = new Cookie(GuestCartService.COOKIE_NAME, token);
+        cookie.setHttpOnly(true);
+        cookie.setSecure(cookieSecure);
+        cookie.setPath("/");
+        cookie.setMaxAge(maxAgeSeconds);
+        cookie.setAttribute("SameSite", cookieSameSite);
+
+        response.addCookie(cookie);
+    }
+}
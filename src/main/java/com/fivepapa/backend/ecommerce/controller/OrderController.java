@@ -0,0 +1,72 @@
+package com.fivepapa.backend.ecommerce.controller;
+
+import com.fivepapa.backend.common.security.UserPrincipal;
+import com.fivepapa.backend.ecommerce.dto.OrderResponse;
+import com.fivepapa.backend.ecommerce.service.CheckoutService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * 結帳與訂單控制器
+ */
+@RestController
+@RequestMapping("/api")
+@RequiredArgsConstructor
+public class OrderController {
+
+    private final CheckoutService checkoutService;
+
+    /**
+     * 結帳（將目前的購物車轉為訂單並清空購物車）
+     * POST /api/checkout
+     */
+    @PostMapping("/checkout")
+    public ResponseEntity<OrderResponse> checkout() {
+        Long userId = getCurrentUserId();
+        OrderResponse order = checkoutService.checkout(userId);
+        return ResponseEntity.status(HttpStatus.CREATED).body(order);
+    }
+
+    /**
+     * 查詢我的訂單
+     * GET /api/orders
+     */
+    @GetMapping("/orders")
+    public ResponseEntity<List<OrderResponse>> getOrders() {
+        Long userId = getCurrentUserId();
+        return ResponseEntity.ok(checkoutService.getOrders(userId));
+    }
+
+    /**
+     * 查詢單一訂單
+     * GET /api/orders/{id}
+     */
+    @GetMapping("/orders/{id}")
+    public ResponseEntity<OrderResponse> getOrder(@PathVariable Long id) {
+        Long userId = getCurrentUserId();
+        return ResponseEntity.ok(checkoutService.getOrder(userId, id));
+    }
+
+    /**
+     * 從 SecurityContext 獲取當前用戶 ID
+     */
+    private Long getCurrentUserId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()) {
+            throw new RuntimeException("用戶未登入");
+        }
+
+        Object principal = authentication.getPrincipal();
+        if (principal instanceof UserPrincipal) {
+            return ((UserPrincipal) principal).getId();
+        }
+
+        throw new RuntimeException("無法獲取用戶資訊");
+    }
+}
@@ -1,22 +1,51 @@
 package com.fivepapa.backend.ecommerce.controller;
 
+import com.fivepapa.backend.common.cache.ResponseCache;
+import com.fivepapa.backend.common.exception.PreconditionFailedException;
+import com.fivepapa.backend.ecommerce.dto.CacheStatsResponse;
+import com.fivepapa.backend.ecommerce.dto.ProductBulkUpdateRequest;
+import com.fivepapa.backend.ecommerce.dto.ProductBulkUpdateResponse;
+import com.fivepapa.backend.ecommerce.dto.ProductChangesResponse;
+import com.fivepapa.backend.ecommerce.dto.ProductPatchRequest;
 import com.fivepapa.backend.ecommerce.dto.ProductRequest;
 import com.fivepapa.backend.ecommerce.dto.ProductResponse;
+import com.fivepapa.backend.ecommerce.service.CatalogCacheTags;
+import com.fivepapa.backend.ecommerce.service.CatalogSnapshotCache;
+import com.fivepapa.backend.ecommerce.service.CatalogSnapshotCache.View;
+import com.fivepapa.backend.ecommerce.service.CatalogValidators;
+import com.fivepapa.backend.ecommerce.service.ProductBulkUpdateService;
+import com.fivepapa.backend.ecommerce.service.ProductExportService;
+import com.fivepapa.backend.ecommerce.service.ProductResponseCache;
 import com.fivepapa.backend.ecommerce.service.ProductService;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.io.IOException;
 import java.util.List;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @RequestMapping("/api/products")
 @RequiredArgsConstructor
 public class ProductController {
 
+    private static final int MAX_CHANGES_LIMIT = 1000;
+
     private final ProductService productService;
+    private final ProductBulkUpdateService productBulkUpdateService;
+    private final ProductExportService productExportService;
+    private final CatalogSnapshotCache catalogSnapshotCache;
+    private final CatalogValidators catalogValidators;
+    private final ResponseCache responseCache;
+    private final ProductResponseCache productResponseCache;
 
     // 建立商品
     @PostMapping
@@ -25,18 +54,87 @@ public class ProductController {
         return ResponseEntity.status(HttpStatus.CREATED).body(response);
     }
 
-    // 查詢所有商品
+    // 查詢所有商品（以商品異動序號為 ETag，沒有變動時回應 304）
     @GetMapping
-    public ResponseEntity<List<ProductResponse>> getAllProducts() {
+    public ResponseEntity<List<ProductResponse>> getAllProducts(WebRequest webRequest) {
+        responseCache.tag(CatalogCacheTags.PRODUCTS);
+        if (webRequest.checkNotModified(catalogValidators.products())) {
+            return null;
+        }
         List<ProductResponse> products = productService.getAllProducts();
         return ResponseEntity.ok(products);
     }
 
-    // 查詢單一商品
+    // 匯出全部商品（NDJSON 或 CSV，串流寫出；請求帶 Accept-Encoding: gzip 時壓縮）
+    @GetMapping("/export")
+    public void exportProducts(
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            HttpServletResponse response) throws IOException {
+        ProductExportService.Format exportFormat = switch (format.toLowerCase(Locale.ROOT)) {
+            case "ndjson" -> ProductExportService.Format.NDJSON;
+            case "csv" -> ProductExportService.Format.CSV;
+            default -> throw new RuntimeException("不支援的匯出格式：" + format);
+        };
+        boolean gzip = acceptEncoding != null && acceptEncoding.toLowerCase(Locale.ROOT).contains("gzip");
+
+        response.setContentType(exportFormat == ProductExportService.Format.CSV
+                ? "text/csv;charset=UTF-8" : "application/x-ndjson;charset=UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=\"products." + exportFormat.name().toLowerCase(Locale.ROOT) + "\"");
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+            try (GZIPOutputStream output = new GZIPOutputStream(response.getOutputStream(), 64 * 1024)) {
+                productExportService.export(exportFormat, output);
+            }
+        } else {
+            productExportService.export(exportFormat, response.getOutputStream());
+        }
+    }
+
+    // 單一商品近端快取的統計（命中率、淘汰數）
+    @GetMapping("/cache")
+    public ResponseEntity<CacheStatsResponse> getCacheStats() {
+        CacheStats stats = productResponseCache.stats();
+        return ResponseEntity.ok(CacheStatsResponse.builder()
+                .name("productResponses")
+                .size(productResponseCache.estimatedSize())
+                .hitCount(stats.hitCount())
+                .missCount(stats.missCount())
+                .hitRatio(stats.hitRate())
+                .evictionCount(stats.evictionCount())
+                .build());
+    }
+
+    // 清除單一商品近端快取
+    @DeleteMapping("/cache")
+    public ResponseEntity<Void> purgeCache() {
+        productResponseCache.invalidateAll();
+        return ResponseEntity.noContent().build();
+    }
+
+    // 增量同步：cursor 之後異動的商品與已刪除的商品 ID（不帶 since 時從頭開始）
+    @GetMapping("/changes")
+    public ResponseEntity<ProductChangesResponse> getChanges(
+            @RequestParam(required = false) String since,
+            @RequestParam(defaultValue = "500") int limit) {
+        return ResponseEntity.ok(productService.getChanges(since, Math.max(1, Math.min(limit, MAX_CHANGES_LIMIT))));
+    }
+
+    // 查詢單一商品（ETag 為版本、Last-Modified 為更新時間，先比對再載入商品）
     @GetMapping("/{id}")
-    public ResponseEntity<ProductResponse> getProductById(@PathVariable Long id) {
+    public ResponseEntity<ProductResponse> getProductById(@PathVariable Long id, WebRequest webRequest) {
+        responseCache.tag(CatalogCacheTags.product(id));
+        CatalogValidators.Validator validator = catalogValidators.product(id).orElse(null);
+        if (validator != null && webRequest.checkNotModified(validator.etag(), validator.lastModified())) {
+            return null;
+        }
         ProductResponse product = productService.getProductById(id);
-        return ResponseEntity.ok(product);
+        if (product.getCategoryId() != null) {
+            responseCache.tag(CatalogCacheTags.category(product.getCategoryId()));
+        }
+        return ResponseEntity.ok().eTag(String.valueOf(product.getVersion())).body(product);
     }
 
     // 更新商品
@@ -48,6 +146,22 @@ public class ProductController {
         return ResponseEntity.ok(response);
     }
 
+    // 部分更新商品（只更新出現的欄位；帶 If-Match 時版本不符回應 412）
+    @PatchMapping("/{id}")
+    public ResponseEntity<ProductResponse> patchProduct(
+            @PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @Valid @RequestBody ProductPatchRequest request) {
+        ProductResponse response = productService.patchProduct(id, request, parseVersion(ifMatch));
+        return ResponseEntity.ok().eTag(String.valueOf(response.getVersion())).body(response);
+    }
+
+    // 批次更新庫存／價格（每列各自回報結果）
+    @PostMapping("/bulk-update")
+    public ResponseEntity<ProductBulkUpdateResponse> bulkUpdate(@Valid @RequestBody ProductBulkUpdateRequest request) {
+        return ResponseEntity.ok(productBulkUpdateService.apply(request));
+    }
+
     // 刪除商品
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteProduct(@PathVariable Long id) {
@@ -57,15 +171,36 @@ public class ProductController {
 
     // 搜尋商品
     @GetMapping("/search")
-    public ResponseEntity<List<ProductResponse>> searchProducts(@RequestParam String keyword) {
+    public ResponseEntity<List<ProductResponse>> searchProducts(@RequestParam String keyword, WebRequest webRequest) {
+        responseCache.tag(CatalogCacheTags.PRODUCTS);
+        if (webRequest.checkNotModified(catalogValidators.products())) {
+            return null;
+        }
         List<ProductResponse> products = productService.searchProducts(keyword);
         return ResponseEntity.ok(products);
     }
 
-    // 查詢上架商品
+    // 查詢上架商品（預先產生的 JSON / gzip，目錄沒有變動時回應 304）
     @GetMapping("/active")
-    public ResponseEntity<List<ProductResponse>> getActiveProducts() {
-        List<ProductResponse> products = productService.getActiveProducts();
-        return ResponseEntity.ok(products);
+    public ResponseEntity<byte[]> getActiveProducts(
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return catalogSnapshotCache.respond(View.ACTIVE_PRODUCTS, acceptEncoding, ifNoneMatch);
+    }
+
+    // If-Match 的 ETag（例如 "3" 或 W/"3"）轉為版本；沒有或為 * 時不檢查
+    private Long parseVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.startsWith("W/")) {
+            tag = tag.substring(2);
+        }
+        try {
+            return Long.parseLong(tag.replace("\"", ""));
+        } catch (NumberFormatException e) {
+            throw new PreconditionFailedException("If-Match 格式錯誤：" + ifMatch);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,52 @@
+package com.fivepapa.backend.ecommerce.controller;
+
+import com.fivepapa.backend.ecommerce.dto.ProductImportStatus;
+import com.fivepapa.backend.ecommerce.dto.ProductImportStatus.Format;
+import com.fivepapa.backend.ecommerce.service.ProductImportService;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/products/imports")
+@RequiredArgsConstructor
+public class ProductImportController {
+
+    public static final String CSV = "text/csv";
+    public static final String NDJSON = "application/x-ndjson";
+
+    private final ProductImportService productImportService;
+
+    // 匯入商品（請求本文以 CSV 或 NDJSON 串流讀取，不會整個放進記憶體）
+    @PostMapping(consumes = {CSV, NDJSON})
+    public ResponseEntity<ProductImportStatus> importProducts(HttpServletRequest request) throws IOException {
+        MediaType contentType = MediaType.parseMediaType(request.getContentType());
+        Format format = contentType.isCompatibleWith(MediaType.parseMediaType(CSV)) ? Format.CSV : Format.NDJSON;
+        Charset charset = contentType.getCharset() != null ? contentType.getCharset() : StandardCharsets.UTF_8;
+
+        ProductImportStatus status = productImportService.importProducts(format,
+                new InputStreamReader(request.getInputStream(), charset));
+        return ResponseEntity.created(URI.create("/api/products/imports/" + status.getId())).body(status);
+    }
+
+    // 查詢最近的匯入工作
+    @GetMapping
+    public ResponseEntity<List<ProductImportStatus>> getRecentImports() {
+        return ResponseEntity.ok(productImportService.getRecentStatuses());
+    }
+
+    // 查詢匯入工作進度
+    @GetMapping("/{id}")
+    public ResponseEntity<ProductImportStatus> getImport(@PathVariable String id) {
+        return ResponseEntity.ok(productImportService.getStatus(id));
+    }
+}
@@ -0,0 +1,69 @@
+package com.fivepapa.backend.ecommerce.controller;
+
+import com.fivepapa.backend.ecommerce.dto.PromotionRequest;
+import com.fivepapa.backend.ecommerce.dto.PromotionResponse;
+import com.fivepapa.backend.ecommerce.service.PromotionService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/promotions")
+@RequiredArgsConstructor
+public class PromotionController {
+
+    private final PromotionService promotionService;
+
+    /**
+     * 建立促銷
+     * 權限：ADMIN
+     */
+    @PostMapping
+    public ResponseEntity<PromotionResponse> createPromotion(@Valid @RequestBody PromotionRequest request) {
+        PromotionResponse response = promotionService.createPromotion(request);
+        return ResponseEntity.status(HttpStatus.CREATED).body(response);
+    }
+
+    /**
+     * 查詢所有促銷
+     * 權限：ADMIN
+     */
+    @GetMapping
+    public ResponseEntity<List<PromotionResponse>> getAllPromotions() {
+        return ResponseEntity.ok(promotionService.getAllPromotions());
+    }
+
+    /**
+     * 查詢單一促銷
+     * 權限：ADMIN
+     */
+    @GetMapping("/{id}")
+    public ResponseEntity<PromotionResponse> getPromotionById(@PathVariable Long id) {
+        return ResponseEntity.ok(promotionService.getPromotionById(id));
+    }
+
+    /**
+     * 更新促銷
+     * 權限：ADMIN
+     */
+    @PutMapping("/{id}")
+    public ResponseEntity<PromotionResponse> updatePromotion(
+            @PathVariable Long id,
+            @Valid @RequestBody PromotionRequest request) {
+        return ResponseEntity.ok(promotionService.updatePromotion(id, request));
+    }
+
+    /**
+     * 刪除促銷
+     * 權限：ADMIN
+     */
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> deletePromotion(@PathVariable Long id) {
+        promotionService.deletePromotion(id);
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -0,0 +1,23 @@
+package com.fivepapa.backend.ecommerce.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 快取統計（自啟動或上次清除統計以來累計）
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CacheStatsResponse {
+
+    private String name;
+    private long size;           // 目前的項目數（估計值）
+    private long hitCount;
+    private long missCount;
+    private double hitRatio;     // 沒有任何請求時為 1.0
+    private long evictionCount;  // 因大小上限或 TTL 移除的項目數（不含寫入時的清除）
+}
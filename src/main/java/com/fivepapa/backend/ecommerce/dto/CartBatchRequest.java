@@ -0,0 +1,56 @@
+package com.fivepapa.backend.ecommerce.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 批次購物車操作請求
+ * 依序套用多個新增／更新／移除操作，在同一個交易內完成
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartBatchRequest {
+
+    @NotEmpty(message = "操作列表不能為空")
+    @Size(max = 100, message = "單次最多 100 個操作")
+    @Valid
+    private List<Operation> operations = new ArrayList<>();
+
+    /**
+     * 操作類型
+     */
+    public enum OperationType {
+        ADD,     // 累加數量（購物車沒有該商品時新增）
+        UPDATE,  // 設定數量
+        REMOVE   // 移除商品
+    }
+
+    /**
+     * 單一購物車操作（以商品 ID 指定項目）
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Operation {
+
+        @NotNull(message = "操作類型不能為空")
+        private OperationType type;
+
+        @NotNull(message = "商品 ID 不能為空")
+        private Long productId;
+
+        // ADD / UPDATE 必填，REMOVE 不需要
+        @Min(value = 1, message = "數量必須大於 0")
+        private Integer quantity;
+    }
+}
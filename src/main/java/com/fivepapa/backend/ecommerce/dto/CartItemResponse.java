@@ -6,6 +6,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 
 /**
  * 購物車項目回應
@@ -13,7 +14,7 @@ import java.math.BigDecimal;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-@Builder
+@Builder(toBuilder = true)
 public class CartItemResponse {
 
     private Long id;
@@ -24,12 +25,22 @@ public class CartItemResponse {
     private String productDescription;
     private BigDecimal productPrice;
     private String productImageUrl;
+    private Long categoryId;  // 商品分類（分類促銷使用）
 
     // 購物車項目資訊
     private Integer quantity;
     private BigDecimal subtotal;  // 小計（單價 * 數量）
 
+    // 促銷折扣（由 PricingEngine 計算）
+    private BigDecimal discount;  // 折扣金額
+    private Long promotionId;  // 套用的促銷（沒有則為 null）
+    private String promotionName;
+
     // 庫存檢查
-    private Integer availableStock;  // 可用庫存
+    private Integer availableStock;  // 可用庫存（尚未被任何購物車保留的數量）
     private Boolean inStock;  // 是否有庫存
+
+    // 庫存保留
+    private Integer reservedQuantity;  // 此項目已保留的數量
+    private LocalDateTime reservationExpiresAt;  // 保留到期時間
 }
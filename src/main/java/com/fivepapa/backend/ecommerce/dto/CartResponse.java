@@ -16,7 +16,7 @@ import java.util.List;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-@Builder
+@Builder(toBuilder = true)
 public class CartResponse {
 
     private Long id;
@@ -28,7 +28,9 @@ public class CartResponse {
     // 購物車統計資訊
     private Integer totalItems;  // 總項目數（商品種類數）
     private Integer totalQuantity;  // 總數量（所有商品數量加總）
-    private BigDecimal totalAmount;  // 總金額
+    private BigDecimal subtotalAmount;  // 折扣前金額
+    private BigDecimal discountAmount;  // 折扣總額
+    private BigDecimal totalAmount;  // 總金額（折扣後）
 
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
@@ -0,0 +1,27 @@
+package com.fivepapa.backend.ecommerce.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * 訂單項目回應
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class OrderItemResponse {
+    private Long id;
+    private Long productId;
+    private String productName;
+    private BigDecimal unitPrice;
+    private Integer quantity;
+    private BigDecimal subtotal;
+    private BigDecimal discount;
+    private Long promotionId;
+    private String promotionName;
+}
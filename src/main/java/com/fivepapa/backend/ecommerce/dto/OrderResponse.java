@@ -0,0 +1,34 @@
+package com.fivepapa.backend.ecommerce.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 訂單回應
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class OrderResponse {
+
+    private Long id;
+    private Long userId;
+
+    @Builder.Default
+    private List<OrderItemResponse> items = new ArrayList<>();
+
+    private Integer totalQuantity;
+    private BigDecimal subtotalAmount;  // 折扣前金額
+    private BigDecimal discountAmount;  // 折扣總額
+    private BigDecimal totalAmount;  // 應付金額
+
+    private LocalDateTime createdAt;
+}
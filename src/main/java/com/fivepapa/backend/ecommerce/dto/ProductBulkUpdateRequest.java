@@ -0,0 +1,43 @@
+package com.fivepapa.backend.ecommerce.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 批次更新商品庫存／價格請求
+ * 每列各自驗證並回報結果，不合法的列不影響其他列
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductBulkUpdateRequest {
+
+    @NotEmpty(message = "更新列表不能為空")
+    @Size(max = 100000, message = "單次最多 100000 筆")
+    private List<Item> items = new ArrayList<>();
+
+    /**
+     * 單一商品的更新（stock、price 至少一個；null 表示不更新）
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Item {
+
+        private Long id;
+
+        private Integer stock;
+
+        private BigDecimal price;
+
+        // 選填：與目前版本不同時不更新（樂觀鎖）
+        private Long version;
+    }
+}
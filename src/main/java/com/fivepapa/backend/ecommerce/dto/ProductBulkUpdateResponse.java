@@ -0,0 +1,42 @@
+package com.fivepapa.backend.ecommerce.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 批次更新商品結果（results 與請求的 items 順序相同）
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductBulkUpdateResponse {
+
+    private int updated;
+    private int notFound;
+    private int conflicts;
+    private int invalid;
+    private List<RowResult> results;
+
+    public enum Status {
+        UPDATED,           // 已更新
+        NOT_FOUND,         // 商品不存在
+        VERSION_CONFLICT,  // 版本不符（商品已被修改）
+        INVALID            // 資料不合法，見 message
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class RowResult {
+        private Long id;
+        private Status status;
+        private String message;
+    }
+}
@@ -0,0 +1,24 @@
+package com.fivepapa.backend.ecommerce.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 商品異動（GET /api/products/changes）
+ * 下次以 cursor 作為 since 繼續同步；hasMore 為 true 時應立即再取下一頁
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductChangesResponse {
+
+    private List<ProductResponse> products;  // 新增或修改的商品（目前的值）
+    private List<Long> deletedIds;           // 已刪除的商品 ID
+    private String cursor;
+    private boolean hasMore;
+}
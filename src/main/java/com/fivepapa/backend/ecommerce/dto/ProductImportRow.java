@@ -0,0 +1,40 @@
+package com.fivepapa.backend.ecommerce.dto;
+
+import jakarta.validation.constraints.*;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+/**
+ * 商品匯入的一列（CSV 的一行或 NDJSON 的一個物件）
+ * 分類可以用 categoryId 或分類名稱 category 指定
+ */
+@Data
+public class ProductImportRow {
+
+    @NotBlank(message = "商品名稱不能為空")
+    @Size(max = 200, message = "商品名稱不能超過 200 字")
+    private String name;
+
+    private String description;
+
+    @NotNull(message = "商品價格不能為空")
+    @DecimalMin(value = "0.0", inclusive = false, message = "價格必須大於 0")
+    @Digits(integer = 8, fraction = 2, message = "價格最多 8 位整數、2 位小數")
+    private BigDecimal price;
+
+    @NotNull(message = "庫存數量不能為空")
+    @Min(value = 0, message = "庫存不能為負數")
+    private Integer stock;
+
+    @Size(max = 500, message = "圖片網址不能超過 500 字")
+    private String imageUrl;
+
+    private Long categoryId;
+
+    // 分類名稱（與 categoryId 擇一）
+    private String category;
+
+    private Boolean active = true;
+    private Boolean featured = false;
+}
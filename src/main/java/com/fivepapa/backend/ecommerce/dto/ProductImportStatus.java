@@ -0,0 +1,51 @@
+package com.fivepapa.backend.ecommerce.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 商品匯入工作的進度與結果
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ProductImportStatus {
+
+    private String id;
+    private Format format;
+    private State state;
+    private long rowsRead;     // 已讀取的列數（不含 CSV 標題列與空白行）
+    private long imported;     // 已寫入的商品數
+    private long failed;       // 失敗的列數
+    private List<RowError> errors;  // 前幾筆失敗的列
+    private String message;    // 整個工作失敗時的原因
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+
+    public enum Format {
+        CSV,
+        NDJSON
+    }
+
+    public enum State {
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class RowError {
+        private long line;
+        private String message;
+    }
+}
@@ -0,0 +1,97 @@
+package com.fivepapa.backend.ecommerce.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.Size;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * 商品部分更新請求（PATCH）
+ * 只更新 JSON 中出現的欄位；Jackson 只會呼叫出現欄位的 setter，藉此記錄哪些欄位要更新
+ * description、imageUrl、categoryId 可以明確傳 null 清除，其餘欄位不可為 null
+ */
+@Getter
+public class ProductPatchRequest {
+
+    public enum Field {
+        NAME, DESCRIPTION, PRICE, STOCK, IMAGE_URL, CATEGORY_ID, ACTIVE, FEATURED
+    }
+
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    private final Set<Field> fields = EnumSet.noneOf(Field.class);
+
+    @Size(max = 200, message = "商品名稱不能超過 200 字")
+    private String name;
+
+    private String description;
+
+    @DecimalMin(value = "0.0", inclusive = false, message = "價格必須大於 0")
+    private BigDecimal price;
+
+    @Min(value = 0, message = "庫存不能為負數")
+    private Integer stock;
+
+    private String imageUrl;
+
+    private Long categoryId;
+
+    private Boolean active;
+
+    private Boolean featured;
+
+    public boolean has(Field field) {
+        return fields.contains(field);
+    }
+
+    @JsonIgnore
+    public boolean isEmpty() {
+        return fields.isEmpty();
+    }
+
+    public void setName(String name) {
+        this.name = name;
+        fields.add(Field.NAME);
+    }
+
+    public void setDescription(String description) {
+        this.description = description;
+        fields.add(Field.DESCRIPTION);
+    }
+
+    public void setPrice(BigDecimal price) {
+        this.price = price;
+        fields.add(Field.PRICE);
+    }
+
+    public void setStock(Integer stock) {
+        this.stock = stock;
+        fields.add(Field.STOCK);
+    }
+
+    public void setImageUrl(String imageUrl) {
+        this.imageUrl = imageUrl;
+        fields.add(Field.IMAGE_URL);
+    }
+
+    public void setCategoryId(Long categoryId) {
+        this.categoryId = categoryId;
+        fields.add(Field.CATEGORY_ID);
+    }
+
+    public void setActive(Boolean active) {
+        this.active = active;
+        fields.add(Field.ACTIVE);
+    }
+
+    public void setFeatured(Boolean featured) {
+        this.featured = featured;
+        fields.add(Field.FEATURED);
+    }
+}
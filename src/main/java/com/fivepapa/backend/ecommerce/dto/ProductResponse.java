@@ -23,6 +23,9 @@ public class ProductResponse {
     private Long categoryId;
     private String categoryName;
 
+    // 版本（與 ETag 相同，PATCH 時放在 If-Match）
+    private Long version;
+
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
 }
\ No newline at end of file
@@ -0,0 +1,45 @@
+package com.fivepapa.backend.ecommerce.dto;
+
+import com.fivepapa.backend.ecommerce.entity.Promotion.PromotionType;
+import jakarta.validation.constraints.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PromotionRequest {
+
+    @NotBlank(message = "促銷名稱不能為空")
+    @Size(max = 100, message = "促銷名稱不能超過 100 字")
+    private String name;
+
+    @NotNull(message = "促銷類型不能為空")
+    private PromotionType type;
+
+    // PERCENTAGE 使用
+    @DecimalMin(value = "0.0", inclusive = false, message = "折扣百分比必須大於 0")
+    @DecimalMax(value = "100.0", message = "折扣百分比不能超過 100")
+    @Digits(integer = 3, fraction = 2, message = "折扣百分比最多兩位小數")
+    private BigDecimal percentOff;
+
+    // BUY_X_GET_Y 使用
+    @Min(value = 1, message = "購買數量至少為 1")
+    private Integer buyQuantity;
+
+    @Min(value = 1, message = "贈送數量至少為 1")
+    private Integer freeQuantity;
+
+    // 適用範圍（都未設定時適用全部商品）
+    private Long productId;
+    private Long categoryId;
+
+    private LocalDateTime startsAt;
+    private LocalDateTime endsAt;
+
+    private Boolean active = true;
+}
@@ -0,0 +1,30 @@
+package com.fivepapa.backend.ecommerce.dto;
+
+import com.fivepapa.backend.ecommerce.entity.Promotion.PromotionType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PromotionResponse {
+    private Long id;
+    private String name;
+    private PromotionType type;
+    private BigDecimal percentOff;
+    private Integer buyQuantity;
+    private Integer freeQuantity;
+    private Long productId;
+    private Long categoryId;
+    private LocalDateTime startsAt;
+    private LocalDateTime endsAt;
+    private Boolean active;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+}
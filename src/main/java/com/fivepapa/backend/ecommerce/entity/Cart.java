@@ -3,12 +3,14 @@ package com.fivepapa.backend.ecommerce.entity;
 import com.fivepapa.backend.member.entity.User;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
-import lombok.Data;
+import lombok.Getter;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
 
 import java.time.LocalDateTime;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * 購物車實體
@@ -16,7 +18,8 @@ import java.util.List;
  */
 @Entity
 @Table(name = "cart")
-@Data
+@Getter
+@Setter
 @NoArgsConstructor
 @AllArgsConstructor
 public class Cart {
@@ -30,9 +33,12 @@ public class Cart {
     @JoinColumn(name = "user_id", nullable = false, unique = true)
     private User user;
 
-    // 購物車項目列表
-    @OneToMany(mappedBy = "cart", cascade = CascadeType.ALL, orphanRemoval = true)
-    private List<CartItem> cartItems = new ArrayList<>();
+    // 購物車項目（以商品 ID 為 key，新增、查詢、移除都是 O(1)）
+    // 項目由 CartService 明確刪除（含批次 DELETE），不使用 orphanRemoval 避免重複刪除
+    @OneToMany(mappedBy = "cart", cascade = CascadeType.ALL)
+    @MapKey(name = "productId")
+    @OrderBy("id")
+    private Map<Long, CartItem> cartItems = new LinkedHashMap<>();
 
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
@@ -52,10 +58,31 @@ public class Cart {
     }
 
     /**
-     * 新增購物車項目
+     * 標記購物車有異動（閒置到期以最後異動時間計算）
+     */
+    public void touch() {
+        updatedAt = LocalDateTime.now();
+    }
+
+    /**
+     * 購物車項目（依加入順序）
+     */
+    public Collection<CartItem> getCartItems() {
+        return cartItems.values();
+    }
+
+    /**
+     * 查詢購物車中某商品的項目，沒有則回傳 null
+     */
+    public CartItem findCartItem(Long productId) {
+        return cartItems.get(productId);
+    }
+
+    /**
+     * 新增購物車項目（項目必須已設定商品）
      */
     public void addCartItem(CartItem cartItem) {
-        cartItems.add(cartItem);
+        cartItems.put(cartItem.getProductId(), cartItem);
         cartItem.setCart(this);
     }
 
@@ -63,7 +90,29 @@ public class Cart {
      * 移除購物車項目
      */
     public void removeCartItem(CartItem cartItem) {
-        cartItems.remove(cartItem);
+        cartItems.remove(cartItem.getProductId(), cartItem);
         cartItem.setCart(null);
     }
+
+    /**
+     * 以 ID 判斷相等；尚未保存的實體只和自己相等
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Cart other)) {
+            return false;
+        }
+        return id != null && id.equals(other.getId());
+    }
+
+    /**
+     * 固定值，確保實體保存取得 ID 前後 hashCode 不變
+     */
+    @Override
+    public int hashCode() {
+        return Cart.class.hashCode();
+    }
 }
@@ -2,9 +2,12 @@ package com.fivepapa.backend.ecommerce.entity;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
-import lombok.Data;
+import lombok.Getter;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -15,7 +18,8 @@ import java.time.LocalDateTime;
  */
 @Entity
 @Table(name = "cart_item")
-@Data
+@Getter
+@Setter
 @NoArgsConstructor
 @AllArgsConstructor
 public class CartItem {
@@ -35,10 +39,30 @@ public class CartItem {
     @JoinColumn(name = "product_id", nullable = false)
     private Product product;
 
+    // 商品 ID（唯讀，作為購物車項目 Map 的 key，不需載入商品）
+    @Column(name = "product_id", insertable = false, updatable = false)
+    @Setter(AccessLevel.NONE)
+    private Long productId;
+
     // 數量
     @Column(nullable = false)
     private Integer quantity;
 
+    // 此項目目前保留的庫存數量（到期後由 StockReservationService 釋放並歸零）
+    @Column(name = "reserved_quantity", nullable = false)
+    @ColumnDefault("0")
+    private Integer reservedQuantity = 0;
+
+    // 庫存保留到期時間
+    @Column(name = "reservation_expires_at")
+    private LocalDateTime reservationExpiresAt;
+
+    // 樂觀鎖版本，避免到期釋放與用戶操作互相覆蓋保留數量
+    @Version
+    @Column(nullable = false)
+    @ColumnDefault("0")
+    private Long version;
+
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
 
@@ -56,6 +80,11 @@ public class CartItem {
         updatedAt = LocalDateTime.now();
     }
 
+    public void setProduct(Product product) {
+        this.product = product;
+        this.productId = product != null ? product.getId() : null;
+    }
+
     /**
      * 計算該項目的小計金額
      */
@@ -65,4 +94,26 @@ public class CartItem {
         }
         return product.getPrice().multiply(BigDecimal.valueOf(quantity));
     }
+
+    /**
+     * 以 ID 判斷相等；尚未保存的實體只和自己相等
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CartItem other)) {
+            return false;
+        }
+        return id != null && id.equals(other.getId());
+    }
+
+    /**
+     * 固定值，確保實體保存取得 ID 前後 hashCode 不變
+     */
+    @Override
+    public int hashCode() {
+        return CartItem.class.hashCode();
+    }
 }
@@ -3,6 +3,8 @@ package com.fivepapa.backend.ecommerce.entity;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -11,9 +13,12 @@ import java.util.List;
 /**
  * Category Entity
  * Supports two-level category hierarchy (parent-child relationship)
+ * Cached in the second-level cache (region: category), together with the children collection
  */
 @Entity
 @Table(name = "category")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "category")
 @Getter
 @Setter
 @NoArgsConstructor
@@ -39,6 +44,7 @@ public class Category {
 
     // 子分類列表 - 一個分類可以有多個子分類
     @OneToMany(mappedBy = "parent", cascade = CascadeType.ALL, orphanRemoval = true)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "categoryChildren")
     @Builder.Default
     @JsonIgnore  // 避免 JSON 序列化時的循環引用
     private List<Category> children = new ArrayList<>();
@@ -0,0 +1,26 @@
+package com.fivepapa.backend.ecommerce.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * 異動序號計數器（每種資料一列）
+ * 編號時以 SELECT ... FOR UPDATE 鎖定，同一時間只有一個交易在編號，序號的順序就是提交的順序
+ */
+@Entity
+@Table(name = "change_sequence")
+@Getter
+@Setter
+@NoArgsConstructor
+public class ChangeSequence {
+
+    @Id
+    @Column(length = 50)
+    private String name;
+
+    // 最後一個已使用的序號
+    @Column(name = "last_seq", nullable = false)
+    private Long lastSeq;
+}
@@ -0,0 +1,66 @@
+package com.fivepapa.backend.ecommerce.entity;
+
+import com.fivepapa.backend.member.entity.User;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.Immutable;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 訂單實體
+ * 由結帳時的購物車建立，保存當下的商品名稱、價格與折扣；建立後不再修改
+ */
+@Entity
+@Immutable
+@Table(name = "orders", indexes = @Index(name = "idx_orders_user_id", columnList = "user_id"))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class Order {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // 下單用戶
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false, updatable = false)
+    private User user;
+
+    @OneToMany(mappedBy = "order", cascade = CascadeType.PERSIST)
+    @OrderBy("id")
+    private List<OrderItem> items = new ArrayList<>();
+
+    @Column(name = "total_quantity", nullable = false, updatable = false)
+    private Integer totalQuantity;  // 總數量
+
+    @Column(name = "subtotal_amount", nullable = false, updatable = false, precision = 12, scale = 2)
+    private BigDecimal subtotalAmount;  // 折扣前金額
+
+    @Column(name = "discount_amount", nullable = false, updatable = false, precision = 12, scale = 2)
+    private BigDecimal discountAmount;  // 折扣總額
+
+    @Column(name = "total_amount", nullable = false, updatable = false, precision = 12, scale = 2)
+    private BigDecimal totalAmount;  // 應付金額
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+
+    public void addItem(OrderItem item) {
+        item.setOrder(this);
+        items.add(item);
+    }
+}
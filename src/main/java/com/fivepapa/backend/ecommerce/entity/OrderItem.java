@@ -0,0 +1,58 @@
+package com.fivepapa.backend.ecommerce.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.Immutable;
+
+import java.math.BigDecimal;
+
+/**
+ * 訂單項目實體
+ * 商品資訊以結帳當下的值保存（不關聯 Product），商品之後被修改或刪除都不影響訂單
+ */
+@Entity
+@Immutable
+@Table(name = "order_item")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderItem {
+
+    // 使用 sequence（每次取 50 個），讓同一訂單的項目能以 JDBC batch 一次寫入；IDENTITY 會讓 Hibernate 逐筆 INSERT
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "order_item_seq")
+    @SequenceGenerator(name = "order_item_seq", sequenceName = "order_item_seq", allocationSize = 50)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "order_id", nullable = false, updatable = false)
+    private Order order;
+
+    @Column(name = "product_id", nullable = false, updatable = false)
+    private Long productId;
+
+    @Column(name = "product_name", nullable = false, updatable = false, length = 200)
+    private String productName;
+
+    @Column(name = "unit_price", nullable = false, updatable = false, precision = 10, scale = 2)
+    private BigDecimal unitPrice;  // 結帳時的單價
+
+    @Column(nullable = false, updatable = false)
+    private Integer quantity;
+
+    @Column(nullable = false, updatable = false, precision = 12, scale = 2)
+    private BigDecimal subtotal;  // 單價 * 數量
+
+    @Column(nullable = false, updatable = false, precision = 12, scale = 2)
+    private BigDecimal discount;  // 折扣金額
+
+    @Column(name = "promotion_id", updatable = false)
+    private Long promotionId;
+
+    @Column(name = "promotion_name", updatable = false, length = 100)
+    private String promotionName;
+}
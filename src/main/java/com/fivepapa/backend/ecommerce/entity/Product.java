@@ -4,11 +4,16 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.DynamicUpdate;
+
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
+// 不放入 Hibernate 二級快取：購物車保留庫存以 JPQL 批次更新 product，每次都會清除整個 region 與相關的查詢快取
 @Entity
-@Table(name = "product")
+@Table(name = "product", indexes = @Index(name = "idx_product_change_seq", columnList = "change_seq"))
+@DynamicUpdate  // UPDATE 只包含有變動的欄位
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -30,6 +35,11 @@ public class Product {
     @Column(nullable = false)
     private Integer stock;  // 庫存數量
 
+    // 已被購物車保留的庫存（只由 StockReservationService 的條件式 UPDATE 維護，實體本身不寫入）
+    @Column(name = "reserved_stock", nullable = false, insertable = false, updatable = false)
+    @ColumnDefault("0")
+    private Integer reservedStock = 0;
+
     @Column(name = "image_url", length = 500)
     private String imageUrl;  // 商品圖片網址
 
@@ -44,6 +54,16 @@ public class Product {
     @Column(nullable = false)
     private Boolean active = true;  // 是否上架
 
+    // 樂觀鎖版本（PATCH 的 If-Match 比對；結帳扣庫存時也會遞增）
+    @Version
+    @Column(nullable = false)
+    @ColumnDefault("0")
+    private Long version = 0L;
+
+    // 異動序號（GET /api/products/changes 的 cursor）；異動時設為 null，由 ProductChangeSequencer 在提交後依序編號
+    @Column(name = "change_seq")
+    private Long changeSeq;
+
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;  // 建立時間
 
@@ -59,5 +79,14 @@ public class Product {
     @PreUpdate
     protected void onUpdate() {
         updatedAt = LocalDateTime.now();
+        changeSeq = null;
+    }
+
+    /**
+     * 可供其他購物車保留的庫存（總庫存扣除已保留數量）
+     */
+    public int getUnreservedStock() {
+        int reserved = reservedStock != null ? reservedStock : 0;
+        return Math.max(0, stock - reserved);
     }
 }
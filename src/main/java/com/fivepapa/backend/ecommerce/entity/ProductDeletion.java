@@ -0,0 +1,39 @@
+package com.fivepapa.backend.ecommerce.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * 商品刪除紀錄
+ * 讓 GET /api/products/changes 能回傳已刪除的商品（tombstone），與商品共用同一個異動序號
+ */
+@Entity
+@Table(name = "product_deletion", indexes = @Index(name = "idx_product_deletion_change_seq", columnList = "change_seq"))
+@Getter
+@Setter
+@NoArgsConstructor
+public class ProductDeletion {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "product_id", nullable = false, updatable = false)
+    private Long productId;
+
+    // 由 ProductChangeSequencer 在提交後編號
+    @Column(name = "change_seq")
+    private Long changeSeq;
+
+    @Column(name = "deleted_at", nullable = false, updatable = false)
+    private LocalDateTime deletedAt;
+
+    public ProductDeletion(Long productId) {
+        this.productId = productId;
+        this.deletedAt = LocalDateTime.now();
+    }
+}
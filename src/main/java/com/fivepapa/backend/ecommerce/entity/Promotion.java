@@ -0,0 +1,80 @@
+package com.fivepapa.backend.ecommerce.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * 促銷規則
+ * 適用範圍：指定商品（productId）、指定分類與其子分類（categoryId），兩者皆未設定時適用全部商品
+ * 同一購物車項目符合多個促銷時只套用折扣金額最高的一個（不疊加）
+ */
+@Entity
+@Table(name = "promotion")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class Promotion {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 100)
+    private String name;  // 促銷名稱（顯示在購物車項目上）
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private PromotionType type;
+
+    @Column(name = "percent_off", precision = 5, scale = 2)
+    private BigDecimal percentOff;  // PERCENTAGE：折扣百分比（例如 15.5 代表打 84.5 折）
+
+    @Column(name = "buy_quantity")
+    private Integer buyQuantity;  // BUY_X_GET_Y：購買數量
+
+    @Column(name = "free_quantity")
+    private Integer freeQuantity;  // BUY_X_GET_Y：贈送數量
+
+    @Column(name = "product_id")
+    private Long productId;  // 適用商品（可選）
+
+    @Column(name = "category_id")
+    private Long categoryId;  // 適用分類（可選，包含子分類）
+
+    @Column(name = "starts_at")
+    private LocalDateTime startsAt;  // 開始時間（可選）
+
+    @Column(name = "ends_at")
+    private LocalDateTime endsAt;  // 結束時間（可選）
+
+    @Column(nullable = false)
+    @Builder.Default
+    private Boolean active = true;  // 是否啟用
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        updatedAt = LocalDateTime.now();
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+
+    public enum PromotionType {
+        PERCENTAGE,   // 百分比折扣
+        BUY_X_GET_Y   // 買 X 送 Y（同一商品，每 X+Y 件中 Y 件免費）
+    }
+}
@@ -0,0 +1,48 @@
+package com.fivepapa.backend.ecommerce.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * 熱門商品的庫存租借紀錄（每個執行個體、每個商品一列）
+ * quantity 為該執行個體計數器中尚未使用的租借量（記在 reserved_stock 中），由心跳定期同步；
+ * 心跳逾時的執行個體視為已終止，其他執行個體把這個數量歸還 reserved_stock 並刪除紀錄
+ */
+@Entity
+@Table(name = "stock_lease",
+        uniqueConstraints = @UniqueConstraint(name = "uk_stock_lease_instance_product", columnNames = {"instance_id", "product_id"}),
+        indexes = @Index(name = "idx_stock_lease_heartbeat", columnList = "heartbeat_at"))
+@Getter
+@Setter
+@NoArgsConstructor
+public class StockLease {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "instance_id", nullable = false, length = 36, updatable = false)
+    private String instanceId;
+
+    @Column(name = "product_id", nullable = false, updatable = false)
+    private Long productId;
+
+    // 尚未使用的租借量
+    @Column(nullable = false)
+    private Integer quantity;
+
+    // 最後一次心跳時間
+    @Column(name = "heartbeat_at", nullable = false)
+    private LocalDateTime heartbeatAt;
+
+    public StockLease(String instanceId, Long productId) {
+        this.instanceId = instanceId;
+        this.productId = productId;
+        this.quantity = 0;
+        this.heartbeatAt = LocalDateTime.now();
+    }
+}
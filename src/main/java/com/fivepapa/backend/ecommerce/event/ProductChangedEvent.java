@@ -0,0 +1,26 @@
+package com.fivepapa.backend.ecommerce.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 商品異動事件（價格、庫存、上下架等）
+ * 在商品交易內發布，監聽者以 @TransactionalEventListener 在提交後清除相關快取
+ */
+@Getter
+@AllArgsConstructor
+public class ProductChangedEvent {
+
+    private final Collection<Long> productIds;
+
+    public static ProductChangedEvent of(Long productId) {
+        return new ProductChangedEvent(List.of(productId));
+    }
+
+    public static ProductChangedEvent of(Collection<Long> productIds) {
+        return new ProductChangedEvent(List.copyOf(productIds));
+    }
+}
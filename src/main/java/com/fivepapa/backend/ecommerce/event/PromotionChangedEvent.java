@@ -0,0 +1,8 @@
+package com.fivepapa.backend.ecommerce.event;
+
+/**
+ * 促銷規則或其適用範圍（分類階層）異動事件
+ * 在交易內發布，監聽者以 @TransactionalEventListener 在提交後重新編譯定價計畫並清除購物車快取
+ */
+public class PromotionChangedEvent {
+}
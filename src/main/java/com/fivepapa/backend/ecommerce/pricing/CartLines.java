@@ -0,0 +1,80 @@
+package com.fivepapa.backend.ecommerce.pricing;
+
+import java.util.Arrays;
+
+/**
+ * 定價用的購物車項目（以平行的基本型別陣列保存，可重複使用）
+ * 輸入：商品 ID、分類 ID、單價（分）、數量；輸出：小計、折扣（分）與套用的促銷
+ */
+public final class CartLines {
+
+    static final int NO_PROMOTION = -1;
+
+    long[] productIds;
+    long[] categoryIds;
+    long[] unitPrices;
+    int[] quantities;
+    long[] subtotals;
+    long[] discounts;
+    int[] promotions;
+    private int size;
+
+    public CartLines(int capacity) {
+        int length = Math.max(1, capacity);
+        productIds = new long[length];
+        categoryIds = new long[length];
+        unitPrices = new long[length];
+        quantities = new int[length];
+        subtotals = new long[length];
+        discounts = new long[length];
+        promotions = new int[length];
+    }
+
+    /**
+     * @param categoryId 商品分類 ID，沒有分類時傳 0
+     */
+    public void add(long productId, long categoryId, long unitPrice, int quantity) {
+        if (size == productIds.length) {
+            grow();
+        }
+        productIds[size] = productId;
+        categoryIds[size] = categoryId;
+        unitPrices[size] = unitPrice;
+        quantities[size] = quantity;
+        size++;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long subtotal(int line) {
+        return subtotals[line];
+    }
+
+    public long discount(int line) {
+        return discounts[line];
+    }
+
+    /**
+     * 套用的促銷在計畫中的索引，沒有則回傳 -1
+     */
+    public int promotion(int line) {
+        return promotions[line];
+    }
+
+    private void grow() {
+        int length = productIds.length << 1;
+        productIds = Arrays.copyOf(productIds, length);
+        categoryIds = Arrays.copyOf(categoryIds, length);
+        unitPrices = Arrays.copyOf(unitPrices, length);
+        quantities = Arrays.copyOf(quantities, length);
+        subtotals = Arrays.copyOf(subtotals, length);
+        discounts = Arrays.copyOf(discounts, length);
+        promotions = Arrays.copyOf(promotions, length);
+    }
+}
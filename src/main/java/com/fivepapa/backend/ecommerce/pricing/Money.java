@@ -0,0 +1,25 @@
+package com.fivepapa.backend.ecommerce.pricing;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * 金額與最小單位（分）之間的轉換
+ * 定價計算全程使用 long 最小單位，只在輸入與輸出時轉換 BigDecimal
+ */
+public final class Money {
+
+    /** 商品價格的小數位數（與 product.price 欄位的 scale 一致） */
+    public static final int SCALE = 2;
+
+    private Money() {
+    }
+
+    public static long toMinor(BigDecimal amount) {
+        return amount.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    public static BigDecimal fromMinor(long minor) {
+        return BigDecimal.valueOf(minor, SCALE);
+    }
+}
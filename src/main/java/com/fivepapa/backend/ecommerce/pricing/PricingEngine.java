@@ -0,0 +1,170 @@
+package com.fivepapa.backend.ecommerce.pricing;
+
+import com.fivepapa.backend.common.cache.shared.SharedCache;
+import com.fivepapa.backend.ecommerce.dto.CartItemResponse;
+import com.fivepapa.backend.ecommerce.dto.CartResponse;
+import com.fivepapa.backend.ecommerce.entity.Promotion;
+import com.fivepapa.backend.ecommerce.event.PromotionChangedEvent;
+import com.fivepapa.backend.ecommerce.repository.CategoryRepository;
+import com.fivepapa.backend.ecommerce.repository.CategoryRepository.CategoryParent;
+import com.fivepapa.backend.ecommerce.repository.PromotionRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * 購物車定價引擎
+ * 促銷規則異動時才重新編譯定價計畫（PricingPlan），每次定價只在編譯好的計畫上做 long 運算
+ * 金額以 Money.SCALE 位小數的最小單位計算，結果轉回 BigDecimal 放入 CartResponse
+ * 異動時也透過 SharedCache 通知其他執行個體丟棄它們的計畫
+ * 定價用的 CartLines 由每個執行緒重複使用
+ */
+@Slf4j
+@Component
+public class PricingEngine {
+
+    private static final String CHANNEL = "pricingPlans";
+    // 超過這個項目數的購物車另外配置，避免每個執行緒長期保留過大的陣列
+    private static final int MAX_REUSED_LINES = 256;
+
+    // 每個執行緒重複使用同一組陣列，定價時不需要配置
+    private final ThreadLocal<CartLines> reusableLines = ThreadLocal.withInitial(() -> new CartLines(16));
+
+    private final PromotionRepository promotionRepository;
+    private final CategoryRepository categoryRepository;
+    private final SharedCache sharedCache;
+
+    private final AtomicLong version = new AtomicLong();
+    private volatile PricingPlan plan;
+
+    public PricingEngine(PromotionRepository promotionRepository,
+                         CategoryRepository categoryRepository,
+                         SharedCache sharedCache) {
+        this.promotionRepository = promotionRepository;
+        this.categoryRepository = categoryRepository;
+        this.sharedCache = sharedCache;
+        sharedCache.onInvalidation(CHANNEL, new SharedCache.InvalidationListener() {
+            @Override
+            public void invalidate(List<String> keys) {
+                discardPlan();
+            }
+
+            @Override
+            public void invalidateAll() {
+                discardPlan();
+            }
+        });
+    }
+
+    /**
+     * 目前的定價計畫（規則異動後第一次使用時重新編譯）
+     */
+    public PricingPlan currentPlan() {
+        PricingPlan current = plan;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (plan == null) {
+                // 編譯期間規則又被修改時不保留結果，下次使用再重新編譯
+                long compiling = version.get();
+                PricingPlan compiled = compile();
+                if (version.get() != compiling) {
+                    return compiled;
+                }
+                plan = compiled;
+            }
+            return plan;
+        }
+    }
+
+    /**
+     * 促銷或分類階層異動提交後，丟棄目前的計畫（先於購物車快取清除執行）
+     */
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener
+    public void onPromotionChanged(PromotionChangedEvent event) {
+        discardPlan();
+        sharedCache.publishInvalidateAll(CHANNEL);
+    }
+
+    private void discardPlan() {
+        version.incrementAndGet();
+        plan = null;
+    }
+
+    /**
+     * 計算購物車項目的小計、折扣與總額
+     * 傳入的項目需要有商品 ID、分類 ID、單價與數量，回傳新的 CartResponse
+     */
+    public CartResponse price(CartResponse cart) {
+        List<CartItemResponse> items = cart.getItems();
+        CartLines lines = items.size() <= MAX_REUSED_LINES ? reusableLines.get() : new CartLines(items.size());
+        lines.clear();
+        for (CartItemResponse item : items) {
+            lines.add(item.getProductId(),
+                    item.getCategoryId() != null ? item.getCategoryId() : 0,
+                    Money.toMinor(item.getProductPrice()),
+                    item.getQuantity());
+        }
+
+        PricingPlan current = currentPlan();
+        long discount = current.price(lines, System.currentTimeMillis());
+
+        List<CartItemResponse> priced = new ArrayList<>(items.size());
+        long subtotal = 0;
+        int totalQuantity = 0;
+        for (int i = 0; i < items.size(); i++) {
+            int promotion = lines.promotion(i);
+            priced.add(items.get(i).toBuilder()
+                    .subtotal(Money.fromMinor(lines.subtotal(i)))
+                    .discount(Money.fromMinor(lines.discount(i)))
+                    .promotionId(promotion >= 0 ? current.promotionId(promotion) : null)
+                    .promotionName(promotion >= 0 ? current.promotionName(promotion) : null)
+                    .build());
+            subtotal += lines.subtotal(i);
+            totalQuantity += items.get(i).getQuantity();
+        }
+
+        return cart.toBuilder()
+                .items(priced)
+                .totalItems(priced.size())
+                .totalQuantity(totalQuantity)
+                .subtotalAmount(Money.fromMinor(subtotal))
+                .discountAmount(Money.fromMinor(discount))
+                .totalAmount(Money.fromMinor(subtotal - discount))
+                .build();
+    }
+
+    /**
+     * nowMillis 之後促銷規則第一次開始或結束的時間，在這之前的定價結果可以快取；沒有則回傳 Long.MAX_VALUE
+     */
+    public long nextPriceChangeAfter(long nowMillis) {
+        return currentPlan().nextBoundaryAfter(nowMillis);
+    }
+
+    private PricingPlan compile() {
+        List<Promotion> promotions = promotionRepository.findByActiveTrue();
+        List<Long> categoryIds = promotions.stream()
+                .map(Promotion::getCategoryId)
+                .filter(id -> id != null)
+                .distinct()
+                .collect(Collectors.toList());
+        Map<Long, List<Long>> childCategories = categoryIds.isEmpty() ? Map.of()
+                : categoryRepository.findChildIdsByParentIdIn(categoryIds).stream()
+                        .collect(Collectors.groupingBy(CategoryParent::getParentId,
+                                Collectors.mapping(CategoryParent::getId, Collectors.toList())));
+
+        PricingPlan compiled = PricingPlan.compile(promotions, childCategories);
+        log.info("Compiled pricing plan with {} active promotions", compiled.size());
+        return compiled;
+    }
+}
@@ -0,0 +1,252 @@
+package com.fivepapa.backend.ecommerce.pricing;
+
+import com.fivepapa.backend.ecommerce.entity.Promotion;
+import com.fivepapa.backend.ecommerce.entity.Promotion.PromotionType;
+
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.LongStream;
+
+/**
+ * 編譯後的促銷計畫（不可變，可多執行緒共用）
+ * 規則依適用範圍分組：全站規則為陣列，商品與分類規則以排序後的 ID 陣列做二分搜尋，
+ * 定價時每個項目只檢查可能適用的規則，全程使用 long 最小單位運算，不建立物件
+ * 規則的開始與結束時間另外排序保存，快取定價結果的地方以 nextBoundaryAfter 決定結果的有效期限
+ */
+public final class PricingPlan {
+
+    public static final PricingPlan EMPTY = compile(List.of(), Map.of());
+
+    private final Rule[] rules;
+    private final Rule[] globalRules;
+    private final long[] productKeys;
+    private final Rule[][] productRules;
+    private final long[] categoryKeys;
+    private final Rule[][] categoryRules;
+    // 所有規則的開始與結束時間（排序、不重複）
+    private final long[] boundaries;
+
+    private PricingPlan(Rule[] rules, Rule[] globalRules,
+                        long[] productKeys, Rule[][] productRules,
+                        long[] categoryKeys, Rule[][] categoryRules) {
+        this.rules = rules;
+        this.globalRules = globalRules;
+        this.productKeys = productKeys;
+        this.productRules = productRules;
+        this.categoryKeys = categoryKeys;
+        this.categoryRules = categoryRules;
+        this.boundaries = Arrays.stream(rules)
+                .flatMapToLong(rule -> LongStream.of(rule.startsAt, rule.endsAt))
+                .filter(time -> time != Long.MIN_VALUE && time != Long.MAX_VALUE)
+                .sorted()
+                .distinct()
+                .toArray();
+    }
+
+    /**
+     * 編譯促銷規則
+     *
+     * @param promotions      啟用中的促銷
+     * @param childCategories 分類 ID -> 子分類 ID，分類促銷同時適用於子分類
+     */
+    public static PricingPlan compile(Collection<Promotion> promotions, Map<Long, List<Long>> childCategories) {
+        List<Rule> all = new ArrayList<>();
+        List<Rule> global = new ArrayList<>();
+        TreeMap<Long, List<Rule>> byProduct = new TreeMap<>();
+        TreeMap<Long, List<Rule>> byCategory = new TreeMap<>();
+
+        for (Promotion promotion : promotions) {
+            Rule rule = new Rule(all.size(), promotion);
+            all.add(rule);
+            if (promotion.getProductId() != null) {
+                byProduct.computeIfAbsent(promotion.getProductId(), id -> new ArrayList<>()).add(rule);
+            } else if (promotion.getCategoryId() != null) {
+                byCategory.computeIfAbsent(promotion.getCategoryId(), id -> new ArrayList<>()).add(rule);
+                for (Long child : childCategories.getOrDefault(promotion.getCategoryId(), List.of())) {
+                    byCategory.computeIfAbsent(child, id -> new ArrayList<>()).add(rule);
+                }
+            } else {
+                global.add(rule);
+            }
+        }
+
+        return new PricingPlan(
+                all.toArray(new Rule[0]),
+                sorted(global),
+                keys(byProduct), values(byProduct),
+                keys(byCategory), values(byCategory));
+    }
+
+    /**
+     * 計算所有項目的小計與折扣，結果寫回 lines
+     *
+     * @return 折扣總額（分）
+     */
+    public long price(CartLines lines, long nowMillis) {
+        long totalDiscount = 0;
+        for (int i = 0, size = lines.size(); i < size; i++) {
+            long unitPrice = lines.unitPrices[i];
+            int quantity = lines.quantities[i];
+            long subtotal = Math.multiplyExact(unitPrice, quantity);
+
+            long best = 0;
+            int bestRule = CartLines.NO_PROMOTION;
+            Rule rule = best(globalRules, unitPrice, quantity, subtotal, nowMillis);
+            if (rule != null) {
+                best = rule.discount(unitPrice, quantity, subtotal);
+                bestRule = rule.index;
+            }
+            int index = Arrays.binarySearch(productKeys, lines.productIds[i]);
+            if (index >= 0 && (rule = best(productRules[index], unitPrice, quantity, subtotal, nowMillis)) != null) {
+                long discount = rule.discount(unitPrice, quantity, subtotal);
+                if (better(discount, rule.index, best, bestRule)) {
+                    best = discount;
+                    bestRule = rule.index;
+                }
+            }
+            index = lines.categoryIds[i] != 0 ? Arrays.binarySearch(categoryKeys, lines.categoryIds[i]) : -1;
+            if (index >= 0 && (rule = best(categoryRules[index], unitPrice, quantity, subtotal, nowMillis)) != null) {
+                long discount = rule.discount(unitPrice, quantity, subtotal);
+                if (better(discount, rule.index, best, bestRule)) {
+                    best = discount;
+                    bestRule = rule.index;
+                }
+            }
+
+            lines.subtotals[i] = subtotal;
+            lines.discounts[i] = best;
+            lines.promotions[i] = best > 0 ? bestRule : CartLines.NO_PROMOTION;
+            totalDiscount += best;
+        }
+        return totalDiscount;
+    }
+
+    /**
+     * nowMillis 之後第一個規則開始或結束的時間（之前的定價結果到這個時間為止都不變），沒有則回傳 Long.MAX_VALUE
+     */
+    public long nextBoundaryAfter(long nowMillis) {
+        int index = Arrays.binarySearch(boundaries, nowMillis);
+        index = index >= 0 ? index + 1 : -index - 1;
+        return index < boundaries.length ? boundaries[index] : Long.MAX_VALUE;
+    }
+
+    public int size() {
+        return rules.length;
+    }
+
+    public Long promotionId(int index) {
+        return rules[index].id;
+    }
+
+    public String promotionName(int index) {
+        return rules[index].name;
+    }
+
+    private static Rule best(Rule[] candidates, long unitPrice, int quantity, long subtotal, long nowMillis) {
+        Rule best = null;
+        long bestDiscount = 0;
+        boolean percentageChecked = false;
+        for (Rule rule : candidates) {
+            // 百分比規則已依折扣由高到低排序，第一個有效的就是其中最好的
+            if ((percentageChecked && rule.type == PromotionType.PERCENTAGE) || !rule.isActiveAt(nowMillis)) {
+                continue;
+            }
+            percentageChecked |= rule.type == PromotionType.PERCENTAGE;
+            long discount = rule.discount(unitPrice, quantity, subtotal);
+            if (best == null || better(discount, rule.index, bestDiscount, best.index)) {
+                best = rule;
+                bestDiscount = discount;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 折扣較高者優先，相同時取較早建立的規則，讓結果與規則順序無關
+     */
+    private static boolean better(long discount, int rule, long currentDiscount, int currentRule) {
+        return discount > currentDiscount
+                || (discount == currentDiscount && discount > 0 && (currentRule < 0 || rule < currentRule));
+    }
+
+    private static long[] keys(TreeMap<Long, List<Rule>> rules) {
+        return rules.keySet().stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private static Rule[][] values(TreeMap<Long, List<Rule>> rules) {
+        return rules.values().stream().map(PricingPlan::sorted).toArray(Rule[][]::new);
+    }
+
+    /**
+     * 百分比規則在前（折扣高者優先，相同時依建立順序），其他規則依建立順序
+     */
+    private static Rule[] sorted(List<Rule> rules) {
+        return rules.stream()
+                .sorted(Comparator.comparing((Rule rule) -> rule.type != PromotionType.PERCENTAGE)
+                        .thenComparing(Comparator.comparingLong((Rule rule) -> rule.basisPoints).reversed())
+                        .thenComparingInt(rule -> rule.index))
+                .toArray(Rule[]::new);
+    }
+
+    /**
+     * 編譯後的單一規則
+     */
+    private static final class Rule {
+        private final int index;
+        private final Long id;
+        private final String name;
+        private final PromotionType type;
+        private final long basisPoints;  // PERCENTAGE：萬分比
+        private final int buyQuantity;
+        private final int groupSize;     // BUY_X_GET_Y：X + Y
+        private final int freeQuantity;
+        private final long startsAt;
+        private final long endsAt;
+
+        private Rule(int index, Promotion promotion) {
+            this.index = index;
+            this.id = promotion.getId();
+            this.name = promotion.getName();
+            this.type = promotion.getType();
+            this.basisPoints = promotion.getPercentOff() != null
+                    ? promotion.getPercentOff().movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact()
+                    : 0;
+            this.buyQuantity = promotion.getBuyQuantity() != null ? promotion.getBuyQuantity() : 0;
+            this.freeQuantity = promotion.getFreeQuantity() != null ? promotion.getFreeQuantity() : 0;
+            this.groupSize = buyQuantity + freeQuantity;
+            this.startsAt = promotion.getStartsAt() != null ? toEpochMillis(promotion.getStartsAt()) : Long.MIN_VALUE;
+            this.endsAt = promotion.getEndsAt() != null ? toEpochMillis(promotion.getEndsAt()) : Long.MAX_VALUE;
+        }
+
+        private boolean isActiveAt(long nowMillis) {
+            return nowMillis >= startsAt && nowMillis < endsAt;
+        }
+
+        private long discount(long unitPrice, int quantity, long subtotal) {
+            switch (type) {
+                case PERCENTAGE:
+                    // 拆成商與餘數計算，避免 subtotal * basisPoints 溢位；四捨五入到分
+                    return subtotal / 10_000 * basisPoints + (subtotal % 10_000 * basisPoints + 5_000) / 10_000;
+                case BUY_X_GET_Y:
+                    if (groupSize <= 0 || buyQuantity <= 0) {
+                        return 0;
+                    }
+                    return Math.multiplyExact((long) (quantity / groupSize) * freeQuantity, unitPrice);
+                default:
+                    return 0;
+            }
+        }
+
+        private static long toEpochMillis(LocalDateTime time) {
+            return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        }
+    }
+}
@@ -1,9 +1,17 @@
 package com.fivepapa.backend.ecommerce.repository;
 
 import com.fivepapa.backend.ecommerce.entity.CartItem;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -16,7 +24,67 @@ public interface CartItemRepository extends JpaRepository<CartItem, Long> {
     Optional<CartItem> findByCartIdAndProductId(Long cartId, Long productId);
 
     /**
-     * 刪除購物車中的所有項目
+     * 刪除購物車中的所有項目（單一 DELETE，不逐筆載入）
+     * 執行後清空持久化上下文，避免留下已刪除的項目
      */
-    void deleteByCartId(Long cartId);
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("DELETE FROM CartItem ci WHERE ci.cart.id = :cartId")
+    int deleteByCartId(@Param("cartId") Long cartId);
+
+    /**
+     * 刪除多個購物車的所有項目（清除閒置購物車時使用）
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("DELETE FROM CartItem ci WHERE ci.cart.id IN :cartIds")
+    int deleteByCartIdIn(@Param("cartIds") Collection<Long> cartIds);
+
+    /**
+     * 一次刪除多個項目（呼叫端負責將這些項目移出持久化上下文）
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("DELETE FROM CartItem ci WHERE ci.id IN :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * 鎖定保留已到期的購物車項目（到期計時器觸發時使用）
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT ci FROM CartItem ci " +
+           "WHERE ci.id IN :ids AND ci.reservedQuantity > 0 AND ci.reservationExpiresAt <= :now")
+    List<CartItem> lockExpiredReservations(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
+
+    /**
+     * 鎖定購物車的所有項目（結帳時使用，讀到的保留數量不會再被到期釋放改變）
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT ci FROM CartItem ci WHERE ci.cart.id = :cartId ORDER BY ci.productId")
+    List<CartItem> lockByCartId(@Param("cartId") Long cartId);
+
+    /**
+     * 鎖定指定購物車中仍有保留的項目（購物車閒置到期時使用）
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT ci FROM CartItem ci WHERE ci.cart.id IN :cartIds AND ci.reservedQuantity > 0")
+    List<CartItem> lockReservationsByCartIds(@Param("cartIds") Collection<Long> cartIds);
+
+    /**
+     * 一次將多個項目的保留歸零
+     */
+    @Modifying
+    @Query("UPDATE CartItem ci SET ci.reservedQuantity = 0, ci.version = ci.version + 1 WHERE ci.id IN :ids")
+    int clearReservations(@Param("ids") Collection<Long> ids);
+
+    /**
+     * 查詢所有仍有保留的項目及其到期時間（重啟時重建計時器）
+     */
+    @Query("SELECT ci.id AS id, ci.reservationExpiresAt AS occurredAt FROM CartItem ci WHERE ci.reservedQuantity > 0")
+    List<IdTimestamp> findReservationDeadlines();
+
+    /**
+     * ID 與時間（保留到期時間或購物車最後異動時間）
+     */
+    interface IdTimestamp {
+        Long getId();
+        LocalDateTime getOccurredAt();
+    }
 }
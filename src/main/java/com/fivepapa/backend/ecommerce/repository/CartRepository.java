@@ -1,9 +1,19 @@
 package com.fivepapa.backend.ecommerce.repository;
 
 import com.fivepapa.backend.ecommerce.entity.Cart;
+import com.fivepapa.backend.ecommerce.repository.CartItemRepository.IdTimestamp;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -14,8 +24,55 @@ public interface CartRepository extends JpaRepository<Cart, Long> {
      */
     Optional<Cart> findByUserId(Long userId);
 
+    /**
+     * 根據用戶 ID 查詢並鎖定購物車（結帳時使用，避免同一購物車重複結帳）
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM Cart c WHERE c.user.id = :userId")
+    Optional<Cart> findByUserIdForUpdate(@Param("userId") Long userId);
+
     /**
      * 檢查用戶是否已有購物車
      */
     boolean existsByUserId(Long userId);
+
+    /**
+     * 查詢購物車所屬的用戶 ID
+     */
+    @Query("SELECT c.user.id FROM Cart c WHERE c.id IN :ids")
+    List<Long> findUserIdsByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * 查詢購物車最後異動時間（購物車 ID 與最後異動時間）
+     */
+    @Query("SELECT c.id AS id, c.updatedAt AS occurredAt FROM Cart c WHERE c.id IN :ids")
+    List<IdTimestamp> findLastActivityByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * 查詢仍有庫存保留的購物車及其最後異動時間（重啟時重建閒置計時器）
+     */
+    @Query("SELECT DISTINCT c.id AS id, c.updatedAt AS occurredAt FROM Cart c JOIN c.cartItems ci " +
+           "WHERE ci.reservedQuantity > 0")
+    List<IdTimestamp> findLastActivityWithReservations();
+
+    /**
+     * 以 keyset 分頁查詢閒置超過期限的購物車 ID（ID 大於 afterId，依 ID 排序）
+     */
+    @Query("SELECT c.id FROM Cart c WHERE c.id > :afterId AND c.updatedAt < :cutoff ORDER BY c.id")
+    List<Long> findIdleIds(@Param("afterId") Long afterId, @Param("cutoff") LocalDateTime cutoff, Limit limit);
+
+    /**
+     * 鎖定仍然閒置且沒有庫存保留的購物車（刪除前再次確認，期間被使用的購物車不會被刪除）
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM Cart c WHERE c.id IN :ids AND c.updatedAt < :cutoff " +
+           "AND NOT EXISTS (SELECT 1 FROM CartItem ci WHERE ci.cart = c AND ci.reservedQuantity > 0) ORDER BY c.id")
+    List<Cart> lockIdleByIdIn(@Param("ids") Collection<Long> ids, @Param("cutoff") LocalDateTime cutoff);
+
+    /**
+     * 一次刪除多個購物車（項目需先刪除）
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("DELETE FROM Cart c WHERE c.id IN :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
 }
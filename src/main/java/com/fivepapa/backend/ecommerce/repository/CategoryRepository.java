@@ -1,16 +1,27 @@
 package com.fivepapa.backend.ecommerce.repository;
 
 import com.fivepapa.backend.ecommerce.entity.Category;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface CategoryRepository extends JpaRepository<Category, Long> {
 
-    // 查詢所有頂層分類（沒有父分類的）
+    // 查詢所有頂層分類（沒有父分類的）（查詢快取；任何分類寫入都會讓結果失效）
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = "topLevelCategoriesQuery")
+    })
     List<Category> findByParentIsNull();
 
     // 查詢特定父分類下的所有子分類
@@ -30,4 +41,40 @@ public interface CategoryRepository extends JpaRepository<Category, Long> {
 
     // 檢查名稱是否已存在（排除特定 ID）
     boolean existsByNameAndIdNot(String name, Long id);
+
+    // 查詢指定父分類下的子分類 ID
+    @Query("SELECT c.id AS id, c.parent.id AS parentId FROM Category c WHERE c.parent.id IN :parentIds")
+    List<CategoryParent> findChildIdsByParentIdIn(@Param("parentIds") Collection<Long> parentIds);
+
+    // 查詢所有分類的 ID 與名稱
+    @Query("SELECT c.id AS id, c.name AS name FROM Category c")
+    List<CategoryName> findAllNames();
+
+    // 分類數量與最後更新時間（判斷分類是否有異動）
+    @Query("SELECT COUNT(c) AS count, MAX(c.updatedAt) AS lastUpdatedAt FROM Category c")
+    CategoryStats findStats();
+
+    /**
+     * 分類 ID 與父分類 ID
+     */
+    interface CategoryParent {
+        Long getId();
+        Long getParentId();
+    }
+
+    /**
+     * 分類 ID 與名稱
+     */
+    interface CategoryName {
+        Long getId();
+        String getName();
+    }
+
+    /**
+     * 分類數量與最後更新時間
+     */
+    interface CategoryStats {
+        long getCount();
+        LocalDateTime getLastUpdatedAt();
+    }
 }
@@ -0,0 +1,25 @@
+package com.fivepapa.backend.ecommerce.repository;
+
+import com.fivepapa.backend.ecommerce.entity.Order;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface OrderRepository extends JpaRepository<Order, Long> {
+
+    /**
+     * 查詢用戶的所有訂單（含項目，新的在前）
+     */
+    @EntityGraph(attributePaths = "items")
+    List<Order> findByUserIdOrderByIdDesc(Long userId);
+
+    /**
+     * 查詢用戶的單一訂單（含項目）
+     */
+    @EntityGraph(attributePaths = "items")
+    Optional<Order> findByIdAndUserId(Long id, Long userId);
+}
@@ -0,0 +1,18 @@
+package com.fivepapa.backend.ecommerce.repository;
+
+import com.fivepapa.backend.ecommerce.entity.ProductDeletion;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ProductDeletionRepository extends JpaRepository<ProductDeletion, Long> {
+
+    // 查詢異動序號在 (since, until] 之間的刪除紀錄，依序號排序
+    @Query("SELECT d FROM ProductDeletion d WHERE d.changeSeq > :since AND d.changeSeq <= :until ORDER BY d.changeSeq")
+    List<ProductDeletion> findChangedBetween(@Param("since") long since, @Param("until") long until, Limit limit);
+}
@@ -1,11 +1,21 @@
 package com.fivepapa.backend.ecommerce.repository;
 
 import com.fivepapa.backend.ecommerce.entity.Product;
+import org.springframework.data.domain.Limit;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface ProductRepository extends JpaRepository<Product, Long> {
@@ -15,9 +25,72 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
     // 根據名稱搜尋商品（模糊查詢）
     List<Product> findByNameContaining(String name);
 
+    // 查詢單一商品（同時載入分類，不需要交易即可轉為回應）
+    @Query("SELECT p FROM Product p LEFT JOIN FETCH p.category WHERE p.id = :id")
+    Optional<Product> findWithCategoryById(@Param("id") Long id);
+
     // 查詢所有上架商品
     List<Product> findByActiveTrue();
 
     // 查詢價格區間的商品
     List<Product> findByPriceBetween(BigDecimal minPrice, BigDecimal maxPrice);
-}
\ No newline at end of file
+
+    // 條件式保留庫存：只有在可用庫存足夠時才成功（回傳 1），不需先鎖定讀取
+    @Modifying
+    @Query("UPDATE Product p SET p.reservedStock = p.reservedStock + :quantity " +
+           "WHERE p.id = :id AND p.active = true AND p.stock - p.reservedStock >= :quantity")
+    int reserveStock(@Param("id") Long id, @Param("quantity") int quantity);
+
+    // 釋放已保留的庫存（不會低於 0）
+    @Modifying
+    @Query("UPDATE Product p SET p.reservedStock = " +
+           "CASE WHEN p.reservedStock >= :quantity THEN p.reservedStock - :quantity ELSE 0 END " +
+           "WHERE p.id = :id")
+    int releaseStock(@Param("id") Long id, @Param("quantity") int quantity);
+
+    // 一次釋放多個購物車項目保留的庫存（依項目的保留數量，每個商品扣回一次）
+    // 查詢空間包含 cart_item：執行前先寫入持久化上下文中尚未送出的保留數量（例如剛套用的 write-behind 變更）
+    @Modifying
+    @Query(value = "UPDATE product SET reserved_stock = GREATEST(reserved_stock - " +
+                   "(SELECT COALESCE(SUM(ci.reserved_quantity), 0) FROM cart_item ci " +
+                   "WHERE ci.product_id = product.id AND ci.id IN (:cartItemIds)), 0) " +
+                   "WHERE id IN (SELECT ci.product_id FROM cart_item ci WHERE ci.id IN (:cartItemIds))",
+           nativeQuery = true)
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "product"),
+            @QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "cart_item")
+    })
+    int releaseStockOfCartItems(@Param("cartItemIds") Collection<Long> cartItemIds);
+
+    // 查詢目前尚未被保留的庫存
+    @Query("SELECT p.stock - p.reservedStock FROM Product p WHERE p.id = :id")
+    Integer findUnreservedStock(@Param("id") Long id);
+
+    // 查詢異動序號在 (since, until] 之間的商品（含分類），依序號排序
+    @Query("SELECT p FROM Product p LEFT JOIN FETCH p.category " +
+           "WHERE p.changeSeq > :since AND p.changeSeq <= :until ORDER BY p.changeSeq")
+    List<Product> findChangedBetween(@Param("since") long since, @Param("until") long until, Limit limit);
+
+    // 把分類下所有商品標記為已異動（分類改名時，商品回應中的分類名稱也改變了）
+    // 遞增版本並更新 updatedAt，讓這些商品的 ETag / Last-Modified 也跟著改變
+    @Modifying
+    @Query("UPDATE Product p SET p.changeSeq = NULL, p.version = p.version + 1, p.updatedAt = :now " +
+           "WHERE p.category.id = :categoryId")
+    int markChangedByCategoryId(@Param("categoryId") Long categoryId, @Param("now") LocalDateTime now);
+
+    // 查詢商品的版本與更新時間（條件式 GET 用，不載入實體）
+    @Query("SELECT p.version AS version, p.updatedAt AS updatedAt FROM Product p WHERE p.id = :id")
+    Optional<ProductVersion> findVersionById(@Param("id") Long id);
+
+    // 查詢其中存在的商品 ID
+    @Query("SELECT p.id FROM Product p WHERE p.id IN :ids")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * 商品版本與更新時間
+     */
+    interface ProductVersion {
+        Long getVersion();
+        LocalDateTime getUpdatedAt();
+    }
+}
@@ -0,0 +1,14 @@
+package com.fivepapa.backend.ecommerce.repository;
+
+import com.fivepapa.backend.ecommerce.entity.Promotion;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface PromotionRepository extends JpaRepository<Promotion, Long> {
+
+    // 查詢所有啟用的促銷
+    List<Promotion> findByActiveTrue();
+}
@@ -0,0 +1,43 @@
+package com.fivepapa.backend.ecommerce.repository;
+
+import com.fivepapa.backend.ecommerce.entity.StockLease;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface StockLeaseRepository extends JpaRepository<StockLease, Long> {
+
+    // 租借後累加尚未使用的數量（回傳 0 表示紀錄已被其他執行個體回收）
+    @Modifying
+    @Query("UPDATE StockLease l SET l.quantity = l.quantity + :quantity, l.heartbeatAt = :now " +
+           "WHERE l.instanceId = :instanceId AND l.productId = :productId")
+    int addQuantity(@Param("instanceId") String instanceId, @Param("productId") Long productId,
+                    @Param("quantity") int quantity, @Param("now") LocalDateTime now);
+
+    // 心跳：同步計數器中尚未使用的數量（回傳 0 表示紀錄已被其他執行個體回收）
+    @Modifying
+    @Query("UPDATE StockLease l SET l.quantity = :quantity, l.heartbeatAt = :now " +
+           "WHERE l.instanceId = :instanceId AND l.productId = :productId")
+    int updateQuantity(@Param("instanceId") String instanceId, @Param("productId") Long productId,
+                       @Param("quantity") int quantity, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("DELETE FROM StockLease l WHERE l.instanceId = :instanceId AND l.productId = :productId")
+    int deleteLease(@Param("instanceId") String instanceId, @Param("productId") Long productId);
+
+    // 心跳逾時的租借（其他執行個體的）
+    @Query("SELECT l FROM StockLease l WHERE l.heartbeatAt < :before AND l.instanceId <> :instanceId ORDER BY l.id")
+    List<StockLease> findExpired(@Param("before") LocalDateTime before, @Param("instanceId") String instanceId, Limit limit);
+
+    // 只有仍然逾時的紀錄會被刪除（回傳 1），多個執行個體同時回收時只有一個成功
+    @Modifying
+    @Query("DELETE FROM StockLease l WHERE l.id = :id AND l.heartbeatAt < :before")
+    int deleteIfExpired(@Param("id") Long id, @Param("before") LocalDateTime before);
+}
@@ -0,0 +1,138 @@
+package com.fivepapa.backend.ecommerce.service;
+
+import com.fivepapa.backend.ecommerce.entity.Cart;
+import com.fivepapa.backend.ecommerce.repository.CartItemRepository;
+import com.fivepapa.backend.ecommerce.repository.CartRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 閒置購物車清除服務
+ * 定期刪除超過 CART_EVICTION_TTL_DAYS 沒有異動的購物車及其項目，用戶下次使用時會重新建立空購物車
+ *
+ * 以購物車 ID 做 keyset 分頁，每批在一個短交易內鎖定並再次確認仍然閒置，再以兩個批次 DELETE 刪除；
+ * 批次之間暫停 CART_EVICTION_PAUSE_MS，避免長時間佔用連線池
+ * 仍有庫存保留的購物車會跳過，由閒置計時器釋放保留後下次再刪除
+ */
+@Slf4j
+@Service
+public class CartEvictionService {
+
+    private final CartRepository cartRepository;
+    private final CartItemRepository cartItemRepository;
+    private final CartResponseCache cartResponseCache;
+    private final TransactionTemplate transactionTemplate;
+    private final long ttlDays;
+    private final int batchSize;
+    private final long pauseMs;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final Counter cartCounter;
+    private final Counter itemCounter;
+    private final Timer runTimer;
+
+    public CartEvictionService(CartRepository cartRepository,
+                               CartItemRepository cartItemRepository,
+                               CartResponseCache cartResponseCache,
+                               PlatformTransactionManager transactionManager,
+                               MeterRegistry meterRegistry,
+                               @Value("${CART_EVICTION_TTL_DAYS:30}") long ttlDays,
+                               @Value("${CART_EVICTION_BATCH_SIZE:500}") int batchSize,
+                               @Value("${CART_EVICTION_PAUSE_MS:100}") long pauseMs) {
+        this.cartRepository = cartRepository;
+        this.cartItemRepository = cartItemRepository;
+        this.cartResponseCache = cartResponseCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.ttlDays = ttlDays;
+        this.batchSize = batchSize;
+        this.pauseMs = pauseMs;
+
+        this.cartCounter = Counter.builder("cart.eviction.carts")
+                .description("Idle carts deleted by the eviction job")
+                .register(meterRegistry);
+        this.itemCounter = Counter.builder("cart.eviction.items")
+                .description("Cart items deleted together with idle carts")
+                .register(meterRegistry);
+        this.runTimer = Timer.builder("cart.eviction.duration")
+                .description("Run time of one eviction pass, including pauses between batches")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 定期清除閒置購物車（同一時間只執行一次）
+     */
+    @Scheduled(cron = "${CART_EVICTION_CRON:0 30 3 * * *}")
+    public void evictIdleCarts() {
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            int evicted = runTimer.record(() -> evictIdleBefore(LocalDateTime.now().minusDays(ttlDays)));
+            log.info("Evicted {} carts idle for more than {} days", evicted, ttlDays);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * 刪除最後異動時間早於 cutoff 的購物車
+     *
+     * @return 刪除的購物車數量
+     */
+    public int evictIdleBefore(LocalDateTime cutoff) {
+        int evicted = 0;
+        long afterId = 0;
+        while (true) {
+            List<Long> ids = cartRepository.findIdleIds(afterId, cutoff, Limit.of(batchSize));
+            if (ids.isEmpty()) {
+                return evicted;
+            }
+            BatchResult result = transactionTemplate.execute(status -> deleteBatch(ids, cutoff));
+            if (result != null) {
+                cartCounter.increment(result.carts());
+                itemCounter.increment(result.items());
+                evicted += result.carts();
+            }
+            afterId = ids.get(ids.size() - 1);
+
+            if (ids.size() < batchSize) {
+                return evicted;
+            }
+            try {
+                Thread.sleep(pauseMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.warn("Cart eviction interrupted after {} carts", evicted);
+                return evicted;
+            }
+        }
+    }
+
+    private BatchResult deleteBatch(List<Long> ids, LocalDateTime cutoff) {
+        List<Cart> carts = cartRepository.lockIdleByIdIn(ids, cutoff);
+        if (carts.isEmpty()) {
+            return new BatchResult(0, 0);
+        }
+        List<Long> cartIds = carts.stream().map(Cart::getId).toList();
+        List<Long> userIds = carts.stream().map(cart -> cart.getUser().getId()).toList();
+
+        int items = cartItemRepository.deleteByCartIdIn(cartIds);
+        int deleted = cartRepository.deleteByIdIn(cartIds);
+        cartResponseCache.evictAfterCompletion(userIds);
+        return new BatchResult(deleted, items);
+    }
+
+    private record BatchResult(int carts, int items) {
+    }
+}
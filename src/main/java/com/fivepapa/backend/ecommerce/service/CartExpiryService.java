@@ -0,0 +1,171 @@
+package com.fivepapa.backend.ecommerce.service;
+
+import com.fivepapa.backend.common.scheduling.BatchingTimer;
+import com.fivepapa.backend.ecommerce.entity.CartItem;
+import com.fivepapa.backend.ecommerce.repository.CartItemRepository;
+import com.fivepapa.backend.ecommerce.repository.CartItemRepository.IdTimestamp;
+import com.fivepapa.backend.ecommerce.repository.CartRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * 購物車到期計時服務
+ * 以記憶體中的階層式時間輪管理大量短期計時器，取代定期掃描資料庫：
+ * - 庫存保留到期（每個購物車項目一個計時器）
+ * - 購物車閒置到期（閒置超過設定時間就釋放整台購物車的保留）
+ *
+ * 閒置時間預設短於保留時間：沒有任何異動的購物車一律由閒置計時器先釋放，
+ * 項目保留到期只作用在仍有異動、但該項目本身久未修改的購物車
+ *
+ * 到期的計時器會成批處理，每批只需少數幾個 SQL；重啟時依資料庫中的到期時間重建
+ */
+@Slf4j
+@Service
+public class CartExpiryService {
+
+    private final CartItemRepository cartItemRepository;
+    private final CartRepository cartRepository;
+    private final StockReservationService stockReservationService;
+    private final CartResponseCache cartResponseCache;
+    private final TransactionTemplate transactionTemplate;
+    private final BatchingTimer<Long> holdTimer;
+    private final BatchingTimer<Long> idleTimer;
+    private final long cartIdleMinutes;
+
+    public CartExpiryService(CartItemRepository cartItemRepository,
+                             CartRepository cartRepository,
+                             StockReservationService stockReservationService,
+                             CartResponseCache cartResponseCache,
+                             PlatformTransactionManager transactionManager,
+                             MeterRegistry meterRegistry,
+                             @Value("${CART_IDLE_MINUTES:10}") long cartIdleMinutes,
+                             @Value("${TIMER_TICK_MS:1000}") long tickMs,
+                             @Value("${TIMER_BATCH_SIZE:500}") int batchSize) {
+        this.cartItemRepository = cartItemRepository;
+        this.cartRepository = cartRepository;
+        this.stockReservationService = stockReservationService;
+        this.cartResponseCache = cartResponseCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.cartIdleMinutes = cartIdleMinutes;
+        this.holdTimer = new BatchingTimer<>("cart-hold", tickMs, batchSize, this::releaseExpiredHolds, meterRegistry);
+        this.idleTimer = new BatchingTimer<>("cart-idle", tickMs, batchSize, this::releaseIdleCarts, meterRegistry);
+    }
+
+    /**
+     * 設定（或延長）購物車項目的保留到期時間
+     */
+    public void scheduleHold(Long cartItemId, LocalDateTime expiresAt) {
+        holdTimer.schedule(cartItemId, toEpochMillis(expiresAt));
+    }
+
+    /**
+     * 取消購物車項目的保留計時器
+     */
+    public void cancelHold(Long cartItemId) {
+        holdTimer.cancel(cartItemId);
+    }
+
+    /**
+     * 購物車有異動時重新計算閒置到期時間
+     */
+    public void scheduleIdle(Long cartId, LocalDateTime lastActivity) {
+        idleTimer.schedule(cartId, toEpochMillis(lastActivity.plusMinutes(cartIdleMinutes)));
+    }
+
+    /**
+     * 取消購物車的閒置計時器
+     */
+    public void cancelIdle(Long cartId) {
+        idleTimer.cancel(cartId);
+    }
+
+    /**
+     * 啟動時依資料庫中的到期時間重建計時器
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildTimers() {
+        transactionTemplate.executeWithoutResult(status -> {
+            List<IdTimestamp> holds = cartItemRepository.findReservationDeadlines();
+            holds.forEach(hold -> scheduleHold(hold.getId(), hold.getOccurredAt()));
+
+            List<IdTimestamp> carts = cartRepository.findLastActivityWithReservations();
+            carts.forEach(cart -> scheduleIdle(cart.getId(), cart.getOccurredAt()));
+
+            log.info("Rebuilt {} reservation timers and {} idle cart timers", holds.size(), carts.size());
+        });
+        holdTimer.start();
+        idleTimer.start();
+    }
+
+    @PreDestroy
+    public void stopTimers() {
+        holdTimer.stop();
+        idleTimer.stop();
+    }
+
+    /**
+     * 釋放一批到期的項目保留：鎖定、一次歸零、依商品合併釋放庫存
+     */
+    private void releaseExpiredHolds(List<Long> cartItemIds) {
+        transactionTemplate.executeWithoutResult(status -> {
+            List<CartItem> expired = cartItemRepository.lockExpiredReservations(cartItemIds, LocalDateTime.now());
+            releaseHolds(expired);
+        });
+    }
+
+    /**
+     * 釋放一批閒置購物車的所有保留；期間有新異動的購物車改排新的到期時間
+     */
+    private void releaseIdleCarts(List<Long> cartIds) {
+        transactionTemplate.executeWithoutResult(status -> {
+            LocalDateTime idleBefore = LocalDateTime.now().minusMinutes(cartIdleMinutes);
+            List<Long> idleCartIds = new ArrayList<>();
+            for (IdTimestamp cart : cartRepository.findLastActivityByIdIn(cartIds)) {
+                if (cart.getOccurredAt().isAfter(idleBefore)) {
+                    scheduleIdle(cart.getId(), cart.getOccurredAt());
+                } else {
+                    idleCartIds.add(cart.getId());
+                }
+            }
+            if (idleCartIds.isEmpty()) {
+                return;
+            }
+
+            List<CartItem> held = cartItemRepository.lockReservationsByCartIds(idleCartIds);
+            held.forEach(item -> cancelHold(item.getId()));
+            releaseHolds(held);
+        });
+    }
+
+    private void releaseHolds(List<CartItem> items) {
+        if (items.isEmpty()) {
+            return;
+        }
+
+        // 先依項目的保留數量釋放商品庫存，再一次歸零
+        stockReservationService.releaseItems(items);
+        cartItemRepository.clearReservations(items.stream().map(CartItem::getId).collect(Collectors.toList()));
+
+        // 保留數量已改變，清除這些購物車的回應快取
+        Set<Long> cartIds = items.stream().map(item -> item.getCart().getId()).collect(Collectors.toSet());
+        cartResponseCache.evictAfterCompletion(cartRepository.findUserIdsByIdIn(cartIds));
+    }
+
+    private static long toEpochMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,292 @@
+package com.fivepapa.backend.ecommerce.service;
+
+import com.fivepapa.backend.common.cache.shared.SharedCache;
+import com.fivepapa.backend.common.collection.LongHashSet;
+import com.fivepapa.backend.ecommerce.dto.CartItemResponse;
+import com.fivepapa.backend.ecommerce.dto.CartResponse;
+import com.fivepapa.backend.ecommerce.event.ProductChangedEvent;
+import com.fivepapa.backend.ecommerce.event.PromotionChangedEvent;
+import com.fivepapa.backend.ecommerce.pricing.PricingEngine;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 購物車回應快取（以用戶 ID 為 key）
+ * 另外維護「商品 ID -> 含有該商品的用戶」反向索引，商品異動時只清除受影響的購物車
+ *
+ * 每次清除都會取得新的序號，並記錄在被清除的用戶與商品上（依 ID 分段的陣列，記憶體固定）；
+ * 載入前取得目前序號，寫入時該用戶或回應中的任一商品在那之後被清除過就不寫入，
+ * 避免讀到舊資料的請求在清除之後才把舊價格放回快取，其他用戶的清除不影響寫入
+ * 其他購物車的保留會改變顯示的可用庫存，這部分最多延遲 CART_CACHE_TTL_SECONDS
+ * 促銷的開始與結束不經過異動事件，每筆回應最晚在下一個促銷開始或結束的時間過期，不會保留過期的折扣
+ *
+ * 清除也透過 SharedCache 通知其他執行個體（key 為 user:{id}、product:{id}，* 表示全部），
+ * 用戶的請求分散到不同執行個體時不會讀到其他執行個體修改前的購物車
+ */
+@Component
+public class CartResponseCache {
+
+    private static final String CHANNEL = "cartResponses";
+    private static final String USER_PREFIX = "user:";
+    private static final String PRODUCT_PREFIX = "product:";
+    private static final int STRIPES = 4096;
+
+    private final Cache<Long, CachedCart> cache;
+    private final Map<Long, LongHashSet> usersByProduct = new HashMap<>();
+    private final AtomicLong invalidations = new AtomicLong();
+    // 各分段最後一次清除時的序號（同一分段的其他 ID 被清除時也會放棄寫入，只影響命中率）
+    private final AtomicLongArray userInvalidatedAt = new AtomicLongArray(STRIPES);
+    private final AtomicLongArray productInvalidatedAt = new AtomicLongArray(STRIPES);
+    private volatile long allInvalidatedAt;
+    private final SharedCache sharedCache;
+    private final PricingEngine pricingEngine;
+    private final long ttlMillis;
+
+    public CartResponseCache(MeterRegistry meterRegistry,
+                             SharedCache sharedCache,
+                             PricingEngine pricingEngine,
+                             @Value("${CART_CACHE_MAX_ENTRIES:50000}") long maxEntries,
+                             @Value("${CART_CACHE_TTL_SECONDS:300}") long ttlSeconds) {
+        this.pricingEngine = pricingEngine;
+        this.ttlMillis = Duration.ofSeconds(ttlSeconds).toMillis();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfter(new Expiry<Long, CachedCart>() {
+                    @Override
+                    public long expireAfterCreate(Long userId, CachedCart cart, long currentTime) {
+                        return cart.ttlNanos;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(Long userId, CachedCart cart, long currentTime, long currentDuration) {
+                        return cart.ttlNanos;
+                    }
+
+                    @Override
+                    public long expireAfterRead(Long userId, CachedCart cart, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .removalListener((Long userId, CachedCart cart, RemovalCause cause) -> {
+                    if (userId != null && cart != null) {
+                        unindex(userId, cart.productIds);
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CHANNEL);
+        this.sharedCache = sharedCache;
+        sharedCache.onInvalidation(CHANNEL, new SharedCache.InvalidationListener() {
+            @Override
+            public void invalidate(List<String> keys) {
+                List<Long> productIds = new ArrayList<>();
+                for (String key : keys) {
+                    if (key.startsWith(USER_PREFIX)) {
+                        evictLocal(Long.valueOf(key.substring(USER_PREFIX.length())));
+                    } else if (key.startsWith(PRODUCT_PREFIX)) {
+                        productIds.add(Long.valueOf(key.substring(PRODUCT_PREFIX.length())));
+                    }
+                }
+                evictProductsLocal(productIds);
+            }
+
+            @Override
+            public void invalidateAll() {
+                invalidateAllLocal();
+            }
+        });
+    }
+
+    /**
+     * 快取中的購物車回應，沒有則回傳 null
+     */
+    public CartResponse get(Long userId) {
+        CachedCart cart = cache.getIfPresent(userId);
+        return cart != null ? cart.response : null;
+    }
+
+    /**
+     * 目前的清除序號，載入購物車之前呼叫
+     */
+    public long stamp() {
+        return invalidations.get();
+    }
+
+    /**
+     * 放入快取；從 stamp 取得序號之後這個用戶或回應中的商品被清除過就放棄寫入
+     * 有效期限為 CART_CACHE_TTL_SECONDS 與下一個促銷開始或結束時間中較早者
+     */
+    public void put(Long userId, CartResponse response, long stamp) {
+        long[] productIds = response.getItems().stream().mapToLong(CartItemResponse::getProductId).toArray();
+        long now = System.currentTimeMillis();
+        long ttl = Math.min(ttlMillis, pricingEngine.nextPriceChangeAfter(now) - now);
+        synchronized (usersByProduct) {
+            if (invalidatedSince(userId, productIds, stamp)) {
+                return;
+            }
+            for (long productId : productIds) {
+                usersByProduct.computeIfAbsent(productId, id -> new LongHashSet()).add(userId);
+            }
+            cache.put(userId, new CachedCart(response, productIds, TimeUnit.MILLISECONDS.toNanos(ttl)));
+        }
+    }
+
+    /**
+     * 清除用戶的購物車回應（包含其他執行個體）
+     */
+    public void evict(Long userId) {
+        evictUsers(List.of(userId));
+    }
+
+    /**
+     * 目前交易結束後才清除（避免提交前被其他請求以舊資料重新放入）；沒有交易時立即清除
+     */
+    public void evictAfterCompletion(Collection<Long> userIds) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            evictUsers(userIds);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                evictUsers(userIds);
+            }
+        });
+    }
+
+    private void evictUsers(Collection<Long> userIds) {
+        userIds.forEach(this::evictLocal);
+        sharedCache.publishInvalidation(CHANNEL, userIds.stream().map(id -> USER_PREFIX + id).toList());
+    }
+
+    private void evictLocal(Long userId) {
+        synchronized (usersByProduct) {
+            userInvalidatedAt.set(stripe(userId), invalidations.incrementAndGet());
+            cache.invalidate(userId);
+        }
+    }
+
+    /**
+     * 商品異動提交後，清除所有含有該商品的購物車（包含其他執行個體）
+     */
+    @TransactionalEventListener
+    public void onProductChanged(ProductChangedEvent event) {
+        evictProductsLocal(event.getProductIds());
+        sharedCache.publishInvalidation(CHANNEL,
+                event.getProductIds().stream().map(id -> PRODUCT_PREFIX + id).toList());
+    }
+
+    private void evictProductsLocal(Collection<Long> productIds) {
+        LongHashSet affected = new LongHashSet();
+        synchronized (usersByProduct) {
+            long sequence = invalidations.incrementAndGet();
+            for (Long productId : productIds) {
+                productInvalidatedAt.set(stripe(productId), sequence);
+                LongHashSet users = usersByProduct.get(productId);
+                if (users != null) {
+                    users.forEach(affected::add);
+                }
+            }
+            affected.forEach(cache::invalidate);
+        }
+    }
+
+    /**
+     * 促銷規則異動提交後清除全部（在 PricingEngine 丟棄舊計畫之後執行）
+     */
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @TransactionalEventListener
+    public void onPromotionChanged(PromotionChangedEvent event) {
+        invalidateAllLocal();
+        sharedCache.publishInvalidateAll(CHANNEL);
+    }
+
+    private void invalidateAllLocal() {
+        synchronized (usersByProduct) {
+            allInvalidatedAt = invalidations.incrementAndGet();
+            cache.invalidateAll();
+        }
+    }
+
+    /**
+     * 序號 stamp 之後是否清除過這個用戶、任一商品或全部（呼叫端持有 usersByProduct 的鎖）
+     */
+    private boolean invalidatedSince(long userId, long[] productIds, long stamp) {
+        if (allInvalidatedAt > stamp || userInvalidatedAt.get(stripe(userId)) > stamp) {
+            return true;
+        }
+        for (long productId : productIds) {
+            if (productInvalidatedAt.get(stripe(productId)) > stamp) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int stripe(long id) {
+        return Long.hashCode(id * 0x9E3779B97F4A7C15L) & (STRIPES - 1);
+    }
+
+    /**
+     * 移除索引（移除通知為非同步，期間可能已放入新的回應，仍在新回應中的商品保留索引）
+     */
+    private void unindex(long userId, long[] productIds) {
+        synchronized (usersByProduct) {
+            CachedCart current = cache.getIfPresent(userId);
+            for (long productId : productIds) {
+                if (current != null && current.contains(productId)) {
+                    continue;
+                }
+                LongHashSet users = usersByProduct.get(productId);
+                if (users != null) {
+                    users.remove(userId);
+                    if (users.isEmpty()) {
+                        usersByProduct.remove(productId);
+                    }
+                }
+            }
+        }
+    }
+
+    private static final class CachedCart {
+        private final CartResponse response;
+        private final long[] productIds;
+        private final long ttlNanos;
+
+        private CachedCart(CartResponse response, long[] productIds, long ttlNanos) {
+            this.response = response;
+            this.productIds = productIds;
+            this.ttlNanos = ttlNanos;
+        }
+
+        private boolean contains(long productId) {
+            for (long id : productIds) {
+                if (id == productId) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -1,23 +1,39 @@
 package com.fivepapa.backend.ecommerce.service;
 
 import com.fivepapa.backend.ecommerce.dto.AddToCartRequest;
+import com.fivepapa.backend.ecommerce.dto.CartBatchRequest;
 import com.fivepapa.backend.ecommerce.dto.CartItemResponse;
 import com.fivepapa.backend.ecommerce.dto.CartResponse;
 import com.fivepapa.backend.ecommerce.dto.UpdateCartItemRequest;
 import com.fivepapa.backend.ecommerce.entity.Cart;
 import com.fivepapa.backend.ecommerce.entity.CartItem;
 import com.fivepapa.backend.ecommerce.entity.Product;
+import com.fivepapa.backend.ecommerce.pricing.PricingEngine;
 import com.fivepapa.backend.ecommerce.repository.CartItemRepository;
 import com.fivepapa.backend.ecommerce.repository.CartRepository;
 import com.fivepapa.backend.ecommerce.repository.ProductRepository;
 import com.fivepapa.backend.member.entity.User;
 import com.fivepapa.backend.member.repository.UserRepository;
+import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
+import org.hibernate.Hibernate;
+import org.springframework.dao.DataAccessException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -28,14 +44,37 @@ public class CartService {
     private final CartItemRepository cartItemRepository;
     private final ProductRepository productRepository;
     private final UserRepository userRepository;
+    private final StockReservationService stockReservationService;
+    private final CartExpiryService cartExpiryService;
+    private final CartWriteBehindStore cartWriteBehindStore;
+    private final CartResponseCache cartResponseCache;
+    private final PricingEngine pricingEngine;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityManager entityManager;
 
     /**
-     * 查詢用戶購物車
+     * 查詢用戶購物車（尚未建立時回傳空購物車，不寫入資料庫）
+     * 優先使用回應快取，命中時不存取資料庫
      */
-    @Transactional
     public CartResponse getCart(Long userId) {
-        Cart cart = getOrCreateCart(userId);
-        return convertToResponse(cart);
+        CartResponse cached = cartResponseCache.get(userId);
+        if (cached != null) {
+            return cached;
+        }
+
+        long stamp = cartResponseCache.stamp();
+        CartResponse response = transactionTemplate.execute(status -> cartRepository.findByUserId(userId)
+                .map(this::convertToResponse)
+                .orElseGet(() -> CartResponse.builder()
+                        .userId(userId)
+                        .totalItems(0)
+                        .totalQuantity(0)
+                        .subtotalAmount(BigDecimal.ZERO)
+                        .discountAmount(BigDecimal.ZERO)
+                        .totalAmount(BigDecimal.ZERO)
+                        .build()));
+        cartResponseCache.put(userId, response, stamp);
+        return response;
     }
 
     /**
@@ -45,6 +84,7 @@ public class CartService {
     public CartResponse addToCart(Long userId, AddToCartRequest request) {
         // 1. 獲取或創建購物車
         Cart cart = getOrCreateCart(userId);
+        syncWriteBehind(userId, cart);
 
         // 2. 檢查商品是否存在且上架
         Product product = productRepository.findById(request.getProductId())
@@ -54,37 +94,28 @@ public class CartService {
             throw new RuntimeException("商品已下架");
         }
 
-        // 3. 檢查庫存
-        if (product.getStock() < request.getQuantity()) {
-            throw new RuntimeException("庫存不足，目前庫存：" + product.getStock());
-        }
-
-        // 4. 檢查購物車中是否已有該商品
-        CartItem existingItem = cartItemRepository
-                .findByCartIdAndProductId(cart.getId(), product.getId())
-                .orElse(null);
+        // 3. 檢查購物車中是否已有該商品（直接查已載入的項目，不另外查詢）
+        CartItem existingItem = cart.findCartItem(product.getId());
 
         if (existingItem != null) {
-            // 已存在，累加數量
+            // 已存在，累加數量並保留增加的部分
             int newQuantity = existingItem.getQuantity() + request.getQuantity();
-
-            // 檢查累加後是否超過庫存
-            if (product.getStock() < newQuantity) {
-                throw new RuntimeException("庫存不足，目前庫存：" + product.getStock() +
-                        "，購物車已有：" + existingItem.getQuantity());
-            }
-
+            holdStock(existingItem, newQuantity);
             existingItem.setQuantity(newQuantity);
             cartItemRepository.save(existingItem);
+            cartExpiryService.scheduleHold(existingItem.getId(), existingItem.getReservationExpiresAt());
         } else {
-            // 不存在，新增項目
+            // 不存在，保留庫存後新增項目
             CartItem newItem = new CartItem();
             newItem.setCart(cart);
             newItem.setProduct(product);
+            holdStock(newItem, request.getQuantity());
             newItem.setQuantity(request.getQuantity());
             cartItemRepository.save(newItem);
             cart.addCartItem(newItem);
+            cartExpiryService.scheduleHold(newItem.getId(), newItem.getReservationExpiresAt());
         }
+        touch(cart);
 
         return convertToResponse(cart);
     }
@@ -103,16 +134,16 @@ public class CartService {
         if (!cart.getUser().getId().equals(userId)) {
             throw new RuntimeException("無權操作該購物車項目");
         }
+        syncWriteBehind(userId, cart);
 
-        // 3. 檢查庫存
-        Product product = cartItem.getProduct();
-        if (product.getStock() < request.getQuantity()) {
-            throw new RuntimeException("庫存不足，目前庫存：" + product.getStock());
-        }
+        // 3. 調整庫存保留（不足時拋出例外）
+        holdStock(cartItem, request.getQuantity());
 
         // 4. 更新數量
         cartItem.setQuantity(request.getQuantity());
         cartItemRepository.save(cartItem);
+        cartExpiryService.scheduleHold(cartItem.getId(), cartItem.getReservationExpiresAt());
+        touch(cart);
 
         return convertToResponse(cart);
     }
@@ -131,10 +162,90 @@ public class CartService {
         if (!cart.getUser().getId().equals(userId)) {
             throw new RuntimeException("無權操作該購物車項目");
         }
+        syncWriteBehind(userId, cart);
 
-        // 3. 移除項目
-        cart.removeCartItem(cartItem);
-        cartItemRepository.delete(cartItem);
+        // 3. 釋放保留並移除項目
+        removeCartItems(cart, List.of(cartItem));
+        touch(cart);
+
+        return convertToResponse(cart);
+    }
+
+    /**
+     * 批次套用購物車操作
+     * 一次查詢所有相關商品、先檢查全部庫存再寫入，所有變更在同一個交易內完成
+     */
+    @Transactional
+    public CartResponse applyBatch(Long userId, CartBatchRequest request) {
+        // 1. 獲取購物車
+        Cart cart = getOrCreateCart(userId);
+        syncWriteBehind(userId, cart);
+
+        // 2. 一次查詢所有相關商品
+        Set<Long> productIds = request.getOperations().stream()
+                .map(CartBatchRequest.Operation::getProductId)
+                .collect(Collectors.toSet());
+        Map<Long, Product> products = productRepository.findAllById(productIds).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+
+        // 3. 依序計算每個商品的目標數量（0 表示移除）
+        // 之後依商品 ID 順序保留庫存，與結帳扣庫存的順序一致，同時進行時不會互相等待而死鎖
+        Map<Long, Integer> targets = new TreeMap<>(resolveTargetQuantities(request, cart));
+
+        // 4. 檢查所有商品與庫存，全部通過才開始寫入
+        List<String> shortages = new ArrayList<>();
+        targets.forEach((productId, target) -> {
+            if (target == 0) {
+                return;
+            }
+            Product product = products.get(productId);
+            if (product == null) {
+                throw new RuntimeException("商品不存在，ID: " + productId);
+            }
+            CartItem item = cart.findCartItem(productId);
+            // 已下架的商品仍可減少數量，只有增加時才拒絕
+            int current = item != null ? item.getQuantity() : 0;
+            if (target > current && !product.getActive()) {
+                throw new RuntimeException("商品已下架：" + product.getName());
+            }
+            int alreadyReserved = item != null ? item.getReservedQuantity() : 0;
+            int available = stockReservationService.availableStock(product);
+            if (target - alreadyReserved > available) {
+                shortages.add(product.getName() + "（可用庫存：" + available + "）");
+            }
+        });
+        if (!shortages.isEmpty()) {
+            throw new RuntimeException("庫存不足：" + String.join("、", shortages));
+        }
+
+        // 5. 移除的項目：單一 UPDATE 釋放庫存、單一 DELETE 刪除
+        List<CartItem> removed = targets.entrySet().stream()
+                .filter(entry -> entry.getValue() == 0)
+                .map(entry -> cart.findCartItem(entry.getKey()))
+                .collect(Collectors.toList());
+        removeCartItems(cart, removed);
+
+        // 6. 新增或更新的項目（UPDATE 會在提交時以 JDBC batch 送出）
+        targets.forEach((productId, target) -> {
+            if (target == 0) {
+                return;
+            }
+            CartItem item = cart.findCartItem(productId);
+            if (item == null) {
+                item = new CartItem();
+                item.setCart(cart);
+                item.setProduct(products.get(productId));
+                holdStock(item, target);
+                item.setQuantity(target);
+                cartItemRepository.save(item);
+                cart.addCartItem(item);
+            } else {
+                holdStock(item, target);
+                item.setQuantity(target);
+            }
+            cartExpiryService.scheduleHold(item.getId(), item.getReservationExpiresAt());
+        });
+        touch(cart);
 
         return convertToResponse(cart);
     }
@@ -146,9 +257,87 @@ public class CartService {
     public void clearCart(Long userId) {
         Cart cart = cartRepository.findByUserId(userId)
                 .orElseThrow(() -> new RuntimeException("購物車不存在"));
+        // 購物車即將清空，未寫入的數量變更直接丟棄
+        cartWriteBehindStore.evict(userId);
+
+        // 鎖定仍有保留的項目，以單一 UPDATE 釋放庫存
+        List<CartItem> held = cartItemRepository.lockReservationsByCartIds(List.of(cart.getId()));
+        stockReservationService.releaseItems(held);
+        held.forEach(item -> cartExpiryService.cancelHold(item.getId()));
+        cartExpiryService.cancelIdle(cart.getId());
+
+        // 單一 DELETE 刪除所有項目（同時清空持久化上下文，不留下已刪除的實體）
+        cartItemRepository.deleteByCartId(cart.getId());
+        cartResponseCache.evictAfterCompletion(List.of(userId));
+    }
+
+    /**
+     * 結帳第一步：鎖定購物車與所有項目，寫回未寫入的數量變更，並以資料庫中的最新價格定價
+     * 必須在結帳交易內呼叫；項目依商品 ID 排序
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public CartResponse lockForCheckout(Long userId) {
+        Cart cart = cartRepository.findByUserIdForUpdate(userId)
+                .orElseThrow(() -> new RuntimeException("購物車是空的"));
+        // 先鎖定項目再初始化集合，集合會沿用這裡讀到的最新保留數量
+        List<CartItem> items = cartItemRepository.lockByCartId(cart.getId());
+        if (items.isEmpty()) {
+            throw new RuntimeException("購物車是空的");
+        }
+        // 一次載入所有商品，定價時不再逐筆查詢
+        productRepository.findAllById(items.stream().map(CartItem::getProductId).collect(Collectors.toList()));
+        syncWriteBehind(userId, cart);
+
+        CartResponse response = convertToResponse(cart);
+        response.getItems().sort(Comparator.comparing(CartItemResponse::getProductId));
+        return response;
+    }
 
+    /**
+     * 結帳最後一步：保留的庫存已轉為實際扣除，不釋放，只以單一 DELETE 清空購物車
+     * 計時器在提交後才取消，結帳失敗時保留仍會正常到期
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void clearCheckedOutCart(CartResponse cart) {
         cartItemRepository.deleteByCartId(cart.getId());
-        cart.getCartItems().clear();
+        cartResponseCache.evictAfterCompletion(List.of(cart.getUserId()));
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                cart.getItems().forEach(item -> cartExpiryService.cancelHold(item.getId()));
+                cartExpiryService.cancelIdle(cart.getId());
+            }
+        });
+    }
+
+    /**
+     * 寫回 write-behind 暫存的數量變更（CartWriteBehindService 批次寫回時呼叫）
+     * 已被移除的項目直接略過；各項目獨立套用，庫存不足的項目維持資料庫中的數量，其他項目照常寫入
+     */
+    @Transactional
+    public CartResponse applyPendingQuantities(Long userId, Map<Long, Integer> quantities) {
+        Cart cart = cartRepository.findByUserId(userId)
+                .orElseThrow(() -> new RuntimeException("購物車不存在"));
+        applyQuantities(cart, quantities);
+        return convertToResponse(cart);
+    }
+
+    /**
+     * write-behind 的 RESERVE_ON_UPDATE 模式：立即調整項目的庫存保留（不足時拋出例外），數量稍後才寫回
+     * 回傳調整後的項目（保留數量、可用庫存與到期時間）
+     */
+    @Transactional
+    public CartItemResponse holdPendingQuantity(Long userId, Long cartItemId, int quantity) {
+        CartItem cartItem = cartItemRepository.findById(cartItemId)
+                .orElseThrow(() -> new RuntimeException("購物車項目不存在，ID: " + cartItemId));
+        if (!cartItem.getCart().getUser().getId().equals(userId)) {
+            throw new RuntimeException("無權操作該購物車項目");
+        }
+
+        holdStock(cartItem, quantity);
+        cartExpiryService.scheduleHold(cartItem.getId(), cartItem.getReservationExpiresAt());
+        cartResponseCache.evictAfterCompletion(List.of(userId));
+        return convertItemToResponse(cartItem);
     }
 
     /**
@@ -166,33 +355,161 @@ public class CartService {
         });
     }
 
+    /**
+     * write-behind 模式下，先把尚未寫入的數量變更套用到購物車再執行其他操作，
+     * 交易結束後丟棄記憶體快照，下次查詢重新載入；交易回滾時變更放回暫存區，不會遺失
+     */
+    private void syncWriteBehind(Long userId, Cart cart) {
+        if (!cartWriteBehindStore.isEnabled()) {
+            return;
+        }
+
+        CartWriteBehindStore.PendingChanges pending = cartWriteBehindStore.drain(userId);
+        if (pending != null) {
+            applyQuantities(cart, pending.getQuantities());
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (pending != null && status == STATUS_COMMITTED) {
+                    cartWriteBehindStore.release(userId);
+                } else if (pending != null) {
+                    cartWriteBehindStore.restore(userId, pending);
+                }
+                cartWriteBehindStore.invalidate(userId);
+            }
+        });
+    }
+
+    /**
+     * 將項目數量調整為指定值（購物車項目 ID -> 數量），並重新保留庫存
+     * 各項目獨立套用：庫存不足的項目維持原數量，不影響其他項目；資料庫錯誤則整筆失敗
+     */
+    private void applyQuantities(Cart cart, Map<Long, Integer> quantities) {
+        // 依商品 ID 順序保留庫存（與 applyBatch、結帳一致）
+        cart.getCartItems().stream()
+                .filter(item -> quantities.containsKey(item.getId()))
+                .sorted(Comparator.comparing(CartItem::getProductId))
+                .forEach(item -> {
+                    int quantity = quantities.get(item.getId());
+                    try {
+                        holdStock(item, quantity);
+                    } catch (DataAccessException e) {
+                        throw e;
+                    } catch (RuntimeException e) {
+                        // 保留失敗時項目尚未修改
+                        return;
+                    }
+                    item.setQuantity(quantity);
+                    cartExpiryService.scheduleHold(item.getId(), item.getReservationExpiresAt());
+                });
+        touch(cart);
+    }
+
+    /**
+     * 依序套用操作，計算每個商品最後的數量
+     */
+    private Map<Long, Integer> resolveTargetQuantities(CartBatchRequest request, Cart cart) {
+        Map<Long, Integer> targets = new LinkedHashMap<>();
+        for (CartBatchRequest.Operation operation : request.getOperations()) {
+            Long productId = operation.getProductId();
+            CartItem existing = cart.findCartItem(productId);
+            int current = targets.getOrDefault(productId, existing != null ? existing.getQuantity() : 0);
+
+            switch (operation.getType()) {
+                case ADD -> targets.put(productId, current + requireQuantity(operation));
+                case UPDATE -> {
+                    if (current == 0) {
+                        throw new RuntimeException("購物車中沒有該商品，ID: " + productId);
+                    }
+                    targets.put(productId, requireQuantity(operation));
+                }
+                case REMOVE -> {
+                    if (current == 0) {
+                        throw new RuntimeException("購物車中沒有該商品，ID: " + productId);
+                    }
+                    targets.put(productId, 0);
+                }
+            }
+        }
+        // 新增後又移除的商品不需要任何寫入
+        targets.entrySet().removeIf(entry -> entry.getValue() == 0 && cart.findCartItem(entry.getKey()) == null);
+        return targets;
+    }
+
+    private int requireQuantity(CartBatchRequest.Operation operation) {
+        if (operation.getQuantity() == null) {
+            throw new RuntimeException("數量不能為空，商品 ID: " + operation.getProductId());
+        }
+        return operation.getQuantity();
+    }
+
+    /**
+     * 一次移除多個購物車項目：先釋放庫存再以單一 DELETE 刪除，
+     * 並將項目移出持久化上下文，避免提交時再對已刪除的資料列寫入
+     */
+    private void removeCartItems(Cart cart, List<CartItem> items) {
+        if (items.isEmpty()) {
+            return;
+        }
+
+        stockReservationService.releaseItems(items);
+        cartItemRepository.deleteByIdIn(items.stream().map(CartItem::getId).collect(Collectors.toList()));
+        for (CartItem item : items) {
+            cartExpiryService.cancelHold(item.getId());
+            entityManager.detach(item);
+            cart.removeCartItem(item);
+        }
+    }
+
+    /**
+     * 記錄購物車異動時間並重新排定閒置到期
+     */
+    private void touch(Cart cart) {
+        cart.touch();
+        cartExpiryService.scheduleIdle(cart.getId(), cart.getUpdatedAt());
+        cartResponseCache.evictAfterCompletion(List.of(cart.getUser().getId()));
+    }
+
+    /**
+     * 將項目的庫存保留調整為指定數量，並延長保留期限
+     */
+    private void holdStock(CartItem item, int quantity) {
+        int delta = quantity - item.getReservedQuantity();
+        if (delta > 0) {
+            stockReservationService.reserve(item.getProduct(), delta);
+        } else if (delta < 0) {
+            stockReservationService.release(item.getProduct().getId(), -delta);
+        }
+        item.setReservedQuantity(quantity);
+        item.setReservationExpiresAt(stockReservationService.nextExpiry());
+    }
+
     /**
      * 轉換為 Response
      */
     private CartResponse convertToResponse(Cart cart) {
+        // 一次載入尚未載入的商品，轉換項目時不再逐筆查詢
+        List<Long> unloaded = cart.getCartItems().stream()
+                .filter(item -> !Hibernate.isInitialized(item.getProduct()))
+                .map(CartItem::getProductId)
+                .collect(Collectors.toList());
+        if (!unloaded.isEmpty()) {
+            productRepository.findAllById(unloaded);
+        }
+
         List<CartItemResponse> itemResponses = cart.getCartItems().stream()
                 .map(this::convertItemToResponse)
                 .collect(Collectors.toList());
 
-        // 計算統計資訊
-        int totalItems = itemResponses.size();
-        int totalQuantity = itemResponses.stream()
-                .mapToInt(CartItemResponse::getQuantity)
-                .sum();
-        BigDecimal totalAmount = itemResponses.stream()
-                .map(CartItemResponse::getSubtotal)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-        return CartResponse.builder()
+        // 小計、促銷折扣與統計資訊由定價引擎計算
+        return pricingEngine.price(CartResponse.builder()
                 .id(cart.getId())
                 .userId(cart.getUser().getId())
                 .items(itemResponses)
-                .totalItems(totalItems)
-                .totalQuantity(totalQuantity)
-                .totalAmount(totalAmount)
                 .createdAt(cart.getCreatedAt())
                 .updatedAt(cart.getUpdatedAt())
-                .build();
+                .build());
     }
 
     /**
@@ -200,8 +517,10 @@ public class CartService {
      */
     private CartItemResponse convertItemToResponse(CartItem item) {
         Product product = item.getProduct();
-        BigDecimal subtotal = item.getSubtotal();
-        boolean inStock = product.getStock() >= item.getQuantity();
+        int availableStock = stockReservationService.availableStock(product);
+        // 已保留足夠數量，或未保留的部分仍有庫存可補
+        boolean inStock = item.getReservedQuantity() >= item.getQuantity()
+                || availableStock >= item.getQuantity() - item.getReservedQuantity();
 
         return CartItemResponse.builder()
                 .id(item.getId())
@@ -210,10 +529,12 @@ public class CartService {
                 .productDescription(product.getDescription())
                 .productPrice(product.getPrice())
                 .productImageUrl(product.getImageUrl())
+                .categoryId(product.getCategory() != null ? product.getCategory().getId() : null)
                 .quantity(item.getQuantity())
-                .subtotal(subtotal)
-                .availableStock(product.getStock())
+                .availableStock(availableStock)
                 .inStock(inStock)
+                .reservedQuantity(item.getReservedQuantity())
+                .reservationExpiresAt(item.getReservationExpiresAt())
                 .build();
     }
 }
@@ -0,0 +1,238 @@
+package com.fivepapa.backend.ecommerce.service;
+
+import com.fivepapa.backend.ecommerce.dto.CartItemResponse;
+import com.fivepapa.backend.ecommerce.dto.CartResponse;
+import com.fivepapa.backend.ecommerce.dto.UpdateCartItemRequest;
+import com.fivepapa.backend.ecommerce.event.ProductChangedEvent;
+import com.fivepapa.backend.ecommerce.event.PromotionChangedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * 購物車 write-behind 服務
+ * 啟用時（CART_WRITE_BEHIND_ENABLED），查詢與數量調整直接在記憶體快照上完成，
+ * 同一項目的連續調整會合併，之後在下列時機批次寫回資料庫：
+ * - 購物車閒置超過 CART_WRITE_BEHIND_IDLE_MS
+ * - 最早的未寫入變更超過 CART_WRITE_BEHIND_MAX_LAG_MS（當機時最多遺失這段時間內的調整）
+ * - 應用程式關閉時
+ *
+ * 庫存保留的時機由 CART_WRITE_BEHIND_DURABILITY 決定：
+ * - RESERVE_ON_FLUSH：寫回時才保留庫存，調整最快；當機時遺失未寫入的調整，寫回時庫存不足的項目回到資料庫中的數量
+ * - RESERVE_ON_UPDATE：每次調整都先在資料庫保留庫存（不足時立即回應錯誤），只延後數量欄位的寫入；
+ *   當機時數量回到上次寫回的值，多保留的庫存在保留到期時釋放
+ *
+ * 寫回時各項目獨立套用，庫存不足的項目不影響其他項目；寫回失敗（連線逾時、鎖等待逾時等）時保留變更，
+ * 間隔 CART_WRITE_BEHIND_RETRY_MS 的倍數重試，連續失敗 CART_WRITE_BEHIND_MAX_ATTEMPTS 次才丟棄該用戶的未寫入變更
+ * 未啟用時所有呼叫直接交給 CartService
+ */
+@Slf4j
+@Service
+public class CartWriteBehindService {
+
+    /**
+     * 庫存保留的時機
+     */
+    public enum Durability {
+        RESERVE_ON_FLUSH,
+        RESERVE_ON_UPDATE
+    }
+
+    private final CartService cartService;
+    private final CartWriteBehindStore store;
+    private final long idleMs;
+    private final long maxLagMs;
+    private final int batchSize;
+    private final long snapshotTtlMs;
+    private final long retryMs;
+    private final int maxAttempts;
+    private final Durability durability;
+    private final Timer flushLagTimer;
+    private final Counter flushedCounter;
+    private final Counter retriedCounter;
+    private final Counter rejectedCounter;
+    private final Counter failedCounter;
+
+    public CartWriteBehindService(CartService cartService,
+                                  CartWriteBehindStore store,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${CART_WRITE_BEHIND_IDLE_MS:1000}") long idleMs,
+                                  @Value("${CART_WRITE_BEHIND_MAX_LAG_MS:5000}") long maxLagMs,
+                                  @Value("${CART_WRITE_BEHIND_BATCH_SIZE:200}") int batchSize,
+                                  @Value("${CART_WRITE_BEHIND_SNAPSHOT_TTL_MS:60000}") long snapshotTtlMs,
+                                  @Value("${CART_WRITE_BEHIND_RETRY_MS:1000}") long retryMs,
+                                  @Value("${CART_WRITE_BEHIND_MAX_ATTEMPTS:5}") int maxAttempts,
+                                  @Value("${CART_WRITE_BEHIND_DURABILITY:RESERVE_ON_FLUSH}") Durability durability) {
+        this.cartService = cartService;
+        this.store = store;
+        this.idleMs = idleMs;
+        this.maxLagMs = maxLagMs;
+        this.batchSize = batchSize;
+        this.snapshotTtlMs = snapshotTtlMs;
+        this.retryMs = retryMs;
+        this.maxAttempts = maxAttempts;
+        this.durability = durability;
+
+        Gauge.builder("cart.write_behind.max_lag", () -> maxLagMs)
+                .description("Configured upper bound for unwritten cart changes")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+        this.flushLagTimer = Timer.builder("cart.write_behind.flush.lag")
+                .description("Time between the first unwritten change and its write to the database")
+                .register(meterRegistry);
+        this.flushedCounter = Counter.builder("cart.write_behind.flushed")
+                .description("Carts written back to the database")
+                .register(meterRegistry);
+        this.retriedCounter = Counter.builder("cart.write_behind.flush.retries")
+                .description("Failed writes whose changes were kept for a retry")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("cart.write_behind.flush.rejected_lines")
+                .description("Unwritten quantity changes dropped because the stock could not be held")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("cart.write_behind.flush.failures")
+                .description("Carts whose unwritten changes were discarded after a failed write")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 查詢購物車（優先使用記憶體快照）
+     */
+    public CartResponse getCart(Long userId) {
+        if (!store.isEnabled()) {
+            return cartService.getCart(userId);
+        }
+
+        CartResponse snapshot = store.getSnapshot(userId);
+        if (snapshot != null) {
+            return snapshot;
+        }
+        store.putSnapshot(userId, cartService.getCart(userId));
+        return store.getSnapshot(userId);
+    }
+
+    /**
+     * 更新購物車項目數量（啟用時只更新記憶體，稍後寫回；RESERVE_ON_UPDATE 時先保留庫存）
+     */
+    public CartResponse updateCartItem(Long userId, Long cartItemId, UpdateCartItemRequest request) {
+        if (!store.isEnabled()) {
+            return cartService.updateCartItem(userId, cartItemId, request);
+        }
+
+        getCart(userId);
+        if (durability == Durability.RESERVE_ON_UPDATE) {
+            CartItemResponse held = cartService.holdPendingQuantity(userId, cartItemId, request.getQuantity());
+            return store.updateQuantity(userId, cartItemId, request.getQuantity(), held);
+        }
+        return store.updateQuantity(userId, cartItemId, request.getQuantity());
+    }
+
+    /**
+     * 寫回到期的購物車，並清除不再活躍的快照
+     */
+    @Scheduled(fixedDelayString = "${CART_WRITE_BEHIND_FLUSH_MS:200}")
+    public void flushDue() {
+        if (!store.isEnabled()) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        List<Long> userIds;
+        do {
+            userIds = store.findDueUserIds(now, idleMs, maxLagMs, batchSize);
+            userIds.forEach(this::flush);
+        } while (userIds.size() == batchSize);
+        store.evictInactive(now, snapshotTtlMs);
+    }
+
+    /**
+     * 商品異動提交後丟棄含有該商品的快照
+     * 有未寫入變更的快照會保留，寫回時（最多 CART_WRITE_BEHIND_MAX_LAG_MS）以資料庫中的新資料取代
+     */
+    @TransactionalEventListener
+    public void onProductChanged(ProductChangedEvent event) {
+        if (!store.isEnabled()) {
+            return;
+        }
+
+        store.findUserIdsWithProducts(event.getProductIds()).forEach(store::invalidate);
+    }
+
+    /**
+     * 促銷規則異動提交後丟棄所有沒有未寫入變更的快照（在 PricingEngine 丟棄舊計畫之後執行）
+     */
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @TransactionalEventListener
+    public void onPromotionChanged(PromotionChangedEvent event) {
+        if (store.isEnabled()) {
+            store.invalidateAll();
+        }
+    }
+
+    /**
+     * 關閉時寫回所有未寫入的變更
+     */
+    @PreDestroy
+    public void flushAll() {
+        if (!store.isEnabled()) {
+            return;
+        }
+
+        List<Long> userIds = store.findDirtyUserIds();
+        userIds.forEach(this::flush);
+        log.info("Flushed write-behind changes for {} carts on shutdown", userIds.size());
+    }
+
+    private void flush(Long userId) {
+        CartWriteBehindStore.PendingChanges pending = store.drain(userId);
+        if (pending == null) {
+            return;
+        }
+
+        try {
+            CartResponse cart = cartService.applyPendingQuantities(userId, pending.getQuantities());
+            countRejected(userId, pending, cart);
+            store.refreshSnapshot(userId, cart);
+            flushedCounter.increment();
+            flushLagTimer.record(Duration.ofMillis(System.currentTimeMillis() - pending.getFirstDirtyAt()));
+        } catch (Exception e) {
+            // 寫回在單一交易內只設定數量，失敗時沒有任何變更生效，重試不會重複套用
+            int attempts = store.restore(userId, pending);
+            if (attempts < maxAttempts) {
+                long delay = retryMs * attempts;
+                log.warn("Retrying write-behind changes for user {} in {} ms: {}", userId, delay, e.getMessage());
+                store.retryAfter(userId, System.currentTimeMillis() + delay);
+                retriedCounter.increment();
+                return;
+            }
+            log.warn("Discarding write-behind changes for user {}: {}", userId, e.getMessage());
+            store.evict(userId);
+            failedCounter.increment();
+        }
+    }
+
+    /**
+     * 寫回後數量與變更不同的項目，是庫存不足而維持原數量的項目
+     */
+    private void countRejected(Long userId, CartWriteBehindStore.PendingChanges pending, CartResponse cart) {
+        long rejected = cart.getItems().stream()
+                .filter(item -> pending.getQuantities().containsKey(item.getId()))
+                .filter(item -> !pending.getQuantities().get(item.getId()).equals(item.getQuantity()))
+                .count();
+        if (rejected > 0) {
+            log.warn("Dropped {} write-behind quantity changes for user {}: not enough stock", rejected, userId);
+            rejectedCounter.increment(rejected);
+        }
+    }
+}
@@ -0,0 +1,370 @@
+package com.fivepapa.backend.ecommerce.service;
+
+import com.fivepapa.backend.ecommerce.dto.CartItemResponse;
+import com.fivepapa.backend.ecommerce.dto.CartResponse;
+import com.fivepapa.backend.ecommerce.pricing.PricingEngine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * 購物車 write-behind 暫存區
+ * 啟用時，活躍購物車的快照與尚未寫入資料庫的數量變更保存在記憶體（以用戶 ID 為 key），
+ * 同一項目的連續變更只保留最後的數量，由 CartWriteBehindService 批次寫回資料庫
+ * 取出寫回中的變更在寫回結束前也算未寫入：快照不會被丟棄，寫回失敗時可以放回
+ * 快照記錄定價後下一個促銷開始或結束的時間，讀取時已超過就重新定價，不會保留過期的折扣
+ *
+ * 只存在單一執行個體的記憶體中，多台部署時需要讓同一用戶固定打到同一台
+ */
+@Component
+public class CartWriteBehindStore {
+
+    private final boolean enabled;
+    private final PricingEngine pricingEngine;
+    private final Map<Long, ActiveCart> carts = new ConcurrentHashMap<>();
+    private final Counter updateCounter;
+    private final Counter coalescedCounter;
+
+    public CartWriteBehindStore(MeterRegistry meterRegistry,
+                                PricingEngine pricingEngine,
+                                @Value("${CART_WRITE_BEHIND_ENABLED:false}") boolean enabled) {
+        this.enabled = enabled;
+        this.pricingEngine = pricingEngine;
+
+        Gauge.builder("cart.write_behind.pending", this, CartWriteBehindStore::pendingCarts)
+                .description("Carts with changes not yet written to the database")
+                .register(meterRegistry);
+        Gauge.builder("cart.write_behind.oldest_pending_age", this, store -> store.oldestPendingAge(System.currentTimeMillis()))
+                .description("Age of the oldest change not yet written to the database")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+        this.updateCounter = Counter.builder("cart.write_behind.updates")
+                .description("Quantity updates accepted into the write-behind store")
+                .register(meterRegistry);
+        this.coalescedCounter = Counter.builder("cart.write_behind.coalesced")
+                .description("Quantity updates merged into an earlier unwritten change")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 記憶體中的購物車快照，沒有則回傳 null
+     */
+    public CartResponse getSnapshot(Long userId) {
+        ActiveCart cart = carts.get(userId);
+        return cart != null ? cart.copy() : null;
+    }
+
+    /**
+     * 放入從資料庫載入的購物車（已存在的快照不覆蓋）
+     */
+    public void putSnapshot(Long userId, CartResponse snapshot) {
+        carts.putIfAbsent(userId, new ActiveCart(snapshot));
+    }
+
+    /**
+     * 寫回資料庫後更新快照；期間又有新變更時保留原快照，等下一次寫回
+     */
+    public void refreshSnapshot(Long userId, CartResponse snapshot) {
+        carts.computeIfPresent(userId, (id, cart) -> cart.finishDrain() ? new ActiveCart(snapshot) : cart);
+    }
+
+    /**
+     * 取出的變更已由其他交易寫入資料庫（不更新快照）
+     */
+    public void release(Long userId) {
+        ActiveCart cart = carts.get(userId);
+        if (cart != null) {
+            cart.finishDrain();
+        }
+    }
+
+    /**
+     * 寫回失敗時把取出的變更放回（期間的新變更優先），回傳連續失敗的次數
+     */
+    public int restore(Long userId, PendingChanges changes) {
+        ActiveCart cart = carts.get(userId);
+        return cart != null ? cart.restore(changes) : 0;
+    }
+
+    /**
+     * retryAt 之前不再寫回這個用戶的變更
+     */
+    public void retryAfter(Long userId, long retryAt) {
+        ActiveCart cart = carts.get(userId);
+        if (cart != null) {
+            cart.retryAfter(retryAt);
+        }
+    }
+
+    /**
+     * 丟棄沒有未寫入變更的快照（購物車被其他操作修改後呼叫）
+     */
+    public void invalidate(Long userId) {
+        carts.computeIfPresent(userId, (id, cart) -> cart.isDirty() ? cart : null);
+    }
+
+    /**
+     * 丟棄所有沒有未寫入變更的快照（促銷規則異動後呼叫）
+     */
+    public void invalidateAll() {
+        carts.values().removeIf(cart -> !cart.isDirty());
+    }
+
+    /**
+     * 丟棄快照與所有未寫入的變更
+     */
+    public void evict(Long userId) {
+        carts.remove(userId);
+    }
+
+    /**
+     * 在快照上更新項目數量並記錄為待寫入的變更
+     * 庫存只以快照中的保留量與可用庫存預先檢查，實際保留在寫回時進行
+     */
+    public CartResponse updateQuantity(Long userId, Long cartItemId, int quantity) {
+        return updateQuantity(userId, cartItemId, quantity, null);
+    }
+
+    /**
+     * 在快照上更新項目數量並記錄為待寫入的變更
+     * held 為已在資料庫保留好庫存的項目（RESERVE_ON_UPDATE），null 表示寫回時才保留
+     */
+    public CartResponse updateQuantity(Long userId, Long cartItemId, int quantity, CartItemResponse held) {
+        ActiveCart cart = carts.get(userId);
+        if (cart == null) {
+            throw new IllegalStateException("Cart snapshot not loaded for user " + userId);
+        }
+        CartResponse updated = cart.updateQuantity(cartItemId, quantity, held);
+        updateCounter.increment();
+        return updated;
+    }
+
+    /**
+     * 取出用戶所有未寫入的變更，沒有則回傳 null
+     * 取出後需以 refreshSnapshot、release 或 restore 結束
+     */
+    public PendingChanges drain(Long userId) {
+        ActiveCart cart = carts.get(userId);
+        return cart != null ? cart.drain() : null;
+    }
+
+    /**
+     * 需要寫回的用戶：閒置超過 idleMs，或最早的未寫入變更已超過 maxLagMs
+     */
+    public List<Long> findDueUserIds(long now, long idleMs, long maxLagMs, int limit) {
+        return carts.entrySet().stream()
+                .filter(entry -> entry.getValue().isDue(now, idleMs, maxLagMs))
+                .limit(limit)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 所有有未寫入變更的用戶
+     */
+    public List<Long> findDirtyUserIds() {
+        return carts.entrySet().stream()
+                .filter(entry -> entry.getValue().hasPending())
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 快照中含有任一指定商品的用戶
+     */
+    public List<Long> findUserIdsWithProducts(Collection<Long> productIds) {
+        return carts.entrySet().stream()
+                .filter(entry -> entry.getValue().containsAny(productIds))
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 移除超過 ttlMs 沒有被存取、且沒有未寫入變更的快照
+     */
+    public void evictInactive(long now, long ttlMs) {
+        carts.values().removeIf(cart -> !cart.isDirty() && now - cart.getLastAccessAt() > ttlMs);
+    }
+
+    private int pendingCarts() {
+        return (int) carts.values().stream().filter(ActiveCart::hasPending).count();
+    }
+
+    private long oldestPendingAge(long now) {
+        return carts.values().stream()
+                .filter(ActiveCart::hasPending)
+                .mapToLong(cart -> now - cart.getFirstDirtyAt())
+                .max()
+                .orElse(0);
+    }
+
+    /**
+     * 一個用戶尚未寫入的數量變更（購物車項目 ID -> 最後數量）
+     */
+    @Getter
+    @AllArgsConstructor
+    public static final class PendingChanges {
+        private final Map<Long, Integer> quantities;
+        private final long firstDirtyAt;
+    }
+
+    /**
+     * 單一用戶的快照與待寫入變更
+     */
+    private final class ActiveCart {
+        private CartResponse snapshot;
+        // 快照的定價在這個時間之前有效（下一個促銷開始或結束的時間）
+        private long pricedUntil;
+        private Map<Long, Integer> pending = new LinkedHashMap<>();
+        private long firstDirtyAt;
+        private long lastMutationAt;
+        private long retryAt;
+        // 已取出、尚未寫回結束的次數
+        private int draining;
+        private int failures;
+        private volatile long lastAccessAt = System.currentTimeMillis();
+
+        private ActiveCart(CartResponse snapshot) {
+            this.snapshot = snapshot;
+            this.pricedUntil = pricingEngine.nextPriceChangeAfter(System.currentTimeMillis());
+        }
+
+        private synchronized CartResponse copy() {
+            long now = System.currentTimeMillis();
+            lastAccessAt = now;
+            if (now >= pricedUntil) {
+                reprice(snapshot, now);
+            }
+            return snapshot.toBuilder().items(new ArrayList<>(snapshot.getItems())).build();
+        }
+
+        private synchronized CartResponse updateQuantity(Long cartItemId, int quantity, CartItemResponse held) {
+            List<CartItemResponse> items = new ArrayList<>(snapshot.getItems());
+            int index = indexOf(items, cartItemId);
+            if (index < 0) {
+                throw new RuntimeException("購物車項目不存在，ID: " + cartItemId);
+            }
+
+            CartItemResponse item = items.get(index);
+            if (held != null) {
+                item = item.toBuilder()
+                        .reservedQuantity(held.getReservedQuantity())
+                        .availableStock(held.getAvailableStock())
+                        .reservationExpiresAt(held.getReservationExpiresAt())
+                        .build();
+            } else {
+                int holdable = item.getReservedQuantity() + item.getAvailableStock();
+                if (quantity > holdable) {
+                    throw new RuntimeException("庫存不足，目前可用庫存：" + holdable);
+                }
+            }
+            items.set(index, item.toBuilder()
+                    .quantity(quantity)
+                    .inStock(true)
+                    .build());
+
+            // 數量改變可能影響促銷（例如買 X 送 Y），整台購物車重新定價
+            long now = System.currentTimeMillis();
+            reprice(snapshot.toBuilder().items(items).build(), now);
+
+            if (pending.isEmpty()) {
+                firstDirtyAt = now;
+            } else if (pending.containsKey(cartItemId)) {
+                coalescedCounter.increment();
+            }
+            pending.put(cartItemId, quantity);
+            lastMutationAt = now;
+            lastAccessAt = now;
+            return copy();
+        }
+
+        private void reprice(CartResponse cart, long now) {
+            snapshot = pricingEngine.price(cart);
+            pricedUntil = pricingEngine.nextPriceChangeAfter(now);
+        }
+
+        private synchronized PendingChanges drain() {
+            if (pending.isEmpty()) {
+                return null;
+            }
+            PendingChanges changes = new PendingChanges(pending, firstDirtyAt);
+            pending = new LinkedHashMap<>();
+            draining++;
+            return changes;
+        }
+
+        /**
+         * 結束一次取出，回傳是否可以用寫回後的資料取代快照（期間沒有新變更）
+         */
+        private synchronized boolean finishDrain() {
+            draining = Math.max(0, draining - 1);
+            failures = 0;
+            return pending.isEmpty();
+        }
+
+        private synchronized int restore(PendingChanges changes) {
+            draining = Math.max(0, draining - 1);
+            if (pending.isEmpty()) {
+                firstDirtyAt = changes.getFirstDirtyAt();
+            } else {
+                firstDirtyAt = Math.min(firstDirtyAt, changes.getFirstDirtyAt());
+            }
+            changes.getQuantities().forEach(pending::putIfAbsent);
+            return ++failures;
+        }
+
+        private synchronized void retryAfter(long retryAt) {
+            this.retryAt = retryAt;
+        }
+
+        private synchronized boolean containsAny(Collection<Long> productIds) {
+            return snapshot.getItems().stream().anyMatch(item -> productIds.contains(item.getProductId()));
+        }
+
+        private synchronized boolean hasPending() {
+            return !pending.isEmpty();
+        }
+
+        private synchronized boolean isDirty() {
+            return !pending.isEmpty() || draining > 0;
+        }
+
+        private synchronized boolean isDue(long now, long idleMs, long maxLagMs) {
+            return !pending.isEmpty() && now >= retryAt
+                    && (now - lastMutationAt >= idleMs || now - firstDirtyAt >= maxLagMs);
+        }
+
+        private synchronized long getFirstDirtyAt() {
+            return firstDirtyAt;
+        }
+
+        private long getLastAccessAt() {
+            return lastAccessAt;
+        }
+
+        private int indexOf(List<CartItemResponse> items, Long cartItemId) {
+            for (int i = 0; i < items.size(); i++) {
+                if (items.get(i).getId().equals(cartItemId)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+}
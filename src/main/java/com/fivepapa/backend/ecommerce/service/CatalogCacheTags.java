@@ -0,0 +1,47 @@
+package com.fivepapa.backend.ecommerce.service;
+
+import com.fivepapa.backend.common.cache.ResponseCache;
+import com.fivepapa.backend.ecommerce.event.ProductChangedEvent;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 商品目錄回應快取（ResponseCache）的 surrogate tag
+ * - product:{id}：單一商品回應（同時標上所屬分類的 category:{id}，分類改名時一起清除）
+ * - products：商品列表、搜尋結果
+ * - category:{id}：單一分類回應
+ * - categories：所有分類回應（包含商品數與子分類，任一分類或商品數變動時清除）
+ * 商品異動事件在提交後清除該商品與商品列表；其餘寫入由各服務直接呼叫 purgeAfterCommit
+ */
+@Component
+@RequiredArgsConstructor
+public class CatalogCacheTags {
+
+    public static final String PRODUCTS = "products";
+    public static final String CATEGORIES = "categories";
+
+    private final ResponseCache responseCache;
+
+    public static String product(Long id) {
+        return "product:" + id;
+    }
+
+    public static String category(Long id) {
+        return "category:" + id;
+    }
+
+    /**
+     * 商品異動提交後，清除這些商品與商品列表
+     */
+    @TransactionalEventListener
+    public void onProductChanged(ProductChangedEvent event) {
+        List<String> tags = new ArrayList<>(event.getProductIds().size() + 1);
+        tags.add(PRODUCTS);
+        event.getProductIds().forEach(id -> tags.add(product(id)));
+        responseCache.purge(tags);
+    }
+}
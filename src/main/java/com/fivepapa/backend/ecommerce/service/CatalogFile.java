@@ -0,0 +1,342 @@
+package com.fivepapa.backend.ecommerce.service;
+
+import com.fivepapa.backend.ecommerce.dto.ProductResponse;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 商品目錄的二進位檔案（MappedCatalogStore 記憶體映射後直接讀取，不在 heap 上保存商品）
+ *
+ * 檔案配置（big-endian）：
+ * - header（32 bytes）：magic、格式版本、商品數、索引槽數、記錄區與字串區的起始位置
+ * - 索引：ID → 記錄編號的開放定址雜湊表（線性探測），每槽 12 bytes（id long、記錄編號 int），id 0 表示空槽
+ * - 記錄區：固定長度的記錄（RECORD_BYTES），依加入順序；數值欄位直接存放，字串欄位存字串區中的位置（-1 表示 null）
+ * - 字串區：長度（int）加 UTF-8 內容，相同的短字串（分類名稱、圖片網址等）只存一次
+ *
+ * 讀取只解碼需要的欄位：查索引、讀版本或更新時間不會建立字串與 BigDecimal
+ * 時間以 UTC 換算成 epoch 奈秒存放（LocalDateTime 沒有時區，只是換算方式），Long.MIN_VALUE 表示 null
+ * 整個檔案需小於 2GB（單一 MappedByteBuffer 的上限）
+ */
+final class CatalogFile {
+
+    private static final int MAGIC = 0x46504354;  // "FPCT"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 32;
+    private static final int SLOT_BYTES = 12;
+    private static final int NULL_STRING = -1;
+    private static final long NULL_TIME = Long.MIN_VALUE;
+    // 只合併這個長度以內的字串，描述等長字串通常不重複，不需要在建立時保存
+    private static final int DEDUP_MAX_LENGTH = 128;
+
+    // 記錄中各欄位的位置
+    private static final int ID = 0;
+    private static final int VERSION = 8;
+    private static final int CREATED_AT = 16;
+    private static final int UPDATED_AT = 24;
+    private static final int PRICE_UNSCALED = 32;
+    private static final int CATEGORY_ID = 40;
+    private static final int STOCK = 48;
+    private static final int NAME = 52;
+    private static final int DESCRIPTION = 56;
+    private static final int IMAGE_URL = 60;
+    private static final int CATEGORY_NAME = 64;
+    private static final int PRICE_SCALE = 68;
+    private static final int FLAGS = 69;
+    static final int RECORD_BYTES = 72;
+
+    private static final int FEATURED = 1;
+    private static final int HAS_CATEGORY = 2;
+
+    private final ByteBuffer buffer;
+    private final int size;
+    private final int slots;
+    private final int recordsOffset;
+    private final int poolOffset;
+
+    private CatalogFile(ByteBuffer buffer) {
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION) {
+            throw new IllegalStateException("Not a catalog file of format " + FORMAT_VERSION);
+        }
+        this.buffer = buffer;
+        this.size = buffer.getInt(8);
+        this.slots = buffer.getInt(12);
+        this.recordsOffset = buffer.getInt(16);
+        this.poolOffset = buffer.getInt(20);
+    }
+
+    /**
+     * 以唯讀方式映射檔案（映射在關閉檔案後仍然有效）
+     */
+    static CatalogFile map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new CatalogFile(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * 商品數
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * 檔案大小（bytes）
+     */
+    long bytes() {
+        return buffer.capacity();
+    }
+
+    /**
+     * 商品的記錄編號，沒有此商品時回傳 -1
+     */
+    int find(long id) {
+        if (id == 0) {
+            return -1;
+        }
+        int mask = slots - 1;
+        int slot = hash(id) & mask;
+        while (true) {
+            int at = HEADER_BYTES + slot * SLOT_BYTES;
+            long candidate = buffer.getLong(at);
+            if (candidate == id) {
+                return buffer.getInt(at + 8);
+            }
+            if (candidate == 0) {
+                return -1;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    long version(int record) {
+        return buffer.getLong(offset(record) + VERSION);
+    }
+
+    LocalDateTime updatedAt(int record) {
+        return time(offset(record) + UPDATED_AT);
+    }
+
+    /**
+     * 解碼整筆記錄
+     */
+    ProductResponse response(int record) {
+        int at = offset(record);
+        byte flags = buffer.get(at + FLAGS);
+        return new ProductResponse(
+                buffer.getLong(at + ID),
+                string(at + NAME),
+                string(at + DESCRIPTION),
+                BigDecimal.valueOf(buffer.getLong(at + PRICE_UNSCALED), buffer.get(at + PRICE_SCALE)),
+                buffer.getInt(at + STOCK),
+                string(at + IMAGE_URL),
+                true,  // 只保存上架商品
+                (flags & FEATURED) != 0,
+                (flags & HAS_CATEGORY) != 0 ? buffer.getLong(at + CATEGORY_ID) : null,
+                string(at + CATEGORY_NAME),
+                buffer.getLong(at + VERSION),
+                time(at + CREATED_AT),
+                time(at + UPDATED_AT));
+    }
+
+    private int offset(int record) {
+        return recordsOffset + record * RECORD_BYTES;
+    }
+
+    private String string(int field) {
+        int position = buffer.getInt(field);
+        if (position == NULL_STRING) {
+            return null;
+        }
+        int at = poolOffset + position;
+        byte[] bytes = new byte[buffer.getInt(at)];
+        buffer.get(at + 4, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private LocalDateTime time(int field) {
+        long nanos = buffer.getLong(field);
+        if (nanos == NULL_TIME) {
+            return null;
+        }
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(nanos, 1_000_000_000L),
+                (int) Math.floorMod(nanos, 1_000_000_000L), ZoneOffset.UTC);
+    }
+
+    private static int hash(long id) {
+        // 與 LongHashSet 相同的 Fibonacci hashing，連續的 ID 分散到整個表
+        long h = id * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * 建立新的目錄檔案：記錄與字串先依序寫到暫存檔，finish() 時加上 header 與索引組成完整的檔案
+     * 建立期間在 heap 上只保存 ID 陣列與短字串的合併表
+     */
+    static final class Writer implements Closeable {
+
+        private final Path directory;
+        private final Path records;
+        private final Path pool;
+        private final DataOutputStream recordOut;
+        private final DataOutputStream poolOut;
+        private final Map<String, Integer> pooled = new HashMap<>();
+        private long[] ids = new long[1024];
+        private int size;
+        private long poolBytes;
+
+        Writer(Path directory) throws IOException {
+            this.directory = directory;
+            this.records = Files.createTempFile(directory, "records-", ".tmp");
+            this.pool = Files.createTempFile(directory, "strings-", ".tmp");
+            this.recordOut = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(records), 64 * 1024));
+            this.poolOut = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(pool), 64 * 1024));
+        }
+
+        /**
+         * 加入一個上架商品（ID 必須為正數且不重複）
+         */
+        void add(ProductResponse product) throws IOException {
+            long id = product.getId();
+            if (id <= 0) {
+                throw new IllegalArgumentException("Catalog ids must be positive: " + id);
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+
+            BigDecimal price = product.getPrice();
+            int flags = (Boolean.TRUE.equals(product.getFeatured()) ? FEATURED : 0)
+                    | (product.getCategoryId() != null ? HAS_CATEGORY : 0);
+            recordOut.writeLong(id);
+            recordOut.writeLong(product.getVersion());
+            recordOut.writeLong(time(product.getCreatedAt()));
+            recordOut.writeLong(time(product.getUpdatedAt()));
+            recordOut.writeLong(price.unscaledValue().longValueExact());
+            recordOut.writeLong(product.getCategoryId() != null ? product.getCategoryId() : 0);
+            recordOut.writeInt(product.getStock());
+            recordOut.writeInt(string(product.getName()));
+            recordOut.writeInt(string(product.getDescription()));
+            recordOut.writeInt(string(product.getImageUrl()));
+            recordOut.writeInt(string(product.getCategoryName()));
+            recordOut.writeByte(price.scale());
+            recordOut.writeByte(flags);
+            recordOut.writeShort(0);
+        }
+
+        /**
+         * 寫出完整的檔案（directory 中的新檔案）
+         */
+        Path finish() throws IOException {
+            recordOut.close();
+            poolOut.close();
+
+            // 槽數為 2 的次方且至少是商品數的兩倍，探測長度很短
+            int slots = Integer.highestOneBit(Math.max(4, size * 2) - 1) << 1;
+            long recordsOffset = HEADER_BYTES + (long) slots * SLOT_BYTES;
+            long poolOffset = recordsOffset + (long) size * RECORD_BYTES;
+            if (poolOffset + poolBytes > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Catalog of " + size + " products exceeds 2 GB and cannot be mapped");
+            }
+
+            ByteBuffer head = ByteBuffer.allocate((int) recordsOffset);
+            head.putInt(0, MAGIC)
+                    .putInt(4, FORMAT_VERSION)
+                    .putInt(8, size)
+                    .putInt(12, slots)
+                    .putInt(16, (int) recordsOffset)
+                    .putInt(20, (int) poolOffset);
+            int mask = slots - 1;
+            for (int record = 0; record < size; record++) {
+                int slot = hash(ids[record]) & mask;
+                while (head.getLong(HEADER_BYTES + slot * SLOT_BYTES) != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                head.putLong(HEADER_BYTES + slot * SLOT_BYTES, ids[record]);
+                head.putInt(HEADER_BYTES + slot * SLOT_BYTES + 8, record);
+            }
+
+            Path target = Files.createTempFile(directory, "products-", ".catalog");
+            try (FileChannel out = FileChannel.open(target, StandardOpenOption.WRITE)) {
+                while (head.hasRemaining()) {
+                    out.write(head);
+                }
+                append(records, out);
+                append(pool, out);
+            } catch (IOException | RuntimeException e) {
+                Files.deleteIfExists(target);
+                throw e;
+            }
+            return target;
+        }
+
+        /**
+         * 刪除暫存檔（finish() 寫出的檔案不受影響）
+         */
+        @Override
+        public void close() throws IOException {
+            recordOut.close();
+            poolOut.close();
+            Files.deleteIfExists(records);
+            Files.deleteIfExists(pool);
+        }
+
+        private int string(String value) throws IOException {
+            if (value == null) {
+                return NULL_STRING;
+            }
+            boolean dedup = value.length() <= DEDUP_MAX_LENGTH;
+            if (dedup) {
+                Integer existing = pooled.get(value);
+                if (existing != null) {
+                    return existing;
+                }
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            if (poolBytes + 4 + bytes.length > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Catalog strings exceed 2 GB and cannot be mapped");
+            }
+            int position = (int) poolBytes;
+            poolOut.writeInt(bytes.length);
+            poolOut.write(bytes);
+            poolBytes += 4 + bytes.length;
+            if (dedup) {
+                pooled.put(value, position);
+            }
+            return position;
+        }
+
+        private static long time(LocalDateTime value) {
+            if (value == null) {
+                return NULL_TIME;
+            }
+            return Math.addExact(Math.multiplyExact(value.toEpochSecond(ZoneOffset.UTC), 1_000_000_000L), value.getNano());
+        }
+
+        private static void append(Path source, FileChannel out) throws IOException {
+            try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+                long position = 0;
+                long length = in.size();
+                while (position < length) {
+                    position += in.transferTo(position, length - position, out);
+                }
+            }
+        }
+    }
+}
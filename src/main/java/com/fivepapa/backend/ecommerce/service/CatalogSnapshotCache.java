@@ -0,0 +1,175 @@
+package com.fivepapa.backend.ecommerce.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.EnumMap;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 公開目錄回應的預先產生快取（上架商品列表、頂層分類）
+ * 這些回應對所有訪客都一樣，每個目錄版本只查詢、序列化、壓縮一次，保存成原始與 gzip 兩份 byte[]，
+ * 請求時依 Accept-Encoding 直接寫出，並以內容雜湊作為 ETag（If-None-Match 相符時回應 304）
+ *
+ * 目錄版本（CatalogValidators.categories()）由商品異動序號與分類的數量、最後更新時間組成，
+ * 每 CATALOG_SNAPSHOT_CHECK_MS 在背景檢查一次，有變動才重新產生；其他執行個體的修改也會被偵測到
+ * 修改最多在「異動編號間隔 + 檢查間隔」之後出現在回應中，重新產生期間繼續提供舊的版本
+ */
+@Slf4j
+@Component
+public class CatalogSnapshotCache {
+
+    public enum View {
+        ACTIVE_PRODUCTS,
+        TOP_LEVEL_CATEGORIES
+    }
+
+    private final CatalogValidators catalogValidators;
+    private final ObjectMapper objectMapper;
+    private final Map<View, Supplier<Object>> renderers = new EnumMap<>(View.class);
+    private volatile Map<View, Snapshot> snapshots;
+    private volatile String renderedVersion;
+    private final Counter renderCounter;
+    private final Timer renderTimer;
+
+    public CatalogSnapshotCache(ProductService productService,
+                                CategoryService categoryService,
+                                CatalogValidators catalogValidators,
+                                ObjectMapper objectMapper,
+                                MeterRegistry meterRegistry) {
+        this.catalogValidators = catalogValidators;
+        this.objectMapper = objectMapper;
+        renderers.put(View.ACTIVE_PRODUCTS, productService::getActiveProducts);
+        renderers.put(View.TOP_LEVEL_CATEGORIES, categoryService::getTopLevelCategories);
+
+        this.renderCounter = Counter.builder("catalog.snapshot.renders")
+                .description("Times the public catalog snapshots were rendered because the catalog changed")
+                .register(meterRegistry);
+        this.renderTimer = Timer.builder("catalog.snapshot.render")
+                .description("Time to query, serialize and compress all catalog snapshots")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 目錄有變動時重新產生（背景執行）
+     */
+    @Scheduled(fixedDelayString = "${CATALOG_SNAPSHOT_CHECK_MS:1000}")
+    public void refreshIfChanged() {
+        if (snapshots == null) {
+            return;  // 還沒有人請求過，第一次請求時才產生
+        }
+        String version = catalogValidators.categories();
+        if (!version.equals(renderedVersion)) {
+            render(version);
+        }
+    }
+
+    /**
+     * 以預先產生的內容回應（第一次請求時同步產生）
+     */
+    public ResponseEntity<byte[]> respond(View view, String acceptEncoding, String ifNoneMatch) {
+        Map<View, Snapshot> current = snapshots;
+        if (current == null) {
+            current = renderInitial();
+        }
+        Snapshot snapshot = current.get(view);
+        boolean gzip = acceptEncoding != null && acceptEncoding.toLowerCase(Locale.ROOT).contains("gzip");
+        String etag = gzip ? snapshot.gzipEtag() : snapshot.etag();
+
+        if (ifNoneMatch != null && snapshot.matches(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(etag)
+                    .cacheControl(CacheControl.noCache())
+                    .varyBy(HttpHeaders.ACCEPT_ENCODING)
+                    .build();
+        }
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache())
+                .varyBy(HttpHeaders.ACCEPT_ENCODING)
+                .contentType(MediaType.APPLICATION_JSON);
+        if (gzip) {
+            return builder.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(snapshot.gzip());
+        }
+        return builder.body(snapshot.json());
+    }
+
+    private synchronized Map<View, Snapshot> renderInitial() {
+        if (snapshots == null) {
+            render(catalogValidators.categories());
+        }
+        return snapshots;
+    }
+
+    /**
+     * 先取得版本再查詢：查詢期間的異動會讓下次檢查的版本不同，再產生一次
+     */
+    private synchronized void render(String version) {
+        Map<View, Snapshot> rendered = new EnumMap<>(View.class);
+        renderTimer.record(() -> renderers.forEach((view, renderer) -> rendered.put(view, snapshot(renderer.get()))));
+        snapshots = rendered;
+        renderedVersion = version;
+        renderCounter.increment();
+        log.debug("Rendered catalog snapshots for {}", version);
+    }
+
+    private Snapshot snapshot(Object body) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(body);
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(json.length / 4 + 64);
+            // 每個版本只壓縮一次，使用最高壓縮率
+            try (GZIPOutputStream gzip = new GZIPOutputStream(compressed) {{ def.setLevel(Deflater.BEST_COMPRESSION); }}) {
+                gzip.write(json);
+            }
+            String hash = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(json), 0, 10);
+            return new Snapshot(json, compressed.toByteArray(), "\"" + hash + "\"", "\"" + hash + "-gz\"");
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize catalog snapshot", e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 同一份內容的兩種編碼；ETag 依編碼不同，If-None-Match 兩者都接受
+     */
+    private record Snapshot(byte[] json, byte[] gzip, String etag, String gzipEtag) {
+
+        boolean matches(String ifNoneMatch) {
+            for (String candidate : ifNoneMatch.split(",")) {
+                String tag = candidate.trim();
+                if (tag.startsWith("W/")) {
+                    tag = tag.substring(2);
+                }
+                if (tag.equals("*") || Objects.equals(tag, etag) || Objects.equals(tag, gzipEtag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
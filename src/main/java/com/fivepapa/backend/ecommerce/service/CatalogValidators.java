@@ -0,0 +1,74 @@
+package com.fivepapa.backend.ecommerce.service;
+
+import com.fivepapa.backend.ecommerce.dto.ProductResponse;
+import com.fivepapa.backend.ecommerce.repository.CategoryRepository;
+import com.fivepapa.backend.ecommerce.repository.CategoryRepository.CategoryStats;
+import com.fivepapa.backend.ecommerce.repository.ProductRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Optional;
+
+/**
+ * 條件式 GET（ETag / Last-Modified）的驗證值，只用很小的查詢取得，不需要先產生回應內容
+ * - 單一商品：商品版本（與 PATCH 的 If-Match 相同）與 updatedAt，近端快取或映射的目錄檔案有此商品時不查詢資料庫
+ * - 商品列表：商品異動序號（ProductChangeSequencer，涵蓋新增、刪除與所有寫入路徑）
+ * - 分類：商品異動序號（分類回應包含商品數）加上分類的數量與最後更新時間
+ * 列表的序號在異動編號後才改變，最多延遲 PRODUCT_CHANGE_STAMP_INTERVAL_MS
+ */
+@Component
+@RequiredArgsConstructor
+public class CatalogValidators {
+
+    private final ProductRepository productRepository;
+    private final CategoryRepository categoryRepository;
+    private final ProductChangeSequencer productChangeSequencer;
+    private final ProductResponseCache productResponseCache;
+    private final MappedCatalogStore mappedCatalogStore;
+
+    /**
+     * 單一商品的驗證值；商品不存在時為 empty
+     */
+    public Optional<Validator> product(Long id) {
+        ProductResponse cached = productResponseCache.getIfPresent(id);
+        if (cached != null) {
+            return Optional.of(new Validator(String.valueOf(cached.getVersion()), toEpochMillis(cached.getUpdatedAt())));
+        }
+        Validator stored = mappedCatalogStore.validator(id);
+        if (stored != null) {
+            return Optional.of(stored);
+        }
+        return productRepository.findVersionById(id)
+                .map(version -> new Validator(String.valueOf(version.getVersion()), toEpochMillis(version.getUpdatedAt())));
+    }
+
+    /**
+     * 商品列表的 ETag
+     */
+    public String products() {
+        return "p" + productChangeSequencer.currentSeq();
+    }
+
+    /**
+     * 分類（單一或列表）的 ETag
+     */
+    public String categories() {
+        CategoryStats stats = categoryRepository.findStats();
+        long updated = stats.getLastUpdatedAt() != null
+                ? stats.getLastUpdatedAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : 0;
+        return "c" + productChangeSequencer.currentSeq() + "." + stats.getCount() + "." + updated;
+    }
+
+    static long toEpochMillis(LocalDateTime updatedAt) {
+        // updatedAt 以應用程式的時區保存（LocalDateTime.now()）
+        return updatedAt != null ? updatedAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : -1;
+    }
+
+    /**
+     * ETag 與 Last-Modified（毫秒，-1 表示沒有）
+     */
+    public record Validator(String etag, long lastModified) {
+    }
+}
@@ -1,21 +1,57 @@
 package com.fivepapa.backend.ecommerce.service;
 
+import com.fivepapa.backend.common.cache.ResponseCache;
+import com.fivepapa.backend.common.concurrent.SingleFlight;
 import com.fivepapa.backend.ecommerce.dto.CategoryRequest;
 import com.fivepapa.backend.ecommerce.dto.CategoryResponse;
 import com.fivepapa.backend.ecommerce.entity.Category;
+import com.fivepapa.backend.ecommerce.event.PromotionChangedEvent;
 import com.fivepapa.backend.ecommerce.repository.CategoryRepository;
-import lombok.RequiredArgsConstructor;
+import com.fivepapa.backend.ecommerce.repository.ProductRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.stream.Collectors;
 
 @Service
-@RequiredArgsConstructor
 public class CategoryService {
 
     private final CategoryRepository categoryRepository;
+    private final ProductRepository productRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ResponseCache responseCache;
+    private final ProductResponseCache productResponseCache;
+    private final MappedCatalogStore mappedCatalogStore;
+    private final TransactionTemplate readOnlyTransaction;
+    // 相同的查詢同時只執行一次，其他請求共用結果（在取得資料庫連線之前合併）
+    private final SingleFlight<String, List<CategoryResponse>> listLoads;
+    private final SingleFlight<Long, CategoryResponse> categoryLoads;
+
+    public CategoryService(CategoryRepository categoryRepository,
+                           ProductRepository productRepository,
+                           ApplicationEventPublisher eventPublisher,
+                           ResponseCache responseCache,
+                           ProductResponseCache productResponseCache,
+                           MappedCatalogStore mappedCatalogStore,
+                           PlatformTransactionManager transactionManager,
+                           MeterRegistry meterRegistry) {
+        this.categoryRepository = categoryRepository;
+        this.productRepository = productRepository;
+        this.eventPublisher = eventPublisher;
+        this.responseCache = responseCache;
+        this.productResponseCache = productResponseCache;
+        this.mappedCatalogStore = mappedCatalogStore;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.listLoads = new SingleFlight<>("categoryLists", meterRegistry);
+        this.categoryLoads = new SingleFlight<>("categories", meterRegistry);
+    }
 
     /**
      * 建立分類
@@ -46,17 +82,22 @@ public class CategoryService {
         }
 
         Category saved = categoryRepository.save(category);
+        responseCache.purgeAfterCommit(CatalogCacheTags.CATEGORIES);
+        if (saved.getParent() != null) {
+            // 父分類的促銷也適用於新的子分類
+            eventPublisher.publishEvent(new PromotionChangedEvent());
+        }
         return convertToResponse(saved);
     }
 
     /**
      * 查詢所有分類
      */
-    @Transactional(readOnly = true)
     public List<CategoryResponse> getAllCategories() {
-        return categoryRepository.findAll().stream()
-                .map(this::convertToResponse)
-                .collect(Collectors.toList());
+        return listLoads.execute("all", () -> readOnlyTransaction.execute(status ->
+                categoryRepository.findAll().stream()
+                        .map(this::convertToResponse)
+                        .toList()));
     }
 
     /**
@@ -72,21 +113,22 @@ public class CategoryService {
     /**
      * 查詢單一分類
      */
-    @Transactional(readOnly = true)
     public CategoryResponse getCategoryById(Long id) {
-        Category category = categoryRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("分類不存在，ID: " + id));
-        return convertToResponse(category);
+        return categoryLoads.execute(id, () -> readOnlyTransaction.execute(status -> {
+            Category category = categoryRepository.findById(id)
+                    .orElseThrow(() -> new RuntimeException("分類不存在，ID: " + id));
+            return convertToResponse(category);
+        }));
     }
 
     /**
      * 查詢特定父分類的子分類
      */
-    @Transactional(readOnly = true)
     public List<CategoryResponse> getChildCategories(Long parentId) {
-        return categoryRepository.findByParentId(parentId).stream()
-                .map(this::convertToResponse)
-                .collect(Collectors.toList());
+        return listLoads.execute("children:" + parentId, () -> readOnlyTransaction.execute(status ->
+                categoryRepository.findByParentId(parentId).stream()
+                        .map(this::convertToResponse)
+                        .toList()));
     }
 
     /**
@@ -102,6 +144,13 @@ public class CategoryService {
             throw new RuntimeException("分類名稱已存在：" + request.getName());
         }
 
+        if (!category.getName().equals(request.getName())) {
+            // 商品回應包含分類名稱，改名後這些商品也要出現在增量同步中
+            productRepository.markChangedByCategoryId(id, LocalDateTime.now());
+            productResponseCache.evictCategoryAfterCompletion(id);
+            mappedCatalogStore.invalidateAllAfterCompletion();
+            responseCache.purgeAfterCommit(CatalogCacheTags.PRODUCTS);
+        }
         category.setName(request.getName());
         category.setDescription(request.getDescription());
         category.setActive(request.getActive() != null ? request.getActive() : true);
@@ -132,6 +181,10 @@ public class CategoryService {
         }
 
         Category updated = categoryRepository.save(category);
+        // 單一商品回應標有所屬分類，改名時一起清除
+        responseCache.purgeAfterCommit(CatalogCacheTags.CATEGORIES, CatalogCacheTags.category(id));
+        // 分類階層改變時，分類促銷涵蓋的子分類也跟著改變
+        eventPublisher.publishEvent(new PromotionChangedEvent());
         return convertToResponse(updated);
     }
 
@@ -154,6 +207,7 @@ public class CategoryService {
         }
 
         categoryRepository.deleteById(id);
+        responseCache.purgeAfterCommit(CatalogCacheTags.CATEGORIES, CatalogCacheTags.category(id));
     }
 
     /**
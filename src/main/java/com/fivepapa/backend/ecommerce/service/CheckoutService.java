@@ -0,0 +1,205 @@
+package com.fivepapa.backend.ecommerce.service;
+
+import com.fivepapa.backend.ecommerce.dto.CartItemResponse;
+import com.fivepapa.backend.ecommerce.dto.CartResponse;
+import com.fivepapa.backend.ecommerce.dto.OrderItemResponse;
+import com.fivepapa.backend.ecommerce.dto.OrderResponse;
+import com.fivepapa.backend.ecommerce.entity.Order;
+import com.fivepapa.backend.ecommerce.entity.OrderItem;
+import com.fivepapa.backend.ecommerce.event.ProductChangedEvent;
+import com.fivepapa.backend.ecommerce.repository.OrderRepository;
+import com.fivepapa.backend.member.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.persistence.EntityManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 結帳服務
+ * 在單一短交易內把購物車轉為訂單：
+ * 1. 鎖定購物車與項目，以最新價格與促銷定價
+ * 2. 以一個 JDBC batch 的條件式 UPDATE 扣除所有項目的庫存（依商品 ID 排序，多筆結帳同時扣同一批商品也不會死鎖），
+ *    任一項目庫存不足就整筆回滾
+ * 3. 建立訂單，以單一 DELETE 清空購物車
+ * 售出商品的庫存改變，發布 ProductChangedEvent，由各快取在提交後清除
+ */
+@Service
+public class CheckoutService {
+
+    /**
+     * 扣除庫存，同時把此項目保留的數量從 reserved_stock 扣掉
+     * （全部扣掉：write-behind 先保留後寫數量時，保留量可能大於數量）
+     * 未保留的部分（保留已到期或部分保留）需要有足夠的未保留庫存
+     * 遞增 version，讓依舊版本帶 If-Match 設定庫存的 PATCH 失敗，而不是蓋掉這次扣除
+     * 更新 updated_at 並把 change_seq 設為 null，讓 Last-Modified 與增量同步反映新的庫存
+     */
+    private static final String DECREMENT_STOCK_SQL =
+            "UPDATE product SET stock = stock - ?, reserved_stock = reserved_stock - ?, version = version + 1, " +
+            "updated_at = ?, change_seq = NULL " +
+            "WHERE id = ? AND active = TRUE AND reserved_stock >= ? AND stock - reserved_stock >= ? - ?";
+
+    private final CartService cartService;
+    private final OrderRepository orderRepository;
+    private final UserRepository userRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManager entityManager;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Timer checkoutTimer;
+    private final Counter stockConflictCounter;
+
+    public CheckoutService(CartService cartService,
+                           OrderRepository orderRepository,
+                           UserRepository userRepository,
+                           JdbcTemplate jdbcTemplate,
+                           EntityManager entityManager,
+                           ApplicationEventPublisher eventPublisher,
+                           MeterRegistry meterRegistry) {
+        this.cartService = cartService;
+        this.orderRepository = orderRepository;
+        this.userRepository = userRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.entityManager = entityManager;
+        this.eventPublisher = eventPublisher;
+        this.checkoutTimer = Timer.builder("checkout.duration")
+                .description("Time to turn a cart into an order, including the stock decrement")
+                .register(meterRegistry);
+        this.stockConflictCounter = Counter.builder("checkout.stock_conflicts")
+                .description("Checkouts rolled back because a line no longer had enough stock")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 結帳
+     */
+    @Transactional
+    public OrderResponse checkout(Long userId) {
+        return checkoutTimer.record(() -> {
+            CartResponse cart = cartService.lockForCheckout(userId);
+            // 寫回數量變更等尚未送出的 SQL，之後的 JDBC UPDATE 才會看到最新的保留數量
+            entityManager.flush();
+            decrementStock(cart.getItems());
+
+            Order order = new Order();
+            order.setUser(userRepository.getReferenceById(userId));
+            order.setTotalQuantity(cart.getTotalQuantity());
+            order.setSubtotalAmount(cart.getSubtotalAmount());
+            order.setDiscountAmount(cart.getDiscountAmount());
+            order.setTotalAmount(cart.getTotalAmount());
+            for (CartItemResponse line : cart.getItems()) {
+                OrderItem item = new OrderItem();
+                item.setProductId(line.getProductId());
+                item.setProductName(line.getProductName());
+                item.setUnitPrice(line.getProductPrice());
+                item.setQuantity(line.getQuantity());
+                item.setSubtotal(line.getSubtotal());
+                item.setDiscount(line.getDiscount());
+                item.setPromotionId(line.getPromotionId());
+                item.setPromotionName(line.getPromotionName());
+                order.addItem(item);
+            }
+            orderRepository.save(order);
+
+            cartService.clearCheckedOutCart(cart);
+            return convertToResponse(order);
+        });
+    }
+
+    /**
+     * 查詢用戶的所有訂單
+     */
+    @Transactional(readOnly = true)
+    public List<OrderResponse> getOrders(Long userId) {
+        return orderRepository.findByUserIdOrderByIdDesc(userId).stream()
+                .map(this::convertToResponse)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 查詢用戶的單一訂單
+     */
+    @Transactional(readOnly = true)
+    public OrderResponse getOrder(Long userId, Long orderId) {
+        Order order = orderRepository.findByIdAndUserId(orderId, userId)
+                .orElseThrow(() -> new RuntimeException("訂單不存在，ID: " + orderId));
+        return convertToResponse(order);
+    }
+
+    /**
+     * 以一個 batch 扣除所有項目的庫存（項目已依商品 ID 排序），任一筆沒有更新到就拋出例外回滾
+     */
+    private void decrementStock(List<CartItemResponse> lines) {
+        Timestamp updatedAt = Timestamp.valueOf(LocalDateTime.now());
+        int[] updated = jdbcTemplate.batchUpdate(DECREMENT_STOCK_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                CartItemResponse line = lines.get(i);
+                int reserved = Math.min(line.getReservedQuantity(), line.getQuantity());
+                ps.setInt(1, line.getQuantity());
+                ps.setInt(2, line.getReservedQuantity());
+                ps.setTimestamp(3, updatedAt);
+                ps.setLong(4, line.getProductId());
+                ps.setInt(5, line.getReservedQuantity());
+                ps.setInt(6, line.getQuantity());
+                ps.setInt(7, reserved);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return lines.size();
+            }
+        });
+
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] != 1) {
+                stockConflictCounter.increment();
+                throw new RuntimeException("庫存不足，無法結帳：" + lines.get(i).getProductName());
+            }
+        }
+
+        // 商品回應包含庫存，提交後由監聽者清除這些商品的快取
+        eventPublisher.publishEvent(ProductChangedEvent.of(
+                lines.stream().map(CartItemResponse::getProductId).toList()));
+    }
+
+    /**
+     * 轉換為 Response
+     */
+    private OrderResponse convertToResponse(Order order) {
+        List<OrderItemResponse> items = order.getItems().stream()
+                .map(item -> OrderItemResponse.builder()
+                        .id(item.getId())
+                        .productId(item.getProductId())
+                        .productName(item.getProductName())
+                        .unitPrice(item.getUnitPrice())
+                        .quantity(item.getQuantity())
+                        .subtotal(item.getSubtotal())
+                        .discount(item.getDiscount())
+                        .promotionId(item.getPromotionId())
+                        .promotionName(item.getPromotionName())
+                        .build())
+                .collect(Collectors.toList());
+
+        return OrderResponse.builder()
+                .id(order.getId())
+                .userId(order.getUser().getId())
+                .items(items)
+                .totalQuantity(order.getTotalQuantity())
+                .subtotalAmount(order.getSubtotalAmount())
+                .discountAmount(order.getDiscountAmount())
+                .totalAmount(order.getTotalAmount())
+                .createdAt(order.getCreatedAt())
+                .build();
+    }
+}
@@ -0,0 +1,326 @@
+package com.fivepapa.backend.ecommerce.service;
+
+import com.fivepapa.backend.ecommerce.dto.AddToCartRequest;
+import com.fivepapa.backend.ecommerce.dto.CartBatchRequest;
+import com.fivepapa.backend.ecommerce.dto.CartItemResponse;
+import com.fivepapa.backend.ecommerce.dto.CartResponse;
+import com.fivepapa.backend.ecommerce.entity.Product;
+import com.fivepapa.backend.ecommerce.pricing.PricingEngine;
+import com.fivepapa.backend.ecommerce.repository.ProductRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 訪客購物車服務
+ * 未登入的訪客購物車只存在記憶體（有上限、閒置到期自動移除），瀏覽期間不寫入資料庫、不保留庫存；
+ * 以簽章 cookie 識別，登入或註冊後在一個交易內合併到用戶的購物車
+ */
+@Slf4j
+@Service
+public class GuestCartService {
+
+    public static final String COOKIE_NAME = "guestCart";
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    private final ProductRepository productRepository;
+    private final StockReservationService stockReservationService;
+    private final CartService cartService;
+    private final PricingEngine pricingEngine;
+    private final TransactionTemplate mergeTransactionTemplate;
+    private final Cache<String, GuestCart> carts;
+    private final SecretKeySpec signingKey;
+    private final SecureRandom random = new SecureRandom();
+    private final int maxItems;
+
+    public GuestCartService(ProductRepository productRepository,
+                            StockReservationService stockReservationService,
+                            CartService cartService,
+                            PricingEngine pricingEngine,
+                            PlatformTransactionManager transactionManager,
+                            MeterRegistry meterRegistry,
+                            @Value("${GUEST_CART_SECRET:${JWT_SECRET}}") String secret,
+                            @Value("${GUEST_CART_MAX_CARTS:100000}") long maxCarts,
+                            @Value("${GUEST_CART_TTL_MINUTES:1440}") long ttlMinutes,
+                            @Value("${GUEST_CART_MAX_ITEMS:100}") int maxItems) {
+        this.productRepository = productRepository;
+        this.stockReservationService = stockReservationService;
+        this.cartService = cartService;
+        this.pricingEngine = pricingEngine;
+        // 合併在登入交易提交後以獨立交易執行
+        this.mergeTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.mergeTransactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.signingKey = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256");
+        this.maxItems = maxItems;
+        this.carts = Caffeine.newBuilder()
+                .maximumSize(maxCarts)
+                .expireAfterAccess(Duration.ofMinutes(ttlMinutes))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, carts, "guestCarts");
+    }
+
+    /**
+     * 沿用有效的 cookie 值，無效或沒有時簽發新的
+     */
+    public String resolveToken(String token) {
+        return cartKey(token) != null ? token : newToken();
+    }
+
+    /**
+     * 查詢訪客購物車（沒有 cookie 或已到期時回傳空購物車）
+     */
+    @Transactional(readOnly = true)
+    public CartResponse getCart(String token) {
+        GuestCart cart = findCart(token);
+        return convertToResponse(cart != null ? cart.snapshot() : Map.of());
+    }
+
+    /**
+     * 加入商品（只檢查目前可用庫存，不保留）
+     */
+    @Transactional(readOnly = true)
+    public CartResponse addItem(String token, AddToCartRequest request) {
+        GuestCart cart = getOrCreateCart(token);
+        Product product = findActiveProduct(request.getProductId());
+        Map<Long, Integer> items = cart.update(lines -> {
+            int quantity = lines.getOrDefault(product.getId(), 0) + request.getQuantity();
+            checkStock(product, quantity);
+            if (!lines.containsKey(product.getId()) && lines.size() >= maxItems) {
+                throw new RuntimeException("購物車商品種類已達上限：" + maxItems);
+            }
+            lines.put(product.getId(), quantity);
+        });
+        return convertToResponse(items);
+    }
+
+    /**
+     * 更新商品數量
+     */
+    @Transactional(readOnly = true)
+    public CartResponse updateItem(String token, Long productId, int quantity) {
+        GuestCart cart = getOrCreateCart(token);
+        Product product = findActiveProduct(productId);
+        Map<Long, Integer> items = cart.update(lines -> {
+            if (!lines.containsKey(productId)) {
+                throw new RuntimeException("購物車中沒有該商品，ID: " + productId);
+            }
+            checkStock(product, quantity);
+            lines.put(productId, quantity);
+        });
+        return convertToResponse(items);
+    }
+
+    /**
+     * 移除商品
+     */
+    @Transactional(readOnly = true)
+    public CartResponse removeItem(String token, Long productId) {
+        GuestCart cart = getOrCreateCart(token);
+        return convertToResponse(cart.update(lines -> lines.remove(productId)));
+    }
+
+    /**
+     * 清空訪客購物車
+     */
+    public void clear(String token) {
+        String key = cartKey(token);
+        if (key != null) {
+            carts.invalidate(key);
+        }
+    }
+
+    /**
+     * 訪客購物車是否仍存在（合併失敗時會保留，cookie 不應清除）
+     */
+    public boolean exists(String token) {
+        return findCart(token) != null;
+    }
+
+    /**
+     * 將訪客購物車合併到用戶購物車（數量相加，超過可用庫存的部分捨去）
+     * 在目前交易提交後以單一交易、一次批次操作寫入；合併失敗不影響登入，訪客購物車保留到下次登入再合併
+     */
+    public void mergeIntoUserCart(Long userId, String token) {
+        String key = cartKey(token);
+        if (key == null) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    merge(userId, key);
+                }
+            });
+        } else {
+            merge(userId, key);
+        }
+    }
+
+    private void merge(Long userId, String key) {
+        // 先移出，同一個 cookie 同時登入時只有一個請求會合併
+        GuestCart cart = carts.asMap().remove(key);
+        Map<Long, Integer> items = cart != null ? cart.snapshot() : Map.of();
+        if (items.isEmpty()) {
+            return;
+        }
+
+        try {
+            mergeTransactionTemplate.executeWithoutResult(status -> {
+                List<CartBatchRequest.Operation> operations = new ArrayList<>();
+                for (Product product : productRepository.findAllById(items.keySet())) {
+                    int quantity = Math.min(items.get(product.getId()), stockReservationService.availableStock(product));
+                    if (product.getActive() && quantity > 0) {
+                        operations.add(new CartBatchRequest.Operation(CartBatchRequest.OperationType.ADD, product.getId(), quantity));
+                    }
+                }
+                if (!operations.isEmpty()) {
+                    cartService.applyBatch(userId, new CartBatchRequest(operations));
+                }
+            });
+        } catch (RuntimeException e) {
+            log.warn("Failed to merge guest cart into cart of user {}: {}", userId, e.getMessage());
+            carts.asMap().putIfAbsent(key, cart);
+        }
+    }
+
+    private GuestCart findCart(String token) {
+        String key = cartKey(token);
+        return key != null ? carts.getIfPresent(key) : null;
+    }
+
+    private GuestCart getOrCreateCart(String token) {
+        String key = cartKey(token);
+        if (key == null) {
+            throw new IllegalArgumentException("Invalid guest cart token");
+        }
+        return carts.get(key, k -> new GuestCart());
+    }
+
+    private Product findActiveProduct(Long productId) {
+        Product product = productRepository.findById(productId)
+                .orElseThrow(() -> new RuntimeException("商品不存在，ID: " + productId));
+        if (!product.getActive()) {
+            throw new RuntimeException("商品已下架");
+        }
+        return product;
+    }
+
+    private void checkStock(Product product, int quantity) {
+        int available = stockReservationService.availableStock(product);
+        if (quantity > available) {
+            throw new RuntimeException("庫存不足，目前可用庫存：" + available);
+        }
+    }
+
+    /**
+     * 轉換為 Response（訪客購物車沒有 ID，項目以商品 ID 識別）
+     */
+    private CartResponse convertToResponse(Map<Long, Integer> items) {
+        Map<Long, Product> products = items.isEmpty() ? Map.of() : productRepository.findAllById(items.keySet()).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+
+        List<CartItemResponse> itemResponses = new ArrayList<>();
+        items.forEach((productId, quantity) -> {
+            Product product = products.get(productId);
+            if (product == null) {
+                return;
+            }
+            int availableStock = stockReservationService.availableStock(product);
+            itemResponses.add(CartItemResponse.builder()
+                    .productId(productId)
+                    .productName(product.getName())
+                    .productDescription(product.getDescription())
+                    .productPrice(product.getPrice())
+                    .productImageUrl(product.getImageUrl())
+                    .categoryId(product.getCategory() != null ? product.getCategory().getId() : null)
+                    .quantity(quantity)
+                    .availableStock(availableStock)
+                    .inStock(product.getActive() && availableStock >= quantity)
+                    .reservedQuantity(0)
+                    .build());
+        });
+
+        return pricingEngine.price(CartResponse.builder()
+                .items(itemResponses)
+                .build());
+    }
+
+    private String newToken() {
+        byte[] id = new byte[16];
+        random.nextBytes(id);
+        String key = ENCODER.encodeToString(id);
+        return key + "." + sign(key);
+    }
+
+    /**
+     * 驗證 cookie 簽章並取出購物車 key，無效時回傳 null
+     */
+    private String cartKey(String token) {
+        if (token == null) {
+            return null;
+        }
+        int separator = token.indexOf('.');
+        if (separator <= 0) {
+            return null;
+        }
+        String key = token.substring(0, separator);
+        byte[] expected = sign(key).getBytes(StandardCharsets.US_ASCII);
+        byte[] actual = token.substring(separator + 1).getBytes(StandardCharsets.US_ASCII);
+        return MessageDigest.isEqual(expected, actual) ? key : null;
+    }
+
+    private String sign(String key) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(signingKey);
+            return ENCODER.encodeToString(mac.doFinal(key.getBytes(StandardCharsets.US_ASCII)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot sign guest cart token", e);
+        }
+    }
+
+    /**
+     * 訪客購物車內容（商品 ID -> 數量）
+     */
+    private static final class GuestCart {
+        private final Map<Long, Integer> items = new LinkedHashMap<>();
+
+        private synchronized Map<Long, Integer> snapshot() {
+            return new LinkedHashMap<>(items);
+        }
+
+        private synchronized Map<Long, Integer> update(Consumer<Map<Long, Integer>> change) {
+            change.accept(items);
+            return new LinkedHashMap<>(items);
+        }
+    }
+}
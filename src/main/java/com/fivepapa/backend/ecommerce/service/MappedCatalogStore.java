@@ -0,0 +1,393 @@
+package com.fivepapa.backend.ecommerce.service;
+
+import com.fivepapa.backend.common.cache.shared.SharedCache;
+import com.fivepapa.backend.ecommerce.dto.ProductResponse;
+import com.fivepapa.backend.ecommerce.event.ProductChangedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 上架商品的唯讀目錄，保存在記憶體映射的檔案中（CatalogFile），heap 上只有目前檔案的參照
+ * MAPPED_CATALOG_ENABLED=true 時，單一商品、上架商品列表與單一商品的條件式 GET 驗證值先從檔案讀取，
+ * 檔案無法提供時（未上架、尚未建立、建立後有異動）回傳 null，由呼叫端走原本的快取與資料庫
+ *
+ * 建立：以單一 JDBC 查詢依 ID 順序讀取所有上架商品，寫成新檔案後映射，再替換參照（讀取端看到的永遠是完整的檔案）
+ * - 第一次讀取時在背景建立，之後在商品寫入的交易結束後重新建立（MAPPED_CATALOG_REBUILD_DELAY_MS 內的寫入合併為一次）
+ * - 每 MAPPED_CATALOG_CHECK_MS 比對商品異動序號，其他執行個體的寫入（沒有 Shared Cache 時）也會觸發重新建立
+ *
+ * 一致性：每次異動遞增異動編號，記錄異動的商品 ID；檔案記錄開始查詢前的編號，
+ * 在那之後異動的商品（以及有任何異動時的列表）不從檔案讀取，直到包含這些異動的檔案完成
+ * 寫入交易內的讀取不經過檔案；異動透過 Shared Cache 通知其他執行個體
+ */
+@Slf4j
+@Component
+public class MappedCatalogStore {
+
+    private static final String CHANNEL = "productCatalogStore";
+    private static final int FETCH_SIZE = 1000;
+    private static final String ACTIVE_PRODUCTS_SQL =
+            "SELECT p.id, p.name, p.description, p.price, p.stock, p.image_url, p.active, p.featured, " +
+            "p.category_id, c.name AS category_name, p.version, p.created_at, p.updated_at " +
+            "FROM product p LEFT JOIN category c ON c.id = p.category_id " +
+            "WHERE p.active = TRUE ORDER BY p.id";
+
+    private final boolean enabled;
+    private final JdbcTemplate jdbcTemplate;
+    private final ProductChangeSequencer productChangeSequencer;
+    private final SharedCache sharedCache;
+    private final long rebuildDelayMillis;
+    private final Path directory;
+    private final boolean temporaryDirectory;
+    private final ScheduledExecutorService rebuildExecutor;
+    private final AtomicBoolean rebuildScheduled = new AtomicBoolean();
+    // 異動編號；商品 ID → 最後一次異動的編號（不超過目前檔案編號的項目在替換檔案後移除）
+    private final AtomicLong changes = new AtomicLong();
+    private final Map<Long, Long> changedIds = new ConcurrentHashMap<>();
+    private final AtomicLong listingsChangedAt = new AtomicLong();
+    private final AtomicLong allChangedAt = new AtomicLong();
+    private volatile Catalog catalog;
+    private final Counter hitCounter;
+    private final Counter fallbackCounter;
+    private final Counter failureCounter;
+    private final Timer rebuildTimer;
+
+    public MappedCatalogStore(JdbcTemplate jdbcTemplate,
+                              ProductChangeSequencer productChangeSequencer,
+                              SharedCache sharedCache,
+                              MeterRegistry meterRegistry,
+                              @Value("${MAPPED_CATALOG_ENABLED:false}") boolean enabled,
+                              @Value("${MAPPED_CATALOG_DIRECTORY:}") String directory,
+                              @Value("${MAPPED_CATALOG_REBUILD_DELAY_MS:200}") long rebuildDelayMillis) {
+        this.enabled = enabled;
+        this.jdbcTemplate = jdbcTemplate;
+        this.productChangeSequencer = productChangeSequencer;
+        this.sharedCache = sharedCache;
+        this.rebuildDelayMillis = rebuildDelayMillis;
+
+        this.hitCounter = Counter.builder("catalog.store.reads")
+                .description("Product reads served from the mapped catalog file")
+                .tag("outcome", "hit")
+                .register(meterRegistry);
+        this.fallbackCounter = Counter.builder("catalog.store.reads")
+                .description("Product reads served from the mapped catalog file")
+                .tag("outcome", "fallback")
+                .register(meterRegistry);
+        this.failureCounter = Counter.builder("catalog.store.rebuild.failures")
+                .description("Mapped catalog rebuilds that failed (the previous file stays in use)")
+                .register(meterRegistry);
+        this.rebuildTimer = Timer.builder("catalog.store.rebuild")
+                .description("Time to query, write and map the catalog file")
+                .register(meterRegistry);
+        Gauge.builder("catalog.store.products", this, store -> store.catalog != null ? store.catalog.file().size() : 0)
+                .description("Products in the current catalog file")
+                .register(meterRegistry);
+        Gauge.builder("catalog.store.bytes", this, store -> store.catalog != null ? store.catalog.file().bytes() : 0)
+                .description("Size of the current catalog file (mapped, off-heap)")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+
+        if (!enabled) {
+            this.directory = null;
+            this.temporaryDirectory = false;
+            this.rebuildExecutor = null;
+            return;
+        }
+        try {
+            this.temporaryDirectory = directory.isBlank();
+            this.directory = temporaryDirectory
+                    ? Files.createTempDirectory("catalog-")
+                    : Files.createDirectories(Path.of(directory));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create the mapped catalog directory", e);
+        }
+        this.rebuildExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "catalog-store-rebuild");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sharedCache.onInvalidation(CHANNEL, new SharedCache.InvalidationListener() {
+            @Override
+            public void invalidate(List<String> keys) {
+                changed(keys.stream().map(Long::valueOf).toList());
+            }
+
+            @Override
+            public void invalidateAll() {
+                changedAll();
+            }
+        });
+    }
+
+    /**
+     * 檔案中的商品回應；檔案無法提供時回傳 null
+     */
+    public ProductResponse find(Long id) {
+        Catalog current = readable();
+        int record = locate(current, id);
+        return record >= 0 ? current.file().response(record) : null;
+    }
+
+    /**
+     * 商品的版本與更新時間（條件式 GET），只讀取這兩個欄位；檔案無法提供時回傳 null
+     */
+    public CatalogValidators.Validator validator(Long id) {
+        Catalog current = readable();
+        int record = locate(current, id);
+        if (record < 0) {
+            return null;
+        }
+        return new CatalogValidators.Validator(String.valueOf(current.file().version(record)),
+                CatalogValidators.toEpochMillis(current.file().updatedAt(record)));
+    }
+
+    /**
+     * 所有上架商品（依 ID 順序）；檔案建立後有任何異動時回傳 null
+     */
+    public List<ProductResponse> activeProducts() {
+        Catalog current = readable();
+        if (current == null) {
+            return null;
+        }
+        if (Math.max(listingsChangedAt.get(), allChangedAt.get()) > current.generation()) {
+            fallbackCounter.increment();
+            return null;
+        }
+        CatalogFile file = current.file();
+        List<ProductResponse> products = new ArrayList<>(file.size());
+        for (int record = 0; record < file.size(); record++) {
+            products.add(file.response(record));
+        }
+        hitCounter.increment();
+        return products;
+    }
+
+    /**
+     * 目前交易結束後，這些商品不再從目前的檔案讀取，並重新建立；沒有交易時立即處理
+     */
+    public void invalidateAfterCompletion(Collection<Long> ids) {
+        afterCompletion(() -> {
+            changed(ids);
+            sharedCache.publishInvalidation(CHANNEL, ids.stream().map(String::valueOf).toList());
+        });
+    }
+
+    /**
+     * 目前交易結束後，整個檔案不再使用並重新建立（分類改名、匯入等無法列出商品的寫入）
+     */
+    public void invalidateAllAfterCompletion() {
+        afterCompletion(() -> {
+            changedAll();
+            sharedCache.publishInvalidateAll(CHANNEL);
+        });
+    }
+
+    /**
+     * 商品異動的交易結束後處理（回滾也處理，交易內可能已經讀過未提交的值）
+     */
+    @Order(Ordered.HIGHEST_PRECEDENCE + 1)
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMPLETION)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (enabled) {
+            changed(event.getProductIds());
+            sharedCache.publishInvalidation(CHANNEL, event.getProductIds().stream().map(String::valueOf).toList());
+        }
+    }
+
+    /**
+     * 商品異動序號改變時重新建立（其他執行個體的寫入、沒有經過 ProductService 的寫入）
+     */
+    @Scheduled(fixedDelayString = "${MAPPED_CATALOG_CHECK_MS:1000}")
+    public void rebuildIfChanged() {
+        Catalog current = catalog;
+        if (current == null) {
+            return;  // 還沒有人讀取過，第一次讀取時才建立
+        }
+        if (productChangeSequencer.currentSeq() != current.seq()) {
+            requestRebuild();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (!enabled) {
+            return;
+        }
+        rebuildExecutor.shutdownNow();
+        Catalog current = catalog;
+        if (current != null) {
+            delete(current.path());
+        }
+        if (temporaryDirectory) {
+            delete(directory);
+        }
+    }
+
+    /**
+     * 目前的檔案；未啟用或在寫入交易內時為 null，尚未建立時在背景建立
+     */
+    private Catalog readable() {
+        if (!enabled || inWriteTransaction()) {
+            return null;
+        }
+        Catalog current = catalog;
+        if (current == null) {
+            requestRebuild();
+            fallbackCounter.increment();
+        }
+        return current;
+    }
+
+    /**
+     * 商品在檔案中的記錄編號；檔案建立後異動過或不在檔案中（未上架、不存在）時回傳 -1
+     */
+    private int locate(Catalog current, Long id) {
+        if (current == null) {
+            return -1;
+        }
+        Long changedAt = changedIds.get(id);
+        int record = allChangedAt.get() > current.generation() || (changedAt != null && changedAt > current.generation())
+                ? -1 : current.file().find(id);
+        (record >= 0 ? hitCounter : fallbackCounter).increment();
+        return record;
+    }
+
+    private void changed(Collection<Long> ids) {
+        long generation = changes.incrementAndGet();
+        for (Long id : ids) {
+            changedIds.merge(id, generation, Math::max);
+        }
+        listingsChangedAt.accumulateAndGet(generation, Math::max);
+        requestRebuild();
+    }
+
+    private void changedAll() {
+        allChangedAt.accumulateAndGet(changes.incrementAndGet(), Math::max);
+        requestRebuild();
+    }
+
+    private void requestRebuild() {
+        if (!enabled || !rebuildScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            rebuildExecutor.schedule(this::rebuild, rebuildDelayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            rebuildScheduled.set(false);  // 關閉中
+        }
+    }
+
+    /**
+     * 先取得異動編號與序號再查詢：查詢期間的異動編號較大，仍然不從新檔案讀取，並再建立一次
+     */
+    private void rebuild() {
+        rebuildScheduled.set(false);
+        long generation = changes.get();
+        long seq = productChangeSequencer.currentSeq();
+        Timer.Sample sample = Timer.start();
+        Path path = null;
+        try (CatalogFile.Writer writer = new CatalogFile.Writer(directory)) {
+            jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(ACTIVE_PRODUCTS_SQL);
+                statement.setFetchSize(FETCH_SIZE);
+                return statement;
+            }, (RowCallbackHandler) rs -> {
+                try {
+                    writer.add(ProductExportService.ROW_MAPPER.mapRow(rs, 0));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            path = writer.finish();
+            Catalog previous = catalog;
+            catalog = new Catalog(CatalogFile.map(path), path, generation, seq);
+            changedIds.values().removeIf(changedAt -> changedAt <= generation);
+            sample.stop(rebuildTimer);
+            if (previous != null) {
+                delete(previous.path());
+            }
+            log.debug("Mapped catalog rebuilt at change {} (seq {}): {} products", generation, seq, catalog.file().size());
+        } catch (IOException | RuntimeException e) {
+            failureCounter.increment();
+            log.warn("Failed to rebuild the mapped catalog, keeping the previous file: {}", e.getMessage());
+            if (path != null && (catalog == null || !path.equals(catalog.path()))) {
+                delete(path);
+            }
+        }
+    }
+
+    /**
+     * 刪除不再使用的檔案；仍在讀取的映射不受影響（映射在 GC 回收後才釋放）
+     */
+    private static void delete(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            // Windows 不能刪除映射中的檔案，結束時再刪
+            path.toFile().deleteOnExit();
+        }
+    }
+
+    private static boolean inWriteTransaction() {
+        return TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+
+    private void afterCompletion(Runnable action) {
+        if (!enabled) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public int getOrder() {
+                return Ordered.HIGHEST_PRECEDENCE + 1;
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                action.run();
+            }
+        });
+    }
+
+    /**
+     * 映射中的檔案與建立前的異動編號、商品異動序號
+     */
+    private record Catalog(CatalogFile file, Path path, long generation, long seq) {
+    }
+}
@@ -0,0 +1,222 @@
+package com.fivepapa.backend.ecommerce.service;
+
+import com.fivepapa.backend.ecommerce.dto.ProductBulkUpdateRequest;
+import com.fivepapa.backend.ecommerce.dto.ProductBulkUpdateResponse;
+import com.fivepapa.backend.ecommerce.dto.ProductBulkUpdateResponse.RowResult;
+import com.fivepapa.backend.ecommerce.dto.ProductBulkUpdateResponse.Status;
+import com.fivepapa.backend.ecommerce.event.ProductChangedEvent;
+import com.fivepapa.backend.ecommerce.repository.ProductRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 批次更新商品庫存／價格服務（倉儲系統定期同步整份目錄用）
+ * 1. 逐列驗證，不合法的列標記為 INVALID，不影響其他列
+ * 2. 合法的列每 PRODUCT_BULK_CHUNK_SIZE 筆一個短交易，以一個 JDBC batch 的 UPDATE 寫入
+ *    （區塊內依商品 ID 排序，與結帳扣庫存的鎖定順序一致，不會互相死鎖）
+ * 3. 沒有更新到的列再查一次是否存在，區分 NOT_FOUND 與 VERSION_CONFLICT
+ *
+ * 每個區塊各自提交：中途失敗時已提交的區塊不會回滾，重送同一份資料即可（更新是冪等的）
+ */
+@Slf4j
+@Service
+public class ProductBulkUpdateService {
+
+    /**
+     * stock、price 為 null 時保留原值；version 為 null 時不檢查版本
+     * 遞增 version，讓依舊版本帶 If-Match 的 PATCH 失敗；change_seq 設為 null 等待編號
+     */
+    private static final String UPDATE_SQL =
+            "UPDATE product SET stock = COALESCE(?, stock), price = COALESCE(?, price), " +
+            "version = version + 1, updated_at = ?, change_seq = NULL WHERE id = ? AND version = COALESCE(?, version)";
+
+    // product.price 為 DECIMAL(10, 2)
+    private static final int PRICE_MAX_INTEGER_DIGITS = 8;
+    private static final int PRICE_MAX_SCALE = 2;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ProductRepository productRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    private final Map<Status, Counter> rowCounters = new EnumMap<>(Status.class);
+    private final Timer chunkTimer;
+
+    public ProductBulkUpdateService(JdbcTemplate jdbcTemplate,
+                                    ProductRepository productRepository,
+                                    ApplicationEventPublisher eventPublisher,
+                                    PlatformTransactionManager transactionManager,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${PRODUCT_BULK_CHUNK_SIZE:1000}") int chunkSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.productRepository = productRepository;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+
+        for (Status status : Status.values()) {
+            rowCounters.put(status, Counter.builder("product.bulk_update.rows")
+                    .description("Rows of bulk product updates by outcome")
+                    .tag("status", status.name().toLowerCase())
+                    .register(meterRegistry));
+        }
+        this.chunkTimer = Timer.builder("product.bulk_update.chunk")
+                .description("Time to apply one chunk of a bulk product update in its own transaction")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 套用批次更新，回傳每一列的結果（順序與請求相同）
+     */
+    public ProductBulkUpdateResponse apply(ProductBulkUpdateRequest request) {
+        List<ProductBulkUpdateRequest.Item> items = request.getItems();
+        RowResult[] results = new RowResult[items.size()];
+
+        List<Integer> valid = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            ProductBulkUpdateRequest.Item item = items.get(i);
+            String error = validate(item);
+            if (error != null) {
+                results[i] = new RowResult(item != null ? item.getId() : null, Status.INVALID, error);
+            } else {
+                valid.add(i);
+            }
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        for (int from = 0; from < valid.size(); from += chunkSize) {
+            List<Integer> chunk = new ArrayList<>(valid.subList(from, Math.min(from + chunkSize, valid.size())));
+            // 同一商品出現多次時維持請求中的順序（List.sort 是穩定排序）
+            chunk.sort(Comparator.comparing(index -> items.get(index).getId()));
+            chunkTimer.record(() -> transactionTemplate.executeWithoutResult(
+                    status -> updateChunk(items, chunk, now, results)));
+        }
+
+        ProductBulkUpdateResponse response = ProductBulkUpdateResponse.builder()
+                .results(List.of(results))
+                .build();
+        for (RowResult result : results) {
+            switch (result.getStatus()) {
+                case UPDATED -> response.setUpdated(response.getUpdated() + 1);
+                case NOT_FOUND -> response.setNotFound(response.getNotFound() + 1);
+                case VERSION_CONFLICT -> response.setConflicts(response.getConflicts() + 1);
+                case INVALID -> response.setInvalid(response.getInvalid() + 1);
+            }
+        }
+        rowCounters.get(Status.UPDATED).increment(response.getUpdated());
+        rowCounters.get(Status.NOT_FOUND).increment(response.getNotFound());
+        rowCounters.get(Status.VERSION_CONFLICT).increment(response.getConflicts());
+        rowCounters.get(Status.INVALID).increment(response.getInvalid());
+        log.info("Bulk product update: {} rows, {} updated, {} not found, {} conflicts, {} invalid",
+                items.size(), response.getUpdated(), response.getNotFound(),
+                response.getConflicts(), response.getInvalid());
+        return response;
+    }
+
+    private void updateChunk(List<ProductBulkUpdateRequest.Item> items, List<Integer> chunk,
+                             LocalDateTime now, RowResult[] results) {
+        Timestamp updatedAt = Timestamp.valueOf(now);
+        int[] counts = jdbcTemplate.batchUpdate(UPDATE_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ProductBulkUpdateRequest.Item item = items.get(chunk.get(i));
+                if (item.getStock() != null) {
+                    ps.setInt(1, item.getStock());
+                } else {
+                    ps.setNull(1, Types.INTEGER);
+                }
+                ps.setBigDecimal(2, item.getPrice());
+                ps.setTimestamp(3, updatedAt);
+                ps.setLong(4, item.getId());
+                if (item.getVersion() != null) {
+                    ps.setLong(5, item.getVersion());
+                } else {
+                    ps.setNull(5, Types.BIGINT);
+                }
+            }
+
+            @Override
+            public int getBatchSize() {
+                return chunk.size();
+            }
+        });
+
+        Set<Long> updatedIds = new HashSet<>();
+        List<Integer> missed = new ArrayList<>();
+        for (int i = 0; i < counts.length; i++) {
+            Long id = items.get(chunk.get(i)).getId();
+            // 部分驅動程式只回報 SUCCESS_NO_INFO，沒有錯誤就視為已更新
+            if (counts[i] > 0 || counts[i] == Statement.SUCCESS_NO_INFO) {
+                updatedIds.add(id);
+                results[chunk.get(i)] = new RowResult(id, Status.UPDATED, null);
+            } else {
+                missed.add(chunk.get(i));
+            }
+        }
+
+        if (!missed.isEmpty()) {
+            Set<Long> existing = new HashSet<>(productRepository.findExistingIds(
+                    missed.stream().map(index -> items.get(index).getId()).toList()));
+            for (int index : missed) {
+                Long id = items.get(index).getId();
+                results[index] = existing.contains(id)
+                        ? new RowResult(id, Status.VERSION_CONFLICT, "商品已被修改，目前版本與 version 不符")
+                        : new RowResult(id, Status.NOT_FOUND, "商品不存在");
+            }
+        }
+
+        if (!updatedIds.isEmpty()) {
+            eventPublisher.publishEvent(new ProductChangedEvent(updatedIds));
+        }
+    }
+
+    /**
+     * 驗證單列，合法時回傳 null
+     */
+    private static String validate(ProductBulkUpdateRequest.Item item) {
+        if (item == null || item.getId() == null) {
+            return "商品 ID 不能為空";
+        }
+        if (item.getStock() == null && item.getPrice() == null) {
+            return "stock 與 price 至少需要一個";
+        }
+        if (item.getStock() != null && item.getStock() < 0) {
+            return "庫存不能為負數";
+        }
+        if (item.getPrice() != null) {
+            BigDecimal price = item.getPrice().stripTrailingZeros();
+            if (price.signum() <= 0) {
+                return "價格必須大於 0";
+            }
+            if (price.scale() > PRICE_MAX_SCALE
+                    || price.precision() - price.scale() > PRICE_MAX_INTEGER_DIGITS) {
+                return "價格最多 " + PRICE_MAX_INTEGER_DIGITS + " 位整數、" + PRICE_MAX_SCALE + " 位小數";
+            }
+        }
+        return null;
+    }
+}
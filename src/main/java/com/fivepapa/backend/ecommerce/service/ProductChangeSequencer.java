@@ -0,0 +1,134 @@
+package com.fivepapa.backend.ecommerce.service;
+
+import com.fivepapa.backend.common.cache.ResponseCache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 商品異動序號編號服務
+ * 寫入商品的交易只把 change_seq 設為 null（刪除則新增一筆 change_seq 為 null 的 product_deletion），
+ * 由此服務定期把已提交的 null 依序編號：
+ * - 編號時鎖定 change_sequence 的計數列，同一時間只有一個交易在編號（多台執行個體也一樣）
+ * - 序號在編號交易提交時才可見，而且一次提交一整段，讀取者看到序號 N 時，所有 <= N 的序號都已經可見
+ * 因此 cursor 不會跳過執行較久、較晚提交的交易，寫入商品的交易也不需要爭用序列
+ */
+@Slf4j
+@Service
+public class ProductChangeSequencer {
+
+    public static final String SEQUENCE_NAME = "product";
+
+    private static final String LOCK_SQL = "SELECT last_seq FROM change_sequence WHERE name = ? FOR UPDATE";
+    private static final String CURRENT_SQL = "SELECT last_seq FROM change_sequence WHERE name = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ResponseCache responseCache;
+    private final int batchSize;
+    private final Counter stampedCounter;
+
+    public ProductChangeSequencer(JdbcTemplate jdbcTemplate,
+                                  PlatformTransactionManager transactionManager,
+                                  ResponseCache responseCache,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${PRODUCT_CHANGE_BATCH_SIZE:1000}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.responseCache = responseCache;
+        this.batchSize = batchSize;
+
+        this.stampedCounter = Counter.builder("product.changes.stamped")
+                .description("Product changes and deletions given a change sequence number")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 定期編號新的異動
+     */
+    @Scheduled(fixedDelayString = "${PRODUCT_CHANGE_STAMP_INTERVAL_MS:1000}")
+    public void stampPending() {
+        try {
+            stamp();
+        } catch (DataAccessException e) {
+            log.warn("Failed to stamp product changes, will retry: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 為所有已提交、尚未編號的商品異動與刪除紀錄編號
+     *
+     * @return 編號的筆數
+     */
+    public int stamp() {
+        int total = 0;
+        while (true) {
+            Integer stamped = transactionTemplate.execute(status -> stampBatch());
+            total += stamped != null ? stamped : 0;
+            if (stamped == null || stamped < batchSize) {
+                if (total > 0) {
+                    // 列表的 ETag 是異動序號：提交後、編號前重新快取的列表是新內容配上舊序號，
+                    // 序號前進後清除，持有舊內容的客戶端才會拿到新的 ETag（也涵蓋匯入等沒有逐筆清除的寫入）
+                    responseCache.purge(List.of(CatalogCacheTags.PRODUCTS, CatalogCacheTags.CATEGORIES));
+                }
+                return total;
+            }
+        }
+    }
+
+    /**
+     * 目前最後一個已提交的序號（尚未編號過時為 0）
+     */
+    public long currentSeq() {
+        List<Long> current = jdbcTemplate.queryForList(CURRENT_SQL, Long.class, SEQUENCE_NAME);
+        return current.isEmpty() ? 0 : current.get(0);
+    }
+
+    private int stampBatch() {
+        long lastSeq = lockCounter();
+        List<Long> productIds = jdbcTemplate.queryForList(
+                "SELECT id FROM product WHERE change_seq IS NULL ORDER BY id LIMIT ?", Long.class, batchSize);
+        List<Long> deletionIds = jdbcTemplate.queryForList(
+                "SELECT id FROM product_deletion WHERE change_seq IS NULL ORDER BY id LIMIT ?", Long.class,
+                batchSize - productIds.size());
+        if (productIds.isEmpty() && deletionIds.isEmpty()) {
+            return 0;
+        }
+
+        // 依 ID 順序更新，與結帳、批次更新鎖定商品列的順序一致
+        List<Object[]> products = new ArrayList<>(productIds.size());
+        for (Long id : productIds) {
+            products.add(new Object[]{++lastSeq, id});
+        }
+        List<Object[]> deletions = new ArrayList<>(deletionIds.size());
+        for (Long id : deletionIds) {
+            deletions.add(new Object[]{++lastSeq, id});
+        }
+        jdbcTemplate.batchUpdate("UPDATE product SET change_seq = ? WHERE id = ? AND change_seq IS NULL", products);
+        jdbcTemplate.batchUpdate("UPDATE product_deletion SET change_seq = ? WHERE id = ?", deletions);
+        jdbcTemplate.update("UPDATE change_sequence SET last_seq = ? WHERE name = ?", lastSeq, SEQUENCE_NAME);
+
+        stampedCounter.increment(products.size() + deletions.size());
+        return products.size() + deletions.size();
+    }
+
+    private long lockCounter() {
+        List<Long> locked = jdbcTemplate.queryForList(LOCK_SQL, Long.class, SEQUENCE_NAME);
+        if (locked.isEmpty()) {
+            // 第一次編號；多台執行個體同時建立時只有一台成功，其他的下次再編號
+            jdbcTemplate.update("INSERT INTO change_sequence (name, last_seq) VALUES (?, 0)", SEQUENCE_NAME);
+            locked = jdbcTemplate.queryForList(LOCK_SQL, Long.class, SEQUENCE_NAME);
+        }
+        return locked.get(0);
+    }
+}
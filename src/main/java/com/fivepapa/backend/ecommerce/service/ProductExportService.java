@@ -0,0 +1,158 @@
+package com.fivepapa.backend.ecommerce.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fivepapa.backend.common.util.CsvWriter;
+import com.fivepapa.backend.ecommerce.dto.ProductResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 全商品目錄串流匯出服務（NDJSON / CSV）
+ * 以商品 ID 做 keyset 分頁，每頁查詢完就歸還連線再寫出，客戶端下載速度慢也不會佔用連線池；
+ * 同一時間只有一頁（PRODUCT_EXPORT_PAGE_SIZE 筆）在記憶體中，與目錄大小無關
+ * 直接以 JDBC 讀取欄位，不建立 JPA 實體，也就沒有需要清除的持久化內容
+ *
+ * 匯出不是單一快照：匯出期間被修改的商品可能是修改前或修改後的值
+ */
+@Service
+public class ProductExportService {
+
+    private static final String PAGE_SQL =
+            "SELECT p.id, p.name, p.description, p.price, p.stock, p.image_url, p.active, p.featured, " +
+            "p.category_id, c.name AS category_name, p.version, p.created_at, p.updated_at " +
+            "FROM product p LEFT JOIN category c ON c.id = p.category_id " +
+            "WHERE p.id > ? ORDER BY p.id LIMIT ?";
+
+    // CSV 欄位名稱與匯入相同，匯出的檔案可以直接匯入（id、version 與時間欄位會被忽略）
+    private static final String[] CSV_HEADER = {
+            "id", "name", "description", "price", "stock", "imageUrl", "active", "featured",
+            "categoryId", "category", "version", "createdAt", "updatedAt"
+    };
+
+    // MappedCatalogStore 以相同的欄位建立目錄檔案
+    static final RowMapper<ProductResponse> ROW_MAPPER = (rs, rowNum) -> new ProductResponse(
+            rs.getLong("id"),
+            rs.getString("name"),
+            rs.getString("description"),
+            rs.getBigDecimal("price"),
+            rs.getInt("stock"),
+            rs.getString("image_url"),
+            rs.getBoolean("active"),
+            rs.getBoolean("featured"),
+            rs.getObject("category_id", Long.class),
+            rs.getString("category_name"),
+            rs.getLong("version"),
+            toLocalDateTime(rs.getTimestamp("created_at")),
+            toLocalDateTime(rs.getTimestamp("updated_at")));
+
+    public enum Format {
+        NDJSON,
+        CSV
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final int pageSize;
+    private final Counter rowCounter;
+    private final Timer exportTimer;
+
+    public ProductExportService(JdbcTemplate jdbcTemplate,
+                                ObjectMapper objectMapper,
+                                MeterRegistry meterRegistry,
+                                @Value("${PRODUCT_EXPORT_PAGE_SIZE:1000}") int pageSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.pageSize = pageSize;
+
+        this.rowCounter = Counter.builder("product.export.rows")
+                .description("Products written by catalog exports")
+                .register(meterRegistry);
+        this.exportTimer = Timer.builder("product.export.duration")
+                .description("Time to stream one full catalog export, including time spent waiting on the client")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 把所有商品依 ID 順序寫到 output（不會關閉 output）
+     *
+     * @return 匯出的商品數
+     */
+    public long export(Format format, OutputStream output) throws IOException {
+        Timer.Sample sample = Timer.start();
+        Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), 64 * 1024);
+        JsonGenerator generator = null;
+        CsvWriter csv = null;
+        if (format == Format.NDJSON) {
+            generator = objectMapper.getFactory().createGenerator(writer);
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        } else {
+            csv = new CsvWriter(writer);
+            csv.write((Object[]) CSV_HEADER);
+        }
+
+        long exported = 0;
+        long afterId = 0;
+        List<ProductResponse> page;
+        do {
+            page = fetchPage(afterId);
+            for (ProductResponse product : page) {
+                if (generator != null) {
+                    objectMapper.writeValue(generator, product);
+                    generator.writeRaw('\n');
+                } else {
+                    csv.write(product.getId(), product.getName(), product.getDescription(),
+                            product.getPrice().toPlainString(), product.getStock(), product.getImageUrl(),
+                            product.getActive(), product.getFeatured(), product.getCategoryId(),
+                            product.getCategoryName(), product.getVersion(), product.getCreatedAt(),
+                            product.getUpdatedAt());
+                }
+            }
+            if (!page.isEmpty()) {
+                afterId = page.get(page.size() - 1).getId();
+                exported += page.size();
+                rowCounter.increment(page.size());
+            }
+        } while (page.size() == pageSize);
+
+        if (generator != null) {
+            generator.flush();
+        }
+        writer.flush();
+        sample.stop(exportTimer);
+        return exported;
+    }
+
+    /**
+     * 查詢 afterId 之後的一頁（單一自動提交的查詢，結束就歸還連線）
+     */
+    private List<ProductResponse> fetchPage(long afterId) {
+        return jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(PAGE_SQL);
+            statement.setFetchSize(pageSize);
+            statement.setLong(1, afterId);
+            statement.setInt(2, pageSize);
+            return statement;
+        }, ROW_MAPPER);
+    }
+
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toLocalDateTime() : null;
+    }
+}
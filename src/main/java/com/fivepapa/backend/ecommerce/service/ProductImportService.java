@@ -0,0 +1,443 @@
+package com.fivepapa.backend.ecommerce.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fivepapa.backend.common.util.CsvReader;
+import com.fivepapa.backend.ecommerce.dto.ProductImportRow;
+import com.fivepapa.backend.ecommerce.dto.ProductImportStatus;
+import com.fivepapa.backend.ecommerce.dto.ProductImportStatus.Format;
+import com.fivepapa.backend.ecommerce.dto.ProductImportStatus.RowError;
+import com.fivepapa.backend.ecommerce.dto.ProductImportStatus.State;
+import com.fivepapa.backend.ecommerce.repository.CategoryRepository;
+import com.fivepapa.backend.ecommerce.repository.CategoryRepository.CategoryName;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 商品串流匯入服務（CSV / NDJSON）
+ * 一邊從請求讀取一邊寫入，記憶體用量只和批次大小有關，與檔案大小無關：
+ * 1. 分類在開始時一次載入成「名稱 -> ID」對照表，每列不再查詢資料庫
+ * 2. 每 PRODUCT_IMPORT_BATCH_SIZE 筆合法的列在一個短交易內以 JDBC batch INSERT 寫入
+ * 3. 批次寫入完成後才繼續讀取下一列，讀取速度受寫入速度限制（由 TCP 流量控制回壓給客戶端）
+ *
+ * 不合法的列會跳過並記錄（只保留前 100 筆錯誤）；已寫入的批次不會因為之後的錯誤回滾
+ * 工作狀態保存在此執行個體的記憶體中，最多保留 PRODUCT_IMPORT_JOB_HISTORY 筆
+ */
+@Slf4j
+@Service
+public class ProductImportService {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO product (name, description, price, stock, image_url, category_id, active, featured, " +
+            "reserved_stock, version, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, 0, 0, ?, ?)";
+
+    private static final int MAX_ERRORS = 100;
+    // 單列（CSV 一筆紀錄或 NDJSON 一行）的長度上限，避免未結束的引號讓整個檔案進入記憶體
+    private static final int MAX_ROW_CHARS = 1 << 20;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CategoryRepository categoryRepository;
+    private final MappedCatalogStore mappedCatalogStore;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final Cache<String, Job> jobs;
+    private final Counter importedCounter;
+    private final Counter failedCounter;
+    private final Timer batchTimer;
+
+    public ProductImportService(JdbcTemplate jdbcTemplate,
+                                CategoryRepository categoryRepository,
+                                MappedCatalogStore mappedCatalogStore,
+                                ObjectMapper objectMapper,
+                                Validator validator,
+                                PlatformTransactionManager transactionManager,
+                                MeterRegistry meterRegistry,
+                                @Value("${PRODUCT_IMPORT_BATCH_SIZE:500}") int batchSize,
+                                @Value("${PRODUCT_IMPORT_JOB_HISTORY:100}") long jobHistory) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.categoryRepository = categoryRepository;
+        this.mappedCatalogStore = mappedCatalogStore;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.jobs = Caffeine.newBuilder()
+                .maximumSize(jobHistory)
+                .expireAfterWrite(Duration.ofDays(1))
+                .build();
+
+        this.importedCounter = Counter.builder("product.import.rows")
+                .description("Rows of product imports by outcome")
+                .tag("status", "imported")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("product.import.rows")
+                .description("Rows of product imports by outcome")
+                .tag("status", "failed")
+                .register(meterRegistry);
+        this.batchTimer = Timer.builder("product.import.batch")
+                .description("Time to insert one batch of imported products in its own transaction")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 從 reader 匯入商品，讀完後回傳工作結果
+     * 匯入期間可以用 getStatus 查詢進度
+     */
+    public ProductImportStatus importProducts(Format format, Reader reader) {
+        Job job = new Job(UUID.randomUUID().toString(), format);
+        jobs.put(job.id, job);
+        try {
+            Categories categories = loadCategories();
+            List<PendingRow> pending = new ArrayList<>(batchSize);
+            if (format == Format.CSV) {
+                readCsv(job, reader, categories, pending);
+            } else {
+                readNdjson(job, reader, categories, pending);
+            }
+            flush(job, pending);
+            job.finish(State.COMPLETED, null);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Product import {} failed after {} rows: {}", job.id, job.rowsRead.get(), e.getMessage());
+            job.finish(State.FAILED, e.getMessage());
+        }
+        log.info("Product import {} {}: {} rows, {} imported, {} failed",
+                job.id, job.state, job.rowsRead.get(), job.imported.get(), job.failed.get());
+        return job.toStatus();
+    }
+
+    /**
+     * 查詢匯入工作
+     */
+    public ProductImportStatus getStatus(String id) {
+        Job job = jobs.getIfPresent(id);
+        if (job == null) {
+            throw new RuntimeException("匯入工作不存在，ID: " + id);
+        }
+        return job.toStatus();
+    }
+
+    /**
+     * 最近的匯入工作（新的在前）
+     */
+    public List<ProductImportStatus> getRecentStatuses() {
+        return jobs.asMap().values().stream()
+                .sorted(Comparator.comparing((Job job) -> job.startedAt).reversed())
+                .map(Job::toStatus)
+                .collect(Collectors.toList());
+    }
+
+    private void readCsv(Job job, Reader reader, Categories categories, List<PendingRow> pending) throws IOException {
+        CsvReader csv = new CsvReader(reader, MAX_ROW_CHARS);
+        List<String> header = csv.next();
+        if (header == null) {
+            return;
+        }
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            columns.put(header.get(i).trim().replace("_", "").toLowerCase(Locale.ROOT), i);
+        }
+        for (String required : List.of("name", "price", "stock")) {
+            if (!columns.containsKey(required)) {
+                throw new IllegalArgumentException("CSV 標題列缺少欄位：" + required);
+            }
+        }
+
+        List<String> fields;
+        while ((fields = csv.next()) != null) {
+            if (fields.size() == 1 && fields.get(0).isBlank()) {
+                continue;
+            }
+            long line = csv.getRecordLine();
+            ProductImportRow row = new ProductImportRow();
+            try {
+                row.setName(field(fields, columns, "name"));
+                row.setDescription(field(fields, columns, "description"));
+                row.setPrice(parse(field(fields, columns, "price"), "price", BigDecimal::new));
+                row.setStock(parse(field(fields, columns, "stock"), "stock", Integer::valueOf));
+                row.setImageUrl(field(fields, columns, "imageurl"));
+                row.setCategoryId(parse(field(fields, columns, "categoryid"), "categoryId", Long::valueOf));
+                row.setCategory(field(fields, columns, "category"));
+                row.setActive(parseBoolean(field(fields, columns, "active"), "active", true));
+                row.setFeatured(parseBoolean(field(fields, columns, "featured"), "featured", false));
+            } catch (IllegalArgumentException e) {
+                reject(job, line, e.getMessage());
+                continue;
+            }
+            accept(job, line, row, categories, pending);
+        }
+    }
+
+    private void readNdjson(Job job, Reader reader, Categories categories, List<PendingRow> pending) throws IOException {
+        BufferedReader lines = new BufferedReader(reader);
+        StringBuilder text = new StringBuilder();
+        long line = 0;
+        while (readLine(lines, text)) {
+            line++;
+            if (text.toString().isBlank()) {
+                continue;
+            }
+            ProductImportRow row;
+            try {
+                row = objectMapper.readValue(text.toString(), ProductImportRow.class);
+            } catch (JsonProcessingException e) {
+                reject(job, line, "JSON 格式錯誤：" + e.getOriginalMessage());
+                continue;
+            }
+            accept(job, line, row, categories, pending);
+        }
+    }
+
+    /**
+     * 驗證一列並放入待寫入批次，批次滿了就寫入
+     */
+    private void accept(Job job, long line, ProductImportRow row, Categories categories, List<PendingRow> pending) {
+        Set<ConstraintViolation<ProductImportRow>> violations = validator.validate(row);
+        if (!violations.isEmpty()) {
+            reject(job, line, violations.stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining("；")));
+            return;
+        }
+
+        Long categoryId = row.getCategoryId();
+        if (categoryId != null && !categories.ids().contains(categoryId)) {
+            reject(job, line, "分類不存在，ID: " + categoryId);
+            return;
+        }
+        if (row.getCategory() != null && !row.getCategory().isBlank()) {
+            Long byName = categories.idsByName().get(row.getCategory().trim());
+            if (byName == null) {
+                reject(job, line, "分類不存在：" + row.getCategory());
+                return;
+            }
+            if (categoryId != null && !categoryId.equals(byName)) {
+                reject(job, line, "categoryId 與 category 不是同一個分類");
+                return;
+            }
+            categoryId = byName;
+        }
+
+        job.rowsRead.incrementAndGet();
+        pending.add(new PendingRow(line, row, categoryId));
+        if (pending.size() >= batchSize) {
+            flush(job, pending);
+        }
+    }
+
+    private void reject(Job job, long line, String message) {
+        job.rowsRead.incrementAndGet();
+        job.fail(line, message, 1);
+        failedCounter.increment();
+    }
+
+    /**
+     * 在一個交易內以 JDBC batch 寫入待寫入的列；失敗時整批記為失敗，繼續處理之後的列
+     */
+    private void flush(Job job, List<PendingRow> pending) {
+        if (pending.isEmpty()) {
+            return;
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        try {
+            batchTimer.record(() -> transactionTemplate.executeWithoutResult(status ->
+                    jdbcTemplate.batchUpdate(INSERT_SQL, new BatchPreparedStatementSetter() {
+                        @Override
+                        public void setValues(PreparedStatement ps, int i) throws SQLException {
+                            PendingRow pendingRow = pending.get(i);
+                            ProductImportRow row = pendingRow.row();
+                            ps.setString(1, row.getName().trim());
+                            ps.setString(2, row.getDescription());
+                            ps.setBigDecimal(3, row.getPrice());
+                            ps.setInt(4, row.getStock());
+                            ps.setString(5, row.getImageUrl());
+                            if (pendingRow.categoryId() != null) {
+                                ps.setLong(6, pendingRow.categoryId());
+                            } else {
+                                ps.setNull(6, Types.BIGINT);
+                            }
+                            ps.setBoolean(7, row.getActive() == null || row.getActive());
+                            ps.setBoolean(8, row.getFeatured() != null && row.getFeatured());
+                            ps.setTimestamp(9, now);
+                            ps.setTimestamp(10, now);
+                        }
+
+                        @Override
+                        public int getBatchSize() {
+                            return pending.size();
+                        }
+                    })));
+            // 已提交：新增的商品要出現在映射的目錄中
+            mappedCatalogStore.invalidateAllAfterCompletion();
+            job.imported.addAndGet(pending.size());
+            importedCounter.increment(pending.size());
+        } catch (DataAccessException e) {
+            long first = pending.get(0).line();
+            long last = pending.get(pending.size() - 1).line();
+            log.warn("Product import {} failed to insert lines {}-{}", job.id, first, last, e);
+            job.fail(first, "第 " + first + "-" + last + " 行寫入失敗：" + e.getMostSpecificCause().getMessage(),
+                    pending.size());
+            failedCounter.increment(pending.size());
+        }
+        pending.clear();
+    }
+
+    private Categories loadCategories() {
+        Map<String, Long> idsByName = new HashMap<>();
+        Set<Long> ids = new HashSet<>();
+        for (CategoryName category : categoryRepository.findAllNames()) {
+            idsByName.put(category.getName(), category.getId());
+            ids.add(category.getId());
+        }
+        return new Categories(idsByName, ids);
+    }
+
+    /**
+     * 讀取一行到 text（不含換行），已到結尾時回傳 false
+     */
+    private static boolean readLine(BufferedReader reader, StringBuilder text) throws IOException {
+        text.setLength(0);
+        int c = reader.read();
+        if (c == -1) {
+            return false;
+        }
+        while (c != -1 && c != '\n') {
+            if (text.length() >= MAX_ROW_CHARS) {
+                throw new IOException("單行超過 " + MAX_ROW_CHARS + " 字元");
+            }
+            text.append((char) c);
+            c = reader.read();
+        }
+        return true;
+    }
+
+    private static String field(List<String> fields, Map<String, Integer> columns, String column) {
+        Integer index = columns.get(column);
+        if (index == null || index >= fields.size() || fields.get(index).isBlank()) {
+            return null;
+        }
+        return fields.get(index).trim();
+    }
+
+    private static <T> T parse(String value, String column, Function<String, T> parser) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return parser.apply(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(column + " 格式錯誤：" + value);
+        }
+    }
+
+    private static Boolean parseBoolean(String value, String column, boolean defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+        return switch (value.toLowerCase(Locale.ROOT)) {
+            case "true", "1", "yes" -> true;
+            case "false", "0", "no" -> false;
+            default -> throw new IllegalArgumentException(column + " 格式錯誤：" + value);
+        };
+    }
+
+    private record Categories(Map<String, Long> idsByName, Set<Long> ids) {
+    }
+
+    private record PendingRow(long line, ProductImportRow row, Long categoryId) {
+    }
+
+    /**
+     * 執行中的工作由匯入的請求執行緒更新，查詢進度的請求讀取快照
+     */
+    private static final class Job {
+
+        private final String id;
+        private final Format format;
+        private final LocalDateTime startedAt = LocalDateTime.now();
+        private final AtomicLong rowsRead = new AtomicLong();
+        private final AtomicLong imported = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final List<RowError> errors = new ArrayList<>();
+        private volatile State state = State.RUNNING;
+        private volatile String message;
+        private volatile LocalDateTime finishedAt;
+
+        private Job(String id, Format format) {
+            this.id = id;
+            this.format = format;
+        }
+
+        private void fail(long line, String error, int rows) {
+            failed.addAndGet(rows);
+            synchronized (errors) {
+                if (errors.size() < MAX_ERRORS) {
+                    errors.add(new RowError(line, error));
+                }
+            }
+        }
+
+        private void finish(State state, String message) {
+            this.message = message;
+            this.finishedAt = LocalDateTime.now();
+            this.state = state;
+        }
+
+        private ProductImportStatus toStatus() {
+            List<RowError> errorsCopy;
+            synchronized (errors) {
+                errorsCopy = List.copyOf(errors);
+            }
+            return ProductImportStatus.builder()
+                    .id(id)
+                    .format(format)
+                    .state(state)
+                    .rowsRead(rowsRead.get())
+                    .imported(imported.get())
+                    .failed(failed.get())
+                    .errors(errorsCopy)
+                    .message(message)
+                    .startedAt(startedAt)
+                    .finishedAt(finishedAt)
+                    .build();
+        }
+    }
+}
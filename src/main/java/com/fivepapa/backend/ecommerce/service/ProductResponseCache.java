@@ -0,0 +1,133 @@
+package com.fivepapa.backend.ecommerce.service;
+
+import com.fivepapa.backend.common.cache.shared.SharedCache;
+import com.fivepapa.backend.common.cache.shared.TieredCache;
+import com.fivepapa.backend.ecommerce.dto.ProductResponse;
+import com.fivepapa.backend.ecommerce.event.ProductChangedEvent;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * 單一商品回應的快取（read-through，以商品 ID 為 key）
+ * 以 TieredCache 實作：本機 L1（Caffeine，依大小上限以 W-TinyLFU 淘汰，另有 TTL），
+ * 設定 SHARED_CACHE_ADDRESS 時其後還有所有執行個體共用的 L2，清除時也會通知其他執行個體
+ *
+ * 寫入商品的交易結束時（提交或回滾）在寫入的執行緒中同步清除，
+ * 排在其他提交後的監聽者之前，HTTP 回應快取清除後重新產生時不會再讀到舊的商品
+ * 載入前取得清除序號，期間有任何清除就不放入，避免舊資料在清除後被放回（L2 以 token 做相同的檢查）
+ * 寫入交易內的讀取（例如 PATCH 回傳更新後的商品）不經過快取
+ *
+ * 防止大量請求同時未命中：
+ * - 同一商品同時未命中時只有一個請求查詢，其他請求等待同一個結果（SingleFlight）；
+ *   清除時放棄進行中的查詢，清除之後的請求一定重新查詢
+ * - 命中時依 XFetch 機率提前在背景重新載入（越接近到期、載入越慢機率越高），熱門商品通常在到期前就已更新
+ */
+@Component
+public class ProductResponseCache {
+
+    private final TieredCache<ProductResponse> cache;
+
+    public ProductResponseCache(SharedCache sharedCache,
+                                MeterRegistry meterRegistry,
+                                @Value("${PRODUCT_CACHE_MAX_ENTRIES:10000}") long maxEntries,
+                                @Value("${PRODUCT_CACHE_TTL_SECONDS:600}") long ttlSeconds,
+                                @Value("${PRODUCT_CACHE_EARLY_REFRESH_BETA:1.0}") double earlyRefreshBeta) {
+        this.cache = new TieredCache<>("productResponses", ProductResponse.class, maxEntries,
+                Duration.ofSeconds(ttlSeconds), earlyRefreshBeta, sharedCache, meterRegistry);
+    }
+
+    /**
+     * 本機快取中的商品回應，沒有則回傳 null（不載入）
+     */
+    public ProductResponse getIfPresent(Long id) {
+        return cache.getIfPresent(id.toString());
+    }
+
+    /**
+     * 取得商品回應，沒有時以 loader 載入並放入快取
+     */
+    public ProductResponse get(Long id, Supplier<ProductResponse> loader) {
+        if (inWriteTransaction()) {
+            return loader.get();
+        }
+        return cache.get(id.toString(), loader);
+    }
+
+    /**
+     * 目前交易結束後清除屬於此分類的商品（分類改名，商品回應包含分類名稱）
+     * 其他執行個體與 L2 無法依分類篩選，全部清除（分類改名很少發生）
+     */
+    public void evictCategoryAfterCompletion(Long categoryId) {
+        afterCompletion(() -> cache.evictIf(response -> Objects.equals(response.getCategoryId(), categoryId)));
+    }
+
+    /**
+     * 商品異動的交易結束後清除（回滾也清除，交易內可能已經讀過未提交的值）
+     */
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMPLETION)
+    public void onProductChanged(ProductChangedEvent event) {
+        evict(event.getProductIds());
+    }
+
+    /**
+     * 清除全部
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    public long estimatedSize() {
+        return cache.estimatedSize();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        cache.close();
+    }
+
+    private void evict(Collection<Long> ids) {
+        cache.evict(ids.stream().map(String::valueOf).toList());
+    }
+
+    private static boolean inWriteTransaction() {
+        return TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+
+    private static void afterCompletion(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public int getOrder() {
+                return Ordered.HIGHEST_PRECEDENCE;
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                action.run();
+            }
+        });
+    }
+}
@@ -1,25 +1,83 @@
 package com.fivepapa.backend.ecommerce.service;
 
+import com.fivepapa.backend.common.cache.ResponseCache;
+import com.fivepapa.backend.common.concurrent.SingleFlight;
+import com.fivepapa.backend.common.exception.PreconditionFailedException;
+import com.fivepapa.backend.ecommerce.dto.ProductChangesResponse;
+import com.fivepapa.backend.ecommerce.dto.ProductPatchRequest;
+import com.fivepapa.backend.ecommerce.dto.ProductPatchRequest.Field;
 import com.fivepapa.backend.ecommerce.dto.ProductRequest;
 import com.fivepapa.backend.ecommerce.dto.ProductResponse;
 import com.fivepapa.backend.ecommerce.entity.Category;
 import com.fivepapa.backend.ecommerce.entity.Product;
+import com.fivepapa.backend.ecommerce.entity.ProductDeletion;
+import com.fivepapa.backend.ecommerce.event.ProductChangedEvent;
 import com.fivepapa.backend.ecommerce.repository.CategoryRepository;
+import com.fivepapa.backend.ecommerce.repository.ProductDeletionRepository;
 import com.fivepapa.backend.ecommerce.repository.ProductRepository;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaUpdate;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
+import java.util.Objects;
 import java.util.stream.Collectors;
 
 @Service
-@RequiredArgsConstructor
 public class ProductService {
 
     private final ProductRepository productRepository;
     private final CategoryRepository categoryRepository;
+    private final ProductDeletionRepository productDeletionRepository;
+    private final ProductChangeSequencer productChangeSequencer;
+    private final ApplicationEventPublisher eventPublisher;
+    private final EntityManager entityManager;
+    private final ResponseCache responseCache;
+    private final ProductResponseCache productResponseCache;
+    private final MappedCatalogStore mappedCatalogStore;
+    private final TransactionTemplate readOnlyTransaction;
+    // 相同的列表查詢同時只執行一次，其他請求共用結果（在取得資料庫連線之前合併）
+    private final SingleFlight<String, List<ProductResponse>> listLoads;
+
+    public ProductService(ProductRepository productRepository,
+                          CategoryRepository categoryRepository,
+                          ProductDeletionRepository productDeletionRepository,
+                          ProductChangeSequencer productChangeSequencer,
+                          ApplicationEventPublisher eventPublisher,
+                          EntityManager entityManager,
+                          ResponseCache responseCache,
+                          ProductResponseCache productResponseCache,
+                          MappedCatalogStore mappedCatalogStore,
+                          PlatformTransactionManager transactionManager,
+                          MeterRegistry meterRegistry) {
+        this.productRepository = productRepository;
+        this.categoryRepository = categoryRepository;
+        this.productDeletionRepository = productDeletionRepository;
+        this.productChangeSequencer = productChangeSequencer;
+        this.eventPublisher = eventPublisher;
+        this.entityManager = entityManager;
+        this.responseCache = responseCache;
+        this.productResponseCache = productResponseCache;
+        this.mappedCatalogStore = mappedCatalogStore;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.listLoads = new SingleFlight<>("productLists", meterRegistry);
+    }
 
     // 建立商品
     @Transactional
@@ -41,23 +99,28 @@ public class ProductService {
         }
 
         Product saved = productRepository.save(product);
+        // 新商品出現在商品列表，也改變分類的商品數
+        responseCache.purgeAfterCommit(CatalogCacheTags.PRODUCTS, CatalogCacheTags.CATEGORIES);
+        mappedCatalogStore.invalidateAfterCompletion(List.of(saved.getId()));
         return convertToResponse(saved);
     }
 
     // 查詢所有商品
-    @Transactional(readOnly = true)
     public List<ProductResponse> getAllProducts() {
-        return productRepository.findAll().stream()
-                .map(this::convertToResponse)
-                .collect(Collectors.toList());
+        return listLoads.execute("all", () -> readOnlyTransaction.execute(status ->
+                productRepository.findAll().stream()
+                        .map(this::convertToResponse)
+                        .toList()));
     }
 
-    // 查詢單一商品
-    @Transactional(readOnly = true)
+    // 查詢單一商品（先查映射的目錄檔案與近端快取；不開交易，命中時不需要資料庫連線，同時未命中時只查詢一次）
     public ProductResponse getProductById(Long id) {
-        Product product = productRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("商品不存在，ID: " + id));
-        return convertToResponse(product);
+        ProductResponse stored = mappedCatalogStore.find(id);
+        if (stored != null) {
+            return stored;
+        }
+        return productResponseCache.get(id, () -> convertToResponse(productRepository.findWithCategoryById(id)
+                .orElseThrow(() -> new RuntimeException("商品不存在，ID: " + id))));
     }
 
     // 更新商品
@@ -73,6 +136,7 @@ public class ProductService {
         product.setImageUrl(request.getImageUrl());
         product.setActive(request.getActive());
         product.setFeatured(request.getFeatured());
+        Long previousCategoryId = product.getCategory() != null ? product.getCategory().getId() : null;
 
         // 更新分類
         if (request.getCategoryId() != null) {
@@ -85,9 +149,84 @@ public class ProductService {
         }
 
         Product updated = productRepository.save(product);
+        // 提交後清除含有此商品的購物車快取
+        eventPublisher.publishEvent(ProductChangedEvent.of(id));
+        if (!Objects.equals(previousCategoryId, request.getCategoryId())) {
+            responseCache.purgeAfterCommit(CatalogCacheTags.CATEGORIES);
+        }
         return convertToResponse(updated);
     }
 
+    // 部分更新商品：只更新請求中出現的欄位，不載入實體，直接以單一 UPDATE 寫入這些欄位
+    // expectedVersion（If-Match）不為 null 時，只在版本相符時更新，否則丟出 PreconditionFailedException
+    @Transactional
+    public ProductResponse patchProduct(Long id, ProductPatchRequest request, Long expectedVersion) {
+        requireValue(request, Field.NAME, request.getName() != null && !request.getName().isBlank(), "商品名稱不能為空");
+        requireValue(request, Field.PRICE, request.getPrice() != null, "商品價格不能為空");
+        requireValue(request, Field.STOCK, request.getStock() != null, "庫存數量不能為空");
+        requireValue(request, Field.ACTIVE, request.getActive() != null, "上架狀態不能為空");
+        requireValue(request, Field.FEATURED, request.getFeatured() != null, "熱門狀態不能為空");
+
+        if (request.isEmpty()) {
+            Product product = productRepository.findById(id)
+                    .orElseThrow(() -> new RuntimeException("商品不存在，ID: " + id));
+            if (expectedVersion != null && !expectedVersion.equals(product.getVersion())) {
+                throw new PreconditionFailedException("商品已被修改，目前版本：" + product.getVersion());
+            }
+            return convertToResponse(product);
+        }
+
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaUpdate<Product> update = cb.createCriteriaUpdate(Product.class);
+        Root<Product> root = update.from(Product.class);
+        if (request.has(Field.NAME)) {
+            update.set(root.get("name"), request.getName());
+        }
+        if (request.has(Field.DESCRIPTION)) {
+            setNullable(update, root.get("description"), request.getDescription(), String.class);
+        }
+        if (request.has(Field.PRICE)) {
+            update.set(root.get("price"), request.getPrice());
+        }
+        if (request.has(Field.STOCK)) {
+            update.set(root.get("stock"), request.getStock());
+        }
+        if (request.has(Field.IMAGE_URL)) {
+            setNullable(update, root.get("imageUrl"), request.getImageUrl(), String.class);
+        }
+        if (request.has(Field.CATEGORY_ID)) {
+            setNullable(update, root.get("category"), categoryReference(request.getCategoryId()), Category.class);
+        }
+        if (request.has(Field.ACTIVE)) {
+            update.set(root.get("active"), request.getActive());
+        }
+        if (request.has(Field.FEATURED)) {
+            update.set(root.get("featured"), request.getFeatured());
+        }
+        update.set(root.<Long>get("version"), cb.sum(root.<Long>get("version"), 1L));
+        update.set(root.get("updatedAt"), LocalDateTime.now());
+        update.set(root.<Long>get("changeSeq"), cb.nullLiteral(Long.class));
+
+        Predicate target = cb.equal(root.get("id"), id);
+        if (expectedVersion != null) {
+            target = cb.and(target, cb.equal(root.get("version"), expectedVersion));
+        }
+        update.where(target);
+
+        if (entityManager.createQuery(update).executeUpdate() == 0) {
+            Product current = productRepository.findById(id)
+                    .orElseThrow(() -> new RuntimeException("商品不存在，ID: " + id));
+            throw new PreconditionFailedException("商品已被修改，目前版本：" + current.getVersion());
+        }
+
+        // 提交後清除含有此商品的購物車快取
+        eventPublisher.publishEvent(ProductChangedEvent.of(id));
+        if (request.has(Field.CATEGORY_ID)) {
+            responseCache.purgeAfterCommit(CatalogCacheTags.CATEGORIES);
+        }
+        return getProductById(id);
+    }
+
     // 刪除商品
     @Transactional
     public void deleteProduct(Long id) {
@@ -95,22 +234,117 @@ public class ProductService {
             throw new RuntimeException("商品不存在，ID: " + id);
         }
         productRepository.deleteById(id);
+        // 留下刪除紀錄，讓增量同步的客戶端也刪除此商品
+        productDeletionRepository.save(new ProductDeletion(id));
+        eventPublisher.publishEvent(ProductChangedEvent.of(id));
+        responseCache.purgeAfterCommit(CatalogCacheTags.CATEGORIES);
     }
 
-    // 搜尋商品
+    // 查詢 cursor 之後異動的商品與刪除的商品 ID（cursor 為 null 時從頭開始），依異動順序
     @Transactional(readOnly = true)
+    public ProductChangesResponse getChanges(String cursor, int limit) {
+        long since = decodeCursor(cursor);
+        // 先取得目前已提交的最後序號，之後的查詢只看到這之前的序號，兩個查詢之間才編號的異動留到下次
+        long until = productChangeSequencer.currentSeq();
+
+        List<Product> products = productRepository.findChangedBetween(since, until, Limit.of(limit));
+        List<ProductDeletion> deletions = productDeletionRepository.findChangedBetween(since, until, Limit.of(limit));
+        boolean hasMore = products.size() == limit || deletions.size() == limit;
+
+        // 依序號合併兩邊，最多 limit 筆
+        List<ProductResponse> changed = new ArrayList<>();
+        List<Long> deletedIds = new ArrayList<>();
+        long last = since;
+        int p = 0;
+        int d = 0;
+        while (changed.size() + deletedIds.size() < limit && (p < products.size() || d < deletions.size())) {
+            if (d >= deletions.size()
+                    || (p < products.size() && products.get(p).getChangeSeq() < deletions.get(d).getChangeSeq())) {
+                Product product = products.get(p++);
+                changed.add(convertToResponse(product));
+                last = product.getChangeSeq();
+            } else {
+                ProductDeletion deletion = deletions.get(d++);
+                deletedIds.add(deletion.getProductId());
+                last = deletion.getChangeSeq();
+            }
+        }
+        hasMore = hasMore || p < products.size() || d < deletions.size();
+
+        // 沒有更多異動時直接前進到 until（中間被重新編號而跳過的序號不需要再查）
+        long next = hasMore ? last : Math.max(since, until);
+        return ProductChangesResponse.builder()
+                .products(changed)
+                .deletedIds(deletedIds)
+                .cursor(encodeCursor(next))
+                .hasMore(hasMore)
+                .build();
+    }
+
+    // 搜尋商品
     public List<ProductResponse> searchProducts(String keyword) {
-        return productRepository.findByNameContaining(keyword).stream()
-                .map(this::convertToResponse)
-                .collect(Collectors.toList());
+        return listLoads.execute("search:" + keyword, () -> readOnlyTransaction.execute(status ->
+                productRepository.findByNameContaining(keyword).stream()
+                        .map(this::convertToResponse)
+                        .toList()));
     }
 
-    // 查詢上架商品
-    @Transactional(readOnly = true)
+    // 查詢上架商品（先查映射的目錄檔案，命中時不開交易）
     public List<ProductResponse> getActiveProducts() {
-        return productRepository.findByActiveTrue().stream()
+        List<ProductResponse> stored = mappedCatalogStore.activeProducts();
+        if (stored != null) {
+            return stored;
+        }
+        return readOnlyTransaction.execute(status -> productRepository.findByActiveTrue().stream()
                 .map(this::convertToResponse)
-                .collect(Collectors.toList());
+                .collect(Collectors.toList()));
+    }
+
+    // cursor 是序號的 Base64 編碼，客戶端不應解析
+    private static String encodeCursor(long seq) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(("v1:" + seq).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static long decodeCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return 0;
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (decoded.startsWith("v1:")) {
+                return Long.parseLong(decoded.substring(3));
+            }
+        } catch (IllegalArgumentException e) {
+            // 格式錯誤，下面統一拋出
+        }
+        throw new RuntimeException("cursor 格式錯誤：" + cursor);
+    }
+
+    // PATCH 中出現但值不合法的欄位（不可為 null 的欄位傳了 null）
+    private void requireValue(ProductPatchRequest request, Field field, boolean valid, String message) {
+        if (request.has(field) && !valid) {
+            throw new RuntimeException(message);
+        }
+    }
+
+    // 可為 null 的欄位：null 需以 null literal 設定
+    private <T> void setNullable(CriteriaUpdate<Product> update, Path<T> path, T value, Class<T> type) {
+        if (value == null) {
+            update.set(path, entityManager.getCriteriaBuilder().nullLiteral(type));
+        } else {
+            update.set(path, value);
+        }
+    }
+
+    // 分類參照（不載入分類，只確認存在）；categoryId 為 null 表示移除分類
+    private Category categoryReference(Long categoryId) {
+        if (categoryId == null) {
+            return null;
+        }
+        if (!categoryRepository.existsById(categoryId)) {
+            throw new RuntimeException("分類不存在，ID: " + categoryId);
+        }
+        return entityManager.getReference(Category.class, categoryId);
     }
 
     // Entity 轉 Response
@@ -134,6 +368,7 @@ public class ProductService {
                 product.getFeatured(),
                 categoryId,
                 categoryName,
+                product.getVersion(),
                 product.getCreatedAt(),
                 product.getUpdatedAt()
         );
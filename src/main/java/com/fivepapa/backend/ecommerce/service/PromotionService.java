@@ -0,0 +1,149 @@
+package com.fivepapa.backend.ecommerce.service;
+
+import com.fivepapa.backend.ecommerce.dto.PromotionRequest;
+import com.fivepapa.backend.ecommerce.dto.PromotionResponse;
+import com.fivepapa.backend.ecommerce.entity.Promotion;
+import com.fivepapa.backend.ecommerce.entity.Promotion.PromotionType;
+import com.fivepapa.backend.ecommerce.event.PromotionChangedEvent;
+import com.fivepapa.backend.ecommerce.repository.CategoryRepository;
+import com.fivepapa.backend.ecommerce.repository.ProductRepository;
+import com.fivepapa.backend.ecommerce.repository.PromotionRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 促銷規則管理
+ * 每次異動都發布 PromotionChangedEvent，提交後重新編譯定價計畫並清除購物車快取
+ */
+@Service
+@RequiredArgsConstructor
+public class PromotionService {
+
+    private final PromotionRepository promotionRepository;
+    private final ProductRepository productRepository;
+    private final CategoryRepository categoryRepository;
+    private final ApplicationEventPublisher eventPublisher;
+
+    /**
+     * 建立促銷
+     */
+    @Transactional
+    public PromotionResponse createPromotion(PromotionRequest request) {
+        Promotion promotion = new Promotion();
+        apply(promotion, request);
+
+        Promotion saved = promotionRepository.save(promotion);
+        eventPublisher.publishEvent(new PromotionChangedEvent());
+        return convertToResponse(saved);
+    }
+
+    /**
+     * 查詢所有促銷
+     */
+    @Transactional(readOnly = true)
+    public List<PromotionResponse> getAllPromotions() {
+        return promotionRepository.findAll().stream()
+                .map(this::convertToResponse)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 查詢單一促銷
+     */
+    @Transactional(readOnly = true)
+    public PromotionResponse getPromotionById(Long id) {
+        Promotion promotion = promotionRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("促銷不存在，ID: " + id));
+        return convertToResponse(promotion);
+    }
+
+    /**
+     * 更新促銷
+     */
+    @Transactional
+    public PromotionResponse updatePromotion(Long id, PromotionRequest request) {
+        Promotion promotion = promotionRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("促銷不存在，ID: " + id));
+        apply(promotion, request);
+
+        Promotion updated = promotionRepository.save(promotion);
+        eventPublisher.publishEvent(new PromotionChangedEvent());
+        return convertToResponse(updated);
+    }
+
+    /**
+     * 刪除促銷
+     */
+    @Transactional
+    public void deletePromotion(Long id) {
+        if (!promotionRepository.existsById(id)) {
+            throw new RuntimeException("促銷不存在，ID: " + id);
+        }
+        promotionRepository.deleteById(id);
+        eventPublisher.publishEvent(new PromotionChangedEvent());
+    }
+
+    /**
+     * 驗證並套用請求內容
+     */
+    private void apply(Promotion promotion, PromotionRequest request) {
+        if (request.getType() == PromotionType.PERCENTAGE && request.getPercentOff() == null) {
+            throw new RuntimeException("百分比折扣必須設定折扣百分比");
+        }
+        if (request.getType() == PromotionType.BUY_X_GET_Y
+                && (request.getBuyQuantity() == null || request.getFreeQuantity() == null)) {
+            throw new RuntimeException("買 X 送 Y 必須設定購買數量與贈送數量");
+        }
+        if (request.getProductId() != null && request.getCategoryId() != null) {
+            throw new RuntimeException("促銷只能指定商品或分類其中之一");
+        }
+        if (request.getProductId() != null && !productRepository.existsById(request.getProductId())) {
+            throw new RuntimeException("商品不存在，ID: " + request.getProductId());
+        }
+        if (request.getCategoryId() != null && !categoryRepository.existsById(request.getCategoryId())) {
+            throw new RuntimeException("分類不存在，ID: " + request.getCategoryId());
+        }
+        if (request.getStartsAt() != null && request.getEndsAt() != null
+                && !request.getEndsAt().isAfter(request.getStartsAt())) {
+            throw new RuntimeException("結束時間必須晚於開始時間");
+        }
+
+        promotion.setName(request.getName());
+        promotion.setType(request.getType());
+        // 只保留該類型使用的欄位
+        promotion.setPercentOff(request.getType() == PromotionType.PERCENTAGE ? request.getPercentOff() : null);
+        promotion.setBuyQuantity(request.getType() == PromotionType.BUY_X_GET_Y ? request.getBuyQuantity() : null);
+        promotion.setFreeQuantity(request.getType() == PromotionType.BUY_X_GET_Y ? request.getFreeQuantity() : null);
+        promotion.setProductId(request.getProductId());
+        promotion.setCategoryId(request.getCategoryId());
+        promotion.setStartsAt(request.getStartsAt());
+        promotion.setEndsAt(request.getEndsAt());
+        promotion.setActive(request.getActive() != null ? request.getActive() : true);
+    }
+
+    /**
+     * 轉換為 Response
+     */
+    private PromotionResponse convertToResponse(Promotion promotion) {
+        return PromotionResponse.builder()
+                .id(promotion.getId())
+                .name(promotion.getName())
+                .type(promotion.getType())
+                .percentOff(promotion.getPercentOff())
+                .buyQuantity(promotion.getBuyQuantity())
+                .freeQuantity(promotion.getFreeQuantity())
+                .productId(promotion.getProductId())
+                .categoryId(promotion.getCategoryId())
+                .startsAt(promotion.getStartsAt())
+                .endsAt(promotion.getEndsAt())
+                .active(promotion.getActive())
+                .createdAt(promotion.getCreatedAt())
+                .updatedAt(promotion.getUpdatedAt())
+                .build();
+    }
+}
@@ -0,0 +1,440 @@
+package com.fivepapa.backend.ecommerce.service;
+
+import com.fivepapa.backend.ecommerce.entity.CartItem;
+import com.fivepapa.backend.ecommerce.entity.Product;
+import com.fivepapa.backend.ecommerce.entity.StockLease;
+import com.fivepapa.backend.ecommerce.repository.ProductRepository;
+import com.fivepapa.backend.ecommerce.repository.StockLeaseRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 庫存保留服務
+ * 購物車加入或調整數量時先保留庫存，避免搶購時購物車內的數量遠超過實際庫存
+ *
+ * 一般商品：直接以條件式 UPDATE（stock - reserved_stock >= ?）在購物車交易內保留
+ * 熱門商品：一次向資料庫租借一批庫存放進記憶體的分段計數器，之後的保留只做 CAS，
+ *           不會讓大量交易排隊等待同一列的 row lock
+ *
+ * 租借的庫存在閒置或關閉時歸還，閒置的商品同時降級回一般商品（移除計數器）
+ * 每個執行個體的租借量記在 stock_lease（租借時累加，心跳時同步為計數器中尚未使用的數量）；
+ * 執行個體異常終止後，心跳超過 STOCK_LEASE_EXPIRY_SECONDS 的紀錄由其他執行個體歸還 reserved_stock。
+ * 歸還的是最後一次心跳時的數量，之後才用掉的部分可能被多還（結帳扣庫存時仍檢查實際庫存，不會超賣）；
+ * 心跳發現自己的紀錄已被回收時（例如長時間停頓），丟棄計數器中的租借量，不再從中保留
+ */
+@Slf4j
+@Service
+public class StockReservationService {
+
+    private static final long RATE_WINDOW_IDLE_SECONDS = 10;
+
+    private final ProductRepository productRepository;
+    private final StockLeaseRepository stockLeaseRepository;
+    private final TransactionTemplate leaseTransactionTemplate;
+    // 租借紀錄上的執行個體 ID
+    private final String instanceId = UUID.randomUUID().toString();
+
+    // 熱門商品的記憶體計數器（商品 ID -> 計數器）
+    private final Map<Long, StripedStockCounter> hotCounters = new ConcurrentHashMap<>();
+
+    // 各商品每秒保留次數，用來自動判斷熱門商品；只需要最近一秒，閒置的商品自動移除
+    private final Cache<Long, RateWindow> reservationRates = Caffeine.newBuilder()
+            .expireAfterAccess(Duration.ofSeconds(RATE_WINDOW_IDLE_SECONDS))
+            .build();
+
+    private final long reservationTtlMinutes;
+    private final List<Long> configuredHotProductIds;
+    private final int hotThresholdPerSecond;
+    private final int leaseSize;
+    private final int stripes;
+    private final long hotIdleSeconds;
+    private final long leaseExpirySeconds;
+
+    public StockReservationService(ProductRepository productRepository,
+                                   StockLeaseRepository stockLeaseRepository,
+                                   PlatformTransactionManager transactionManager,
+                                   @Value("${CART_RESERVATION_TTL_MINUTES:15}") long reservationTtlMinutes,
+                                   @Value("${STOCK_HOT_PRODUCT_IDS:}") List<Long> configuredHotProductIds,
+                                   @Value("${STOCK_HOT_THRESHOLD_PER_SECOND:20}") int hotThresholdPerSecond,
+                                   @Value("${STOCK_HOT_LEASE_SIZE:50}") int leaseSize,
+                                   @Value("${STOCK_HOT_STRIPES:8}") int stripes,
+                                   @Value("${STOCK_HOT_IDLE_SECONDS:60}") long hotIdleSeconds,
+                                   @Value("${STOCK_LEASE_EXPIRY_SECONDS:60}") long leaseExpirySeconds) {
+        this.productRepository = productRepository;
+        this.stockLeaseRepository = stockLeaseRepository;
+        this.reservationTtlMinutes = reservationTtlMinutes;
+        this.configuredHotProductIds = configuredHotProductIds;
+        this.hotThresholdPerSecond = hotThresholdPerSecond;
+        this.leaseSize = leaseSize;
+        this.stripes = stripes;
+        this.hotIdleSeconds = hotIdleSeconds;
+        this.leaseExpirySeconds = leaseExpirySeconds;
+        // 租借庫存使用獨立的短交易，不讓購物車交易持有商品列的鎖
+        this.leaseTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.leaseTransactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * 新保留的到期時間
+     */
+    public LocalDateTime nextExpiry() {
+        return LocalDateTime.now().plusMinutes(reservationTtlMinutes);
+    }
+
+    /**
+     * 保留庫存，不足時拋出例外
+     * 必須在購物車交易內呼叫；交易回滾時熱門商品的保留會自動歸還計數器
+     */
+    public void reserve(Product product, int quantity) {
+        if (quantity <= 0) {
+            return;
+        }
+
+        StripedStockCounter counter = hotCounter(product.getId());
+        if (counter != null) {
+            reserveFromCounter(product, counter, quantity);
+            return;
+        }
+
+        reserveInDatabase(product, quantity);
+    }
+
+    /**
+     * 釋放保留的庫存
+     * 熱門商品在交易提交後才歸還計數器，避免回滾時重複釋放
+     */
+    public void release(Long productId, int quantity) {
+        if (quantity <= 0) {
+            return;
+        }
+
+        StripedStockCounter counter = hotCounters.get(productId);
+        if (counter != null) {
+            afterCommit(() -> returnToCounter(productId, counter, quantity));
+            return;
+        }
+
+        productRepository.releaseStock(productId, quantity);
+    }
+
+    /**
+     * 釋放多個購物車項目保留的庫存
+     * 一般商品以單一 UPDATE 依資料庫中的保留數量扣回，必須在刪除或歸零項目之前呼叫
+     */
+    public void releaseItems(Collection<CartItem> items) {
+        List<Long> coldItemIds = new ArrayList<>();
+        Map<Long, Integer> hotReleases = new HashMap<>();
+        for (CartItem item : items) {
+            if (item.getReservedQuantity() <= 0) {
+                continue;
+            }
+            if (hotCounters.containsKey(item.getProductId())) {
+                hotReleases.merge(item.getProductId(), item.getReservedQuantity(), Integer::sum);
+            } else {
+                coldItemIds.add(item.getId());
+            }
+        }
+
+        hotReleases.forEach(this::release);
+        if (!coldItemIds.isEmpty()) {
+            productRepository.releaseStockOfCartItems(coldItemIds);
+        }
+    }
+
+    /**
+     * 商品目前可供保留的庫存（包含本機尚未使用的租借量）
+     */
+    public int availableStock(Product product) {
+        StripedStockCounter counter = hotCounters.get(product.getId());
+        int leased = counter != null ? counter.available() : 0;
+        return product.getUnreservedStock() + leased;
+    }
+
+    /**
+     * 歸還閒置熱門商品的租借庫存，並降級回一般商品（只檢查記憶體，不掃描資料庫）
+     * 之後提交後才歸還到舊計數器的數量會直接還給資料庫
+     */
+    @Scheduled(fixedDelayString = "${STOCK_HOT_IDLE_CHECK_MS:30000}")
+    public void returnIdleLeases() {
+        long idleBefore = System.currentTimeMillis() - hotIdleSeconds * 1000;
+        hotCounters.forEach((productId, counter) -> {
+            if (counter.getLastUsedAt() < idleBefore) {
+                demote(productId, counter);
+            }
+        });
+    }
+
+    /**
+     * 關閉時歸還所有租借庫存
+     */
+    @PreDestroy
+    public void returnAllLeases() {
+        hotCounters.forEach(this::demote);
+    }
+
+    /**
+     * 心跳：同步本機各租借紀錄尚未使用的數量，並回收心跳逾時的執行個體留下的租借
+     */
+    @Scheduled(fixedDelayString = "${STOCK_LEASE_HEARTBEAT_MS:10000}")
+    public void heartbeat() {
+        LocalDateTime now = LocalDateTime.now();
+        hotCounters.forEach((productId, counter) -> {
+            // 租借中的商品等下一次心跳（租借本身也會更新紀錄）
+            if (!counter.leaseLock().tryLock()) {
+                return;
+            }
+            try {
+                if (hotCounters.get(productId) != counter) {
+                    return;
+                }
+                int available = counter.available();
+                if (!counter.isLeaseRecorded()) {
+                    // 尚未租借過，只有提交後歸還的保留；有數量時才建立紀錄
+                    if (available > 0) {
+                        leaseTransactionTemplate.executeWithoutResult(status -> recordLease(productId, counter, available));
+                    }
+                    return;
+                }
+                Integer updated = leaseTransactionTemplate.execute(status ->
+                        stockLeaseRepository.updateQuantity(instanceId, productId, available, now));
+                if (updated == null || updated == 0) {
+                    discard(productId, counter);
+                }
+            } finally {
+                counter.leaseLock().unlock();
+            }
+        });
+        reclaimExpiredLeases(now.minusSeconds(leaseExpirySeconds));
+    }
+
+    private void reclaimExpiredLeases(LocalDateTime expiredBefore) {
+        List<StockLease> expired = stockLeaseRepository.findExpired(expiredBefore, instanceId, Limit.of(100));
+        for (StockLease lease : expired) {
+            Boolean reclaimed = leaseTransactionTemplate.execute(status -> {
+                if (stockLeaseRepository.deleteIfExpired(lease.getId(), expiredBefore) == 0) {
+                    return false;
+                }
+                if (lease.getQuantity() > 0) {
+                    productRepository.releaseStock(lease.getProductId(), lease.getQuantity());
+                }
+                return true;
+            });
+            if (Boolean.TRUE.equals(reclaimed)) {
+                log.info("Reclaimed {} leased units of product {} from expired instance {}",
+                        lease.getQuantity(), lease.getProductId(), lease.getInstanceId());
+            }
+        }
+    }
+
+    private void reserveInDatabase(Product product, int quantity) {
+        if (productRepository.reserveStock(product.getId(), quantity) == 0) {
+            Integer unreserved = productRepository.findUnreservedStock(product.getId());
+            throw new RuntimeException("庫存不足，目前可用庫存：" + Math.max(0, unreserved != null ? unreserved : 0));
+        }
+        // 同步記憶體中的實體，讓回應顯示最新的可用庫存（reservedStock 不可更新，不會觸發 UPDATE）
+        product.setReservedStock(product.getReservedStock() + quantity);
+    }
+
+    private void reserveFromCounter(Product product, StripedStockCounter counter, int quantity) {
+        if (!counter.tryAcquire(quantity)) {
+            // 同一商品同時間只有一個執行緒向資料庫租借（使用另一個連線）；其他執行緒不等待，
+            // 等待時仍持有自己交易的連線，連線池用完時租借的執行緒會拿不到連線，改在自己的交易中直接保留
+            if (!counter.leaseLock().tryLock()) {
+                reserveInDatabase(product, quantity);
+                return;
+            }
+            try {
+                // 計數器已降級或被回收，改在自己的交易中直接保留
+                if (hotCounters.get(product.getId()) != counter) {
+                    reserveInDatabase(product, quantity);
+                    return;
+                }
+                if (!counter.tryAcquire(quantity)) {
+                    int leased = lease(product.getId(), counter, Math.max(leaseSize, quantity));
+                    if (leased < 0) {
+                        discard(product.getId(), counter);
+                        reserveInDatabase(product, quantity);
+                        return;
+                    }
+                    if (leased < quantity) {
+                        counter.deposit(leased);
+                        throw new RuntimeException("庫存不足，目前可用庫存：" + counter.available());
+                    }
+                    counter.deposit(leased - quantity);
+                }
+            } finally {
+                counter.leaseLock().unlock();
+            }
+        }
+        onRollback(() -> returnToCounter(product.getId(), counter, quantity));
+    }
+
+    /**
+     * 租借庫存並記錄在本機的租借紀錄（同一個交易），呼叫端持有計數器的 leaseLock
+     *
+     * @return 租借到的數量；紀錄已被其他執行個體回收時回傳 -1，不租借
+     */
+    private int lease(Long productId, StripedStockCounter counter, int wanted) {
+        Integer leased = leaseTransactionTemplate.execute(status -> {
+            int granted = 0;
+            if (productRepository.reserveStock(productId, wanted) == 1) {
+                granted = wanted;
+            } else {
+                // 剩餘庫存不足一整批時，租借剩下的全部
+                Integer unreserved = productRepository.findUnreservedStock(productId);
+                if (unreserved != null && unreserved > 0 && productRepository.reserveStock(productId, unreserved) == 1) {
+                    granted = unreserved;
+                }
+            }
+            if (granted > 0 && !recordLease(productId, counter, granted)) {
+                status.setRollbackOnly();
+                return -1;
+            }
+            return granted;
+        });
+        return leased != null ? leased : 0;
+    }
+
+    /**
+     * 累加租借紀錄的數量，第一次租借時建立紀錄；紀錄已被回收時回傳 false
+     */
+    private boolean recordLease(Long productId, StripedStockCounter counter, int quantity) {
+        if (!counter.isLeaseRecorded()) {
+            StockLease lease = new StockLease(instanceId, productId);
+            lease.setQuantity(quantity);
+            stockLeaseRepository.save(lease);
+            counter.setLeaseRecorded(true);
+            return true;
+        }
+        return stockLeaseRepository.addQuantity(instanceId, productId, quantity, LocalDateTime.now()) == 1;
+    }
+
+    /**
+     * 租借紀錄已被其他執行個體回收：計數器中的庫存已還給資料庫，丟棄並移除計數器
+     */
+    private void discard(Long productId, StripedStockCounter counter) {
+        hotCounters.remove(productId, counter);
+        log.warn("Stock lease for product {} was reclaimed by another instance; discarding {} leased units",
+                productId, counter.drain());
+    }
+
+    /**
+     * 歸還數量到計數器；計數器已被移除（降級或回收）時改還給資料庫
+     */
+    private void returnToCounter(Long productId, StripedStockCounter counter, int quantity) {
+        counter.release(quantity);
+        if (hotCounters.get(productId) != counter) {
+            int orphaned = counter.drain();
+            if (orphaned > 0) {
+                leaseTransactionTemplate.executeWithoutResult(status -> productRepository.releaseStock(productId, orphaned));
+            }
+        }
+    }
+
+    /**
+     * 移除計數器，歸還尚未使用的租借庫存並刪除租借紀錄
+     * 正在租借的商品留到下一次檢查，移除後的租借與保留都改走資料庫
+     */
+    private void demote(Long productId, StripedStockCounter counter) {
+        if (!counter.leaseLock().tryLock()) {
+            return;
+        }
+        try {
+            if (!hotCounters.remove(productId, counter)) {
+                return;
+            }
+            int unused = counter.drain();
+            leaseTransactionTemplate.executeWithoutResult(status -> {
+                // 紀錄已被回收時，租借量已還給資料庫
+                boolean owned = !counter.isLeaseRecorded() || stockLeaseRepository.deleteLease(instanceId, productId) == 1;
+                if (owned && unused > 0) {
+                    productRepository.releaseStock(productId, unused);
+                }
+            });
+            log.info("Product {} demoted from hot stock counter, returned {} leased units", productId, unused);
+        } finally {
+            counter.leaseLock().unlock();
+        }
+    }
+
+    private StripedStockCounter hotCounter(Long productId) {
+        StripedStockCounter counter = hotCounters.get(productId);
+        if (counter != null) {
+            return counter;
+        }
+        if (configuredHotProductIds.contains(productId) || isAboveHotThreshold(productId)) {
+            log.info("Product {} promoted to hot stock counter", productId);
+            return hotCounters.computeIfAbsent(productId, id -> new StripedStockCounter(stripes));
+        }
+        return null;
+    }
+
+    private boolean isAboveHotThreshold(Long productId) {
+        long second = System.currentTimeMillis() / 1000;
+        return reservationRates.get(productId, id -> new RateWindow()).increment(second) > hotThresholdPerSecond;
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private static void onRollback(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    action.run();
+                }
+            }
+        });
+    }
+
+    /**
+     * 以秒為單位的保留次數計數
+     */
+    private static final class RateWindow {
+        private long second;
+        private int count;
+
+        synchronized int increment(long currentSecond) {
+            if (currentSecond != second) {
+                second = currentSecond;
+                count = 0;
+            }
+            return ++count;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.fivepapa.backend.ecommerce.service;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 熱門商品的分段庫存計數器
+ * 保存從資料庫預先租借（lease）的庫存，保留時只在記憶體內以 CAS 扣減，
+ * 分成多個 stripe 讓大量併發請求不會集中在同一個計數器上
+ */
+final class StripedStockCounter {
+
+    // 每個 stripe 之間間隔 16 個 int（64 bytes），避免 false sharing
+    private static final int PADDING = 16;
+
+    private final int stripeCount;
+    private final AtomicIntegerArray cells;
+    private volatile long lastUsedAt = System.currentTimeMillis();
+    // 向資料庫租借時持有，同一商品同時只有一個租借
+    private final ReentrantLock leaseLock = new ReentrantLock();
+    // stock_lease 中是否已有這個計數器的紀錄（持有 leaseLock 時讀寫）
+    private volatile boolean leaseRecorded;
+
+    StripedStockCounter(int stripeCount) {
+        this.stripeCount = stripeCount;
+        this.cells = new AtomicIntegerArray(stripeCount * PADDING);
+    }
+
+    /**
+     * 嘗試保留指定數量；不足時不扣減任何 stripe 並回傳 false
+     */
+    boolean tryAcquire(int quantity) {
+        lastUsedAt = System.currentTimeMillis();
+        int home = homeStripe();
+
+        // 快速路徑：單一 stripe 足夠
+        for (int i = 0; i < stripeCount; i++) {
+            int index = ((home + i) % stripeCount) * PADDING;
+            int current = cells.get(index);
+            while (current >= quantity) {
+                if (cells.compareAndSet(index, current, current - quantity)) {
+                    return true;
+                }
+                current = cells.get(index);
+            }
+        }
+
+        // 慢速路徑：從多個 stripe 湊足數量，湊不足則全部歸還
+        int taken = 0;
+        for (int i = 0; i < stripeCount && taken < quantity; i++) {
+            int index = ((home + i) % stripeCount) * PADDING;
+            int current = cells.get(index);
+            while (current > 0) {
+                int take = Math.min(current, quantity - taken);
+                if (cells.compareAndSet(index, current, current - take)) {
+                    taken += take;
+                    break;
+                }
+                current = cells.get(index);
+            }
+        }
+        if (taken < quantity) {
+            release(taken);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 歸還數量到目前執行緒對應的 stripe
+     */
+    void release(int quantity) {
+        if (quantity > 0) {
+            cells.addAndGet(homeStripe() * PADDING, quantity);
+        }
+    }
+
+    /**
+     * 將新租借的庫存平均分配到各 stripe
+     */
+    void deposit(int quantity) {
+        int share = quantity / stripeCount;
+        int remainder = quantity % stripeCount;
+        for (int i = 0; i < stripeCount; i++) {
+            int amount = share + (i < remainder ? 1 : 0);
+            if (amount > 0) {
+                cells.addAndGet(i * PADDING, amount);
+            }
+        }
+    }
+
+    /**
+     * 取出所有尚未使用的租借庫存（歸還資料庫用）
+     */
+    int drain() {
+        int total = 0;
+        for (int i = 0; i < stripeCount; i++) {
+            total += cells.getAndSet(i * PADDING, 0);
+        }
+        return total;
+    }
+
+    /**
+     * 目前尚未使用的租借庫存
+     */
+    int available() {
+        int total = 0;
+        for (int i = 0; i < stripeCount; i++) {
+            total += cells.get(i * PADDING);
+        }
+        return total;
+    }
+
+    ReentrantLock leaseLock() {
+        return leaseLock;
+    }
+
+    boolean isLeaseRecorded() {
+        return leaseRecorded;
+    }
+
+    void setLeaseRecorded(boolean leaseRecorded) {
+        this.leaseRecorded = leaseRecorded;
+    }
+
+        long getLastUsedAt() {
+        return lastUsedAt;
+    }
+
+    private int homeStripe() {
+        long id = Thread.currentThread().getId();
+        return (int) ((id ^ (id >>> 16)) & 0x7fffffff) % stripeCount;
+    }
+}
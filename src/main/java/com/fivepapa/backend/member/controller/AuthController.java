@@ -1,5 +1,6 @@
 package com.fivepapa.backend.member.controller;
 
+import com.fivepapa.backend.ecommerce.service.GuestCartService;
 import com.fivepapa.backend.member.dto.LoginRequest;
 import com.fivepapa.backend.member.dto.LoginResponse;
 import com.fivepapa.backend.member.dto.RegisterRequest;
@@ -24,6 +25,7 @@ import org.springframework.web.bind.annotation.*;
 public class AuthController {
 
     private final AuthService authService;
+    private final GuestCartService guestCartService;
 
     @Value("${REFRESH_TOKEN_EXPIRATION_DAYS:7}")
     private int refreshTokenExpirationDays;
@@ -38,19 +40,26 @@ public class AuthController {
      * Register a new user
      * POST /api/auth/register
      * @param request registration request with user details
+     * @param guestCartToken guest cart cookie, merged into the new user's cart
      * @param response HTTP response to set cookies
      * @return login response with access token (refresh token in HttpOnly cookie)
      */
     @PostMapping("/register")
     public ResponseEntity<LoginResponse> register(
             @Valid @RequestBody RegisterRequest request,
+            @CookieValue(name = GuestCartService.COOKIE_NAME, required = false) String guestCartToken,
             HttpServletResponse response
     ) {
-        LoginResponse loginResponse = authService.register(request);
+        LoginResponse loginResponse = authService.register(request, guestCartToken);
 
         // Set refresh token in HttpOnly cookie
         setRefreshTokenCookie(response, loginResponse.getRefreshToken());
 
+        // Guest cart has been merged, drop its cookie (a cart that failed to merge is kept for the next login)
+        if (guestCartToken != null && !guestCartService.exists(guestCartToken)) {
+            clearGuestCartCookie(response);
+        }
+
         // Remove refresh token from response body (security best practice)
         loginResponse.setRefreshToken(null);
 
@@ -61,19 +70,26 @@ public class AuthController {
      * Login with username and password
      * POST /api/auth/login
      * @param request login request with credentials
+     * @param guestCartToken guest cart cookie, merged into the user's cart
      * @param response HTTP response to set cookies
      * @return login response with access token (refresh token in HttpOnly cookie)
      */
     @PostMapping("/login")
     public ResponseEntity<LoginResponse> login(
             @Valid @RequestBody LoginRequest request,
+            @CookieValue(name = GuestCartService.COOKIE_NAME, required = false) String guestCartToken,
             HttpServletResponse response
     ) {
-        LoginResponse loginResponse = authService.login(request);
+        LoginResponse loginResponse = authService.login(request, guestCartToken);
 
         // Set refresh token in HttpOnly cookie
         setRefreshTokenCookie(response, loginResponse.getRefreshToken());
 
+        // Guest cart has been merged, drop its cookie (a cart that failed to merge is kept for the next login)
+        if (guestCartToken != null && !guestCartService.exists(guestCartToken)) {
+            clearGuestCartCookie(response);
+        }
+
         // Remove refresh token from response body (security best practice)
         loginResponse.setRefreshToken(null);
 
@@ -150,4 +166,19 @@ public class AuthController {
 
         response.addCookie(cookie);
     }
+
+    /**
+     * Helper method to clear the guest cart cookie after it has been merged
+     * @param response HTTP response
+     */
+    private void clearGuestCartCookie(HttpServletResponse response) {
+        Cookie cookie = new Cookie(GuestCartService.COOKIE_NAME, null);
+        cookie.setHttpOnly(true);
+        cookie.setSecure(cookieSecure);
+        cookie.setPath("/");
+        cookie.setMaxAge(0); // Expire immediately
+        cookie.setAttribute("SameSite", cookieSameSite);
+
+        response.addCookie(cookie);
+    }
 }
@@ -4,6 +4,7 @@ import com.fivepapa.backend.common.exception.DuplicateEmailException;
 import com.fivepapa.backend.common.exception.DuplicateUsernameException;
 import com.fivepapa.backend.common.exception.InvalidCredentialsException;
 import com.fivepapa.backend.common.util.JwtUtil;
+import com.fivepapa.backend.ecommerce.service.GuestCartService;
 import com.fivepapa.backend.member.dto.LoginRequest;
 import com.fivepapa.backend.member.dto.LoginResponse;
 import com.fivepapa.backend.member.dto.RegisterRequest;
@@ -25,16 +26,18 @@ public class AuthService {
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
     private final JwtUtil jwtUtil;
+    private final GuestCartService guestCartService;
 
     /**
      * Register a new user
      * @param request registration request with user details
+     * @param guestCartToken guest cart cookie value, merged into the new user's cart (may be null)
      * @return login response with JWT tokens
      * @throws DuplicateUsernameException if username already exists
      * @throws DuplicateEmailException if email already exists
      */
     @Transactional
-    public LoginResponse register(RegisterRequest request) {
+    public LoginResponse register(RegisterRequest request, String guestCartToken) {
         // Check if username already exists
         if (userRepository.existsByUsernameIgnoreCase(request.getUsername())) {
             throw new DuplicateUsernameException(request.getUsername());
@@ -59,6 +62,9 @@ public class AuthService {
         // Save user
         User savedUser = userRepository.save(user);
 
+        // Merge guest cart after the user is committed
+        guestCartService.mergeIntoUserCart(savedUser.getId(), guestCartToken);
+
         // Generate tokens
         String accessToken = jwtUtil.generateToken(savedUser);
         String refreshToken = jwtUtil.generateRefreshToken(savedUser);
@@ -76,11 +82,12 @@ public class AuthService {
     /**
      * Authenticate user and generate tokens
      * @param request login request with username and password
+     * @param guestCartToken guest cart cookie value, merged into the user's cart (may be null)
      * @return login response with JWT tokens
      * @throws InvalidCredentialsException if credentials are invalid
      */
     @Transactional(readOnly = true)
-    public LoginResponse login(LoginRequest request) {
+    public LoginResponse login(LoginRequest request, String guestCartToken) {
         // Find user by username
         User user = userRepository.findByUsername(request.getUsername())
                 .orElseThrow(InvalidCredentialsException::new);
@@ -95,6 +102,9 @@ public class AuthService {
             throw new InvalidCredentialsException("Account is disabled");
         }
 
+        // Merge guest cart after login succeeds
+        guestCartService.mergeIntoUserCart(user.getId(), guestCartToken);
+
         // Generate tokens
         String accessToken = jwtUtil.generateToken(user);
         String refreshToken = jwtUtil.generateRefreshToken(user);
@@ -0,0 +1,113 @@
+package com.fivepapa.backend.common.cache;
+
+import com.fivepapa.backend.common.util.JwtUtil;
+import com.fivepapa.backend.ecommerce.dto.CategoryRequest;
+import com.fivepapa.backend.ecommerce.dto.ProductPatchRequest;
+import com.fivepapa.backend.ecommerce.entity.Category;
+import com.fivepapa.backend.ecommerce.entity.Product;
+import com.fivepapa.backend.ecommerce.service.CategoryService;
+import com.fivepapa.backend.ecommerce.service.ProductService;
+import com.fivepapa.backend.support.TestFixtures;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class ResponseCacheFilterTest {
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ResponseCache responseCache;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Test
+    void servesRepeatedGetFromCacheUntilProductIsWritten() throws Exception {
+        Product product = fixtures.product(fixtures.category());
+        String path = "/api/products/" + product.getId();
+
+        MvcResult miss = mockMvc.perform(get(path)).andReturn();
+        MvcResult hit = mockMvc.perform(get(path)).andReturn();
+
+        assertEquals("MISS", miss.getResponse().getHeader(ResponseCacheFilter.CACHE_STATUS_HEADER));
+        assertEquals("HIT", hit.getResponse().getHeader(ResponseCacheFilter.CACHE_STATUS_HEADER));
+        assertEquals(miss.getResponse().getContentAsString(), hit.getResponse().getContentAsString());
+        assertEquals(miss.getResponse().getHeader("ETag"), hit.getResponse().getHeader("ETag"));
+        assertEquals(List.of("public, max-age=0, s-maxage=30"), miss.getResponse().getHeaders("Cache-Control"));
+        assertEquals(List.of("public, max-age=0, s-maxage=30"), hit.getResponse().getHeaders("Cache-Control"));
+        assertTrue(hit.getResponse().getHeader(ResponseCacheFilter.SURROGATE_KEY_HEADER)
+                .contains("product:" + product.getId()));
+
+        MvcResult notModified = mockMvc.perform(get(path).header("If-None-Match", hit.getResponse().getHeader("ETag")))
+                .andReturn();
+        assertEquals(304, notModified.getResponse().getStatus());
+
+        ProductPatchRequest patch = new ProductPatchRequest();
+        patch.setStock(4);
+        productService.patchProduct(product.getId(), patch, null);
+
+        MvcResult afterWrite = mockMvc.perform(get(path)).andReturn();
+        assertEquals("MISS", afterWrite.getResponse().getHeader(ResponseCacheFilter.CACHE_STATUS_HEADER));
+        assertTrue(afterWrite.getResponse().getContentAsString().contains("\"stock\":4"));
+    }
+
+    @Test
+    void categoryRenamePurgesProductsInThatCategory() throws Exception {
+        Category category = fixtures.category();
+        Product product = fixtures.product(category);
+        String path = "/api/products/" + product.getId();
+        mockMvc.perform(get(path)).andReturn();
+
+        CategoryRequest rename = new CategoryRequest();
+        rename.setName(category.getName() + " renamed");
+        categoryService.updateCategory(category.getId(), rename);
+
+        MvcResult result = mockMvc.perform(get(path)).andReturn();
+        assertEquals("MISS", result.getResponse().getHeader(ResponseCacheFilter.CACHE_STATUS_HEADER));
+        assertTrue(result.getResponse().getContentAsString().contains(category.getName() + " renamed"));
+    }
+
+    @Test
+    void authenticatedRequestsBypassCache() throws Exception {
+        Product product = fixtures.product();
+        String token = jwtUtil.generateToken(fixtures.user());
+
+        MvcResult result = mockMvc.perform(get("/api/products/" + product.getId())
+                .header("Authorization", "Bearer " + token)).andReturn();
+
+        assertEquals(200, result.getResponse().getStatus());
+        assertNull(result.getResponse().getHeader(ResponseCacheFilter.CACHE_STATUS_HEADER));
+    }
+
+    @Test
+    void responseRenderedDuringPurgeIsNotStored() {
+        long stamp = responseCache.stamp();
+        responseCache.purge(List.of("products"));
+
+        responseCache.put("/stale", new ResponseCache.CachedResponse(new byte[1], null, null, -1, Set.of("products")), stamp);
+
+        assertNull(responseCache.get("/stale"));
+    }
+}
@@ -0,0 +1,84 @@
+package com.fivepapa.backend.common.cache.shared;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Limits that keep an unauthenticated peer from exhausting the server
+ */
+class SharedCacheServerTest {
+
+    private SharedCacheServer server;
+
+    @AfterEach
+    void stop() throws IOException {
+        server.close();
+    }
+
+    @Test
+    void frameLongerThanTheBudgetClosesTheConnection() throws Exception {
+        server = new SharedCacheServer(0, InetAddress.getLoopbackAddress(), 1024, Duration.ofSeconds(60), 4);
+
+        try (Socket socket = connect()) {
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            out.writeByte(SharedCacheProtocol.SET);
+            SharedCacheProtocol.writeString(out, "key");
+            out.writeLong(0);
+            out.writeLong(60_000);
+            // Only the length prefix is sent; the server must not allocate it
+            out.writeInt(Integer.MAX_VALUE);
+            out.flush();
+
+            assertThrows(EOFException.class, () -> new DataInputStream(socket.getInputStream()).readByte());
+        }
+
+        // Requests within the budget are still served
+        try (Socket socket = connect()) {
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            out.writeByte(SharedCacheProtocol.SET);
+            SharedCacheProtocol.writeString(out, "key");
+            out.writeLong(0);
+            out.writeLong(60_000);
+            SharedCacheProtocol.writeBytes(out, new byte[100]);
+            out.flush();
+
+            assertEquals(SharedCacheProtocol.ACK, new DataInputStream(socket.getInputStream()).readByte());
+        }
+    }
+
+    @Test
+    void connectionsBeyondTheLimitAreClosed() throws Exception {
+        server = new SharedCacheServer(0, InetAddress.getLoopbackAddress(), 1024, Duration.ofSeconds(60), 2);
+
+        try (Socket first = connect(); Socket second = connect()) {
+            assertEquals(0, token(first));
+            assertEquals(0, token(second));
+
+            try (Socket third = connect()) {
+                third.getOutputStream().write(SharedCacheProtocol.TOKEN);
+                assertThrows(IOException.class, () -> new DataInputStream(third.getInputStream()).readLong());
+            }
+        }
+    }
+
+    private Socket connect() throws IOException {
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+        socket.setSoTimeout(5000);
+        return socket;
+    }
+
+    private static long token(Socket socket) throws IOException {
+        socket.getOutputStream().write(SharedCacheProtocol.TOKEN);
+        return new DataInputStream(socket.getInputStream()).readLong();
+    }
+}
@@ -0,0 +1,143 @@
+package com.fivepapa.backend.common.cache.shared;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Two "instances" sharing one embedded server
+ */
+class TieredCacheTest {
+
+    private SharedCacheServer server;
+    private Node first;
+    private Node second;
+
+    @BeforeEach
+    void start() throws Exception {
+        server = new SharedCacheServer(0, InetAddress.getLoopbackAddress(), 1 << 20, Duration.ofSeconds(60), 16);
+        first = new Node("127.0.0.1:" + server.getPort());
+        second = new Node("127.0.0.1:" + server.getPort());
+        first.awaitSubscribedFrom(second);
+        second.awaitSubscribedFrom(first);
+    }
+
+    @AfterEach
+    void stop() throws IOException {
+        first.close();
+        second.close();
+        server.close();
+    }
+
+    @Test
+    void secondInstanceReadsWhatTheFirstLoaded() {
+        AtomicInteger loads = new AtomicInteger();
+
+        assertEquals(new Item("tea", 1), first.cache.get("1", () -> load(loads, "tea", 1)));
+        assertEquals(new Item("tea", 1), second.cache.get("1", () -> load(loads, "tea", 2)));
+
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void evictionReachesTheOtherInstance() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        first.cache.get("1", () -> load(loads, "tea", 1));
+        second.cache.get("1", () -> load(loads, "tea", 1));
+        assertNotNull(second.cache.getIfPresent("1"));
+
+        first.cache.evict(List.of("1"));
+
+        awaitTrue(() -> second.cache.getIfPresent("1") == null);
+        assertEquals(new Item("tea", 5), second.cache.get("1", () -> load(loads, "tea", 5)));
+        assertEquals(new Item("tea", 5), first.cache.get("1", () -> load(loads, "tea", 6)));
+    }
+
+    @Test
+    void valueLoadedBeforeAnEvictionIsNotStored() {
+        AtomicInteger loads = new AtomicInteger();
+
+        // The row changes (and the writer evicts) while the second instance is still loading the old one
+        Item stale = second.cache.get("1", () -> {
+            Item old = load(loads, "tea", 1);
+            first.cache.evict(List.of("1"));
+            return old;
+        });
+
+        assertEquals(new Item("tea", 1), stale);
+        assertEquals(new Item("tea", 2), first.cache.get("1", () -> load(loads, "tea", 2)));
+    }
+
+    @Test
+    void unreachableServerFallsBackToTheLoader() throws Exception {
+        server.close();
+        AtomicInteger loads = new AtomicInteger();
+
+        assertEquals(new Item("tea", 1), first.cache.get("1", () -> load(loads, "tea", 1)));
+        assertEquals(new Item("tea", 1), first.cache.get("1", () -> load(loads, "tea", 2)));
+        assertEquals(1, loads.get());
+    }
+
+    private static Item load(AtomicInteger loads, String name, int quantity) {
+        loads.incrementAndGet();
+        return new Item(name, quantity);
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "timed out");
+            Thread.sleep(10);
+        }
+    }
+
+    record Item(String name, int quantity) {
+    }
+
+    private static final class Node {
+        private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        private final SharedCache sharedCache;
+        private final TieredCache<Item> cache;
+
+        private Node(String address) {
+            sharedCache = new SharedCache(new ObjectMapper(), meterRegistry, address, -1, "127.0.0.1",
+                    0, 0, 60, 4, 1000);
+            cache = new TieredCache<>("items", Item.class, 100, Duration.ofMinutes(1), 0, sharedCache, meterRegistry);
+        }
+
+        /**
+         * Publishes probes from the other node until this one receives one
+         */
+        private void awaitSubscribedFrom(Node other) throws InterruptedException {
+            sharedCache.onInvalidation("probe", new SharedCache.InvalidationListener() {
+                @Override
+                public void invalidate(List<String> keys) {
+                }
+
+                @Override
+                public void invalidateAll() {
+                }
+            });
+            awaitTrue(() -> {
+                other.sharedCache.publishInvalidation("probe", List.of("ping"));
+                return meterRegistry.counter("cache.shared.invalidations", "direction", "received").count() > 0;
+            });
+        }
+
+        private void close() throws IOException {
+            cache.close();
+            sharedCache.close();
+        }
+    }
+}
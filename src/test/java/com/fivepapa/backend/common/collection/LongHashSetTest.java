@@ -0,0 +1,69 @@
+package com.fivepapa.backend.common.collection;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongHashSetTest {
+
+    @Test
+    void behavesLikeHashSetUnderRandomOperations() {
+        Random random = new Random(42);
+        LongHashSet set = new LongHashSet();
+        Set<Long> expected = new HashSet<>();
+
+        // Small value range forces long probe runs, collisions and frequent backward shifts
+        for (int i = 0; i < 200_000; i++) {
+            long value = random.nextInt(2_000) - 100;
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(value), set.remove(value));
+            } else {
+                assertEquals(expected.add(value), set.add(value));
+            }
+            assertEquals(expected.contains(value), set.contains(value));
+        }
+
+        assertEquals(expected.size(), set.size());
+        for (long value = -100; value < 1_900; value++) {
+            assertEquals(expected.contains(value), set.contains(value), "value " + value);
+        }
+        long[] values = set.toArray();
+        Arrays.sort(values);
+        assertArrayEquals(expected.stream().mapToLong(Long::longValue).sorted().toArray(), values);
+    }
+
+    @Test
+    void zeroIsAnOrdinaryValue() {
+        LongHashSet set = new LongHashSet();
+
+        assertFalse(set.contains(0));
+        assertTrue(set.add(0));
+        assertFalse(set.add(0));
+        assertTrue(set.contains(0));
+        assertEquals(1, set.size());
+        assertArrayEquals(new long[]{0}, set.toArray());
+
+        assertTrue(set.remove(0));
+        assertFalse(set.remove(0));
+        assertTrue(set.isEmpty());
+    }
+
+    @Test
+    void growsBeyondInitialCapacity() {
+        LongHashSet set = new LongHashSet(2);
+        for (long i = 1; i <= 10_000; i++) {
+            set.add(i * 31);
+        }
+
+        assertEquals(10_000, set.size());
+        for (long i = 1; i <= 10_000; i++) {
+            assertTrue(set.contains(i * 31));
+            assertFalse(set.contains(i * 31 + 1));
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.fivepapa.backend.common.concurrent;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final SingleFlight<String, Integer> flight = new SingleFlight<>("test", meterRegistry);
+
+    @Test
+    void concurrentCallersShareOneLoad() throws Exception {
+        int callers = 8;
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                results.add(executor.submit(() -> flight.execute("key", () -> {
+                    loads.incrementAndGet();
+                    await(release);
+                    return 42;
+                })));
+            }
+            // Every caller other than the leader has joined before the load is released
+            while (meterRegistry.counter("singleflight.calls", "flight", "test", "outcome", "shared").count()
+                    < callers - 1) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+            for (Future<Integer> result : results) {
+                assertEquals(42, result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, loads.get());
+        assertEquals(1, meterRegistry.counter("singleflight.calls", "flight", "test", "outcome", "leader").count());
+    }
+
+    @Test
+    void failureReachesEveryWaiterAndReleasesTheKey() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Integer> leader = executor.submit(() -> flight.execute("key", () -> {
+                await(release);
+                throw new IllegalStateException("boom");
+            }));
+            while (meterRegistry.counter("singleflight.calls", "flight", "test", "outcome", "leader").count() < 1) {
+                Thread.sleep(5);
+            }
+            // Let the leader fail only after this thread has joined its call
+            Thread releaser = new Thread(() -> {
+                while (meterRegistry.counter("singleflight.calls", "flight", "test", "outcome", "shared").count() < 1) {
+                    Thread.onSpinWait();
+                }
+                release.countDown();
+            });
+            releaser.start();
+            IllegalStateException shared = assertThrows(IllegalStateException.class,
+                    () -> flight.execute("key", () -> 0));
+            assertEquals("boom", shared.getMessage());
+            assertThrows(Exception.class, () -> leader.get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(7, flight.execute("key", () -> 7));
+    }
+
+    @Test
+    void forgetStartsANewCall() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Integer> stale = executor.submit(() -> flight.execute("key", () -> {
+                await(release);
+                return 1;
+            }));
+            while (meterRegistry.counter("singleflight.calls", "flight", "test", "outcome", "leader").count() < 1) {
+                Thread.sleep(5);
+            }
+
+            flight.forget("key");
+
+            assertEquals(2, flight.execute("key", () -> 2));
+            release.countDown();
+            assertEquals(1, stale.get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.fivepapa.backend.common.idempotency;
+
+import com.fivepapa.backend.common.util.JwtUtil;
+import com.fivepapa.backend.ecommerce.entity.Product;
+import com.fivepapa.backend.ecommerce.service.CartService;
+import com.fivepapa.backend.ecommerce.service.GuestCartService;
+import com.fivepapa.backend.member.entity.User;
+import com.fivepapa.backend.member.repository.UserRepository;
+import com.fivepapa.backend.support.TestFixtures;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class IdempotencyFilterTest {
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private GuestCartService guestCartService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void retryReplaysResponseWithoutAddingAgain() throws Exception {
+        User user = fixtures.user();
+        Product product = fixtures.product(100);
+        String key = UUID.randomUUID().toString();
+
+        MvcResult first = addToCart(user, product.getId(), 2, key);
+        MvcResult retry = addToCart(user, product.getId(), 2, key);
+
+        assertEquals(200, first.getResponse().getStatus());
+        assertNull(first.getResponse().getHeader(IdempotencyFilter.REPLAYED_HEADER));
+        assertEquals(200, retry.getResponse().getStatus());
+        assertEquals("true", retry.getResponse().getHeader(IdempotencyFilter.REPLAYED_HEADER));
+        assertEquals(first.getResponse().getContentAsString(), retry.getResponse().getContentAsString());
+        assertEquals(2, cartService.getCart(user.getId()).getTotalQuantity());
+    }
+
+    @Test
+    void keyReusedForDifferentRequestIsRejected() throws Exception {
+        User user = fixtures.user();
+        Product product = fixtures.product(100);
+        String key = UUID.randomUUID().toString();
+
+        addToCart(user, product.getId(), 1, key);
+        MvcResult reused = addToCart(user, product.getId(), 5, key);
+
+        assertEquals(422, reused.getResponse().getStatus());
+        assertEquals(1, cartService.getCart(user.getId()).getTotalQuantity());
+    }
+
+    @Test
+    void sameKeyFromDifferentUsersRunsForEach() throws Exception {
+        User first = fixtures.user();
+        User second = fixtures.user();
+        Product product = fixtures.product(100);
+        String key = UUID.randomUUID().toString();
+
+        addToCart(first, product.getId(), 1, key);
+        MvcResult other = addToCart(second, product.getId(), 1, key);
+
+        assertNull(other.getResponse().getHeader(IdempotencyFilter.REPLAYED_HEADER));
+        assertEquals(1, cartService.getCart(second.getId()).getTotalQuantity());
+    }
+
+    @Test
+    void concurrentDuplicatesWaitForFirstExecution() throws Exception {
+        User user = fixtures.user();
+        Product product = fixtures.product(100);
+        String key = UUID.randomUUID().toString();
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<MvcResult>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> addToCart(user, product.getId(), 1, key)));
+            }
+            int replayed = 0;
+            for (Future<MvcResult> result : results) {
+                assertEquals(200, result.get().getResponse().getStatus());
+                if (result.get().getResponse().getHeader(IdempotencyFilter.REPLAYED_HEADER) != null) {
+                    replayed++;
+                }
+            }
+            assertEquals(7, replayed);
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(1, cartService.getCart(user.getId()).getTotalQuantity());
+    }
+
+    @Test
+    void registerRetryReplaysCreatedUserAndCookies() throws Exception {
+        String name = "idem" + UUID.randomUUID().toString().substring(0, 8);
+        String key = UUID.randomUUID().toString();
+
+        MvcResult first = register(name, key);
+        MvcResult retry = register(name, key);
+
+        assertEquals(201, first.getResponse().getStatus());
+        assertEquals(201, retry.getResponse().getStatus());
+        assertEquals("true", retry.getResponse().getHeader(IdempotencyFilter.REPLAYED_HEADER));
+        assertEquals(first.getResponse().getContentAsString(), retry.getResponse().getContentAsString());
+        // Compared parsed, since MockMvc re-formats a replayed cookie (Expires date, empty value)
+        assertEquals(cookies(first), cookies(retry));
+    }
+
+    @Test
+    void registerRetriesWithTheSameKeyCreateOneUser() throws Exception {
+        String name = "idem" + UUID.randomUUID().toString().substring(0, 8);
+        String key = UUID.randomUUID().toString();
+
+        register(name, key);
+        register(name, key);
+        register(name, key);
+
+        assertEquals(1, userRepository.findAll().stream().filter(user -> user.getUsername().equals(name)).count());
+    }
+
+    @Test
+    void anonymousKeyMustBeAUuid() throws Exception {
+        String name = "idem" + UUID.randomUUID().toString().substring(0, 8);
+
+        MvcResult result = register(name, "retry-1");
+
+        assertEquals(400, result.getResponse().getStatus());
+        assertTrue(userRepository.findAll().stream().noneMatch(user -> user.getUsername().equals(name)));
+    }
+
+    private MvcResult register(String name, String key) throws Exception {
+        return mockMvc.perform(post("/api/auth/register")
+                .header(IdempotencyFilter.KEY_HEADER, key)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"username\":\"" + name + "\",\"email\":\"" + name + "@example.com\",\"password\":\"password123\"}"))
+                .andReturn();
+    }
+
+    private static List<String> cookies(MvcResult result) {
+        return Arrays.stream(result.getResponse().getCookies())
+                .map(cookie -> cookie.getName() + "=" + Objects.toString(cookie.getValue(), "") + "; Max-Age=" + cookie.getMaxAge())
+                .toList();
+    }
+
+    @Test
+    void anonymousCallersNeverShareResponses() throws Exception {
+        Product product = fixtures.product(100);
+
+        // A guest's first add has no cookie yet; its retry is replayed with the same guest cookie
+        String key = UUID.randomUUID().toString();
+        MvcResult first = addAsGuest(null, product.getId(), key);
+        MvcResult retry = addAsGuest(null, product.getId(), key);
+        assertEquals("true", retry.getResponse().getHeader(IdempotencyFilter.REPLAYED_HEADER));
+        String token = first.getResponse().getCookie(GuestCartService.COOKIE_NAME).getValue();
+        assertEquals(token, retry.getResponse().getCookie(GuestCartService.COOKIE_NAME).getValue());
+        assertEquals(1, guestCartService.getCart(token).getTotalQuantity());
+
+        // Different keys never replay each other, even without cookies
+        MvcResult other = addAsGuest(null, product.getId(), UUID.randomUUID().toString());
+        assertNull(other.getResponse().getHeader(IdempotencyFilter.REPLAYED_HEADER));
+        assertNotEquals(token, other.getResponse().getCookie(GuestCartService.COOKIE_NAME).getValue());
+    }
+
+    private MvcResult addAsGuest(String token, Long productId, String key) throws Exception {
+        var request = post("/api/cart/guest/items")
+                .header(IdempotencyFilter.KEY_HEADER, key)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"productId\":" + productId + ",\"quantity\":1}");
+        if (token != null) {
+            request.cookie(new Cookie(GuestCartService.COOKIE_NAME, token));
+        }
+        return mockMvc.perform(request).andReturn();
+    }
+
+    private MvcResult addToCart(User user, Long productId, int quantity, String key) throws Exception {
+        return mockMvc.perform(post("/api/cart/items")
+                .header("Authorization", "Bearer " + jwtUtil.generateToken(user))
+                .header(IdempotencyFilter.KEY_HEADER, key)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"productId\":" + productId + ",\"quantity\":" + quantity + "}")).andReturn();
+    }
+}
@@ -0,0 +1,116 @@
+package com.fivepapa.backend.common.scheduling;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchingTimerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicLong clock = new AtomicLong(0);
+    private final List<List<String>> delivered = new ArrayList<>();
+
+    @Test
+    void expiredKeysAreDeliveredInBatches() {
+        BatchingTimer<String> timer = timer(2, delivered::add);
+        for (String key : List.of("a", "b", "c", "d", "e")) {
+            timer.schedule(key, 100);
+        }
+
+        tickAt(90, timer);
+        assertTrue(delivered.isEmpty());
+
+        tickAt(100, timer);
+        assertEquals(List.of(2, 2, 1), delivered.stream().map(List::size).toList());
+        assertEquals(5, delivered.stream().mapToInt(List::size).sum());
+        assertEquals(0, timer.size());
+        assertEquals(5, meterRegistry.counter("timer.fired", "timer", "test").count());
+    }
+
+    @Test
+    void reschedulingReplacesThePreviousDeadline() {
+        BatchingTimer<String> timer = timer(10, delivered::add);
+        timer.schedule("a", 100);
+        timer.schedule("a", 300);
+        assertEquals(1, timer.size());
+
+        tickAt(200, timer);
+        assertTrue(delivered.isEmpty());
+
+        tickAt(300, timer);
+        assertEquals(List.of(List.of("a")), delivered);
+    }
+
+    @Test
+    void cancelledKeyIsNotDelivered() {
+        BatchingTimer<String> timer = timer(10, delivered::add);
+        timer.schedule("a", 100);
+        timer.schedule("b", 100);
+        timer.cancel("a");
+
+        tickAt(100, timer);
+        assertEquals(List.of(List.of("b")), delivered);
+    }
+
+    @Test
+    void failedBatchIsRetriedAfterTheRetryDelay() {
+        AtomicInteger attempts = new AtomicInteger();
+        BatchingTimer<String> timer = timer(10, batch -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new IllegalStateException("database unavailable");
+            }
+            delivered.add(batch);
+        });
+        timer.schedule("a", 100);
+        timer.schedule("b", 100);
+
+        tickAt(100, timer);
+        assertEquals(1, attempts.get());
+        assertTrue(delivered.isEmpty());
+        assertEquals(2, timer.size());
+
+        // Retries wait at least one second
+        tickAt(1090, timer);
+        assertEquals(1, attempts.get());
+
+        tickAt(1100, timer);
+        assertEquals(List.of(List.of("a", "b")), delivered);
+        assertEquals(0, timer.size());
+    }
+
+    @Test
+    void keyRescheduledWhileWaitingForRetryKeepsTheNewDeadline() {
+        AtomicInteger attempts = new AtomicInteger();
+        BatchingTimer<String> timer = timer(10, batch -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new IllegalStateException("database unavailable");
+            }
+            delivered.add(batch);
+        });
+        timer.schedule("a", 100);
+        tickAt(100, timer);
+
+        timer.schedule("a", 5000);
+        tickAt(1100, timer);
+        assertTrue(delivered.isEmpty());
+
+        tickAt(5000, timer);
+        assertEquals(List.of(List.of("a")), delivered);
+    }
+
+    private BatchingTimer<String> timer(int maxBatchSize, Consumer<List<String>> handler) {
+        return new BatchingTimer<>("test", 10, maxBatchSize, handler, meterRegistry, clock::get);
+    }
+
+    private void tickAt(long now, BatchingTimer<String> timer) {
+        clock.set(now);
+        timer.tick();
+    }
+}
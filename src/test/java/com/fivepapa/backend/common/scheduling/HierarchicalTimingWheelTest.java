@@ -0,0 +1,93 @@
+package com.fivepapa.backend.common.scheduling;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HierarchicalTimingWheelTest {
+
+    private static final long TICK_MS = 10;
+
+    @Test
+    void timerFiresOnTheFirstTickAtOrAfterItsDeadline() {
+        HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(TICK_MS, 4, 0);
+        HierarchicalTimingWheel.Timeout<String> timeout = wheel.schedule("a", 25);
+
+        assertTrue(wheel.advance(20).isEmpty());
+        assertFalse(timeout.isExpired());
+
+        List<HierarchicalTimingWheel.Timeout<String>> expired = wheel.advance(30);
+        assertEquals(List.of(timeout), expired);
+        assertTrue(timeout.isExpired());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void pastDeadlineFiresOnTheNextTick() {
+        HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(TICK_MS, 4, 1000);
+        wheel.schedule("late", 500);
+
+        assertTrue(wheel.advance(1000).isEmpty());
+        assertEquals(1, wheel.advance(1010).size());
+    }
+
+    @Test
+    void distantTimersCascadeDownToTheirExactTick() {
+        // 4 buckets per level: levels span 4, 16, 64 and 256 ticks
+        HierarchicalTimingWheel<Long> wheel = new HierarchicalTimingWheel<>(TICK_MS, 4, 0);
+        long[] deadlines = {35, 170, 650, 1000, 2555, 9990};
+        for (long deadline : deadlines) {
+            wheel.schedule(deadline, deadline);
+        }
+
+        Map<Long, Long> firedAt = new LinkedHashMap<>();
+        for (long now = 0; now <= 10_000; now += TICK_MS) {
+            for (HierarchicalTimingWheel.Timeout<Long> timeout : wheel.advance(now)) {
+                firedAt.put(timeout.getPayload(), now);
+            }
+        }
+
+        assertEquals(List.of(35L, 170L, 650L, 1000L, 2555L, 9990L), List.copyOf(firedAt.keySet()));
+        for (long deadline : deadlines) {
+            long expectedTick = (deadline + TICK_MS - 1) / TICK_MS * TICK_MS;
+            assertEquals(expectedTick, firedAt.get(deadline), "deadline " + deadline);
+        }
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void largeJumpReturnsTimersInDeadlineOrder() {
+        HierarchicalTimingWheel<Long> wheel = new HierarchicalTimingWheel<>(TICK_MS, 4, 0);
+        wheel.schedule(3000L, 3000);
+        wheel.schedule(40L, 40);
+        wheel.schedule(700L, 700);
+
+        List<Long> payloads = wheel.advance(5000).stream()
+                .map(HierarchicalTimingWheel.Timeout::getPayload)
+                .toList();
+
+        assertEquals(List.of(40L, 700L, 3000L), payloads);
+    }
+
+    @Test
+    void cancelledTimerNeverFires() {
+        HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(TICK_MS, 4, 0);
+        HierarchicalTimingWheel.Timeout<String> near = wheel.schedule("near", 20);
+        HierarchicalTimingWheel.Timeout<String> far = wheel.schedule("far", 5000);
+        HierarchicalTimingWheel.Timeout<String> kept = wheel.schedule("kept", 5000);
+
+        assertTrue(near.cancel());
+        assertTrue(far.cancel());
+        assertFalse(far.cancel());
+        assertEquals(1, wheel.size());
+
+        assertEquals(List.of(kept), wheel.advance(6000));
+        assertFalse(near.isExpired());
+        assertFalse(kept.cancel());
+        assertEquals(0, wheel.size());
+    }
+}
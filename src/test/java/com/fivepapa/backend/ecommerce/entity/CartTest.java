@@ -0,0 +1,160 @@
+package com.fivepapa.backend.ecommerce.entity;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CartTest {
+
+    @Test
+    void removalIsKeyedByProductAndLeavesOtherItems() {
+        int size = 1_000;
+        Cart cart = new Cart();
+        cart.setId(1L);
+        List<CartItem> items = new ArrayList<>(size);
+        for (long i = 1; i <= size; i++) {
+            CartItem item = newItem(i, i);
+            cart.addCartItem(item);
+            items.add(item);
+        }
+
+        // 移除偶數商品後，奇數商品仍可依商品 ID 找到，且順序不變
+        items.stream().filter(item -> item.getProductId() % 2 == 0).forEach(cart::removeCartItem);
+        assertEquals(size / 2, cart.getCartItems().size());
+        assertNull(cart.findCartItem(2L));
+        assertSame(items.get(0), cart.findCartItem(1L));
+        assertEquals(items.stream().filter(item -> item.getProductId() % 2 == 1).toList(),
+                new ArrayList<>(cart.getCartItems()));
+
+        // 同商品的其他實例不會移除購物車中的項目
+        cart.removeCartItem(newItem(null, 1L));
+        assertSame(items.get(0), cart.findCartItem(1L));
+
+        items.forEach(cart::removeCartItem);
+        assertTrue(cart.getCartItems().isEmpty());
+        assertTrue(items.stream().allMatch(item -> item.getCart() == null));
+    }
+
+    @Test
+    void removalComparesAConstantNumberOfItemsRegardlessOfCartSize() {
+        // 不量測時間：計算移除時呼叫項目 equals / hashCode 的次數，購物車大 10 倍時每次移除的次數不變
+        double small = comparisonsPerRemoval(100);
+        double large = comparisonsPerRemoval(1_000);
+
+        assertEquals(small, large);
+        assertTrue(large <= 2, "comparisons per removal: " + large);
+    }
+
+    @Test
+    void findCartItemByProductId() {
+        Cart cart = new Cart();
+        CartItem first = newItem(10L, 100L);
+        CartItem second = newItem(11L, 200L);
+        cart.addCartItem(first);
+        cart.addCartItem(second);
+
+        assertSame(second, cart.findCartItem(200L));
+        assertNull(cart.findCartItem(300L));
+        assertEquals(List.of(first, second), new ArrayList<>(cart.getCartItems()));
+
+        cart.removeCartItem(first);
+        assertNull(cart.findCartItem(100L));
+        assertEquals(1, cart.getCartItems().size());
+    }
+
+    @Test
+    void equalityIsBasedOnId() {
+        CartItem transientItem = newItem(null, 1L);
+        CartItem otherTransientItem = newItem(null, 1L);
+        assertNotEquals(transientItem, otherTransientItem);
+        assertEquals(transientItem, transientItem);
+
+        // hashCode 在取得 ID 前後不變，放進 HashSet 後仍找得到
+        Set<CartItem> set = new HashSet<>();
+        set.add(transientItem);
+        transientItem.setId(5L);
+        assertTrue(set.contains(transientItem));
+
+        CartItem sameRow = newItem(5L, 2L);
+        assertEquals(transientItem, sameRow);
+        assertEquals(transientItem.hashCode(), sameRow.hashCode());
+    }
+
+    @Test
+    void equalityDoesNotTraverseAssociations() {
+        Cart cart = new Cart();
+        cart.setId(1L);
+        CartItem item = newItem(1L, 1L);
+        cart.addCartItem(item);
+
+        Cart sameCart = new Cart();
+        sameCart.setId(1L);
+
+        // 雙向關聯不會讓 equals / hashCode 遞迴
+        assertEquals(cart, sameCart);
+        assertEquals(cart.hashCode(), sameCart.hashCode());
+        assertEquals(item.hashCode(), item.hashCode());
+    }
+
+    /**
+     * 依加入的反向順序移除全部項目（清單實作最差的情況），回傳平均每次移除的比較次數
+     */
+    private static double comparisonsPerRemoval(int size) {
+        Cart cart = new Cart();
+        List<CountingCartItem> items = new ArrayList<>(size);
+        for (long i = 1; i <= size; i++) {
+            CountingCartItem item = new CountingCartItem(i, i);
+            cart.addCartItem(item);
+            items.add(item);
+        }
+
+        CountingCartItem.calls = 0;
+        for (int i = size - 1; i >= 0; i--) {
+            cart.removeCartItem(items.get(i));
+        }
+        assertTrue(cart.getCartItems().isEmpty());
+        return (double) CountingCartItem.calls / size;
+    }
+
+    /**
+     * 計算 equals / hashCode 呼叫次數的項目
+     */
+    private static final class CountingCartItem extends CartItem {
+        private static long calls;
+
+        private CountingCartItem(Long id, Long productId) {
+            Product product = new Product();
+            product.setId(productId);
+            setId(id);
+            setProduct(product);
+            setQuantity(1);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            calls++;
+            return super.equals(o);
+        }
+
+        @Override
+        public int hashCode() {
+            calls++;
+            return super.hashCode();
+        }
+    }
+
+    private static CartItem newItem(Long id, Long productId) {
+        Product product = new Product();
+        product.setId(productId);
+        CartItem item = new CartItem();
+        item.setId(id);
+        item.setProduct(product);
+        item.setQuantity(1);
+        return item;
+    }
+}
@@ -0,0 +1,88 @@
+package com.fivepapa.backend.ecommerce.pricing;
+
+import com.fivepapa.backend.ecommerce.entity.Promotion;
+import com.fivepapa.backend.ecommerce.entity.Promotion.PromotionType;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 單一購物車的定價成本，隨促銷規則數與項目數變化
+ * 規則平均分配為全站、分類與商品促銷；商品 ID 範圍固定，規則越多命中的商品促銷越多
+ *
+ * 執行：mvn test-compile 後以 test classpath 執行本類別的 main
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PricingBenchmark {
+
+    private static final int PRODUCTS = 10_000;
+    private static final int CATEGORIES = 50;
+
+    @Param({"0", "10", "100", "1000"})
+    private int rules;
+
+    @Param({"1", "10", "50", "200"})
+    private int lineCount;
+
+    private List<Promotion> promotions;
+    private PricingPlan plan;
+    private CartLines lines;
+    private long now;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        promotions = new ArrayList<>(rules);
+        for (long id = 1; id <= rules; id++) {
+            Promotion.PromotionBuilder promotion = Promotion.builder().id(id).name("Promotion " + id);
+            if (id % 2 == 0) {
+                promotion.type(PromotionType.PERCENTAGE).percentOff(BigDecimal.valueOf(5 + random.nextInt(30)));
+            } else {
+                promotion.type(PromotionType.BUY_X_GET_Y).buyQuantity(1 + random.nextInt(3)).freeQuantity(1);
+            }
+            switch ((int) (id % 10)) {
+                case 0 -> { }  // 全站
+                case 1, 2, 3 -> promotion.categoryId((long) (1 + random.nextInt(CATEGORIES)));
+                default -> promotion.productId((long) (1 + random.nextInt(PRODUCTS)));
+            }
+            promotions.add(promotion.build());
+        }
+        plan = PricingPlan.compile(promotions, Map.of());
+
+        lines = new CartLines(lineCount);
+        for (int i = 0; i < lineCount; i++) {
+            lines.add(1 + random.nextInt(PRODUCTS), 1 + random.nextInt(CATEGORIES), 100 + random.nextInt(100_000), 1 + random.nextInt(5));
+        }
+        now = System.currentTimeMillis();
+    }
+
+    @Benchmark
+    public long priceCart() {
+        return plan.price(lines, now);
+    }
+
+    /**
+     * 規則異動時才會發生的編譯成本，與每次定價分開比較
+     */
+    @Benchmark
+    public PricingPlan compilePlan() {
+        return PricingPlan.compile(promotions, Map.of());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(PricingBenchmark.class.getSimpleName()).build()).run();
+    }
+}
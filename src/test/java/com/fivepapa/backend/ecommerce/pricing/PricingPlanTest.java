@@ -0,0 +1,141 @@
+package com.fivepapa.backend.ecommerce.pricing;
+
+import com.fivepapa.backend.ecommerce.entity.Promotion;
+import com.fivepapa.backend.ecommerce.entity.Promotion.PromotionType;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PricingPlanTest {
+
+    private static final long NOW = System.currentTimeMillis();
+
+    @Test
+    void percentageRoundsHalfUpToMinorUnits() {
+        PricingPlan plan = PricingPlan.compile(List.of(percentage(1L, "15.5", null, null)), Map.of());
+        CartLines lines = new CartLines(1);
+        lines.add(1, 0, 333, 3);  // 9.99 小計，折扣 1.54845
+
+        assertEquals(155, plan.price(lines, NOW));
+        assertEquals(999, lines.subtotal(0));
+        assertEquals(0, lines.promotion(0));
+    }
+
+    @Test
+    void buyXGetYDiscountsWholeGroupsOnly() {
+        PricingPlan plan = PricingPlan.compile(List.of(buyXGetY(1L, 2, 1, 10L, null)), Map.of());
+        CartLines lines = new CartLines(2);
+        lines.add(10, 0, 500, 7);  // 兩組（買二送一），送 2 件
+        lines.add(11, 0, 500, 7);  // 不適用
+
+        assertEquals(1000, plan.price(lines, NOW));
+        assertEquals(1000, lines.discount(0));
+        assertEquals(0, lines.discount(1));
+        assertEquals(-1, lines.promotion(1));
+    }
+
+    @Test
+    void categoryPromotionCoversChildCategories() {
+        PricingPlan plan = PricingPlan.compile(List.of(percentage(1L, "10", null, 5L)), Map.of(5L, List.of(6L)));
+        CartLines lines = new CartLines(3);
+        lines.add(1, 5, 1000, 1);
+        lines.add(2, 6, 1000, 1);
+        lines.add(3, 7, 1000, 1);
+
+        assertEquals(200, plan.price(lines, NOW));
+        assertEquals(0, lines.discount(2));
+    }
+
+    @Test
+    void bestSingleDiscountWinsWithoutStacking() {
+        PricingPlan plan = PricingPlan.compile(List.of(
+                percentage(1L, "10", null, null),
+                percentage(2L, "20", null, 5L),
+                buyXGetY(3L, 1, 1, 1L, null)), Map.of());
+        CartLines lines = new CartLines(2);
+        lines.add(1, 5, 1000, 2);  // 買一送一 1000 > 8 折 400 > 9 折 200
+        lines.add(2, 5, 1000, 2);  // 只有 8 折與 9 折
+
+        assertEquals(1400, plan.price(lines, NOW));
+        assertEquals(3L, plan.promotionId(lines.promotion(0)));
+        assertEquals(2L, plan.promotionId(lines.promotion(1)));
+    }
+
+    @Test
+    void promotionOutsideItsWindowIsIgnored() {
+        Promotion expired = percentage(1L, "50", null, null);
+        expired.setEndsAt(LocalDateTime.now().minusDays(1));
+        Promotion upcoming = percentage(2L, "50", null, null);
+        upcoming.setStartsAt(LocalDateTime.now().plusDays(1));
+        PricingPlan plan = PricingPlan.compile(List.of(expired, upcoming), Map.of());
+        CartLines lines = new CartLines(1);
+        lines.add(1, 0, 1000, 1);
+
+        assertEquals(0, plan.price(lines, NOW));
+        long tomorrow = LocalDateTime.now().plusDays(2).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        assertEquals(500, plan.price(lines, tomorrow));
+    }
+
+    @Test
+    void nextBoundaryIsTheEarliestStartOrEndAfterNow() {
+        long start = NOW + 60_000;
+        long end = NOW + 120_000;
+        Promotion windowed = percentage(1L, "50", null, null);
+        windowed.setStartsAt(toLocal(start));
+        windowed.setEndsAt(toLocal(end));
+        Promotion expired = percentage(2L, "10", null, null);
+        expired.setEndsAt(toLocal(NOW - 60_000));
+        PricingPlan plan = PricingPlan.compile(List.of(windowed, expired, percentage(3L, "5", null, null)), Map.of());
+
+        assertEquals(start, plan.nextBoundaryAfter(NOW));
+        assertEquals(end, plan.nextBoundaryAfter(start));
+        assertEquals(Long.MAX_VALUE, plan.nextBoundaryAfter(end));
+        assertEquals(Long.MAX_VALUE, PricingPlan.EMPTY.nextBoundaryAfter(NOW));
+    }
+
+    @Test
+    void linesGrowBeyondInitialCapacity() {
+        PricingPlan plan = PricingPlan.compile(List.of(percentage(1L, "10", null, null)), Map.of());
+        CartLines lines = new CartLines(1);
+        for (int i = 0; i < 100; i++) {
+            lines.add(i + 1, 0, 100, 1);
+        }
+
+        assertEquals(1000, plan.price(lines, NOW));
+        assertEquals(100, lines.size());
+    }
+
+    private static LocalDateTime toLocal(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
+
+    private static Promotion percentage(Long id, String percentOff, Long productId, Long categoryId) {
+        return Promotion.builder()
+                .id(id)
+                .name("Promotion " + id)
+                .type(PromotionType.PERCENTAGE)
+                .percentOff(new BigDecimal(percentOff))
+                .productId(productId)
+                .categoryId(categoryId)
+                .build();
+    }
+
+    private static Promotion buyXGetY(Long id, int buy, int free, Long productId, Long categoryId) {
+        return Promotion.builder()
+                .id(id)
+                .name("Promotion " + id)
+                .type(PromotionType.BUY_X_GET_Y)
+                .buyQuantity(buy)
+                .freeQuantity(free)
+                .productId(productId)
+                .categoryId(categoryId)
+                .build();
+    }
+}
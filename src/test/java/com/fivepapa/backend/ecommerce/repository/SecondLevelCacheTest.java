@@ -0,0 +1,126 @@
+package com.fivepapa.backend.ecommerce.repository;
+
+import com.fivepapa.backend.ecommerce.dto.CartBatchRequest;
+import com.fivepapa.backend.ecommerce.dto.CartBatchRequest.Operation;
+import com.fivepapa.backend.ecommerce.dto.CartBatchRequest.OperationType;
+import com.fivepapa.backend.ecommerce.entity.Category;
+import com.fivepapa.backend.ecommerce.entity.Product;
+import com.fivepapa.backend.ecommerce.service.CartService;
+import com.fivepapa.backend.support.TestFixtures;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class SecondLevelCacheTest {
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+    private SessionFactory sessionFactory;
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+        statistics = sessionFactory.getStatistics();
+    }
+
+    @Test
+    void categoryAndChildrenAreReadFromTheCacheInLaterTransactions() {
+        Category parent = fixtures.category();
+        Category child = fixtures.category(parent);
+        Product product = fixtures.product(child);
+        // Warm up: first load after the save may go to the database
+        readCategoryNames(product.getId(), parent.getId());
+        long categoryHits = region("category").getHitCount();
+        long childrenHits = region("categoryChildren").getHitCount();
+
+        List<String> names = readCategoryNames(product.getId(), parent.getId());
+
+        assertEquals(List.of(child.getName(), child.getName()), names);
+        assertTrue(region("category").getHitCount() > categoryHits);
+        assertTrue(region("categoryChildren").getHitCount() > childrenHits);
+    }
+
+    @Test
+    void productIsNotCached() {
+        Product product = fixtures.product();
+        productRepository.findById(product.getId());
+
+        assertFalse(sessionFactory.getCache().containsEntity(Product.class, product.getId()));
+    }
+
+    @Test
+    void categoryHitsSurviveCartActivity() {
+        Category category = fixtures.category();
+        Product product = fixtures.product(category);
+        Long userId = fixtures.user().getId();
+        readCategoryNames(product.getId(), category.getId());
+        categoryRepository.findByParentIsNull();
+        long categoryMisses = region("category").getMissCount();
+        long queryMisses = region("topLevelCategoriesQuery").getMissCount();
+        long queryHits = region("topLevelCategoriesQuery").getHitCount();
+
+        // Reserving (JPQL bulk update) and releasing (native UPDATE) only write product and cart_item
+        cartService.applyBatch(userId, new CartBatchRequest(List.of(
+                new Operation(OperationType.ADD, product.getId(), 2))));
+        cartService.applyBatch(userId, new CartBatchRequest(List.of(
+                new Operation(OperationType.REMOVE, product.getId(), null))));
+
+        readCategoryNames(product.getId(), category.getId());
+        assertTrue(categoryRepository.findByParentIsNull().stream().anyMatch(c -> c.getId().equals(category.getId())));
+        assertEquals(categoryMisses, region("category").getMissCount());
+        assertEquals(queryMisses, region("topLevelCategoriesQuery").getMissCount());
+        assertEquals(queryHits + 1, region("topLevelCategoriesQuery").getHitCount());
+    }
+
+    /**
+     * Reads the product's category (lazy association) and the category's first child, if any, in one new transaction
+     */
+    private List<String> readCategoryNames(Long productId, Long categoryId) {
+        return transactionTemplate.execute(status -> {
+            List<String> names = new ArrayList<>();
+            names.add(productRepository.findById(productId).orElseThrow().getCategory().getName());
+            categoryRepository.findById(categoryId).orElseThrow().getChildren().stream()
+                    .findFirst()
+                    .ifPresent(child -> names.add(child.getName()));
+            return names;
+        });
+    }
+
+    private CacheRegionStatistics region(String name) {
+        return statistics.getDomainDataRegionStatistics(name) != null
+                ? statistics.getDomainDataRegionStatistics(name)
+                : statistics.getQueryRegionStatistics(name);
+    }
+}
@@ -0,0 +1,94 @@
+package com.fivepapa.backend.ecommerce.service;
+
+import com.fivepapa.backend.ecommerce.dto.CartBatchRequest;
+import com.fivepapa.backend.ecommerce.dto.CartBatchRequest.Operation;
+import com.fivepapa.backend.ecommerce.dto.CartBatchRequest.OperationType;
+import com.fivepapa.backend.ecommerce.entity.Product;
+import com.fivepapa.backend.ecommerce.repository.CartItemRepository;
+import com.fivepapa.backend.ecommerce.repository.CartRepository;
+import com.fivepapa.backend.support.TestFixtures;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class CartEvictionServiceTest {
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private CartItemRepository cartItemRepository;
+
+    @Autowired
+    private CartResponseCache cartResponseCache;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void evictsIdleCartsInBatchesAndKeepsActiveOrReservedOnes() {
+        Product product = fixtures.product(100);
+        List<Long> idleUsers = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Long userId = createUserWithCart(product);
+            releaseReservations(userId);
+            makeIdle(userId);
+            idleUsers.add(userId);
+        }
+        Long activeUser = createUserWithCart(product);
+        releaseReservations(activeUser);
+        Long reservedUser = createUserWithCart(product);
+        makeIdle(reservedUser);
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        CartEvictionService evictionService = new CartEvictionService(cartRepository, cartItemRepository,
+                cartResponseCache, transactionManager, meterRegistry, 30, 2, 0);
+
+        int evicted = evictionService.evictIdleBefore(LocalDateTime.now().minusDays(30));
+
+        assertEquals(5, evicted);
+        assertEquals(5, meterRegistry.counter("cart.eviction.carts").count());
+        assertEquals(5, meterRegistry.counter("cart.eviction.items").count());
+        for (Long userId : idleUsers) {
+            assertFalse(cartRepository.existsByUserId(userId));
+        }
+        assertTrue(cartRepository.existsByUserId(activeUser));
+        assertTrue(cartRepository.existsByUserId(reservedUser));
+        // 被刪除的用戶下次查詢得到空購物車
+        assertEquals(0, cartService.getCart(idleUsers.get(0)).getTotalItems());
+    }
+
+    private Long createUserWithCart(Product product) {
+        Long userId = fixtures.user().getId();
+        cartService.applyBatch(userId, new CartBatchRequest(List.of(new Operation(OperationType.ADD, product.getId(), 1))));
+        return userId;
+    }
+
+    private void releaseReservations(Long userId) {
+        jdbcTemplate.update("UPDATE cart_item SET reserved_quantity = 0 WHERE cart_id = " +
+                "(SELECT id FROM cart WHERE user_id = ?)", userId);
+    }
+
+    private void makeIdle(Long userId) {
+        jdbcTemplate.update("UPDATE cart SET updated_at = ? WHERE user_id = ?", LocalDateTime.now().minusDays(60), userId);
+    }
+}
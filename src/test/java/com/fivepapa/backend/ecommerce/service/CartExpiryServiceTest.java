@@ -0,0 +1,148 @@
+package com.fivepapa.backend.ecommerce.service;
+
+import com.fivepapa.backend.ecommerce.dto.CartBatchRequest;
+import com.fivepapa.backend.ecommerce.dto.CartBatchRequest.Operation;
+import com.fivepapa.backend.ecommerce.dto.CartBatchRequest.OperationType;
+import com.fivepapa.backend.ecommerce.entity.Product;
+import com.fivepapa.backend.support.TestFixtures;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 到期計時器觸發後的釋放；資料庫中的時間先改到過去，再以相同時間排程，計時器在下一個 tick 觸發
+ */
+@SpringBootTest
+class CartExpiryServiceTest {
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private CartExpiryService cartExpiryService;
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void expiredHoldReleasesOnlyThatItem() throws Exception {
+        Product expiring = fixtures.product();
+        Product kept = fixtures.product();
+        Long userId = fixtures.user().getId();
+        addToCart(userId, expiring, 3);
+        addToCart(userId, kept, 2);
+
+        LocalDateTime past = LocalDateTime.now().minusMinutes(1);
+        Long itemId = cartItemIdOf(expiring);
+        jdbcTemplate.update("UPDATE cart_item SET reservation_expires_at = ? WHERE id = ?", past, itemId);
+        cartExpiryService.scheduleHold(itemId, past);
+
+        await(() -> reservedStockOf(expiring) == 0);
+        assertEquals(0, reservedQuantityOf(expiring));
+        assertEquals(3, quantityOf(expiring));
+        assertEquals(2, reservedStockOf(kept));
+        assertEquals(2, reservedQuantityOf(kept));
+    }
+
+    @Test
+    void extendedHoldIsNotReleasedByAnOlderTimer() throws Exception {
+        Product product = fixtures.product();
+        Long userId = fixtures.user().getId();
+        addToCart(userId, product, 3);
+
+        // 資料庫中的到期時間仍在未來（例如已被延長），過時的計時器不應釋放
+        double fired = firedCount("cart-hold");
+        cartExpiryService.scheduleHold(cartItemIdOf(product), LocalDateTime.now().minusMinutes(1));
+
+        await(() -> firedCount("cart-hold") > fired);
+        assertEquals(3, reservedStockOf(product));
+        assertEquals(3, reservedQuantityOf(product));
+    }
+
+    @Test
+    void idleCartReleasesEveryHold() throws Exception {
+        Product first = fixtures.product();
+        Product second = fixtures.product();
+        Long userId = fixtures.user().getId();
+        addToCart(userId, first, 3);
+        addToCart(userId, second, 2);
+
+        LocalDateTime lastActivity = LocalDateTime.now().minusMinutes(30);
+        Long cartId = cartIdOf(first);
+        jdbcTemplate.update("UPDATE cart SET updated_at = ? WHERE id = ?", lastActivity, cartId);
+        cartExpiryService.scheduleIdle(cartId, lastActivity);
+
+        await(() -> reservedStockOf(first) == 0 && reservedStockOf(second) == 0);
+        assertEquals(0, reservedQuantityOf(first));
+        assertEquals(0, reservedQuantityOf(second));
+        assertEquals(5, cartService.getCart(userId).getTotalQuantity());
+    }
+
+    @Test
+    void activeCartIsRescheduledInsteadOfReleased() throws Exception {
+        Product product = fixtures.product();
+        Long userId = fixtures.user().getId();
+        addToCart(userId, product, 3);
+
+        // 購物車的最後異動時間是現在，過時的閒置計時器只會重新排程
+        double fired = firedCount("cart-idle");
+        cartExpiryService.scheduleIdle(cartIdOf(product), LocalDateTime.now().minusMinutes(30));
+
+        await(() -> firedCount("cart-idle") > fired);
+        assertEquals(3, reservedStockOf(product));
+        assertEquals(3, reservedQuantityOf(product));
+    }
+
+    private void addToCart(Long userId, Product product, int quantity) {
+        cartService.applyBatch(userId, new CartBatchRequest(List.of(
+                new Operation(OperationType.ADD, product.getId(), quantity))));
+    }
+
+    private double firedCount(String timer) {
+        return meterRegistry.counter("timer.fired", "timer", timer).count();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "timed out waiting for the timer");
+            Thread.sleep(20);
+        }
+    }
+
+    private Long cartItemIdOf(Product product) {
+        return jdbcTemplate.queryForObject("SELECT id FROM cart_item WHERE product_id = ?", Long.class, product.getId());
+    }
+
+    private Long cartIdOf(Product product) {
+        return jdbcTemplate.queryForObject("SELECT cart_id FROM cart_item WHERE product_id = ?", Long.class, product.getId());
+    }
+
+    private int quantityOf(Product product) {
+        return jdbcTemplate.queryForObject("SELECT quantity FROM cart_item WHERE product_id = ?", Integer.class, product.getId());
+    }
+
+    private int reservedQuantityOf(Product product) {
+        return jdbcTemplate.queryForObject("SELECT reserved_quantity FROM cart_item WHERE product_id = ?",
+                Integer.class, product.getId());
+    }
+
+    private int reservedStockOf(Product product) {
+        return jdbcTemplate.queryForObject("SELECT reserved_stock FROM product WHERE id = ?", Integer.class, product.getId());
+    }
+}
@@ -0,0 +1,122 @@
+package com.fivepapa.backend.ecommerce.service;
+
+import com.fivepapa.backend.ecommerce.dto.CartItemResponse;
+import com.fivepapa.backend.ecommerce.dto.CartResponse;
+import com.fivepapa.backend.ecommerce.event.ProductChangedEvent;
+import com.fivepapa.backend.ecommerce.entity.Promotion;
+import com.fivepapa.backend.ecommerce.entity.Promotion.PromotionType;
+import com.fivepapa.backend.ecommerce.event.PromotionChangedEvent;
+import com.fivepapa.backend.ecommerce.pricing.PricingEngine;
+import com.fivepapa.backend.ecommerce.repository.PromotionRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 載入期間的清除：只有同一用戶或回應中的商品被清除時才放棄寫入
+ * 促銷開始或結束時快取的回應過期
+ */
+@SpringBootTest
+class CartResponseCacheTest {
+
+    // 用戶與商品 ID 落在不同分段
+    private static final long USER = 900001L;
+    private static final long OTHER_USER = 900002L;
+    private static final long PRODUCT = 900003L;
+    private static final long OTHER_PRODUCT = 900004L;
+
+    @Autowired
+    private CartResponseCache cartResponseCache;
+
+    @Autowired
+    private PricingEngine pricingEngine;
+
+    @Autowired
+    private PromotionRepository promotionRepository;
+
+    @Test
+    void evictingAnotherUserOrProductKeepsThePut() {
+        long stamp = cartResponseCache.stamp();
+        cartResponseCache.evict(OTHER_USER);
+        cartResponseCache.onProductChanged(new ProductChangedEvent(List.of(OTHER_PRODUCT)));
+
+        CartResponse response = cartWith(PRODUCT);
+        cartResponseCache.put(USER, response, stamp);
+
+        assertSame(response, cartResponseCache.get(USER));
+        cartResponseCache.evict(USER);
+    }
+
+    @Test
+    void evictingTheSameUserAbortsThePut() {
+        long stamp = cartResponseCache.stamp();
+        cartResponseCache.evict(USER);
+
+        cartResponseCache.put(USER, cartWith(PRODUCT), stamp);
+
+        assertNull(cartResponseCache.get(USER));
+    }
+
+    @Test
+    void changingAProductInTheCartAbortsThePut() {
+        long stamp = cartResponseCache.stamp();
+        cartResponseCache.onProductChanged(new ProductChangedEvent(List.of(PRODUCT)));
+
+        cartResponseCache.put(USER, cartWith(OTHER_PRODUCT, PRODUCT), stamp);
+
+        assertNull(cartResponseCache.get(USER));
+        cartResponseCache.put(USER, cartWith(PRODUCT), cartResponseCache.stamp());
+        assertNotNull(cartResponseCache.get(USER));
+        cartResponseCache.evict(USER);
+    }
+
+    @Test
+    void invalidatingEverythingAbortsThePut() {
+        long stamp = cartResponseCache.stamp();
+        cartResponseCache.onPromotionChanged(new PromotionChangedEvent());
+
+        cartResponseCache.put(USER, cartWith(PRODUCT), stamp);
+
+        assertNull(cartResponseCache.get(USER));
+    }
+
+    @Test
+    void cachedCartExpiresWhenAPromotionStarts() throws InterruptedException {
+        LocalDateTime startsAt = LocalDateTime.now().plusSeconds(1);
+        Promotion promotion = promotionRepository.save(Promotion.builder()
+                .name("Starts soon")
+                .type(PromotionType.PERCENTAGE)
+                .percentOff(new BigDecimal("10"))
+                .productId(PRODUCT)
+                .startsAt(startsAt)
+                .build());
+        pricingEngine.onPromotionChanged(new PromotionChangedEvent());
+        try {
+            cartResponseCache.put(USER, cartWith(PRODUCT), cartResponseCache.stamp());
+            assertNotNull(cartResponseCache.get(USER));
+
+            Thread.sleep(Math.max(0, Duration.between(LocalDateTime.now(), startsAt).toMillis()) + 50);
+
+            assertNull(cartResponseCache.get(USER));
+        } finally {
+            promotionRepository.delete(promotion);
+            pricingEngine.onPromotionChanged(new PromotionChangedEvent());
+            cartResponseCache.evict(USER);
+        }
+    }
+
+    private static CartResponse cartWith(long... productIds) {
+        CartResponse response = CartResponse.builder().userId(USER).build();
+        for (long productId : productIds) {
+            response.getItems().add(CartItemResponse.builder().productId(productId).quantity(1).build());
+        }
+        return response;
+    }
+}
@@ -0,0 +1,158 @@
+package com.fivepapa.backend.ecommerce.service;
+
+import com.fivepapa.backend.ecommerce.dto.CartBatchRequest;
+import com.fivepapa.backend.ecommerce.dto.CartBatchRequest.Operation;
+import com.fivepapa.backend.ecommerce.dto.CartBatchRequest.OperationType;
+import com.fivepapa.backend.ecommerce.dto.CartItemResponse;
+import com.fivepapa.backend.ecommerce.dto.ProductRequest;
+import com.fivepapa.backend.ecommerce.repository.ProductRepository;
+import com.fivepapa.backend.support.TestFixtures;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 以 Hibernate Statistics 計算 JDBC 語句數，確認清空購物車與批次移除不會隨項目數量增加，
+ * 且快取中的購物車查詢不存取資料庫
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class CartServiceStatementCountTest {
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void clearCartUsesSameNumberOfStatementsForAnyCartSize() {
+        Long smallCartUser = createUserWithCart(3);
+        Long largeCartUser = createUserWithCart(40);
+
+        long smallCartStatements = countStatements(() -> cartService.clearCart(smallCartUser));
+        long largeCartStatements = countStatements(() -> cartService.clearCart(largeCartUser));
+
+        assertEquals(smallCartStatements, largeCartStatements);
+        assertTrue(largeCartStatements <= 4, "clearCart used " + largeCartStatements + " statements");
+    }
+
+    @Test
+    void clearCartDeletesItemsAndReleasesStock() {
+        Long userId = createUserWithCart(5);
+        List<Long> productIds = cartService.getCart(userId).getItems().stream()
+                .map(CartItemResponse::getProductId)
+                .toList();
+
+        cartService.clearCart(userId);
+
+        assertEquals(0, cartService.getCart(userId).getTotalItems());
+        productIds.forEach(id -> assertEquals(10, productRepository.findUnreservedStock(id)));
+    }
+
+    @Test
+    void batchRemovalUsesSameNumberOfStatementsForAnyItemCount() {
+        Long fewItemsUser = createUserWithCart(5);
+        Long manyItemsUser = createUserWithCart(40);
+
+        CartBatchRequest removeFew = removeAll(fewItemsUser);
+        CartBatchRequest removeMany = removeAll(manyItemsUser);
+
+        long fewRemovals = countStatements(() -> cartService.applyBatch(fewItemsUser, removeFew));
+        long manyRemovals = countStatements(() -> cartService.applyBatch(manyItemsUser, removeMany));
+
+        assertEquals(fewRemovals, manyRemovals);
+        assertEquals(0, cartService.getCart(manyItemsUser).getTotalItems());
+    }
+
+    @Test
+    void removeCartItemUsesSameNumberOfStatementsForAnyCartSize() {
+        Long smallCartUser = createUserWithCart(2);
+        Long largeCartUser = createUserWithCart(20);
+        CartItemResponse smallCartItem = cartService.getCart(smallCartUser).getItems().get(0);
+        CartItemResponse largeCartItem = cartService.getCart(largeCartUser).getItems().get(0);
+
+        long smallCartStatements = countStatements(() -> cartService.removeCartItem(smallCartUser, smallCartItem.getId()));
+        long largeCartStatements = countStatements(() -> cartService.removeCartItem(largeCartUser, largeCartItem.getId()));
+
+        assertEquals(smallCartStatements, largeCartStatements);
+        assertEquals(1, cartService.getCart(smallCartUser).getTotalItems());
+        assertEquals(19, cartService.getCart(largeCartUser).getTotalItems());
+        assertEquals(10, productRepository.findUnreservedStock(largeCartItem.getProductId()));
+    }
+
+    @Test
+    void repeatedGetCartIsServedFromCache() {
+        Long userId = createUserWithCart(5);
+        cartService.getCart(userId);
+
+        assertEquals(0, countStatements(() -> cartService.getCart(userId)));
+    }
+
+    @Test
+    void productUpdateRefreshesCachedCarts() {
+        Long userId = createUserWithCart(2);
+        Long otherUserId = createUserWithCart(1);
+        CartItemResponse item = cartService.getCart(userId).getItems().get(0);
+        cartService.getCart(otherUserId);
+
+        ProductRequest request = new ProductRequest();
+        request.setName(item.getProductName());
+        request.setPrice(new BigDecimal("80"));
+        request.setStock(10);
+        productService.updateProduct(item.getProductId(), request);
+
+        CartItemResponse updated = cartService.getCart(userId).getItems().get(0);
+        assertEquals(0, new BigDecimal("80").compareTo(updated.getProductPrice()));
+        // 不含該商品的購物車仍在快取中
+        assertEquals(0, countStatements(() -> cartService.getCart(otherUserId)));
+    }
+
+    private CartBatchRequest removeAll(Long userId) {
+        List<Operation> operations = cartService.getCart(userId).getItems().stream()
+                .map(item -> new Operation(OperationType.REMOVE, item.getProductId(), null))
+                .toList();
+        return new CartBatchRequest(operations);
+    }
+
+    private long countStatements(Runnable action) {
+        statistics.clear();
+        action.run();
+        return statistics.getPrepareStatementCount();
+    }
+
+    private Long createUserWithCart(int items) {
+        Long userId = fixtures.user().getId();
+        List<Operation> operations = new ArrayList<>();
+        for (int i = 0; i < items; i++) {
+            operations.add(new Operation(OperationType.ADD, fixtures.product().getId(), 2));
+        }
+        cartService.applyBatch(userId, new CartBatchRequest(operations));
+        return userId;
+    }
+}
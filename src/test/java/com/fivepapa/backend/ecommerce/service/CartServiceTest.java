@@ -0,0 +1,160 @@
+package com.fivepapa.backend.ecommerce.service;
+
+import com.fivepapa.backend.ecommerce.dto.CartBatchRequest;
+import com.fivepapa.backend.ecommerce.dto.CartBatchRequest.Operation;
+import com.fivepapa.backend.ecommerce.dto.CartBatchRequest.OperationType;
+import com.fivepapa.backend.ecommerce.dto.CartItemResponse;
+import com.fivepapa.backend.ecommerce.dto.CartResponse;
+import com.fivepapa.backend.ecommerce.entity.Product;
+import com.fivepapa.backend.support.TestFixtures;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 批次購物車操作：任何一個操作失敗時整批都不生效
+ */
+@SpringBootTest
+class CartServiceTest {
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void unknownProductRejectsTheWholeBatch() {
+        Product product = fixtures.product(10);
+        Long userId = fixtures.user().getId();
+        apply(userId, new Operation(OperationType.ADD, product.getId(), 2));
+
+        RuntimeException error = assertThrows(RuntimeException.class, () -> apply(userId,
+                new Operation(OperationType.ADD, product.getId(), 3),
+                new Operation(OperationType.ADD, Long.MAX_VALUE, 1)));
+
+        assertTrue(error.getMessage().startsWith("商品不存在"), error.getMessage());
+        assertEquals(Map.of(product.getId(), 2), quantities(userId));
+        assertEquals(2, reservedStockOf(product));
+    }
+
+    @Test
+    void inactiveProductRejectsTheWholeBatch() {
+        Product active = fixtures.product(10);
+        Product inactive = fixtures.product(product -> product.setActive(false));
+        Long userId = fixtures.user().getId();
+
+        RuntimeException error = assertThrows(RuntimeException.class, () -> apply(userId,
+                new Operation(OperationType.ADD, active.getId(), 1),
+                new Operation(OperationType.ADD, inactive.getId(), 1)));
+
+        assertTrue(error.getMessage().startsWith("商品已下架"), error.getMessage());
+        assertTrue(quantities(userId).isEmpty());
+        assertEquals(0, reservedStockOf(active));
+        assertEquals(0, reservedStockOf(inactive));
+    }
+
+    @Test
+    void delistedItemCanOnlyBeReduced() {
+        Product product = fixtures.product(10);
+        Long userId = fixtures.user().getId();
+        apply(userId, new Operation(OperationType.ADD, product.getId(), 4));
+        jdbcTemplate.update("UPDATE product SET active = FALSE WHERE id = ?", product.getId());
+
+        RuntimeException error = assertThrows(RuntimeException.class,
+                () -> apply(userId, new Operation(OperationType.UPDATE, product.getId(), 5)));
+        assertTrue(error.getMessage().startsWith("商品已下架"), error.getMessage());
+
+        apply(userId, new Operation(OperationType.UPDATE, product.getId(), 2));
+        assertEquals(Map.of(product.getId(), 2), quantities(userId));
+        assertEquals(2, reservedStockOf(product));
+        apply(userId, new Operation(OperationType.REMOVE, product.getId(), null));
+        assertTrue(quantities(userId).isEmpty());
+        assertEquals(0, reservedStockOf(product));
+    }
+
+    @Test
+    void shortageRollsBackEveryOperation() {
+        Product updated = fixtures.product(10);
+        Product removed = fixtures.product(10);
+        Product scarce = fixtures.product(2);
+        Long userId = fixtures.user().getId();
+        apply(userId,
+                new Operation(OperationType.ADD, updated.getId(), 2),
+                new Operation(OperationType.ADD, removed.getId(), 1));
+
+        RuntimeException error = assertThrows(RuntimeException.class, () -> apply(userId,
+                new Operation(OperationType.UPDATE, updated.getId(), 5),
+                new Operation(OperationType.REMOVE, removed.getId(), null),
+                new Operation(OperationType.ADD, scarce.getId(), 3)));
+
+        assertTrue(error.getMessage().startsWith("庫存不足"), error.getMessage());
+        assertTrue(error.getMessage().contains(scarce.getName()), error.getMessage());
+        assertEquals(Map.of(updated.getId(), 2, removed.getId(), 1), quantities(userId));
+        assertEquals(2, reservedStockOf(updated));
+        assertEquals(1, reservedStockOf(removed));
+        assertEquals(0, reservedStockOf(scarce));
+    }
+
+    @Test
+    void operationsOnTheSameProductApplyInOrder() {
+        Product product = fixtures.product(10);
+        Product addedThenRemoved = fixtures.product(10);
+        Long userId = fixtures.user().getId();
+
+        CartResponse cart = apply(userId,
+                new Operation(OperationType.ADD, product.getId(), 2),
+                new Operation(OperationType.ADD, product.getId(), 3),
+                new Operation(OperationType.UPDATE, product.getId(), 4),
+                new Operation(OperationType.ADD, product.getId(), 1),
+                new Operation(OperationType.ADD, addedThenRemoved.getId(), 1),
+                new Operation(OperationType.REMOVE, addedThenRemoved.getId(), null));
+
+        assertEquals(1, cart.getTotalItems());
+        assertEquals(Map.of(product.getId(), 5), quantities(userId));
+        assertEquals(5, reservedStockOf(product));
+        assertEquals(0, reservedStockOf(addedThenRemoved));
+    }
+
+    @Test
+    void updateOrRemoveOfMissingItemFails() {
+        Product product = fixtures.product(10);
+        Long userId = fixtures.user().getId();
+
+        assertThrows(RuntimeException.class,
+                () -> apply(userId, new Operation(OperationType.UPDATE, product.getId(), 1)));
+        assertThrows(RuntimeException.class,
+                () -> apply(userId, new Operation(OperationType.REMOVE, product.getId(), null)));
+        // 同一批先移除再更新也視為不存在
+        apply(userId, new Operation(OperationType.ADD, product.getId(), 1));
+        assertThrows(RuntimeException.class, () -> apply(userId,
+                new Operation(OperationType.REMOVE, product.getId(), null),
+                new Operation(OperationType.UPDATE, product.getId(), 2)));
+
+        assertEquals(Map.of(product.getId(), 1), quantities(userId));
+        assertEquals(1, reservedStockOf(product));
+    }
+
+    private CartResponse apply(Long userId, Operation... operations) {
+        return cartService.applyBatch(userId, new CartBatchRequest(List.of(operations)));
+    }
+
+    private Map<Long, Integer> quantities(Long userId) {
+        return cartService.getCart(userId).getItems().stream()
+                .collect(Collectors.toMap(CartItemResponse::getProductId, CartItemResponse::getQuantity));
+    }
+
+    private int reservedStockOf(Product product) {
+        return jdbcTemplate.queryForObject("SELECT reserved_stock FROM product WHERE id = ?", Integer.class, product.getId());
+    }
+}
@@ -0,0 +1,98 @@
+package com.fivepapa.backend.ecommerce.service;
+
+import com.fivepapa.backend.ecommerce.dto.CartBatchRequest;
+import com.fivepapa.backend.ecommerce.dto.CartBatchRequest.Operation;
+import com.fivepapa.backend.ecommerce.dto.CartBatchRequest.OperationType;
+import com.fivepapa.backend.ecommerce.dto.UpdateCartItemRequest;
+import com.fivepapa.backend.ecommerce.entity.Product;
+import com.fivepapa.backend.support.TestFixtures;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * RESERVE_ON_UPDATE：每次調整立即保留庫存，只延後數量的寫入
+ */
+@SpringBootTest(properties = {
+        "CART_WRITE_BEHIND_ENABLED=true",
+        "CART_WRITE_BEHIND_DURABILITY=RESERVE_ON_UPDATE",
+        "CART_WRITE_BEHIND_IDLE_MS=3600000",
+        "CART_WRITE_BEHIND_MAX_LAG_MS=3600000"
+})
+class CartWriteBehindReserveOnUpdateTest {
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private CartWriteBehindService cartWriteBehindService;
+
+    @Autowired
+    private CartWriteBehindStore cartWriteBehindStore;
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private CheckoutService checkoutService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void updateHoldsStockImmediatelyAndDefersTheQuantity() {
+        Product product = fixtures.product();
+        Long userId = fixtures.user().getId();
+        cartService.applyBatch(userId, new CartBatchRequest(List.of(
+                new Operation(OperationType.ADD, product.getId(), 2))));
+        Long itemId = cartItemIdOf(product);
+
+        cartWriteBehindService.updateCartItem(userId, itemId, new UpdateCartItemRequest(5));
+
+        assertEquals(5, reservedStockOf(product));
+        assertEquals(2, quantityOf(product));
+        assertEquals(5, cartWriteBehindService.getCart(userId).getItems().get(0).getReservedQuantity());
+
+        // 庫存不足時立即回應錯誤，不留下未寫入的變更
+        assertThrows(RuntimeException.class,
+                () -> cartWriteBehindService.updateCartItem(userId, itemId, new UpdateCartItemRequest(11)));
+        assertEquals(5, reservedStockOf(product));
+
+        cartWriteBehindService.flushAll();
+        assertEquals(5, quantityOf(product));
+        assertEquals(5, reservedStockOf(product));
+    }
+
+    @Test
+    void checkoutAfterLosingTheQuantityReleasesTheWholeHold() {
+        Product product = fixtures.product();
+        Long userId = fixtures.user().getId();
+        cartService.applyBatch(userId, new CartBatchRequest(List.of(
+                new Operation(OperationType.ADD, product.getId(), 2))));
+        cartWriteBehindService.updateCartItem(userId, cartItemIdOf(product), new UpdateCartItemRequest(5));
+
+        // 模擬當機：記憶體中的數量遺失，資料庫保留 5、數量 2
+        cartWriteBehindStore.evict(userId);
+        checkoutService.checkout(userId);
+
+        assertEquals(0, reservedStockOf(product));
+        assertEquals(8, jdbcTemplate.queryForObject("SELECT stock FROM product WHERE id = ?", Integer.class, product.getId()));
+    }
+
+    private Long cartItemIdOf(Product product) {
+        return jdbcTemplate.queryForObject("SELECT id FROM cart_item WHERE product_id = ?", Long.class, product.getId());
+    }
+
+    private int quantityOf(Product product) {
+        return jdbcTemplate.queryForObject("SELECT quantity FROM cart_item WHERE product_id = ?", Integer.class, product.getId());
+    }
+
+    private int reservedStockOf(Product product) {
+        return jdbcTemplate.queryForObject("SELECT reserved_stock FROM product WHERE id = ?", Integer.class, product.getId());
+    }
+}
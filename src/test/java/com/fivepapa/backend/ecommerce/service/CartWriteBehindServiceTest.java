@@ -0,0 +1,264 @@
+package com.fivepapa.backend.ecommerce.service;
+
+import com.fivepapa.backend.ecommerce.dto.CartBatchRequest;
+import com.fivepapa.backend.ecommerce.dto.CartBatchRequest.Operation;
+import com.fivepapa.backend.ecommerce.dto.CartBatchRequest.OperationType;
+import com.fivepapa.backend.ecommerce.dto.UpdateCartItemRequest;
+import com.fivepapa.backend.ecommerce.entity.Product;
+import com.fivepapa.backend.support.TestFixtures;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 啟用 write-behind 時的購物車操作；閒置與延遲上限設得很長，只有測試主動寫回
+ */
+@SpringBootTest(properties = {
+        "CART_WRITE_BEHIND_ENABLED=true",
+        "CART_WRITE_BEHIND_IDLE_MS=3600000",
+        "CART_WRITE_BEHIND_MAX_LAG_MS=3600000"
+})
+class CartWriteBehindServiceTest {
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private CartWriteBehindService cartWriteBehindService;
+
+    @Autowired
+    private CartWriteBehindStore cartWriteBehindStore;
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private CheckoutService checkoutService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void removingItemWithUnwrittenQuantityReleasesEveryHeldUnit() {
+        Product product = fixtures.product();
+        Long userId = fixtures.user().getId();
+        cartService.applyBatch(userId, new CartBatchRequest(List.of(
+                new Operation(OperationType.ADD, product.getId(), 2))));
+        Long itemId = cartItemIdOf(product);
+        cartWriteBehindService.updateCartItem(userId, itemId, new UpdateCartItemRequest(5));
+
+        // 移除時先寫入未寫回的數量（保留 5），釋放時必須讀到這個數量
+        cartService.removeCartItem(userId, itemId);
+
+        assertEquals(0, reservedStockOf(product));
+        assertEquals(10, unreservedStockOf(product));
+    }
+
+    @Test
+    void updatesStayInMemoryUntilFlushedAndTheLastOneWins() {
+        Product first = fixtures.product();
+        Product second = fixtures.product();
+        Long userId = fixtures.user().getId();
+        cartService.applyBatch(userId, new CartBatchRequest(List.of(
+                new Operation(OperationType.ADD, first.getId(), 1),
+                new Operation(OperationType.ADD, second.getId(), 1))));
+
+        cartWriteBehindService.updateCartItem(userId, cartItemIdOf(first), new UpdateCartItemRequest(3));
+        cartWriteBehindService.updateCartItem(userId, cartItemIdOf(second), new UpdateCartItemRequest(2));
+        cartWriteBehindService.updateCartItem(userId, cartItemIdOf(first), new UpdateCartItemRequest(4));
+
+        // 尚未到期：快照已是新數量，資料庫不變
+        cartWriteBehindService.flushDue();
+        assertEquals(6, cartWriteBehindService.getCart(userId).getTotalQuantity());
+        assertEquals(1, quantityOf(first));
+        assertEquals(1, reservedStockOf(first));
+
+        cartWriteBehindService.flushAll();
+
+        assertEquals(4, quantityOf(first));
+        assertEquals(4, reservedStockOf(first));
+        assertEquals(2, quantityOf(second));
+        assertEquals(2, reservedStockOf(second));
+        assertEquals(6, cartWriteBehindService.getCart(userId).getTotalQuantity());
+    }
+
+    @Test
+    void updateDuringAFlushIsKeptForTheNextFlush() {
+        Product product = fixtures.product();
+        Long userId = fixtures.user().getId();
+        cartService.applyBatch(userId, new CartBatchRequest(List.of(
+                new Operation(OperationType.ADD, product.getId(), 1))));
+        Long itemId = cartItemIdOf(product);
+        cartWriteBehindService.updateCartItem(userId, itemId, new UpdateCartItemRequest(3));
+
+        // 模擬寫回進行中：取出變更並寫入資料庫，期間又有新的調整
+        CartWriteBehindStore.PendingChanges pending = cartWriteBehindStore.drain(userId);
+        cartWriteBehindService.updateCartItem(userId, itemId, new UpdateCartItemRequest(5));
+        cartWriteBehindStore.refreshSnapshot(userId, cartService.applyPendingQuantities(userId, pending.getQuantities()));
+
+        assertEquals(3, quantityOf(product));
+        assertEquals(5, cartWriteBehindService.getCart(userId).getTotalQuantity());
+
+        cartWriteBehindService.flushAll();
+        assertEquals(5, quantityOf(product));
+        assertEquals(5, reservedStockOf(product));
+    }
+
+    @Test
+    void failedFlushDiscardsUnwrittenChanges() {
+        Product product = fixtures.product();
+        Long userId = fixtures.user().getId();
+        cartService.applyBatch(userId, new CartBatchRequest(List.of(
+                new Operation(OperationType.ADD, product.getId(), 2))));
+        cartWriteBehindService.updateCartItem(userId, cartItemIdOf(product), new UpdateCartItemRequest(8));
+        // 寫回前庫存被其他訂單買走
+        jdbcTemplate.update("UPDATE product SET stock = 3 WHERE id = ?", product.getId());
+
+        cartWriteBehindService.flushAll();
+
+        assertEquals(2, quantityOf(product));
+        assertEquals(2, reservedStockOf(product));
+        assertEquals(2, cartWriteBehindService.getCart(userId).getTotalQuantity());
+    }
+
+    @Test
+    void shortLineDoesNotDiscardTheOtherChanges() {
+        Product scarce = fixtures.product();
+        Product lowered = fixtures.product();
+        Long userId = fixtures.user().getId();
+        cartService.applyBatch(userId, new CartBatchRequest(List.of(
+                new Operation(OperationType.ADD, scarce.getId(), 2),
+                new Operation(OperationType.ADD, lowered.getId(), 3))));
+        cartWriteBehindService.updateCartItem(userId, cartItemIdOf(scarce), new UpdateCartItemRequest(8));
+        cartWriteBehindService.updateCartItem(userId, cartItemIdOf(lowered), new UpdateCartItemRequest(1));
+        jdbcTemplate.update("UPDATE product SET stock = 3 WHERE id = ?", scarce.getId());
+
+        cartWriteBehindService.flushAll();
+
+        assertEquals(2, quantityOf(scarce));
+        assertEquals(2, reservedStockOf(scarce));
+        assertEquals(1, quantityOf(lowered));
+        assertEquals(1, reservedStockOf(lowered));
+    }
+
+    @Test
+    void transientFailureKeepsTheChangesForARetry() throws Exception {
+        Product product = fixtures.product();
+        Long userId = fixtures.user().getId();
+        cartService.applyBatch(userId, new CartBatchRequest(List.of(
+                new Operation(OperationType.ADD, product.getId(), 1))));
+        cartWriteBehindService.updateCartItem(userId, cartItemIdOf(product), new UpdateCartItemRequest(4));
+
+        // 另一個交易鎖住商品列，寫回時等待鎖逾時
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+        Thread holder = new Thread(() -> transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.queryForList("SELECT id FROM product WHERE id = ? FOR UPDATE", product.getId());
+            locked.countDown();
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        holder.start();
+        try {
+            locked.await();
+            cartWriteBehindService.flushAll();
+        } finally {
+            done.countDown();
+            holder.join();
+        }
+
+        assertEquals(1, quantityOf(product));
+        assertEquals(1, reservedStockOf(product));
+        assertEquals(List.of(userId), cartWriteBehindStore.findDirtyUserIds().stream().filter(userId::equals).toList());
+
+        cartWriteBehindService.flushAll();
+        assertEquals(4, quantityOf(product));
+        assertEquals(4, reservedStockOf(product));
+    }
+
+    @Test
+    void changesDrainedByARolledBackOperationAreKept() {
+        Product updated = fixtures.product();
+        Product gone = fixtures.product();
+        Long userId = fixtures.user().getId();
+        cartService.applyBatch(userId, new CartBatchRequest(List.of(
+                new Operation(OperationType.ADD, updated.getId(), 1),
+                new Operation(OperationType.ADD, gone.getId(), 2))));
+        cartWriteBehindService.updateCartItem(userId, cartItemIdOf(updated), new UpdateCartItemRequest(3));
+        // 保留到期後庫存被買走，結帳失敗回滾
+        jdbcTemplate.update("UPDATE cart_item SET reserved_quantity = 0 WHERE product_id = ?", gone.getId());
+        jdbcTemplate.update("UPDATE product SET stock = 1, reserved_stock = 0 WHERE id = ?", gone.getId());
+
+        assertThrows(RuntimeException.class, () -> checkoutService.checkout(userId));
+
+        assertEquals(1, quantityOf(updated));
+        cartWriteBehindService.flushAll();
+        assertEquals(3, quantityOf(updated));
+        assertEquals(3, reservedStockOf(updated));
+    }
+
+    @Test
+    void removingAnotherItemWritesUnwrittenQuantitiesFirst() {
+        Product updated = fixtures.product();
+        Product removed = fixtures.product();
+        Long userId = fixtures.user().getId();
+        cartService.applyBatch(userId, new CartBatchRequest(List.of(
+                new Operation(OperationType.ADD, updated.getId(), 1),
+                new Operation(OperationType.ADD, removed.getId(), 1))));
+        cartWriteBehindService.updateCartItem(userId, cartItemIdOf(updated), new UpdateCartItemRequest(3));
+
+        cartService.removeCartItem(userId, cartItemIdOf(removed));
+
+        assertEquals(3, quantityOf(updated));
+        assertEquals(3, reservedStockOf(updated));
+        assertEquals(0, reservedStockOf(removed));
+        assertEquals(3, cartWriteBehindService.getCart(userId).getTotalQuantity());
+    }
+
+    @Test
+    void clearingTheCartDropsUnwrittenChanges() {
+        Product product = fixtures.product();
+        Long userId = fixtures.user().getId();
+        cartService.applyBatch(userId, new CartBatchRequest(List.of(
+                new Operation(OperationType.ADD, product.getId(), 2))));
+        cartWriteBehindService.updateCartItem(userId, cartItemIdOf(product), new UpdateCartItemRequest(5));
+
+        cartService.clearCart(userId);
+        cartWriteBehindService.flushAll();
+
+        assertEquals(0, reservedStockOf(product));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM cart_item WHERE product_id = ?",
+                Integer.class, product.getId()));
+        assertEquals(0, cartWriteBehindService.getCart(userId).getTotalQuantity());
+    }
+
+    private Long cartItemIdOf(Product product) {
+        return jdbcTemplate.queryForObject("SELECT id FROM cart_item WHERE product_id = ?", Long.class, product.getId());
+    }
+
+    private int quantityOf(Product product) {
+        return jdbcTemplate.queryForObject("SELECT quantity FROM cart_item WHERE product_id = ?", Integer.class, product.getId());
+    }
+
+    private int reservedStockOf(Product product) {
+        return jdbcTemplate.queryForObject("SELECT reserved_stock FROM product WHERE id = ?", Integer.class, product.getId());
+    }
+
+    private int unreservedStockOf(Product product) {
+        return jdbcTemplate.queryForObject("SELECT stock - reserved_stock FROM product WHERE id = ?",
+                Integer.class, product.getId());
+    }
+}
@@ -0,0 +1,73 @@
+package com.fivepapa.backend.ecommerce.service;
+
+import com.fivepapa.backend.ecommerce.entity.Product;
+import com.fivepapa.backend.ecommerce.repository.ProductRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class CatalogSnapshotCacheTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private CatalogSnapshotCache catalogSnapshotCache;
+
+    @Autowired
+    private ProductChangeSequencer productChangeSequencer;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Test
+    void servesGzipVariantAndNotModified() throws Exception {
+        MvcResult plain = mockMvc.perform(get("/api/products/active")).andReturn();
+        MvcResult gzip = mockMvc.perform(get("/api/products/active").header("Accept-Encoding", "gzip, br")).andReturn();
+
+        assertEquals(200, plain.getResponse().getStatus());
+        assertNull(plain.getResponse().getHeader("Content-Encoding"));
+        assertEquals("gzip", gzip.getResponse().getHeader("Content-Encoding"));
+        byte[] inflated = new GZIPInputStream(new ByteArrayInputStream(gzip.getResponse().getContentAsByteArray())).readAllBytes();
+        assertArrayEquals(plain.getResponse().getContentAsByteArray(), inflated);
+        assertNotEquals(plain.getResponse().getHeader("ETag"), gzip.getResponse().getHeader("ETag"));
+
+        MvcResult notModified = mockMvc.perform(get("/api/categories/top-level")
+                .header("If-None-Match", mockMvc.perform(get("/api/categories/top-level")).andReturn()
+                        .getResponse().getHeader("ETag"))).andReturn();
+        assertEquals(304, notModified.getResponse().getStatus());
+        assertEquals(0, notModified.getResponse().getContentAsByteArray().length);
+    }
+
+    @Test
+    void rerendersAfterCatalogChanges() throws Exception {
+        String before = mockMvc.perform(get("/api/products/active")).andReturn().getResponse().getHeader("ETag");
+        Product product = new Product();
+        product.setName("Snapshot " + UUID.randomUUID().toString().substring(0, 8));
+        product.setPrice(new BigDecimal("10"));
+        product.setStock(1);
+        productRepository.save(product);
+
+        productChangeSequencer.stamp();
+        catalogSnapshotCache.refreshIfChanged();
+
+        MvcResult after = mockMvc.perform(get("/api/products/active").header("If-None-Match", before)).andReturn();
+        assertEquals(200, after.getResponse().getStatus());
+        assertNotEquals(before, after.getResponse().getHeader("ETag"));
+        assertTrue(after.getResponse().getContentAsString(StandardCharsets.UTF_8).contains(product.getName()));
+    }
+}
@@ -0,0 +1,129 @@
+package com.fivepapa.backend.ecommerce.service;
+
+import com.fivepapa.backend.Application;
+import com.fivepapa.backend.ecommerce.dto.CartBatchRequest;
+import com.fivepapa.backend.ecommerce.dto.CartBatchRequest.Operation;
+import com.fivepapa.backend.ecommerce.dto.CartBatchRequest.OperationType;
+import com.fivepapa.backend.ecommerce.entity.Product;
+import com.fivepapa.backend.ecommerce.repository.ProductRepository;
+import com.fivepapa.backend.member.entity.User;
+import com.fivepapa.backend.member.repository.UserRepository;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 多位買家同時結帳同一批商品的吞吐量（每次操作 = 加入購物車 + 結帳）
+ * 每位買家的購物車都包含同樣的 skus 個熱門商品，所有結帳都在爭搶同幾列 product
+ *
+ * dialect=h2：H2 記憶體資料庫
+ * dialect=postgres：連到 BENCHMARK_POSTGRES_URL（以及 BENCHMARK_POSTGRES_USERNAME / PASSWORD）指定的資料庫，
+ *                   資料表由 Hibernate 建立後刪除，請使用專用的空資料庫；未設定時這組參數會直接失敗
+ *
+ * 執行：mvn test-compile 後以 test classpath 執行本類別的 main
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+@Threads(16)
+public class CheckoutBenchmark {
+
+    @Param({"h2", "postgres"})
+    private String dialect;
+
+    @Param({"1", "5"})
+    private int skus;
+
+    private ConfigurableApplicationContext context;
+    private CartService cartService;
+    private CheckoutService checkoutService;
+    private UserRepository userRepository;
+    private List<Operation> operations;
+    private final AtomicInteger buyers = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void startApplication() {
+        List<String> args = new ArrayList<>(List.of(
+                "--spring.profiles.active=dev",
+                "--spring.jpa.show-sql=false",
+                "--logging.level.root=WARN",
+                "--logging.level.com.fivepapa.backend=WARN",
+                "--logging.level.org.springframework.security=WARN",
+                "--spring.datasource.hikari.maximum-pool-size=20"));
+        String postgresUrl = System.getenv("BENCHMARK_POSTGRES_URL");
+        if (dialect.equals("postgres") && postgresUrl != null) {
+            args.addAll(List.of(
+                    "--spring.datasource.url=" + postgresUrl,
+                    "--spring.datasource.username=" + System.getenv("BENCHMARK_POSTGRES_USERNAME"),
+                    "--spring.datasource.password=" + System.getenv("BENCHMARK_POSTGRES_PASSWORD"),
+                    "--spring.datasource.driver-class-name=org.postgresql.Driver",
+                    "--spring.jpa.hibernate.ddl-auto=create-drop",
+                    "--spring.jpa.database-platform=org.hibernate.dialect.PostgreSQLDialect"));
+        } else if (dialect.equals("postgres")) {
+            // H2 的 PostgreSQL 相容模式不支援 PostgreSQLDialect 的 FOR NO KEY UPDATE，無法替代
+            throw new IllegalStateException("Set BENCHMARK_POSTGRES_URL to run the postgres variant");
+        } else {
+            args.add("--spring.datasource.url=jdbc:h2:mem:checkout-h2");
+        }
+        context = SpringApplication.run(Application.class, args.toArray(new String[0]));
+
+        cartService = context.getBean(CartService.class);
+        checkoutService = context.getBean(CheckoutService.class);
+        userRepository = context.getBean(UserRepository.class);
+        ProductRepository productRepository = context.getBean(ProductRepository.class);
+
+        operations = new ArrayList<>();
+        for (int i = 0; i < skus; i++) {
+            Product product = new Product();
+            product.setName("Benchmark SKU " + i);
+            product.setPrice(new BigDecimal("100"));
+            product.setStock(Integer.MAX_VALUE / 2);
+            operations.add(new Operation(OperationType.ADD, productRepository.save(product).getId(), 1));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stopApplication() {
+        context.close();
+    }
+
+    /**
+     * 每個執行緒一位買家，重複購買
+     */
+    @State(Scope.Thread)
+    public static class Buyer {
+        private Long userId;
+
+        @Setup(Level.Trial)
+        public void register(CheckoutBenchmark benchmark) {
+            String name = "buyer" + benchmark.buyers.incrementAndGet();
+            userId = benchmark.userRepository.save(User.builder()
+                    .username(name)
+                    .email(name + "@example.com")
+                    .password("password")
+                    .build()).getId();
+        }
+    }
+
+    @Benchmark
+    public Object addToCartAndCheckout(Buyer buyer) {
+        cartService.applyBatch(buyer.userId, new CartBatchRequest(operations));
+        return checkoutService.checkout(buyer.userId);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(CheckoutBenchmark.class.getSimpleName()).build()).run();
+    }
+}
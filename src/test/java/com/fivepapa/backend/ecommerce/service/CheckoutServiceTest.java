@@ -0,0 +1,144 @@
+package com.fivepapa.backend.ecommerce.service;
+
+import com.fivepapa.backend.ecommerce.dto.CartBatchRequest;
+import com.fivepapa.backend.ecommerce.dto.CartBatchRequest.Operation;
+import com.fivepapa.backend.ecommerce.dto.CartBatchRequest.OperationType;
+import com.fivepapa.backend.ecommerce.dto.OrderResponse;
+import com.fivepapa.backend.ecommerce.entity.Product;
+import com.fivepapa.backend.support.TestFixtures;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class CheckoutServiceTest {
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private CheckoutService checkoutService;
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void checkoutCreatesOrderDecrementsStockAndClearsCart() {
+        Product product = fixtures.product(10);
+        Long userId = fixtures.user().getId();
+        cartService.applyBatch(userId, new CartBatchRequest(List.of(new Operation(OperationType.ADD, product.getId(), 3))));
+
+        OrderResponse order = checkoutService.checkout(userId);
+
+        assertEquals(3, order.getTotalQuantity());
+        assertEquals(0, new BigDecimal("30").compareTo(order.getTotalAmount()));
+        assertEquals(product.getName(), order.getItems().get(0).getProductName());
+        assertEquals(7, stockOf(product.getId()));
+        assertEquals(0, reservedStockOf(product.getId()));
+        assertEquals(0, cartService.getCart(userId).getTotalItems());
+        assertEquals(1, checkoutService.getOrders(userId).size());
+    }
+
+    @Test
+    void checkoutEvictsCachedProductResponses() {
+        Product product = fixtures.product(10);
+        Long userId = fixtures.user().getId();
+        assertEquals(10, productService.getProductById(product.getId()).getStock());
+        cartService.applyBatch(userId, new CartBatchRequest(List.of(new Operation(OperationType.ADD, product.getId(), 4))));
+
+        checkoutService.checkout(userId);
+
+        assertEquals(6, productService.getProductById(product.getId()).getStock());
+    }
+
+    @Test
+    void checkoutRollsBackWhenAnyLineIsShort() {
+        Product first = fixtures.product(10);
+        Product second = fixtures.product(10);
+        Long userId = fixtures.user().getId();
+        cartService.applyBatch(userId, new CartBatchRequest(List.of(
+                new Operation(OperationType.ADD, first.getId(), 2),
+                new Operation(OperationType.ADD, second.getId(), 2))));
+        // 模擬保留到期後庫存被其他訂單買走
+        jdbcTemplate.update("UPDATE cart_item SET reserved_quantity = 0 WHERE product_id = ?", second.getId());
+        jdbcTemplate.update("UPDATE product SET stock = 1, reserved_stock = 0 WHERE id = ?", second.getId());
+
+        assertThrows(RuntimeException.class, () -> checkoutService.checkout(userId));
+
+        assertEquals(10, stockOf(first.getId()));
+        assertEquals(2, reservedStockOf(first.getId()));
+        assertEquals(2, cartService.getCart(userId).getTotalItems());
+        assertTrue(checkoutService.getOrders(userId).isEmpty());
+    }
+
+    @Test
+    void concurrentBuyersOfSameProductsNeverOversell() throws Exception {
+        Product first = fixtures.product(20);
+        Product second = fixtures.product(20);
+        List<Long> users = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            users.add(fixtures.user().getId());
+        }
+
+        AtomicInteger orders = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (Long userId : users) {
+                // 一半的用戶以相反順序加入商品
+                List<Operation> operations = new ArrayList<>(List.of(
+                        new Operation(OperationType.ADD, first.getId(), 1),
+                        new Operation(OperationType.ADD, second.getId(), 1)));
+                if (userId % 2 == 0) {
+                    Collections.reverse(operations);
+                }
+                results.add(executor.submit(() -> {
+                    try {
+                        cartService.applyBatch(userId, new CartBatchRequest(operations));
+                        checkoutService.checkout(userId);
+                        orders.incrementAndGet();
+                    } catch (RuntimeException e) {
+                        // 庫存不足，不應該是死鎖
+                        assertTrue(e.getMessage().startsWith("庫存不足"), e.getMessage());
+                    }
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(20, orders.get());
+        assertEquals(0, stockOf(first.getId()));
+        assertEquals(0, stockOf(second.getId()));
+        assertEquals(0, reservedStockOf(first.getId()));
+    }
+
+    private int stockOf(Long productId) {
+        return jdbcTemplate.queryForObject("SELECT stock FROM product WHERE id = ?", Integer.class, productId);
+    }
+
+    private int reservedStockOf(Long productId) {
+        return jdbcTemplate.queryForObject("SELECT reserved_stock FROM product WHERE id = ?", Integer.class, productId);
+    }
+}
@@ -0,0 +1,105 @@
+package com.fivepapa.backend.ecommerce.service;
+
+import com.fivepapa.backend.common.util.JwtUtil;
+import com.fivepapa.backend.ecommerce.dto.CartBatchRequest;
+import com.fivepapa.backend.ecommerce.dto.CartBatchRequest.Operation;
+import com.fivepapa.backend.ecommerce.dto.CartBatchRequest.OperationType;
+import com.fivepapa.backend.ecommerce.dto.ProductPatchRequest;
+import com.fivepapa.backend.ecommerce.entity.Product;
+import com.fivepapa.backend.member.entity.User;
+import com.fivepapa.backend.support.TestFixtures;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class ConditionalGetTest {
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private ProductChangeSequencer productChangeSequencer;
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Test
+    void productByIdAnswersNotModifiedUntilItChanges() throws Exception {
+        Product product = fixtures.product();
+        MvcResult first = mockMvc.perform(get("/api/products/" + product.getId())).andReturn();
+        String etag = first.getResponse().getHeader("ETag");
+        String lastModified = first.getResponse().getHeader("Last-Modified");
+        assertEquals("\"" + product.getVersion() + "\"", etag);
+        assertNotNull(lastModified);
+        assertEquals(1, first.getResponse().getHeaders("ETag").size());
+
+        MvcResult notModified = mockMvc.perform(get("/api/products/" + product.getId())
+                .header("If-None-Match", etag)).andReturn();
+        assertEquals(304, notModified.getResponse().getStatus());
+        assertEquals(0, notModified.getResponse().getContentAsByteArray().length);
+        assertEquals(304, mockMvc.perform(get("/api/products/" + product.getId())
+                .header("If-Modified-Since", lastModified)).andReturn().getResponse().getStatus());
+
+        ProductPatchRequest patch = new ProductPatchRequest();
+        patch.setStock(3);
+        productService.patchProduct(product.getId(), patch, null);
+
+        MvcResult changed = mockMvc.perform(get("/api/products/" + product.getId())
+                .header("If-None-Match", etag)).andReturn();
+        assertEquals(200, changed.getResponse().getStatus());
+        assertNotEquals(etag, changed.getResponse().getHeader("ETag"));
+    }
+
+    @Test
+    void productListUsesChangeSequence() throws Exception {
+        productChangeSequencer.stamp();
+        String etag = mockMvc.perform(get("/api/products")).andReturn().getResponse().getHeader("ETag");
+        assertNotNull(etag);
+        assertEquals(304, mockMvc.perform(get("/api/products").header("If-None-Match", etag))
+                .andReturn().getResponse().getStatus());
+
+        fixtures.product();
+        productChangeSequencer.stamp();
+
+        assertEquals(200, mockMvc.perform(get("/api/products").header("If-None-Match", etag))
+                .andReturn().getResponse().getStatus());
+    }
+
+    @Test
+    void cartAnswersNotModifiedUntilContentChanges() throws Exception {
+        Product product = fixtures.product();
+        User user = fixtures.user();
+        String token = "Bearer " + jwtUtil.generateToken(user);
+        cartService.applyBatch(user.getId(), new CartBatchRequest(List.of(new Operation(OperationType.ADD, product.getId(), 1))));
+
+        String etag = mockMvc.perform(get("/api/cart").header("Authorization", token))
+                .andReturn().getResponse().getHeader("ETag");
+        assertNotNull(etag);
+        assertEquals(304, mockMvc.perform(get("/api/cart").header("Authorization", token).header("If-None-Match", etag))
+                .andReturn().getResponse().getStatus());
+
+        cartService.applyBatch(user.getId(), new CartBatchRequest(List.of(new Operation(OperationType.ADD, product.getId(), 1))));
+
+        assertEquals(200, mockMvc.perform(get("/api/cart").header("Authorization", token).header("If-None-Match", etag))
+                .andReturn().getResponse().getStatus());
+    }
+}
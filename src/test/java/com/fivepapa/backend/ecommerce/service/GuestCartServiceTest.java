@@ -0,0 +1,175 @@
+package com.fivepapa.backend.ecommerce.service;
+
+import com.fivepapa.backend.ecommerce.dto.CartBatchRequest;
+import com.fivepapa.backend.ecommerce.dto.CartBatchRequest.Operation;
+import com.fivepapa.backend.ecommerce.dto.CartBatchRequest.OperationType;
+import com.fivepapa.backend.ecommerce.dto.CartItemResponse;
+import com.fivepapa.backend.ecommerce.entity.Product;
+import com.fivepapa.backend.member.repository.UserRepository;
+import com.fivepapa.backend.support.TestFixtures;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/**
+ * 訪客購物車：簽章 cookie、登入時合併，以及訪客與登入購物車的邊界
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class GuestCartServiceTest {
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private GuestCartService guestCartService;
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void signedCookieIdentifiesTheCartAndForgeriesAreIgnored() throws Exception {
+        Product product = fixtures.product(10);
+
+        MvcResult added = addAsGuest(null, product, 2);
+        Cookie cookie = added.getResponse().getCookie(GuestCartService.COOKIE_NAME);
+        assertNotNull(cookie);
+        assertTrue(cookie.isHttpOnly());
+        String token = cookie.getValue();
+        assertEquals(token, guestCartService.resolveToken(token));
+
+        assertEquals(2, guestQuantity(token));
+        // 訪客購物車不保留庫存
+        assertEquals(0, reservedStockOf(product));
+
+        String key = token.substring(0, token.indexOf('.'));
+        String signature = token.substring(token.indexOf('.') + 1);
+        String wrongSignature = key + "." + new StringBuilder(signature).reverse();
+        String otherKey = (key.charAt(0) == 'A' ? "B" : "A") + key.substring(1) + "." + signature;
+        for (String forged : new String[]{wrongSignature, otherKey, key, "." + signature}) {
+            assertEquals(0, guestQuantity(forged), forged);
+            assertNotEquals(forged, guestCartService.resolveToken(forged));
+        }
+
+        // 偽造的 cookie 加入商品時簽發新的 cookie，不會寫入原本的購物車
+        MvcResult forgedAdd = addAsGuest(wrongSignature, product, 1);
+        assertNotEquals(wrongSignature, forgedAdd.getResponse().getCookie(GuestCartService.COOKIE_NAME).getValue());
+        assertEquals(2, guestQuantity(token));
+    }
+
+    @Test
+    void loginMergesTheGuestCartAndDropsItsCookie() throws Exception {
+        Product shared = fixtures.product(10);
+        Product scarce = fixtures.product(10);
+        String username = register();
+        Long userId = userRepository.findByUsername(username).orElseThrow().getId();
+        cartService.applyBatch(userId, new CartBatchRequest(List.of(
+                new Operation(OperationType.ADD, shared.getId(), 1))));
+
+        String token = addAsGuest(null, shared, 3).getResponse().getCookie(GuestCartService.COOKIE_NAME).getValue();
+        addAsGuest(token, scarce, 5);
+        // 登入前庫存減少，超過的部分捨去
+        jdbcTemplate.update("UPDATE product SET stock = 2 WHERE id = ?", scarce.getId());
+
+        MvcResult login = login(username, token);
+
+        assertEquals(200, login.getResponse().getStatus());
+        assertEquals(0, login.getResponse().getCookie(GuestCartService.COOKIE_NAME).getMaxAge());
+        assertFalse(guestCartService.exists(token));
+        assertEquals(Map.of(shared.getId(), 4, scarce.getId(), 2), userQuantities(userId));
+        assertEquals(4, reservedStockOf(shared));
+        assertEquals(2, reservedStockOf(scarce));
+    }
+
+    @Test
+    void failedMergeKeepsTheGuestCart() throws Exception {
+        Product product = fixtures.product(10);
+        String token = addAsGuest(null, product, 2).getResponse().getCookie(GuestCartService.COOKIE_NAME).getValue();
+
+        // 用戶不存在，合併的交易失敗
+        guestCartService.mergeIntoUserCart(Long.MAX_VALUE, token);
+
+        assertTrue(guestCartService.exists(token));
+        assertEquals(2, guestQuantity(token));
+        assertEquals(0, reservedStockOf(product));
+    }
+
+    @Test
+    void guestEndpointsAreOpenWhileTheUserCartNeedsAuthentication() throws Exception {
+        Product product = fixtures.product(10);
+
+        assertEquals(200, addAsGuest(null, product, 1).getResponse().getStatus());
+        assertEquals(200, mockMvc.perform(get("/api/cart/guest")).andReturn().getResponse().getStatus());
+
+        int status = mockMvc.perform(get("/api/cart")
+                        .cookie(new Cookie(GuestCartService.COOKIE_NAME, guestCartService.resolveToken(null))))
+                .andReturn().getResponse().getStatus();
+        assertTrue(status == 401 || status == 403, "status " + status);
+    }
+
+    private MvcResult addAsGuest(String token, Product product, int quantity) throws Exception {
+        var request = post("/api/cart/guest/items")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"productId\":" + product.getId() + ",\"quantity\":" + quantity + "}");
+        if (token != null) {
+            request.cookie(new Cookie(GuestCartService.COOKIE_NAME, token));
+        }
+        return mockMvc.perform(request).andReturn();
+    }
+
+    private int guestQuantity(String token) {
+        return guestCartService.getCart(token).getTotalQuantity();
+    }
+
+    private Map<Long, Integer> userQuantities(Long userId) {
+        return cartService.getCart(userId).getItems().stream()
+                .collect(Collectors.toMap(CartItemResponse::getProductId, CartItemResponse::getQuantity));
+    }
+
+    private String register() throws Exception {
+        String username = "guest" + UUID.randomUUID().toString().substring(0, 8);
+        MvcResult result = mockMvc.perform(post("/api/auth/register")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\":\"" + username + "\",\"email\":\"" + username
+                                + "@example.com\",\"password\":\"password\"}"))
+                .andReturn();
+        assertEquals(201, result.getResponse().getStatus());
+        return username;
+    }
+
+    private MvcResult login(String username, String guestCartToken) throws Exception {
+        return mockMvc.perform(post("/api/auth/login")
+                        .cookie(new Cookie(GuestCartService.COOKIE_NAME, guestCartToken))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\":\"" + username + "\",\"password\":\"password\"}"))
+                .andReturn();
+    }
+
+    private int reservedStockOf(Product product) {
+        return jdbcTemplate.queryForObject("SELECT reserved_stock FROM product WHERE id = ?", Integer.class, product.getId());
+    }
+}
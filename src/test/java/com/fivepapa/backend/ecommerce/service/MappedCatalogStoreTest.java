@@ -0,0 +1,131 @@
+package com.fivepapa.backend.ecommerce.service;
+
+import com.fivepapa.backend.common.cache.shared.SharedCache;
+import com.fivepapa.backend.ecommerce.dto.ProductResponse;
+import com.fivepapa.backend.ecommerce.entity.Category;
+import com.fivepapa.backend.ecommerce.entity.Product;
+import com.fivepapa.backend.ecommerce.repository.CategoryRepository;
+import com.fivepapa.backend.ecommerce.repository.ProductRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 以啟用的 MappedCatalogStore 讀取（應用程式中的 bean 預設未啟用，其他測試仍讀取資料庫）
+ */
+@SpringBootTest
+class MappedCatalogStoreTest {
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private ProductChangeSequencer productChangeSequencer;
+
+    @Autowired
+    private SharedCache sharedCache;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @TempDir
+    private Path directory;
+
+    private MappedCatalogStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new MappedCatalogStore(jdbcTemplate, productChangeSequencer, sharedCache, new SimpleMeterRegistry(),
+                true, directory.toString(), 0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.shutdown();
+    }
+
+    @Test
+    void readsDecodeTheSameResponsesAsTheDatabase() throws Exception {
+        Category category = createCategory();
+        Product full = createProduct(category, true);
+        full.setDescription("描述 " + UUID.randomUUID());
+        full.setImageUrl("https://example.com/a.png");
+        full.setFeatured(true);
+        productRepository.save(full);
+        Product bare = createProduct(null, true);
+        Product inactive = createProduct(null, false);
+
+        ProductResponse stored = await(() -> store.find(full.getId()));
+
+        assertEquals(productService.getProductById(full.getId()), stored);
+        assertEquals(productService.getProductById(bare.getId()), store.find(bare.getId()));
+        assertNull(store.find(inactive.getId()));
+        assertEquals(String.valueOf(stored.getVersion()), store.validator(full.getId()).etag());
+        List<ProductResponse> active = productService.getActiveProducts().stream()
+                .sorted(Comparator.comparing(ProductResponse::getId))
+                .toList();
+        assertEquals(active, store.activeProducts());
+        assertTrue(store.activeProducts().stream().noneMatch(p -> p.getId().equals(inactive.getId())));
+    }
+
+    @Test
+    void changedProductFallsBackUntilTheFileIsRebuilt() throws Exception {
+        Product product = createProduct(null, true);
+        await(() -> store.find(product.getId()));
+
+        jdbcTemplate.update("UPDATE product SET stock = 3, version = version + 1 WHERE id = ?", product.getId());
+        store.invalidateAfterCompletion(List.of(product.getId()));
+
+        ProductResponse stored = store.find(product.getId());
+        assertTrue(stored == null || stored.getStock() == 3);
+        assertEquals(3, await(() -> store.find(product.getId())).getStock());
+        assertNotNull(store.activeProducts());
+    }
+
+    private static <T> T await(Supplier<T> read) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        T value;
+        while ((value = read.get()) == null) {
+            assertTrue(System.nanoTime() < deadline, "timed out waiting for the catalog file");
+            Thread.sleep(10);
+        }
+        return value;
+    }
+
+    private Category createCategory() {
+        Category category = new Category();
+        category.setName("Mapped " + UUID.randomUUID().toString().substring(0, 8));
+        return categoryRepository.save(category);
+    }
+
+    private Product createProduct(Category category, boolean active) {
+        Product product = new Product();
+        product.setName("Mapped " + UUID.randomUUID().toString().substring(0, 8));
+        product.setPrice(new BigDecimal("12.50"));
+        product.setStock(10);
+        product.setActive(active);
+        product.setCategory(category);
+        return productRepository.save(product);
+    }
+}
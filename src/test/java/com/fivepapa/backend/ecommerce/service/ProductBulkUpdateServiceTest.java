@@ -0,0 +1,96 @@
+package com.fivepapa.backend.ecommerce.service;
+
+import com.fivepapa.backend.ecommerce.dto.ProductBulkUpdateRequest;
+import com.fivepapa.backend.ecommerce.dto.ProductBulkUpdateRequest.Item;
+import com.fivepapa.backend.ecommerce.dto.ProductBulkUpdateResponse;
+import com.fivepapa.backend.ecommerce.dto.ProductBulkUpdateResponse.Status;
+import com.fivepapa.backend.ecommerce.entity.Product;
+import com.fivepapa.backend.ecommerce.repository.ProductRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class ProductBulkUpdateServiceTest {
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void appliesChunksAndReportsEachRow() {
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < 2500; i++) {
+            products.add(newProduct());
+        }
+        products = productRepository.saveAll(products);
+        Product stale = products.get(0);
+        jdbcTemplate.update("UPDATE product SET version = version + 1 WHERE id = ?", stale.getId());
+
+        List<Item> items = new ArrayList<>();
+        // 倒序送出，確認區塊內排序後結果仍對應原本的列
+        for (int i = products.size() - 1; i >= 1; i--) {
+            items.add(new Item(products.get(i).getId(), i, null, null));
+        }
+        items.add(new Item(stale.getId(), 1, null, stale.getVersion()));
+        items.add(new Item(-1L, 5, null, null));
+        items.add(new Item(products.get(1).getId(), null, null, null));
+        items.add(new Item(products.get(2).getId(), null, new BigDecimal("-1"), null));
+        items.add(new Item(products.get(3).getId(), null, new BigDecimal("88.50"), null));
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ProductBulkUpdateService service = new ProductBulkUpdateService(jdbcTemplate, productRepository,
+                eventPublisher, transactionManager, meterRegistry, 1000);
+
+        ProductBulkUpdateResponse response = service.apply(new ProductBulkUpdateRequest(items));
+
+        assertEquals(2500, response.getUpdated());
+        assertEquals(1, response.getNotFound());
+        assertEquals(1, response.getConflicts());
+        assertEquals(2, response.getInvalid());
+        assertEquals(items.size(), response.getResults().size());
+        for (int i = 0; i < items.size(); i++) {
+            assertEquals(items.get(i).getId(), response.getResults().get(i).getId());
+        }
+        assertEquals(Status.VERSION_CONFLICT, response.getResults().get(2499).getStatus());
+        assertEquals(Status.NOT_FOUND, response.getResults().get(2500).getStatus());
+        assertEquals(Status.INVALID, response.getResults().get(2501).getStatus());
+        assertEquals(Status.INVALID, response.getResults().get(2502).getStatus());
+        assertEquals(2500, meterRegistry.counter("product.bulk_update.rows", "status", "updated").count());
+
+        Product last = productRepository.findById(products.get(2499).getId()).orElseThrow();
+        assertEquals(2499, last.getStock());
+        assertEquals(stale.getVersion() + 1, last.getVersion());
+        Product repriced = productRepository.findById(products.get(3).getId()).orElseThrow();
+        assertEquals(3, repriced.getStock());
+        assertEquals(0, new BigDecimal("88.50").compareTo(repriced.getPrice()));
+        assertEquals(100, productRepository.findById(stale.getId()).orElseThrow().getStock());
+    }
+
+    private Product newProduct() {
+        Product product = new Product();
+        product.setName("Bulk " + UUID.randomUUID().toString().substring(0, 8));
+        product.setPrice(new BigDecimal("100"));
+        product.setStock(100);
+        return product;
+    }
+}
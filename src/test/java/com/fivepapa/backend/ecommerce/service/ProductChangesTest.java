@@ -0,0 +1,118 @@
+package com.fivepapa.backend.ecommerce.service;
+
+import com.fivepapa.backend.ecommerce.dto.ProductChangesResponse;
+import com.fivepapa.backend.ecommerce.dto.ProductPatchRequest;
+import com.fivepapa.backend.ecommerce.dto.ProductRequest;
+import com.fivepapa.backend.ecommerce.dto.ProductResponse;
+import com.fivepapa.backend.ecommerce.dto.CategoryRequest;
+import com.fivepapa.backend.ecommerce.dto.CategoryResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class ProductChangesTest {
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private ProductChangeSequencer productChangeSequencer;
+
+    @Test
+    void deltaContainsOnlyChangesAndTombstonesSinceCursor() {
+        ProductResponse kept = createProduct(null);
+        ProductResponse updated = createProduct(null);
+        ProductResponse patched = createProduct(null);
+        ProductResponse deleted = createProduct(null);
+        String cursor = syncToEnd(null).cursor();
+
+        productService.updateProduct(updated.getId(), request("Renamed", null));
+        ProductPatchRequest patch = new ProductPatchRequest();
+        patch.setStock(1);
+        productService.patchProduct(patched.getId(), patch, null);
+        productService.deleteProduct(deleted.getId());
+        Sync delta = syncToEnd(cursor);
+
+        List<Long> changedIds = delta.products().stream().map(ProductResponse::getId).toList();
+        assertTrue(changedIds.contains(updated.getId()));
+        assertTrue(changedIds.contains(patched.getId()));
+        assertFalse(changedIds.contains(kept.getId()));
+        assertFalse(changedIds.contains(deleted.getId()));
+        assertTrue(delta.deletedIds().contains(deleted.getId()));
+
+        Sync empty = syncToEnd(delta.cursor());
+        assertTrue(empty.products().isEmpty());
+        assertTrue(empty.deletedIds().isEmpty());
+    }
+
+    @Test
+    void pagesFollowChangeOrderAndCategoryRenameMarksProducts() {
+        String cursor = syncToEnd(null).cursor();
+        CategoryRequest categoryRequest = new CategoryRequest();
+        categoryRequest.setName("Changes " + UUID.randomUUID().toString().substring(0, 8));
+        CategoryResponse category = categoryService.createCategory(categoryRequest);
+        List<Long> created = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            created.add(createProduct(category.getId()).getId());
+        }
+        productChangeSequencer.stamp();
+
+        ProductChangesResponse first = productService.getChanges(cursor, 2);
+        assertTrue(first.isHasMore());
+        assertEquals(2, first.getProducts().size());
+        Sync rest = syncToEnd(first.getCursor());
+        List<Long> ids = new ArrayList<>(first.getProducts().stream().map(ProductResponse::getId).toList());
+        ids.addAll(rest.products().stream().map(ProductResponse::getId).toList());
+        assertEquals(created, ids);
+
+        categoryRequest.setName(categoryRequest.getName() + " renamed");
+        categoryService.updateCategory(category.getId(), categoryRequest);
+        Sync renamed = syncToEnd(rest.cursor());
+        assertEquals(5, renamed.products().size());
+        assertEquals(categoryRequest.getName(), renamed.products().get(0).getCategoryName());
+    }
+
+    /**
+     * 編號所有異動後，從 cursor 取到沒有更多異動為止
+     */
+    private Sync syncToEnd(String cursor) {
+        productChangeSequencer.stamp();
+        List<ProductResponse> products = new ArrayList<>();
+        List<Long> deletedIds = new ArrayList<>();
+        ProductChangesResponse page;
+        do {
+            page = productService.getChanges(cursor, 1000);
+            products.addAll(page.getProducts());
+            deletedIds.addAll(page.getDeletedIds());
+            cursor = page.getCursor();
+        } while (page.isHasMore());
+        return new Sync(products, deletedIds, cursor);
+    }
+
+    private ProductResponse createProduct(Long categoryId) {
+        return productService.createProduct(request("Changes " + UUID.randomUUID().toString().substring(0, 8), categoryId));
+    }
+
+    private ProductRequest request(String name, Long categoryId) {
+        ProductRequest request = new ProductRequest();
+        request.setName(name);
+        request.setPrice(new BigDecimal("10"));
+        request.setStock(5);
+        request.setCategoryId(categoryId);
+        return request;
+    }
+
+    private record Sync(List<ProductResponse> products, List<Long> deletedIds, String cursor) {
+    }
+}
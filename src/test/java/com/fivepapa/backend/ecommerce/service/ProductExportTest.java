@@ -0,0 +1,102 @@
+package com.fivepapa.backend.ecommerce.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fivepapa.backend.common.util.CsvReader;
+import com.fivepapa.backend.ecommerce.dto.ProductResponse;
+import com.fivepapa.backend.ecommerce.entity.Product;
+import com.fivepapa.backend.ecommerce.repository.ProductRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class ProductExportTest {
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void ndjsonExportPagesThroughWholeCatalog() throws Exception {
+        for (int i = 0; i < 25; i++) {
+            createProduct("Export " + UUID.randomUUID().toString().substring(0, 8));
+        }
+        long total = productRepository.count();
+        ProductExportService exportService = new ProductExportService(jdbcTemplate, objectMapper, new SimpleMeterRegistry(), 7);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        long exported = exportService.export(ProductExportService.Format.NDJSON, output);
+
+        String[] lines = output.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(total, exported);
+        assertEquals(total, lines.length);
+        long previousId = 0;
+        for (String line : lines) {
+            ProductResponse product = objectMapper.readValue(line, ProductResponse.class);
+            assertTrue(product.getId() > previousId);
+            previousId = product.getId();
+        }
+    }
+
+    @Test
+    void csvExportOverHttpIsGzippedAndQuoted() throws Exception {
+        Product product = createProduct("Export, \"quoted\" " + UUID.randomUUID().toString().substring(0, 8));
+
+        MvcResult result = mockMvc.perform(get("/api/products/export")
+                .param("format", "csv")
+                .header("Accept-Encoding", "gzip")).andReturn();
+
+        assertEquals(200, result.getResponse().getStatus());
+        assertEquals("gzip", result.getResponse().getHeader("Content-Encoding"));
+        byte[] body = new GZIPInputStream(new ByteArrayInputStream(result.getResponse().getContentAsByteArray())).readAllBytes();
+        CsvReader csv = new CsvReader(new StringReader(new String(body, StandardCharsets.UTF_8)), 1 << 20);
+        List<String> header = csv.next();
+        List<List<String>> rows = new ArrayList<>();
+        List<String> row;
+        while ((row = csv.next()) != null) {
+            rows.add(row);
+        }
+        assertEquals("name", header.get(1));
+        assertEquals(productRepository.count(), rows.size());
+        List<String> exported = rows.stream()
+                .filter(fields -> fields.get(0).equals(String.valueOf(product.getId())))
+                .findFirst().orElseThrow();
+        assertEquals(product.getName(), exported.get(1));
+        assertEquals("12.50", exported.get(3));
+    }
+
+    private Product createProduct(String name) {
+        Product product = new Product();
+        product.setName(name);
+        product.setPrice(new BigDecimal("12.50"));
+        product.setStock(3);
+        return productRepository.save(product);
+    }
+}
@@ -0,0 +1,120 @@
+package com.fivepapa.backend.ecommerce.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fivepapa.backend.common.util.JwtUtil;
+import com.fivepapa.backend.ecommerce.dto.ProductImportStatus;
+import com.fivepapa.backend.ecommerce.dto.ProductImportStatus.Format;
+import com.fivepapa.backend.ecommerce.dto.ProductImportStatus.State;
+import com.fivepapa.backend.ecommerce.entity.Category;
+import com.fivepapa.backend.ecommerce.entity.Product;
+import com.fivepapa.backend.ecommerce.repository.ProductRepository;
+import com.fivepapa.backend.support.TestFixtures;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class ProductImportTest {
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private ProductImportService productImportService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void csvImportResolvesCategoriesAndSkipsInvalidRows() throws Exception {
+        Category category = fixtures.category();
+        String prefix = "Csv " + UUID.randomUUID().toString().substring(0, 8);
+        String csv = "name,description,price,stock,category,featured\r\n" +
+                prefix + " A,\"Line one\nline two, with \"\"quotes\"\"\",199.50,10," + category.getName() + ",true\r\n" +
+                prefix + " B,,20,5,,\r\n" +
+                "\r\n" +
+                prefix + " C,,abc,5,,\r\n" +
+                prefix + " D,,20,-1,,\r\n" +
+                prefix + " E,,20,1,No such category,\r\n";
+        String token = jwtUtil.generateToken(fixtures.admin());
+
+        MvcResult result = mockMvc.perform(post("/api/products/imports")
+                .header("Authorization", "Bearer " + token)
+                .contentType("text/csv")
+                .content(csv)).andReturn();
+
+        assertEquals(201, result.getResponse().getStatus());
+        ProductImportStatus status = objectMapper.readValue(result.getResponse().getContentAsString(), ProductImportStatus.class);
+        assertEquals(State.COMPLETED, status.getState());
+        assertEquals(5, status.getRowsRead());
+        assertEquals(2, status.getImported());
+        assertEquals(3, status.getFailed());
+        assertEquals(6, status.getErrors().get(0).getLine());
+        assertEquals(7, status.getErrors().get(1).getLine());
+        assertEquals(8, status.getErrors().get(2).getLine());
+
+        Product imported = productRepository.findByNameContaining(prefix + " A").get(0);
+        assertEquals("Line one\nline two, with \"quotes\"", imported.getDescription());
+        assertEquals(0, new BigDecimal("199.50").compareTo(imported.getPrice()));
+        assertTrue(imported.getFeatured());
+        assertTrue(imported.getActive());
+        assertEquals(0, productRepository.findByNameContaining(prefix + " C").size());
+
+        MvcResult progress = mockMvc.perform(get(result.getResponse().getHeader("Location"))
+                .header("Authorization", "Bearer " + token)).andReturn();
+        assertEquals(200, progress.getResponse().getStatus());
+        MvcResult anonymous = mockMvc.perform(get(result.getResponse().getHeader("Location"))).andReturn();
+        assertEquals(403, anonymous.getResponse().getStatus());
+    }
+
+    @Test
+    void ndjsonImportWritesAcrossBatches() {
+        Category category = fixtures.category();
+        String prefix = "Json " + UUID.randomUUID().toString().substring(0, 8);
+        StringBuilder ndjson = new StringBuilder();
+        for (int i = 0; i < 1200; i++) {
+            ndjson.append("{\"name\":\"").append(prefix).append(' ').append(i)
+                    .append("\",\"price\":10,\"stock\":").append(i)
+                    .append(",\"categoryId\":").append(category.getId()).append("}\n");
+        }
+        ndjson.append("{\"name\":\"broken\",\n");
+
+        ProductImportStatus status = productImportService.importProducts(Format.NDJSON, new StringReader(ndjson.toString()));
+
+        assertEquals(State.COMPLETED, status.getState());
+        assertEquals(1200, status.getImported());
+        assertEquals(1, status.getFailed());
+        assertEquals(1201, status.getErrors().get(0).getLine());
+        assertEquals(1200, productRepository.findByNameContaining(prefix).size());
+    }
+
+    @Test
+    void csvWithoutRequiredColumnsFails() {
+        ProductImportStatus status = productImportService.importProducts(Format.CSV, new StringReader("name,stock\nA,1\n"));
+
+        assertEquals(State.FAILED, status.getState());
+        assertEquals(0, status.getImported());
+        assertNotNull(status.getMessage());
+    }
+}
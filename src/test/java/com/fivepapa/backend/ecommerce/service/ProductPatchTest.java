@@ -0,0 +1,112 @@
+package com.fivepapa.backend.ecommerce.service;
+
+import com.fivepapa.backend.common.exception.PreconditionFailedException;
+import com.fivepapa.backend.common.util.JwtUtil;
+import com.fivepapa.backend.ecommerce.dto.ProductPatchRequest;
+import com.fivepapa.backend.ecommerce.dto.ProductResponse;
+import com.fivepapa.backend.ecommerce.entity.Category;
+import com.fivepapa.backend.ecommerce.entity.Product;
+import com.fivepapa.backend.support.TestFixtures;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class ProductPatchTest {
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void patchUpdatesOnlyGivenFieldsAndBumpsVersion() {
+        Product product = createProduct();
+        ProductPatchRequest request = new ProductPatchRequest();
+        request.setPrice(new BigDecimal("80"));
+
+        ProductResponse patched = productService.patchProduct(product.getId(), request, null);
+
+        assertEquals(0, new BigDecimal("80").compareTo(patched.getPrice()));
+        assertEquals(product.getName(), patched.getName());
+        assertEquals(product.getDescription(), patched.getDescription());
+        assertEquals(product.getStock(), patched.getStock());
+        assertEquals(product.getCategory().getId(), patched.getCategoryId());
+        assertEquals(product.getVersion() + 1, patched.getVersion());
+    }
+
+    @Test
+    void patchWithStaleVersionFailsWithoutChanges() {
+        Product product = createProduct();
+        ProductPatchRequest first = new ProductPatchRequest();
+        first.setStock(5);
+        productService.patchProduct(product.getId(), first, product.getVersion());
+
+        ProductPatchRequest stale = new ProductPatchRequest();
+        stale.setStock(50);
+        assertThrows(PreconditionFailedException.class,
+                () -> productService.patchProduct(product.getId(), stale, product.getVersion()));
+
+        assertEquals(5, productService.getProductById(product.getId()).getStock());
+    }
+
+    @Test
+    void patchRejectsNullForRequiredFields() {
+        Product product = createProduct();
+        ProductPatchRequest request = new ProductPatchRequest();
+        request.setPrice(null);
+
+        assertThrows(RuntimeException.class, () -> productService.patchProduct(product.getId(), request, null));
+    }
+
+    @Test
+    void explicitNullClearsOptionalFieldsOverHttp() throws Exception {
+        Product product = createProduct();
+        String token = jwtUtil.generateToken(fixtures.admin());
+
+        MvcResult result = mockMvc.perform(patch("/api/products/" + product.getId())
+                .header("Authorization", "Bearer " + token)
+                .header("If-Match", "\"" + product.getVersion() + "\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"description\":null,\"categoryId\":null}")).andReturn();
+
+        assertEquals(200, result.getResponse().getStatus());
+        assertEquals("\"" + (product.getVersion() + 1) + "\"", result.getResponse().getHeader("ETag"));
+        ProductResponse patched = productService.getProductById(product.getId());
+        assertNull(patched.getDescription());
+        assertNull(patched.getCategoryId());
+        assertEquals(product.getName(), patched.getName());
+
+        MvcResult stale = mockMvc.perform(patch("/api/products/" + product.getId())
+                .header("Authorization", "Bearer " + token)
+                .header("If-Match", "\"" + product.getVersion() + "\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"stock\":1}")).andReturn();
+        assertEquals(412, stale.getResponse().getStatus());
+    }
+
+    private Product createProduct() {
+        Category category = fixtures.category();
+        return fixtures.product(product -> {
+            product.setDescription("Original description");
+            product.setCategory(category);
+        });
+    }
+}
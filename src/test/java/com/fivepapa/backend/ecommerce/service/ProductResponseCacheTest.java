@@ -0,0 +1,117 @@
+package com.fivepapa.backend.ecommerce.service;
+
+import com.fivepapa.backend.common.util.JwtUtil;
+import com.fivepapa.backend.ecommerce.dto.CategoryRequest;
+import com.fivepapa.backend.ecommerce.dto.ProductPatchRequest;
+import com.fivepapa.backend.ecommerce.dto.ProductRequest;
+import com.fivepapa.backend.ecommerce.dto.ProductResponse;
+import com.fivepapa.backend.ecommerce.entity.Category;
+import com.fivepapa.backend.ecommerce.entity.Product;
+import com.fivepapa.backend.support.TestFixtures;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class ProductResponseCacheTest {
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private ProductResponseCache productResponseCache;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void repeatedReadsAreServedFromCacheUntilUpdated() {
+        Product product = fixtures.product(fixtures.category());
+        long hits = productResponseCache.stats().hitCount();
+
+        ProductResponse first = productService.getProductById(product.getId());
+        ProductResponse second = productService.getProductById(product.getId());
+
+        assertSame(first, second);
+        assertEquals(hits + 1, productResponseCache.stats().hitCount());
+
+        ProductRequest request = new ProductRequest();
+        request.setName(product.getName());
+        request.setPrice(new BigDecimal("25"));
+        request.setStock(3);
+        request.setActive(true);
+        request.setFeatured(false);
+        request.setCategoryId(product.getCategory().getId());
+        productService.updateProduct(product.getId(), request);
+
+        assertEquals(0, new BigDecimal("25").compareTo(productService.getProductById(product.getId()).getPrice()));
+    }
+
+    @Test
+    void categoryRenameEvictsProductsInThatCategory() {
+        Category category = fixtures.category();
+        Product product = fixtures.product(category);
+        productService.getProductById(product.getId());
+
+        CategoryRequest rename = new CategoryRequest();
+        rename.setName(category.getName() + " renamed");
+        categoryService.updateCategory(category.getId(), rename);
+
+        assertEquals(category.getName() + " renamed", productService.getProductById(product.getId()).getCategoryName());
+    }
+
+    @Test
+    void rolledBackWriteDoesNotLeaveUncommittedValue() {
+        Product product = fixtures.product();
+        productService.getProductById(product.getId());
+
+        assertThrows(IllegalStateException.class, () -> new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            ProductPatchRequest patch = new ProductPatchRequest();
+            patch.setStock(99);
+            assertEquals(99, productService.patchProduct(product.getId(), patch, null).getStock());
+            throw new IllegalStateException("rollback");
+        }));
+
+        assertEquals(10, productService.getProductById(product.getId()).getStock());
+    }
+
+    @Test
+    void adminCanReadStatsAndPurge() throws Exception {
+        Product product = fixtures.product();
+        productService.getProductById(product.getId());
+        String token = "Bearer " + jwtUtil.generateToken(fixtures.admin());
+
+        MvcResult stats = mockMvc.perform(get("/api/products/cache").header("Authorization", token)).andReturn();
+        assertEquals(200, stats.getResponse().getStatus());
+        assertTrue(stats.getResponse().getContentAsString().contains("\"hitRatio\""));
+        assertNotEquals(200, mockMvc.perform(get("/api/products/cache")).andReturn().getResponse().getStatus());
+
+        assertEquals(204, mockMvc.perform(delete("/api/products/cache").header("Authorization", token))
+                .andReturn().getResponse().getStatus());
+        assertNull(productResponseCache.getIfPresent(product.getId()));
+    }
+}
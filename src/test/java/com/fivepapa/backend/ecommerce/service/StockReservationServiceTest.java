@@ -0,0 +1,223 @@
+package com.fivepapa.backend.ecommerce.service;
+
+import com.fivepapa.backend.ecommerce.entity.Product;
+import com.fivepapa.backend.ecommerce.repository.ProductRepository;
+import com.fivepapa.backend.ecommerce.repository.StockLeaseRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 熱門商品（記憶體計數器）的保留；每個測試使用自己的服務，商品以 STOCK_HOT_PRODUCT_IDS 指定為熱門
+ * 不同的服務實例代表不同的執行個體，各自有租借紀錄
+ */
+@SpringBootTest
+class StockReservationServiceTest {
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private StockLeaseRepository stockLeaseRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private StockReservationService service;
+
+    @AfterEach
+    void tearDown() {
+        if (service != null) {
+            service.returnAllLeases();
+        }
+    }
+
+    @Test
+    void rolledBackReservationReturnsToTheCounter() {
+        Product product = createHotProduct(100, 10);
+
+        inTransaction(() -> service.reserve(product, 3));
+        // 資料庫中未租借的 90 加上計數器中剩下的 7
+        assertEquals(97, service.availableStock(reload(product)));
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            service.reserve(product, 4);
+            status.setRollbackOnly();
+        });
+
+        assertEquals(97, service.availableStock(reload(product)));
+        // 租借的一批（10）都記在資料庫，使用的部分只在記憶體中扣減
+        assertEquals(10, reservedStockOf(product));
+    }
+
+    @Test
+    void releaseReturnsToTheCounterOnlyAfterCommit() {
+        Product product = createHotProduct(100, 10);
+        inTransaction(() -> service.reserve(product, 5));
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            service.release(product.getId(), 2);
+            status.setRollbackOnly();
+        });
+        assertEquals(95, service.availableStock(reload(product)));
+
+        inTransaction(() -> service.release(product.getId(), 2));
+        assertEquals(97, service.availableStock(reload(product)));
+    }
+
+    @Test
+    void leaseTakesWhatIsLeftAndThenFails() {
+        Product product = createHotProduct(5, 50);
+
+        inTransaction(() -> service.reserve(product, 3));
+        assertEquals(5, reservedStockOf(product));
+        assertEquals(2, service.availableStock(reload(product)));
+
+        RuntimeException error = assertThrows(RuntimeException.class,
+                () -> inTransaction(() -> service.reserve(product, 3)));
+        assertTrue(error.getMessage().contains("庫存不足"));
+        assertEquals(2, service.availableStock(reload(product)));
+
+        service.returnAllLeases();
+        assertEquals(3, reservedStockOf(product));
+    }
+
+    @Test
+    void idleCounterIsDemotedAfterReturningItsLease() throws InterruptedException {
+        Product product = createHotProduct(100, 10);
+        service = newService(product, 10, 0);
+        inTransaction(() -> service.reserve(product, 3));
+        assertEquals(10, leasedQuantityOf(product));
+        service.heartbeat();
+        assertEquals(7, leasedQuantityOf(product));
+
+        Thread.sleep(10);
+        service.returnIdleLeases();
+
+        assertEquals(3, reservedStockOf(product));
+        assertNull(leaseRowOf(product));
+        // 降級後的釋放直接還給資料庫，不會留在已移除的計數器
+        inTransaction(() -> service.release(product.getId(), 3));
+        assertEquals(0, reservedStockOf(product));
+        assertEquals(100, service.availableStock(reload(product)));
+    }
+
+    @Test
+    void leasesOfAnExpiredInstanceAreReclaimed() {
+        Product product = createHotProduct(100, 10);
+        StockReservationService crashed = service;
+        inTransaction(() -> crashed.reserve(product, 3));
+        crashed.heartbeat();
+        assertEquals(7, leasedQuantityOf(product));
+
+        // 模擬當機：心跳停止超過 STOCK_LEASE_EXPIRY_SECONDS
+        jdbcTemplate.update("UPDATE stock_lease SET heartbeat_at = ? WHERE product_id = ?",
+                LocalDateTime.now().minusMinutes(10), product.getId());
+        service = newService(product, 10, 60);
+        service.heartbeat();
+
+        assertEquals(3, reservedStockOf(product));
+        assertNull(leaseRowOf(product));
+
+        // 停頓後恢復的執行個體發現紀錄已被回收，不再從舊的租借量保留
+        crashed.heartbeat();
+        assertEquals(97, crashed.availableStock(reload(product)));
+        inTransaction(() -> crashed.reserve(product, 2));
+        assertEquals(95, crashed.availableStock(reload(product)));
+        assertEquals(3 + 10, reservedStockOf(product));
+        crashed.returnAllLeases();
+        assertEquals(5, reservedStockOf(product));
+    }
+
+    @Test
+    void concurrentReservationsNeverOversell() throws Exception {
+        Product product = createHotProduct(100, 7);
+        int threads = 12;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                int reserved = 0;
+                while (true) {
+                    try {
+                        inTransaction(() -> service.reserve(product, 1));
+                        reserved++;
+                    } catch (RuntimeException e) {
+                        return reserved;
+                    }
+                }
+            }));
+        }
+        start.countDown();
+        int total = 0;
+        for (Future<Integer> result : results) {
+            total += result.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertEquals(100, total);
+        assertEquals(100, reservedStockOf(product));
+        assertEquals(0, service.availableStock(reload(product)));
+    }
+
+    private Product createHotProduct(int stock, int leaseSize) {
+        Product product = new Product();
+        product.setName("Hot " + UUID.randomUUID().toString().substring(0, 8));
+        product.setPrice(new BigDecimal("10"));
+        product.setStock(stock);
+        Product saved = productRepository.save(product);
+        service = newService(saved, leaseSize, 60);
+        return saved;
+    }
+
+    private StockReservationService newService(Product hotProduct, int leaseSize, long hotIdleSeconds) {
+        return new StockReservationService(productRepository, stockLeaseRepository, transactionManager, 15,
+                List.of(hotProduct.getId()), 20, leaseSize, 4, hotIdleSeconds, 60);
+    }
+
+    private void inTransaction(Runnable action) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> action.run());
+    }
+
+    private Product reload(Product product) {
+        return productRepository.findById(product.getId()).orElseThrow();
+    }
+
+    private Integer leasedQuantityOf(Product product) {
+        Map<String, Object> row = leaseRowOf(product);
+        return row != null ? ((Number) row.get("quantity")).intValue() : null;
+    }
+
+    private Map<String, Object> leaseRowOf(Product product) {
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                "SELECT quantity FROM stock_lease WHERE product_id = ?", product.getId());
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    private int reservedStockOf(Product product) {
+        return jdbcTemplate.queryForObject("SELECT reserved_stock FROM product WHERE id = ?", Integer.class, product.getId());
+    }
+}
@@ -0,0 +1,86 @@
+package com.fivepapa.backend.ecommerce.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StripedStockCounterTest {
+
+    @Test
+    void acquireCollectsFromSeveralStripes() {
+        StripedStockCounter counter = new StripedStockCounter(8);
+        counter.deposit(8);  // one unit per stripe
+
+        assertTrue(counter.tryAcquire(5));
+        assertEquals(3, counter.available());
+    }
+
+    @Test
+    void failedAcquireTakesNothing() {
+        StripedStockCounter counter = new StripedStockCounter(4);
+        counter.deposit(3);
+
+        assertFalse(counter.tryAcquire(4));
+        assertEquals(3, counter.available());
+        assertTrue(counter.tryAcquire(3));
+        assertFalse(counter.tryAcquire(1));
+        assertEquals(0, counter.available());
+    }
+
+    @Test
+    void drainEmptiesEveryStripe() {
+        StripedStockCounter counter = new StripedStockCounter(4);
+        counter.deposit(10);
+        counter.tryAcquire(2);
+        counter.release(1);
+
+        assertEquals(9, counter.drain());
+        assertEquals(0, counter.available());
+        assertFalse(counter.tryAcquire(1));
+    }
+
+    @Test
+    void concurrentAcquiresNeverExceedTheDeposit() throws Exception {
+        StripedStockCounter counter = new StripedStockCounter(8);
+        counter.deposit(1000);
+        int threads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            int quantity = 1 + i % 3;
+            results.add(executor.submit(() -> {
+                start.await();
+                int acquired = 0;
+                // Keep going after a failure: other threads may still release units
+                for (int attempt = 0; attempt < 2000; attempt++) {
+                    if (counter.tryAcquire(quantity)) {
+                        acquired += quantity;
+                        if (attempt % 7 == 0) {
+                            counter.release(quantity);
+                            acquired -= quantity;
+                        }
+                    }
+                }
+                return acquired;
+            }));
+        }
+        start.countDown();
+        int total = 0;
+        for (Future<Integer> result : results) {
+            total += result.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertEquals(1000, total + counter.available());
+        assertTrue(counter.available() >= 0);
+    }
+}
@@ -0,0 +1,100 @@
+package com.fivepapa.backend.support;
+
+import com.fivepapa.backend.ecommerce.entity.Category;
+import com.fivepapa.backend.ecommerce.entity.Product;
+import com.fivepapa.backend.ecommerce.repository.CategoryRepository;
+import com.fivepapa.backend.ecommerce.repository.ProductRepository;
+import com.fivepapa.backend.member.entity.User;
+import com.fivepapa.backend.member.repository.UserRepository;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * 測試共用的資料建立工具
+ * 名稱都帶隨機後綴，測試共用同一個資料庫時不會互相衝突
+ * 商品預設價格 10、庫存 10、上架，其他設定以 Consumer 在保存前調整
+ */
+@Component
+public class TestFixtures {
+
+    private final UserRepository userRepository;
+    private final ProductRepository productRepository;
+    private final CategoryRepository categoryRepository;
+
+    public TestFixtures(UserRepository userRepository,
+                        ProductRepository productRepository,
+                        CategoryRepository categoryRepository) {
+        this.userRepository = userRepository;
+        this.productRepository = productRepository;
+        this.categoryRepository = categoryRepository;
+    }
+
+    /**
+     * 一般用戶
+     */
+    public User user() {
+        return saveUser("user", User.UserRole.USER);
+    }
+
+    /**
+     * 管理員
+     */
+    public User admin() {
+        return saveUser("admin", User.UserRole.ADMIN);
+    }
+
+    public Category category() {
+        return category(null);
+    }
+
+    /**
+     * 子分類（parent 為 null 時為頂層分類）
+     */
+    public Category category(Category parent) {
+        Category category = new Category();
+        category.setName("Category " + suffix());
+        category.setParent(parent);
+        return categoryRepository.save(category);
+    }
+
+    public Product product() {
+        return product(product -> { });
+    }
+
+    public Product product(int stock) {
+        return product(product -> product.setStock(stock));
+    }
+
+    public Product product(Category category) {
+        return product(product -> product.setCategory(category));
+    }
+
+    /**
+     * 以預設值建立商品，settings 在保存前調整欄位
+     */
+    public Product product(Consumer<Product> settings) {
+        Product product = new Product();
+        product.setName("Product " + suffix());
+        product.setPrice(new BigDecimal("10"));
+        product.setStock(10);
+        settings.accept(product);
+        return productRepository.save(product);
+    }
+
+    private User saveUser(String prefix, User.UserRole role) {
+        String name = prefix + suffix();
+        return userRepository.save(User.builder()
+                .username(name)
+                .email(name + "@example.com")
+                .password("password")
+                .role(role)
+                .build());
+    }
+
+    private static String suffix() {
+        return UUID.randomUUID().toString().substring(0, 8);
+    }
+}